@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.List;
+
+import org.jcvi.jillion.align.SequenceAlignment;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.Sequence;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.ResidueSequenceBuilder;
+import org.jcvi.jillion.internal.align.SequenceAlignmentBuilder;
+/**
+ * {@code AbstractLinearMemoryPairwiseAligner} is the 
+ * base class of pairwise aligners that do not
+ * need a full (queryLength+1) x (subjectLength+1) traceback matrix.
+ * Unlike {@link AbstractPairwiseAligner}, these aligners
+ * keep separate match, horizontal gap and vertical gap scores
+ * for each cell (Gotoh's 3 state recurrence)
+ * so the affine gap penalties are always computed exactly.
+ * <p>
+ * A gap of length L is scored as {@code openGapPenalty + (L-1) * extendGapPenalty}
+ * which is the same as {@link AbstractPairwiseAligner}.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} used in this aligner.
+ * @param <S> the {@link Sequence} type input into this aligner.
+ * @param <B> the {@link org.jcvi.jillion.core.SequenceBuilder} for this aligner.
+ * @param <A> the {@link SequenceAlignment} type returned by this aligner.
+ * @param <P> the {@link PairwiseSequenceAlignment} type returned by this aligner.
+ * 
+ * @since 5.3
+ */
+abstract class AbstractLinearMemoryPairwiseAligner<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> {
+	/**
+	 * The ungapped query as residue ordinals.
+	 */
+	protected final byte[] query;
+	/**
+	 * The ungapped subject as residue ordinals.
+	 */
+	protected final byte[] subject;
+	/**
+	 * Substitution scores indexed by residue ordinals
+	 * so we don't have to look up the Residue objects
+	 * for every cell.
+	 */
+	protected final float[][] scores;
+	
+	protected final float openGapPenalty;
+	protected final float extendGapPenalty;
+	
+	protected final ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy;
+	
+	private final List<R> residuesByOrdinal;
+	private final R gap;
+	
+	protected AbstractLinearMemoryPairwiseAligner(S query, S subject,
+			SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
+			ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy){
+		if(query ==null){
+			throw new NullPointerException("query sequence can not be null");
+		}
+		if(subject ==null){
+			throw new NullPointerException("subject sequence can not be null");
+		}
+		if(matrix ==null){
+			throw new NullPointerException("scoring matrix can not be null");
+		}
+		this.pairwiseStrategy = pairwiseStrategy;
+		this.openGapPenalty = openGapPenalty;
+		this.extendGapPenalty = extendGapPenalty;
+		this.residuesByOrdinal = pairwiseStrategy.getResidueList();
+		this.gap = pairwiseStrategy.getGap();
+		
+		this.query = toUngappedOrdinals(query);
+		this.subject = toUngappedOrdinals(subject);
+		
+		int numberOfResidues = residuesByOrdinal.size();
+		scores = new float[numberOfResidues][numberOfResidues];
+		for(int i=0; i< numberOfResidues; i++){
+			R a = residuesByOrdinal.get(i);
+			for(int j=0; j< numberOfResidues; j++){
+				scores[i][j] = matrix.getValue(a, residuesByOrdinal.get(j));
+			}
+		}
+	}
+	
+	private byte[] toUngappedOrdinals(S sequence){
+		byte[] array = new byte[(int) sequence.getUngappedLength()];
+		int i=0;
+		for(R residue : sequence){
+			if(!residue.isGap()){
+				array[i++]=residue.getOrdinalAsByte();
+			}
+		}
+		return array;
+	}
+	/**
+	 * Get the substitution score of the given query and subject offsets.
+	 * @param queryOffset the 0-based offset into the ungapped query.
+	 * @param subjectOffset the 0-based offset into the ungapped subject.
+	 * @return the score.
+	 */
+	protected final float score(int queryOffset, int subjectOffset){
+		return scores[query[queryOffset]][subject[subjectOffset]];
+	}
+	/**
+	 * Add the aligned pair of query and subject residues to the given builder.
+	 * @param builder the builder to add to.
+	 * @param queryOffset the 0-based offset into the ungapped query.
+	 * @param subjectOffset the 0-based offset into the ungapped subject.
+	 */
+	protected final void addAligned(SequenceAlignmentBuilder<R, S, B, A> builder, int queryOffset, int subjectOffset){
+		byte q = query[queryOffset];
+		byte s = subject[subjectOffset];
+		if(q==s){
+			builder.addMatch(residuesByOrdinal.get(q));
+		}else{
+			builder.addMismatch(residuesByOrdinal.get(q), residuesByOrdinal.get(s));
+		}
+	}
+	/**
+	 * Add a query residue aligned to a gap in the subject.
+	 * @param builder the builder to add to.
+	 * @param queryOffset the 0-based offset into the ungapped query.
+	 */
+	protected final void addSubjectGap(SequenceAlignmentBuilder<R, S, B, A> builder, int queryOffset){
+		builder.addGap(residuesByOrdinal.get(query[queryOffset]), gap);
+	}
+	/**
+	 * Add a subject residue aligned to a gap in the query.
+	 * @param builder the builder to add to.
+	 * @param subjectOffset the 0-based offset into the ungapped subject.
+	 */
+	protected final void addQueryGap(SequenceAlignmentBuilder<R, S, B, A> builder, int subjectOffset){
+		builder.addGap(gap, residuesByOrdinal.get(subject[subjectOffset]));
+	}
+	
+	protected final P createPairwiseAlignment(SequenceAlignmentBuilder<R, S, B, A> builder, float score){
+		return pairwiseStrategy.wrapPairwiseAlignment(PairwiseSequenceAlignmentWrapper.wrap(builder.build(), score));
+	}
+	/**
+	 * Get the completed {@link PairwiseSequenceAlignment}.
+	 * @return the alignment; will never be null.
+	 */
+	public abstract P getPairwiseSequenceAlignment();
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.Arrays;
+
+import org.jcvi.jillion.align.SequenceAlignment;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.Sequence;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.ResidueSequenceBuilder;
+import org.jcvi.jillion.internal.align.SequenceAlignmentBuilder;
+/**
+ * {@code BandedPairwiseAligner} performs either a local (Smith-Waterman)
+ * or global (Needleman-Wunsch) alignment but only computes
+ * the cells of the dynamic programming matrix that fall within
+ * a band of diagonals.  The band always includes 
+ * the main diagonal and the diagonal that ends at the last cell of the matrix
+ * plus {@code bandWidth} diagonals on either side.
+ * <p>
+ * The traceback only needs (queryLength+1) x (bandSize) bytes 
+ * instead of the full (queryLength+1) x (subjectLength+1)
+ * so similar sequences that are very long can be aligned quickly 
+ * without running out of memory.  Alignments with more net indels than the 
+ * band allows will not be found.
+ * </p>
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} used in this aligner.
+ * @param <S> the {@link Sequence} type input into this aligner.
+ * @param <B> the {@link org.jcvi.jillion.core.SequenceBuilder} for this aligner.
+ * @param <A> the {@link SequenceAlignment} type returned by this aligner.
+ * @param <P> the {@link PairwiseSequenceAlignment} type returned by this aligner.
+ * 
+ * @since 5.3
+ */
+final class BandedPairwiseAligner<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> extends AbstractLinearMemoryPairwiseAligner<R, S, B, A, P>{
+
+	private static final float NEGATIVE_INFINITY = Float.NEGATIVE_INFINITY;
+	/*
+	 * Each traceback cell is a single byte:
+	 * the lower 2 bits are where the best score came from
+	 * and the next 2 bits say if the horizontal or vertical
+	 * gap scores were extended from the previous cell
+	 * or opened a new gap.
+	 */
+	private static final int FROM_TERMINAL = 0;
+	private static final int FROM_DIAGONAL = 1;
+	private static final int FROM_HORIZONTAL = 2;
+	private static final int FROM_VERTICAL = 3;
+	private static final int SOURCE_MASK = 0x3;
+	
+	private static final int HORIZONTAL_EXTENDED = 0x4;
+	private static final int VERTICAL_EXTENDED = 0x8;
+	
+	private final boolean local;
+	private final int lowestDiagonal;
+	private final byte[][] traceback;
+	private final P alignment;
+	
+	/**
+	 * Align the given two sequences using a banded dynamic programming matrix.
+	 * 
+	 * @param query the query sequence; gaps are ignored. Can not be null.
+	 * @param subject the subject sequence; gaps are ignored. Can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param pairwiseStrategy the residue specific {@link ResiduePairwiseStrategy}.
+	 * @param local {@code true} for a local alignment; {@code false} for a global alignment.
+	 * @param bandWidth the number of extra diagonals on either side of the band; 
+	 * must be &ge; 0.
+	 * @param subjectShiftAmount the amount to shift the subject range; may be null.
+	 * 
+	 * @return a new {@link PairwiseSequenceAlignment}; will never be null.
+	 * 
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 */
+	public static <R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> 
+	P align(S query, S subject, SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
+			ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy, boolean local, int bandWidth, Integer subjectShiftAmount){
+		return align(query, subject, matrix, openGapPenalty, extendGapPenalty, 
+				pairwiseStrategy, local, bandWidth, 0, subjectShiftAmount);
+	}
+	/**
+	 * Align the given two sequences using a banded dynamic programming matrix
+	 * where the query is a sub sequence of a larger query.
+	 * 
+	 * @param queryShiftAmount the amount to shift the query range.
+	 * 
+	 * @see #align(ResidueSequence, ResidueSequence, SubstitutionMatrix, float, float, ResiduePairwiseStrategy, boolean, int, Integer)
+	 */
+	public static <R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> 
+	P align(S query, S subject, SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
+			ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy, boolean local, int bandWidth, int queryShiftAmount, Integer subjectShiftAmount){
+		return new BandedPairwiseAligner<>(query, subject, matrix, openGapPenalty, extendGapPenalty, 
+				pairwiseStrategy, local, bandWidth, queryShiftAmount, subjectShiftAmount)
+						.getPairwiseSequenceAlignment();
+	}
+	
+	private BandedPairwiseAligner(S query, S subject,
+			SubstitutionMatrix<R> matrix, float openGapPenalty,
+			float extendGapPenalty,
+			ResiduePairwiseStrategy<R, S, B, A, P> pairwiseStrategy,
+			boolean local, int bandWidth, int queryShiftAmount, Integer subjectShiftAmount) {
+		super(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy);
+		if(bandWidth <0){
+			throw new IllegalArgumentException("band width can not be negative : " + bandWidth);
+		}
+		this.local = local;
+		int m = this.query.length;
+		int n = this.subject.length;
+		//a band wider than the sequences is the same as the full matrix
+		int width = Math.min(bandWidth, Math.max(m, n));
+		//diagonals are j - i
+		lowestDiagonal = Math.min(0, n-m) - width;
+		int highestDiagonal = Math.max(0, n-m) + width;
+		
+		traceback = new byte[m+1][highestDiagonal - lowestDiagonal +1];
+		
+		int[] end = populateTraceback(m, n, highestDiagonal);
+		alignment = traceBack(end[0], end[1], Float.intBitsToFloat(end[2]), queryShiftAmount, subjectShiftAmount);
+	}
+	
+	private float gapScore(int length){
+		return openGapPenalty + (length -1) * extendGapPenalty;
+	}
+	/**
+	 * Compute the banded scores and traceback.
+	 * @return an int array of the x,y coordinates of the cell
+	 * to start the traceback from and the float bits of its score.
+	 */
+	private int[] populateTraceback(int m, int n, int highestDiagonal){
+		int bandSize = highestDiagonal - lowestDiagonal +1;
+		float[] previousScores = new float[bandSize];
+		float[] previousVerticalGaps = new float[bandSize];
+		float[] currentScores = new float[bandSize];
+		float[] currentVerticalGaps = new float[bandSize];
+		
+		Arrays.fill(previousScores, NEGATIVE_INFINITY);
+		Arrays.fill(previousVerticalGaps, NEGATIVE_INFINITY);
+		//first row
+		int firstRowEnd = Math.min(n, highestDiagonal);
+		for(int j=0; j<= firstRowEnd; j++){
+			int k = j - lowestDiagonal;
+			if(local || j==0){
+				previousScores[k] = 0;
+			}else{
+				previousScores[k] = gapScore(j);
+				traceback[0][k] = (byte)(FROM_HORIZONTAL | (j>1 ? HORIZONTAL_EXTENDED : 0));
+			}
+		}
+		int bestX=0, bestY=0;
+		float bestScore = NEGATIVE_INFINITY;
+		
+		for(int i=1; i<=m; i++){
+			Arrays.fill(currentScores, NEGATIVE_INFINITY);
+			Arrays.fill(currentVerticalGaps, NEGATIVE_INFINITY);
+			byte[] row = traceback[i];
+			
+			int jStart = Math.max(0, i + lowestDiagonal);
+			int jEnd = Math.min(n, i + highestDiagonal);
+			
+			float leftScore = NEGATIVE_INFINITY;
+			float horizontalGap = NEGATIVE_INFINITY;
+			for(int j=jStart; j<= jEnd; j++){
+				int k = j - i - lowestDiagonal;
+				if(j==0){
+					if(local){
+						leftScore = 0;
+					}else{
+						leftScore = gapScore(i);
+						currentVerticalGaps[k] = leftScore;
+						row[k] = (byte)(FROM_VERTICAL | (i>1 ? VERTICAL_EXTENDED : 0));
+					}
+					currentScores[k] = leftScore;
+					continue;
+				}
+				int tracebackValue=0;
+				float horizontalOpen = leftScore + openGapPenalty;
+				float horizontalExtend = horizontalGap + extendGapPenalty;
+				if(horizontalExtend >= horizontalOpen){
+					horizontalGap = horizontalExtend;
+					tracebackValue |= HORIZONTAL_EXTENDED;
+				}else{
+					horizontalGap = horizontalOpen;
+				}
+				//cell above us is one diagonal higher in the previous row
+				float verticalGap;
+				if(k+1 < bandSize){
+					float verticalOpen = previousScores[k+1] + openGapPenalty;
+					float verticalExtend = previousVerticalGaps[k+1] + extendGapPenalty;
+					if(verticalExtend > verticalOpen){
+						verticalGap = verticalExtend;
+						tracebackValue |= VERTICAL_EXTENDED;
+					}else{
+						verticalGap = verticalOpen;
+					}
+				}else{
+					verticalGap = NEGATIVE_INFINITY;
+				}
+				float best = previousScores[k] + score(i-1, j-1);
+				int source = FROM_DIAGONAL;
+				if(horizontalGap > best){
+					best = horizontalGap;
+					source = FROM_HORIZONTAL;
+				}
+				if(verticalGap > best){
+					best = verticalGap;
+					source = FROM_VERTICAL;
+				}
+				if(local){
+					if(best <=0){
+						best=0;
+						source = FROM_TERMINAL;
+					}
+					if(best > bestScore){
+						bestScore = best;
+						bestX = i;
+						bestY = j;
+					}
+				}
+				currentScores[k] = best;
+				currentVerticalGaps[k] = verticalGap;
+				row[k] = (byte)(tracebackValue | source);
+				leftScore = best;
+			}
+			
+			float[] tmp = previousScores;
+			previousScores = currentScores;
+			currentScores = tmp;
+			
+			tmp = previousVerticalGaps;
+			previousVerticalGaps = currentVerticalGaps;
+			currentVerticalGaps = tmp;
+		}
+		if(!local){
+			bestX = m;
+			bestY = n;
+			bestScore = previousScores[n - m - lowestDiagonal];
+		}
+		return new int[]{bestX, bestY, Float.floatToIntBits(bestScore)};
+	}
+	
+	private P traceBack(int endX, int endY, float score, int queryShiftAmount, Integer subjectShiftAmount){
+		SequenceAlignmentBuilder<R,S,B,A> alignmentBuilder = pairwiseStrategy.createSequenceAlignmentBuilder(true,subjectShiftAmount);
+		alignmentBuilder.setAlignmentOffsets(queryShiftAmount + endX-1, endY-1);
+		
+		int x = endX;
+		int y = endY;
+		//FROM_DIAGONAL state means we are following the best scores
+		//the other states mean we are inside a gap
+		int state = FROM_DIAGONAL;
+		while(true){
+			int tracebackValue = traceback[x][y - x - lowestDiagonal];
+			if(state == FROM_HORIZONTAL){
+				addQueryGap(alignmentBuilder, y-1);
+				if((tracebackValue & HORIZONTAL_EXTENDED) ==0){
+					state = FROM_DIAGONAL;
+				}
+				y--;
+			}else if(state == FROM_VERTICAL){
+				addSubjectGap(alignmentBuilder, x-1);
+				if((tracebackValue & VERTICAL_EXTENDED) ==0){
+					state = FROM_DIAGONAL;
+				}
+				x--;
+			}else{
+				int source = tracebackValue & SOURCE_MASK;
+				if(source == FROM_TERMINAL){
+					break;
+				}
+				if(source == FROM_DIAGONAL){
+					addAligned(alignmentBuilder, x-1, y-1);
+					x--;
+					y--;
+				}else{
+					//switch into the gap state without moving
+					state = source;
+				}
+			}
+		}
+		return createPairwiseAlignment(alignmentBuilder, score);
+	}
+
+	@Override
+	public P getPairwiseSequenceAlignment() {
+		return alignment;
+	}
+	
+}
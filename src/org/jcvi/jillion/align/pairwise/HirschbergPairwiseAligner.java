@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import org.jcvi.jillion.align.SequenceAlignment;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.Sequence;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.ResidueSequenceBuilder;
+import org.jcvi.jillion.internal.align.SequenceAlignmentBuilder;
+/**
+ * {@code HirschbergPairwiseAligner} computes an optimal 
+ * global alignment using only memory linear in the length of the subject 
+ * by recursively finding where the optimal path crosses the middle
+ * row of the matrix and then aligning each half.
+ * This takes about twice as long as filling in the full matrix 
+ * but never needs a traceback matrix.
+ * 
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} used in this aligner.
+ * @param <S> the {@link Sequence} type input into this aligner.
+ * @param <B> the {@link org.jcvi.jillion.core.SequenceBuilder} for this aligner.
+ * @param <A> the {@link SequenceAlignment} type returned by this aligner.
+ * @param <P> the {@link PairwiseSequenceAlignment} type returned by this aligner.
+ * 
+ * @see <a href="http://dx.doi.org/10.1145/360825.360861">
+ Hirschberg, D. S. 1975. A linear space algorithm for computing maximal common subsequences.
+ Communications of the ACM 18:341-343.</a>
+ * 
+ * @see <a href="http://dx.doi.org/10.1093/bioinformatics/4.1.11">
+ Myers, E. W. and Miller, W. 1988. Optimal alignments in linear space.
+ Computer Applications in the Biosciences 4:11-17.</a>
+ * 
+ * @since 5.3
+ */
+final class HirschbergPairwiseAligner<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> extends AbstractLinearMemoryPairwiseAligner<R, S, B, A, P>{
+
+	private static final int ALIGNED = 0;
+	private static final int QUERY_GAP = 1;
+	private static final int SUBJECT_GAP = 2;
+	/**
+	 * The gap penalty of a gap of length L is 
+	 * {@code gapOpen + L*gapExtend}.
+	 */
+	private final float gapOpen, gapExtend;
+	/**
+	 * Forward scores and forward scores ending in a subject gap.
+	 */
+	private final float[] forwardScores, forwardSubjectGaps;
+	/**
+	 * Reverse scores and reverse scores starting with a subject gap.
+	 */
+	private final float[] reverseScores, reverseSubjectGaps;
+	
+	private final SequenceAlignmentBuilder<R,S,B,A> alignmentBuilder;
+	
+	private int previousOperation = ALIGNED;
+	private float score;
+	
+	private final P alignment;
+	
+	/**
+	 * Globally align the given two sequences in linear space.
+	 * 
+	 * @param query the query sequence; gaps are ignored. Can not be null.
+	 * @param subject the subject sequence; gaps are ignored. Can not be null.
+	 * @param matrix the {@link SubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty value for opening a gap.
+	 * @param extendGapPenalty the penalty for extending an already open gap.
+	 * @param pairwiseStrategy the residue specific {@link ResiduePairwiseStrategy}.
+	 * 
+	 * @return a new {@link PairwiseSequenceAlignment}; will never be null.
+	 * 
+	 * @throws NullPointerException if query, subject or matrix are null.
+	 */
+	public static <R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>, A extends SequenceAlignment<R, S>, P extends PairwiseSequenceAlignment<R, S>> 
+	P align(S query, S subject, SubstitutionMatrix<R> matrix, float openGapPenalty, float extendGapPenalty,
+			ResiduePairwiseStrategy<R,S,B,A,P> pairwiseStrategy){
+		return new HirschbergPairwiseAligner<>(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy)
+						.getPairwiseSequenceAlignment();
+	}
+	
+	private HirschbergPairwiseAligner(S query, S subject,
+			SubstitutionMatrix<R> matrix, float openGapPenalty,
+			float extendGapPenalty,
+			ResiduePairwiseStrategy<R, S, B, A, P> pairwiseStrategy) {
+		super(query, subject, matrix, openGapPenalty, extendGapPenalty, pairwiseStrategy);
+		gapOpen = openGapPenalty - extendGapPenalty;
+		gapExtend = extendGapPenalty;
+		
+		int n = this.subject.length;
+		forwardScores = new float[n+1];
+		forwardSubjectGaps = new float[n+1];
+		reverseScores = new float[n+1];
+		reverseSubjectGaps = new float[n+1];
+		
+		alignmentBuilder = pairwiseStrategy.createSequenceAlignmentBuilder(false, null);
+		
+		align(0, 0, this.query.length, n, gapOpen, gapOpen);
+		
+		alignment = createPairwiseAlignment(alignmentBuilder, score);
+	}
+	
+	private float gap(int length){
+		return length ==0 ? 0 : gapOpen + length * gapExtend;
+	}
+	/**
+	 * Align query[queryStart, queryStart+m) to subject[subjectStart, subjectStart+n).
+	 * 
+	 * @param startGapOpen the open penalty for a subject gap at the start; 
+	 * 0 if a subject gap is continued from the previous segment.
+	 * @param endGapOpen the open penalty for a subject gap at the end;
+	 * 0 if a subject gap continues into the next segment.
+	 */
+	private void align(int queryStart, int subjectStart, int m, int n, float startGapOpen, float endGapOpen){
+		if(n==0){
+			for(int i=0; i<m; i++){
+				addSubjectGap(queryStart+i);
+			}
+			return;
+		}
+		if(m==0){
+			for(int j=0; j<n; j++){
+				addQueryGap(subjectStart+j);
+			}
+			return;
+		}
+		if(m==1){
+			alignSingleQueryResidue(queryStart, subjectStart, n, startGapOpen, endGapOpen);
+			return;
+		}
+		int midI = m/2;
+		computeForward(queryStart, subjectStart, midI, n, startGapOpen);
+		computeReverse(queryStart, subjectStart, m, midI, n, endGapOpen);
+		
+		int midJ=0;
+		boolean crossesInSubjectGap=false;
+		float best = forwardScores[0] + reverseScores[0];
+		for(int j=0; j<=n; j++){
+			float c = forwardScores[j] + reverseScores[j];
+			if(c > best){
+				best = c;
+				midJ = j;
+				crossesInSubjectGap=false;
+			}
+			//a gap across the middle was opened in both halves
+			c = forwardSubjectGaps[j] + reverseSubjectGaps[j] - gapOpen;
+			if(c > best){
+				best = c;
+				midJ = j;
+				crossesInSubjectGap=true;
+			}
+		}
+		if(crossesInSubjectGap){
+			align(queryStart, subjectStart, midI-1, midJ, startGapOpen, 0);
+			addSubjectGap(queryStart + midI-1);
+			addSubjectGap(queryStart + midI);
+			align(queryStart + midI+1, subjectStart + midJ, m - midI -1, n - midJ, 0, endGapOpen);
+		}else{
+			align(queryStart, subjectStart, midI, midJ, startGapOpen, gapOpen);
+			align(queryStart + midI, subjectStart + midJ, m - midI, n - midJ, gapOpen, endGapOpen);
+		}
+	}
+	
+	private void computeForward(int queryStart, int subjectStart, int rows, int n, float startGapOpen){
+		float[] cc = forwardScores;
+		float[] dd = forwardSubjectGaps;
+		cc[0]=0;
+		float t = gapOpen;
+		for(int j=1; j<=n; j++){
+			t += gapExtend;
+			cc[j] = t;
+			dd[j] = t + gapOpen;
+		}
+		t = startGapOpen;
+		for(int i=1; i<= rows; i++){
+			float s = cc[0];
+			t += gapExtend;
+			float c = t;
+			cc[0] = c;
+			float e = t + gapOpen;
+			int queryOffset = queryStart + i-1;
+			for(int j=1; j<=n; j++){
+				e = Math.max(e, c + gapOpen) + gapExtend;
+				float d = Math.max(dd[j], cc[j] + gapOpen) + gapExtend;
+				c = Math.max(Math.max(d, e), s + score(queryOffset, subjectStart + j-1));
+				s = cc[j];
+				cc[j] = c;
+				dd[j] = d;
+			}
+		}
+		dd[0] = cc[0];
+	}
+	
+	private void computeReverse(int queryStart, int subjectStart, int m, int midI, int n, float endGapOpen){
+		float[] rr = reverseScores;
+		float[] ss = reverseSubjectGaps;
+		rr[n]=0;
+		float t = gapOpen;
+		for(int j=n-1; j>=0; j--){
+			t += gapExtend;
+			rr[j] = t;
+			ss[j] = t + gapOpen;
+		}
+		t = endGapOpen;
+		for(int i=m-1; i>= midI; i--){
+			float s = rr[n];
+			t += gapExtend;
+			float c = t;
+			rr[n] = c;
+			float e = t + gapOpen;
+			int queryOffset = queryStart + i;
+			for(int j=n-1; j>=0; j--){
+				e = Math.max(e, c + gapOpen) + gapExtend;
+				float d = Math.max(ss[j], rr[j] + gapOpen) + gapExtend;
+				c = Math.max(Math.max(d, e), s + score(queryOffset, subjectStart + j));
+				s = rr[j];
+				rr[j] = c;
+				ss[j] = d;
+			}
+		}
+		ss[n] = rr[n];
+	}
+	
+	private void alignSingleQueryResidue(int queryOffset, int subjectStart, int n, float startGapOpen, float endGapOpen){
+		//either the query residue is a gap on its own...
+		float best = Math.max(startGapOpen, endGapOpen) + gapExtend + gap(n);
+		int midJ = 0;
+		//...or it aligns to one of the subject residues
+		for(int j=1; j<=n; j++){
+			float c = gap(j-1) + score(queryOffset, subjectStart + j-1) + gap(n-j);
+			if(c > best){
+				best = c;
+				midJ = j;
+			}
+		}
+		if(midJ ==0){
+			//put the subject gap next to the neighboring gap it extends
+			if(startGapOpen >= endGapOpen){
+				addSubjectGap(queryOffset);
+				align(queryOffset, subjectStart, 0, n, 0, 0);
+			}else{
+				align(queryOffset, subjectStart, 0, n, 0, 0);
+				addSubjectGap(queryOffset);
+			}
+		}else{
+			align(queryOffset, subjectStart, 0, midJ-1, 0, 0);
+			addAligned(queryOffset, subjectStart + midJ -1);
+			align(queryOffset, subjectStart + midJ, 0, n - midJ, 0, 0);
+		}
+	}
+	
+	private void addAligned(int queryOffset, int subjectOffset){
+		addAligned(alignmentBuilder, queryOffset, subjectOffset);
+		score += score(queryOffset, subjectOffset);
+		previousOperation = ALIGNED;
+	}
+	
+	private void addSubjectGap(int queryOffset){
+		addSubjectGap(alignmentBuilder, queryOffset);
+		score += previousOperation == SUBJECT_GAP ? extendGapPenalty : openGapPenalty;
+		previousOperation = SUBJECT_GAP;
+	}
+	
+	private void addQueryGap(int subjectOffset){
+		addQueryGap(alignmentBuilder, subjectOffset);
+		score += previousOperation == QUERY_GAP ? extendGapPenalty : openGapPenalty;
+		previousOperation = QUERY_GAP;
+	}
+
+	@Override
+	public P getPairwiseSequenceAlignment() {
+		return alignment;
+	}
+
+}
@@ -41,6 +41,10 @@ import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
  * using the given query and subject sequences,
  * and the given {@link SubstitutionMatrix} and gap penalties.
  * This Builder can handle both local and global alignments.
+ * By default the full dynamic programming matrix is computed
+ * which needs memory proportional to the product of the sequence lengths;
+ * long sequences should use either {@link #useBandedAlignment(int)}
+ * or {@link #useLinearSpaceAlignment()}.
  * 
  * @author dkatzel
  *
@@ -55,6 +59,13 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 	private float gapExtension =0;
 	
 	private boolean local=true;
+	/**
+	 * The number of extra diagonals to compute
+	 * for a banded alignment; or null if 
+	 * not using a banded alignment.
+	 */
+	private Integer bandWidth;
+	private boolean linearSpace=false;
 	/**
 	 * Create a new PairwiseAlignmentBuilder to align
 	 * 2 {@link NucleotideSequence}s.
@@ -146,12 +157,74 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 		local=true;
 		return this;
 	}
+	/**
+	 * Only compute the cells of the dynamic programming matrix
+	 * that are within the given number of diagonals of the
+	 * diagonals from the start of both sequences to the end of both sequences.
+	 * This uses memory proportional to the query length times the band size 
+	 * instead of the query length times the subject length
+	 * and is much faster for long similar sequences.
+	 * Alignments whose path leaves the band will not be found.
+	 * Banding works for both local and global alignments.
+	 * Setting a band will turn off {@link #useLinearSpaceAlignment()}.
+	 * 
+	 * @param bandWidth the number of diagonals on either side of the band;
+	 * must be &ge; 0.
+	 * @return this.
+	 * 
+	 * @throws IllegalArgumentException if bandWidth is negative.
+	 * 
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> useBandedAlignment(int bandWidth){
+		if(bandWidth <0){
+			throw new IllegalArgumentException("band width can not be negative : " + bandWidth);
+		}
+		this.bandWidth = bandWidth;
+		this.linearSpace = false;
+		return this;
+	}
+	/**
+	 * Compute an optimal global alignment using the Hirschberg 
+	 * (Myers-Miller) divide and conquer algorithm
+	 * which only uses memory linear in the subject length.  This is about twice
+	 * as slow as a full matrix alignment but can align sequences of any length.
+	 * This will also set this builder to use a global alignment and turn off
+	 * any band set by {@link #useBandedAlignment(int)}.
+	 * 
+	 * @return this.
+	 * 
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> useLinearSpaceAlignment(){
+		this.linearSpace = true;
+		this.bandWidth = null;
+		local=false;
+		return this;
+	}
+	/**
+	 * Compute the alignment using the full dynamic programming matrix.
+	 * This is the default and will turn off any previous calls
+	 * to {@link #useBandedAlignment(int)} or {@link #useLinearSpaceAlignment()}.
+	 * 
+	 * @return this.
+	 * 
+	 * @since 5.3
+	 */
+	public PairwiseAlignmentBuilder<R,S,A> useFullMatrixAlignment(){
+		this.linearSpace = false;
+		this.bandWidth = null;
+		return this;
+	}
 	/**
 	 * Compute the actual pairwise alignment.
 	 * This method may be computationally expensive
 	 * if the sequences are long.
 	 * @return a new {@link PairwiseSequenceAlignment}
 	 * instance, will never be null.
+	 * 
+	 * @throws IllegalStateException if {@link #useLinearSpaceAlignment()} was
+	 * set and then changed to a local alignment.
 	 */
 	@SuppressWarnings("unchecked")
 	public A build(){
@@ -159,7 +232,20 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 		//or a NucleotideSequence so these casts should all be safe.
 		//The casts are so the user's interface is clean
 		//all ugliness is hidden here
-		
+		if(linearSpace){
+			if(local){
+				throw new IllegalStateException("linear space alignments must be global");
+			}
+			if(query instanceof NucleotideSequence){
+				return (A) HirschbergPairwiseAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+						ResiduePairwiseStrategy.getNucleotideStrategy());
+			}
+			return (A) HirschbergPairwiseAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+					ResiduePairwiseStrategy.getAminoAcidStrategy());
+		}
+		if(bandWidth !=null){
+			return (A) buildBanded();
+		}
 		if(query instanceof NucleotideSequence){
 			if(local){
 				 return (A)NucleotideSmithWatermanAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension);
@@ -172,6 +258,14 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 		return (A) ProteinNeedlemanWunschAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension);
 
 	}
+	private PairwiseSequenceAlignment<?,?> buildBanded(){
+		if(query instanceof NucleotideSequence){
+			return BandedPairwiseAligner.align((NucleotideSequence)query, (NucleotideSequence)subject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+					ResiduePairwiseStrategy.getNucleotideStrategy(), local, bandWidth, null);
+		}
+		return BandedPairwiseAligner.align((ProteinSequence)query, (ProteinSequence)subject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+				ResiduePairwiseStrategy.getAminoAcidStrategy(), local, bandWidth, null);
+	}
 	/**
          * Find several alignments.  If this Builder is configured to
          * use local alignments then this method will try to find several alignments by
@@ -204,7 +298,10 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
 	        return;
 	    }
 	    @SuppressWarnings("unchecked")
-            A alignment = (A) NucleotideSmithWatermanAligner.align((NucleotideSequence)query, currentSubject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift);
+            A alignment = (A) (bandWidth ==null 
+            					? NucleotideSmithWatermanAligner.align((NucleotideSequence)query, currentSubject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift)
+            					: BandedPairwiseAligner.align((NucleotideSequence)query, currentSubject, (NucleotideSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+            							ResiduePairwiseStrategy.getNucleotideStrategy(), true, bandWidth, currentShift));
 	   
 	    consumer.accept(alignment);
 	    long endOfAlignment = alignment.getSubjectRange().getEnd()+1 - currentShift;
@@ -228,7 +325,10 @@ public final class PairwiseAlignmentBuilder<R extends Residue, S extends Residue
                 return;
             }
             @SuppressWarnings("unchecked")
-            A alignment = (A) ProteinSmithWatermanAligner.align((ProteinSequence)query, currentSubject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift);
+            A alignment = (A) (bandWidth ==null 
+            					? ProteinSmithWatermanAligner.align((ProteinSequence)query, currentSubject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, currentShift)
+            					: BandedPairwiseAligner.align((ProteinSequence)query, currentSubject, (AminoAcidSubstitutionMatrix)matrix, gapOpen, gapExtension, 
+            							ResiduePairwiseStrategy.getAminoAcidStrategy(), true, bandWidth, currentShift));
            
             consumer.accept(alignment);
             long endOfAlignment = alignment.getSubjectRange().getEnd()+1 - currentShift;
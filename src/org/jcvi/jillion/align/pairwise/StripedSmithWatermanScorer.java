@@ -0,0 +1,478 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.align.AminoAcidSubstitutionMatrix;
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrix;
+import org.jcvi.jillion.align.SubstitutionMatrix;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.Residue;
+import org.jcvi.jillion.core.residue.ResidueSequence;
+import org.jcvi.jillion.core.residue.aa.AminoAcid;
+import org.jcvi.jillion.core.residue.aa.ProteinSequence;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code StripedSmithWatermanScorer} computes Smith-Waterman local alignment 
+ * scores of a single query against many subjects using Farrar's striped 
+ * query profile.  The query profile is built once when the scorer is created
+ * and each subject is scored using only primitive {@code int} arrays 
+ * laid out so that each inner loop works on independent lanes which
+ * the JIT can unroll and vectorize.
+ * <p>
+ * {@link #score(ResidueSequence)} only computes the best score and where it ends;
+ * {@link #align(ResidueSequence)} additionally runs a reverse
+ * pass to find where the best alignment starts and then only computes the 
+ * traceback of that window.  This makes screening large numbers
+ * of sequences against a small query (such as a primer or adapter) much faster
+ * than {@link PairwiseAlignmentBuilder}.
+ * </p>
+ * <p>
+ * Gaps are scored using the same affine gap penalty model as 
+ * {@link PairwiseAlignmentBuilder}: a gap of length L has a score
+ * of {@code openGapPenalty + (L-1) * extendGapPenalty}.  Since the scores are computed
+ * using integers, all the substitution matrix values and gap penalties
+ * must be whole numbers.  Instances are not thread safe
+ * since the score buffers are reused; use one scorer per thread.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link Residue} (either {@link Nucleotide} or {@link AminoAcid} ). 
+ * @param <S> the type of {@link org.jcvi.jillion.core.Sequence} (either {@link NucleotideSequence} or {@link ProteinSequence} ).
+ * @param <P> the type of {@link PairwiseSequenceAlignment} returned by {@link #align(ResidueSequence)}.
+ * 
+ * @see <a href="http://dx.doi.org/10.1093/bioinformatics/btl582">
+ Farrar, M. 2007. Striped Smith-Waterman speeds database searches six times over other SIMD implementations.
+ Bioinformatics 23:156-161.</a>
+ * 
+ * @since 5.3
+ */
+public final class StripedSmithWatermanScorer<R extends Residue, S extends ResidueSequence<R, S, ?>, P extends PairwiseSequenceAlignment<R, S>> {
+	/**
+	 * Number of query positions processed together.
+	 */
+	private static final int LANES = 8;
+	/**
+	 * Score of padding positions past the end of the query;
+	 * low enough that a padded position can never be the best score.
+	 */
+	private static final int PADDING_SCORE = -(1<<24);
+	
+	private final S query;
+	private final SubstitutionMatrix<R> matrix;
+	private final float openGapPenalty, extendGapPenalty;
+	private final boolean isNucleotide;
+	
+	private final byte[] queryOrdinals;
+	private final int[][] scoreTable;
+	private final int gapOpen, gapExtend;
+	
+	private final StripedProfile forwardProfile;
+	
+	/**
+	 * Create a new scorer to align the given {@link NucleotideSequence}
+	 * against many subject sequences.
+	 * 
+	 * @param query the query sequence; any gaps are ignored. Can not be null.
+	 * @param matrix the {@link NucleotideSubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty score for creating a new gap; usually a negative number.
+	 * @param extendGapPenalty the penalty for extending an already open gap; usually a negative number.
+	 * 
+	 * @return a new {@link StripedSmithWatermanScorer}; will never be null.
+	 * 
+	 * @throws NullPointerException if query or matrix are null.
+	 * @throws IllegalArgumentException if any of the matrix values or gap penalties
+	 * are not whole numbers or if the gap penalties are positive.
+	 */
+	public static StripedSmithWatermanScorer<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> createNucleotideScorer(
+			NucleotideSequence query, NucleotideSubstitutionMatrix matrix, float openGapPenalty, float extendGapPenalty){
+		return new StripedSmithWatermanScorer<>(query, matrix, openGapPenalty, extendGapPenalty, 
+				ResiduePairwiseStrategy.getNucleotideStrategy().getResidueList(), true);
+	}
+	/**
+	 * Create a new scorer to align the given {@link ProteinSequence}
+	 * against many subject sequences.
+	 * 
+	 * @param query the query sequence; any gaps are ignored. Can not be null.
+	 * @param matrix the {@link AminoAcidSubstitutionMatrix} to use; can not be null.
+	 * @param openGapPenalty the penalty score for creating a new gap; usually a negative number.
+	 * @param extendGapPenalty the penalty for extending an already open gap; usually a negative number.
+	 * 
+	 * @return a new {@link StripedSmithWatermanScorer}; will never be null.
+	 * 
+	 * @throws NullPointerException if query or matrix are null.
+	 * @throws IllegalArgumentException if any of the matrix values or gap penalties
+	 * are not whole numbers or if the gap penalties are positive.
+	 */
+	public static StripedSmithWatermanScorer<AminoAcid, ProteinSequence, ProteinPairwiseSequenceAlignment> createProteinScorer(
+			ProteinSequence query, AminoAcidSubstitutionMatrix matrix, float openGapPenalty, float extendGapPenalty){
+		return new StripedSmithWatermanScorer<>(query, matrix, openGapPenalty, extendGapPenalty, 
+				ResiduePairwiseStrategy.getAminoAcidStrategy().getResidueList(), false);
+	}
+	
+	private StripedSmithWatermanScorer(S query, SubstitutionMatrix<R> matrix, 
+			float openGapPenalty, float extendGapPenalty, List<R> residuesByOrdinal, boolean isNucleotide){
+		if(query ==null){
+			throw new NullPointerException("query can not be null");
+		}
+		if(matrix ==null){
+			throw new NullPointerException("matrix can not be null");
+		}
+		if(openGapPenalty >0 || extendGapPenalty >0){
+			throw new IllegalArgumentException("gap penalties can not be positive");
+		}
+		this.matrix = matrix;
+		this.openGapPenalty = openGapPenalty;
+		this.extendGapPenalty = extendGapPenalty;
+		this.isNucleotide = isNucleotide;
+		this.gapOpen = -toInt(openGapPenalty);
+		this.gapExtend = -toInt(extendGapPenalty);
+		
+		int numberOfResidues = residuesByOrdinal.size();
+		scoreTable = new int[numberOfResidues][numberOfResidues];
+		for(int i=0; i< numberOfResidues; i++){
+			R a = residuesByOrdinal.get(i);
+			for(int j=0; j< numberOfResidues; j++){
+				scoreTable[i][j] = toInt(matrix.getValue(a, residuesByOrdinal.get(j)));
+			}
+		}
+		this.query = query.toBuilder().ungap().build();
+		this.queryOrdinals = toOrdinals(this.query);
+		this.forwardProfile = new StripedProfile(queryOrdinals, queryOrdinals.length, false);
+	}
+	
+	private static int toInt(float value){
+		int intValue = (int) value;
+		if(intValue != value){
+			throw new IllegalArgumentException("striped scoring requires whole number scores : " + value);
+		}
+		return intValue;
+	}
+	
+	private static byte[] toOrdinals(ResidueSequence<?, ?, ?> sequence){
+		byte[] array = new byte[(int) sequence.getUngappedLength()];
+		int i=0;
+		for(Residue r : sequence){
+			if(!r.isGap()){
+				array[i++] = r.getOrdinalAsByte();
+			}
+		}
+		return array;
+	}
+	/**
+	 * Compute the best local alignment score of our query against the given subject
+	 * without computing the alignment itself.
+	 * 
+	 * @param subject the subject sequence; any gaps are ignored. Can not be null.
+	 * 
+	 * @return a new {@link ScoreResult}; will never be null.
+	 * 
+	 * @throws NullPointerException if subject is null.
+	 */
+	public ScoreResult score(S subject){
+		byte[] subjectOrdinals = toOrdinals(subject);
+		return forwardProfile.score(subjectOrdinals, subjectOrdinals.length);
+	}
+	/**
+	 * Compute the best local alignment of our query against the given subject.
+	 * First the score and end coordinates are computed using the striped profile,
+	 * then a reverse pass finds the start coordinates and only that window is aligned
+	 * with a traceback.
+	 * 
+	 * @param subject the subject sequence; any gaps are ignored. Can not be null.
+	 * 
+	 * @return a new {@link PairwiseSequenceAlignment}; will never be null but may be
+	 * an empty alignment if nothing aligns with a positive score.
+	 * 
+	 * @throws NullPointerException if subject is null.
+	 */
+	@SuppressWarnings("unchecked")
+	public P align(S subject){
+		S ungappedSubject = subject.toBuilder().ungap().build();
+		byte[] subjectOrdinals = toOrdinals(ungappedSubject);
+		ScoreResult result = forwardProfile.score(subjectOrdinals, subjectOrdinals.length);
+		
+		int queryStart=0, subjectStart=0, queryEnd=-1, subjectEnd=-1;
+		if(result.getScore() >0){
+			queryEnd = result.getQueryEnd();
+			subjectEnd = result.getSubjectEnd();
+			//score the reversed prefixes to find where the best alignment starts
+			byte[] reversedQuery = reverse(queryOrdinals, queryEnd+1);
+			byte[] reversedSubject = reverse(subjectOrdinals, subjectEnd+1);
+			ScoreResult reverseResult = new StripedProfile(reversedQuery, reversedQuery.length, true)
+													.score(reversedSubject, reversedSubject.length, result.getScore());
+			queryStart = queryEnd - reverseResult.getQueryEnd();
+			subjectStart = subjectEnd - reverseResult.getSubjectEnd();
+		}
+		Range queryRange = Range.of(queryStart, queryEnd);
+		Range subjectRange = Range.of(subjectStart, subjectEnd);
+		
+		if(isNucleotide){
+			return (P) BandedPairwiseAligner.align(
+					((NucleotideSequence)query).toBuilder().trim(queryRange).build(),
+					((NucleotideSequence) ungappedSubject).toBuilder().trim(subjectRange).build(),
+					(SubstitutionMatrix<Nucleotide>)matrix, openGapPenalty, extendGapPenalty, 
+					ResiduePairwiseStrategy.getNucleotideStrategy(), true, Integer.MAX_VALUE, queryStart, subjectStart);
+		}
+		return (P) BandedPairwiseAligner.align(
+				((ProteinSequence)query).toBuilder().trim(queryRange).build(),
+				((ProteinSequence) ungappedSubject).toBuilder().trim(subjectRange).build(),
+				(SubstitutionMatrix<AminoAcid>)matrix, openGapPenalty, extendGapPenalty, 
+				ResiduePairwiseStrategy.getAminoAcidStrategy(), true, Integer.MAX_VALUE, queryStart, subjectStart);
+	}
+	
+	private static byte[] reverse(byte[] array, int length){
+		byte[] reversed = new byte[length];
+		for(int i=0; i< length; i++){
+			reversed[i] = array[length -1 -i];
+		}
+		return reversed;
+	}
+	
+	/**
+	 * The result of scoring a subject, the best local alignment score
+	 * and the (0-based) offsets of where that alignment ends
+	 * in the ungapped query and subject.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class ScoreResult{
+		private final int score, queryEnd, subjectEnd;
+
+		ScoreResult(int score, int queryEnd, int subjectEnd) {
+			this.score = score;
+			this.queryEnd = queryEnd;
+			this.subjectEnd = subjectEnd;
+		}
+		/**
+		 * Get the best local alignment score.
+		 * @return the score; will always be &ge; 0.
+		 */
+		public int getScore() {
+			return score;
+		}
+		/**
+		 * Get the 0-based offset into the ungapped query
+		 * of the last residue of the best alignment.
+		 * @return the offset or -1 if the score is 0.
+		 */
+		public int getQueryEnd() {
+			return queryEnd;
+		}
+		/**
+		 * Get the 0-based offset into the ungapped subject
+		 * of the last residue of the best alignment.
+		 * @return the offset or -1 if the score is 0.
+		 */
+		public int getSubjectEnd() {
+			return subjectEnd;
+		}
+
+		@Override
+		public String toString() {
+			return "ScoreResult [score=" + score + ", queryEnd=" + queryEnd
+					+ ", subjectEnd=" + subjectEnd + "]";
+		}
+	}
+	
+	/**
+	 * The striped query profile and the score buffers.
+	 * Query offset {@code q} is stored in segment {@code q % segmentLength}
+	 * lane {@code q / segmentLength} so the values in each segment of LANES
+	 * ints are independent of each other.
+	 */
+	private final class StripedProfile{
+		private final int segmentLength;
+		private final int[][] profile;
+		
+		private int[] currentScores, previousScores, horizontalGaps;
+		private final int[] lanes = new int[LANES];
+		private final int[] verticalGaps = new int[LANES];
+		
+		StripedProfile(byte[] queryOrdinals, int length, boolean lazyBuffers){
+			segmentLength = Math.max(1, (length + LANES -1)/LANES);
+			int size = segmentLength * LANES;
+			profile = new int[scoreTable.length][];
+			for(int r=0; r< scoreTable.length; r++){
+				int[] p = new int[size];
+				for(int i=0; i< segmentLength; i++){
+					for(int l=0; l< LANES; l++){
+						int q = l*segmentLength + i;
+						p[i*LANES + l] = q < length ? scoreTable[queryOrdinals[q]][r] : PADDING_SCORE;
+					}
+				}
+				profile[r] = p;
+			}
+			if(!lazyBuffers){
+				allocateBuffers();
+			}
+		}
+		
+		private void allocateBuffers(){
+			int size = segmentLength * LANES;
+			currentScores = new int[size];
+			previousScores = new int[size];
+			horizontalGaps = new int[size];
+		}
+		
+		ScoreResult score(byte[] subject, int subjectLength){
+			return score(subject, subjectLength, Integer.MAX_VALUE);
+		}
+		/**
+		 * Score the subject.
+		 * @param stopScore stop as soon as this score is reached.
+		 */
+		ScoreResult score(byte[] subject, int subjectLength, int stopScore){
+			if(currentScores ==null){
+				allocateBuffers();
+			}else{
+				Arrays.fill(currentScores, 0);
+				Arrays.fill(horizontalGaps, 0);
+			}
+			//local copies so the JIT doesn't have to reload fields inside the loops
+			final int open = gapOpen;
+			final int extend = gapExtend;
+			final int segments = segmentLength;
+			final int[] eArray = horizontalGaps;
+			final int[] diagonals = lanes;
+			final int[] fArray = verticalGaps;
+			final int last = (segments -1) * LANES;
+			
+			int bestScore=0, bestQuery=-1, bestSubject=-1;
+			for(int j=0; j< subjectLength; j++){
+				final int[] p = profile[subject[j]];
+				final int[] load = currentScores;
+				final int[] store = previousScores;
+				previousScores = load;
+				currentScores = store;
+				
+				//diagonal values for the first segment are the last segment shifted one lane
+				diagonals[0]=0;
+				for(int l=1; l< LANES; l++){
+					diagonals[l] = load[last + l-1];
+				}
+				Arrays.fill(fArray, 0);
+				int columnBest=0;
+				for(int offset=0, end = segments*LANES; offset< end; offset+=LANES){
+					for(int l=0; l< LANES; l++){
+						int index = offset+l;
+						int h = diagonals[l] + p[index];
+						int e = eArray[index];
+						int f = fArray[l];
+						diagonals[l] = load[index];
+						h = Math.max(Math.max(h, 0), Math.max(e, f));
+						store[index] = h;
+						columnBest = Math.max(columnBest, h);
+						int hGap = h - open;
+						eArray[index] = Math.max(Math.max(e - extend, hGap), 0);
+						fArray[l] = Math.max(Math.max(f - extend, hGap), 0);
+					}
+				}
+				columnBest = Math.max(columnBest, lazyVerticalGapCorrection(store));
+				
+				if(columnBest > bestScore){
+					bestScore = columnBest;
+					bestSubject = j;
+					bestQuery = firstQueryOffsetWithScore(store, columnBest);
+					if(bestScore >= stopScore){
+						break;
+					}
+				}
+			}
+			return new ScoreResult(bestScore, bestQuery, bestSubject);
+		}
+		/**
+		 * Vertical gaps that cross from the end of one lane into
+		 * the next lane were not seen in the first pass
+		 * so keep propagating them until they can't improve any scores.
+		 * 
+		 * @return the best score of any cell that was changed.
+		 */
+		private int lazyVerticalGapCorrection(int[] store){
+			final int open = gapOpen;
+			final int extend = gapExtend;
+			final int[] eArray = horizontalGaps;
+			final int[] fArray = verticalGaps;
+			int best=0;
+			shiftVerticalGaps();
+			int offset=0;
+			final int end = segmentLength*LANES;
+			while(true){
+				boolean improves = false;
+				for(int l=0; l< LANES; l++){
+					int f = fArray[l];
+					if(f > 0 && f > store[offset+l] - open){
+						improves = true;
+						break;
+					}
+				}
+				if(!improves){
+					return best;
+				}
+				for(int l=0; l< LANES; l++){
+					int index = offset+l;
+					int f = fArray[l];
+					int h = store[index];
+					if(f > h){
+						h = f;
+						store[index] = h;
+						best = Math.max(best, h);
+					}
+					eArray[index] = Math.max(eArray[index], h - open);
+					//opening a gap from this cell was already
+					//propagated by the first pass so only extend
+					fArray[l] = Math.max(f - extend, 0);
+				}
+				offset += LANES;
+				if(offset == end){
+					offset=0;
+					shiftVerticalGaps();
+				}
+			}
+		}
+		
+		private void shiftVerticalGaps(){
+			for(int l=LANES-1; l>0; l--){
+				verticalGaps[l] = verticalGaps[l-1];
+			}
+			verticalGaps[0]=0;
+		}
+		
+		private int firstQueryOffsetWithScore(int[] store, int score){
+			int best = Integer.MAX_VALUE;
+			for(int index=0; index< store.length; index++){
+				if(store[index] == score){
+					int q = (index % LANES) * segmentLength + index / LANES;
+					if(q < best){
+						best = q;
+					}
+				}
+			}
+			return best;
+		}
+	}
+}
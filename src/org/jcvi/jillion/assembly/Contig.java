@@ -26,8 +26,13 @@
 package org.jcvi.jillion.assembly;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.util.ThrowingStream;
+import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 /**
  * A {@code Contig} is a CONTIGuous region of genomic data.
@@ -93,4 +98,57 @@ public interface Contig<T extends AssembledRead>{
     default ThrowingStream<T> reads(){
     	return getReadIterator().toThrowingStream();
     }
+    /**
+     * Get the {@link AssembledRead}s in this contig
+     * whose gapped contig range intersects the given gapped range.
+     * By default, this method checks every read in {@link #getReadIterator()};
+     * implementations are encouraged to override this method to use
+     * an index so that only the intersecting reads are looked at.
+     * 
+     * @param gappedRange the gapped contig coordinates to look for; can not be null.
+     * If the range is empty, then no reads will intersect it.
+     * 
+     * @return a {@link StreamingIterator} of the intersecting reads;
+     * will never be null but may be empty.  The order of the reads is
+     * implementation dependent.
+     * 
+     * @throws NullPointerException if gappedRange is null.
+     * 
+     * @since 5.3
+     */
+    default StreamingIterator<T> getReadsIntersecting(Range gappedRange){
+    	if(gappedRange ==null){
+    		throw new NullPointerException("range can not be null");
+    	}
+    	if(gappedRange.isEmpty()){
+    		return IteratorUtil.createEmptyStreamingIterator();
+    	}
+    	long begin = gappedRange.getBegin();
+    	long end = gappedRange.getEnd();
+    	List<T> intersecting = new ArrayList<>();
+    	try(StreamingIterator<T> iter = getReadIterator()){
+    		while(iter.hasNext()){
+    			T read = iter.next();
+    			if(read.getGappedStartOffset() <= end && read.getGappedEndOffset() >= begin){
+    				intersecting.add(read);
+    			}
+    		}
+    	}
+    	return IteratorUtil.createStreamingIterator(intersecting.iterator());
+    }
+    /**
+     * Get the {@link AssembledRead}s in this contig
+     * that provide coverage at the given gapped offset.
+     * This is the same as {@link #getReadsIntersecting(Range) getReadsIntersecting(Range.of(gappedOffset))}.
+     * 
+     * @param gappedOffset the gapped contig offset.
+     * 
+     * @return a {@link StreamingIterator} of the reads covering that offset;
+     * will never be null but may be empty.
+     * 
+     * @since 5.3
+     */
+    default StreamingIterator<T> getReadsCovering(long gappedOffset){
+    	return getReadsIntersecting(Range.of(gappedOffset));
+    }
 }
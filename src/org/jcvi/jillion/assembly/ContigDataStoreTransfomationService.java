@@ -20,6 +20,8 @@
  ******************************************************************************/
 package org.jcvi.jillion.assembly;
 
+import java.io.IOException;
+
 import org.jcvi.jillion.core.datastore.DataStoreException;
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.qual.QualitySequence;
@@ -27,6 +29,7 @@ import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceDataStore;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.assembly.ParallelContigTransformer;
 
 public final class ContigDataStoreTransfomationService implements AssemblyTransformationService{
 
@@ -34,11 +37,20 @@ public final class ContigDataStoreTransfomationService implements AssemblyTransf
 	private final NucleotideSequenceDataStore rawSequences;
 	private final QualitySequenceDataStore rawQualities;
 	
+	private final int numberOfThreads;
+	private final int maxContigsInFlight;
+	private final boolean preserveContigOrder;
+	
 	private ContigDataStoreTransfomationService(Builder builder) {
 	
 		this.datastore = builder.datastore;
 		this.rawQualities = builder.rawQualities;
 		this.rawSequences = builder.rawSequences;
+		this.numberOfThreads = builder.numberOfThreads;
+		this.maxContigsInFlight = builder.maxContigsInFlight ==null ? 
+											Builder.DEFAULT_CONTIGS_IN_FLIGHT_PER_THREAD * numberOfThreads 
+										: builder.maxContigsInFlight;
+		this.preserveContigOrder = builder.preserveContigOrder;
 	}
 	
 	@Override
@@ -46,29 +58,15 @@ public final class ContigDataStoreTransfomationService implements AssemblyTransf
 		if(transformer ==null){
 			throw new NullPointerException("transformer can not be null");
 		}
-		
+		if(numberOfThreads >1){
+			transformInParallel(transformer);
+			return;
+		}
 		StreamingIterator<? extends Contig<?>> contigIter = null;
 		try{
 			contigIter = datastore.iterator();
 			while(contigIter.hasNext()){
-				Contig<?> contig = contigIter.next();
-				String contigId = contig.getId();
-				transformer.referenceOrConsensus(contigId, contig.getConsensusSequence());
-				StreamingIterator<? extends AssembledRead> readIter =contig.getReadIterator();
-				try{
-					while(readIter.hasNext()){
-						AssembledRead read = readIter.next();
-						
-						NucleotideSequence rawSeq = rawSequences ==null ? null : rawSequences.get(read.getId());
-						QualitySequence rawQual = rawQualities ==null ? null : rawQualities.get(read.getId());
-						
-						transformer.aligned(read.getId(), rawSeq, rawQual, null, null, contigId,
-								(int) read.getGappedStartOffset(), 
-								read.getDirection(), read.getNucleotideSequence(), read.getReadInfo());
-					}
-				}finally{
-					IOUtil.closeAndIgnoreErrors(readIter);
-				}
+				transformContig(contigIter.next(), transformer);
 			}
 			transformer.endAssembly();
 		} catch (DataStoreException e) {
@@ -77,14 +75,69 @@ public final class ContigDataStoreTransfomationService implements AssemblyTransf
 			IOUtil.closeAndIgnoreErrors(contigIter);
 		}
 	}
+	/**
+	 * Transform each contig in its own worker thread.
+	 * Only the contig ids are iterated over on this thread, 
+	 * each worker fetches its contig from the datastore itself
+	 * so indexed datastores (like an indexed ace datastore
+	 * which re-parses each contig from its memento)
+	 * can read several contigs at the same time.
+	 * @param transformer the transformer to use.
+	 */
+	private void transformInParallel(AssemblyTransformer transformer){
+		ParallelContigTransformer parallelTransformer = new ParallelContigTransformer(transformer, 
+																numberOfThreads, maxContigsInFlight, preserveContigOrder);
+		StreamingIterator<String> idIter = null;
+		try{
+			idIter = datastore.idIterator();
+			while(idIter.hasNext()){
+				String id = idIter.next();
+				parallelTransformer.submit(buffer -> transformContig(datastore.get(id), buffer));
+			}
+			parallelTransformer.finish();
+			transformer.endAssembly();
+		} catch (IOException e) {
+			throw new IllegalStateException("error reading datastore",e);
+		}finally{
+			//no-op if already finished
+			parallelTransformer.shutdown();
+			IOUtil.closeAndIgnoreErrors(idIter);
+		}
+	}
+	
+	private void transformContig(Contig<?> contig, AssemblyTransformer transformer) throws DataStoreException{
+		String contigId = contig.getId();
+		transformer.referenceOrConsensus(contigId, contig.getConsensusSequence());
+		StreamingIterator<? extends AssembledRead> readIter =contig.getReadIterator();
+		try{
+			while(readIter.hasNext()){
+				AssembledRead read = readIter.next();
+				
+				NucleotideSequence rawSeq = rawSequences ==null ? null : rawSequences.get(read.getId());
+				QualitySequence rawQual = rawQualities ==null ? null : rawQualities.get(read.getId());
+				
+				transformer.aligned(read.getId(), rawSeq, rawQual, null, null, contigId,
+						(int) read.getGappedStartOffset(), 
+						read.getDirection(), read.getNucleotideSequence(), read.getReadInfo());
+			}
+		}finally{
+			IOUtil.closeAndIgnoreErrors(readIter);
+		}
+	}
 	
 	public static final class Builder{
+		private static final int DEFAULT_CONTIGS_IN_FLIGHT_PER_THREAD = 2;
+		
 		private final ContigDataStore<?,?> datastore;
 
 		private NucleotideSequenceDataStore rawSequences;
 		private QualitySequenceDataStore rawQualities;
 		//private Position
 		
+		private int numberOfThreads = 1;
+		private Integer maxContigsInFlight;
+		private boolean preserveContigOrder = true;
+		
 		public Builder(ContigDataStore<?, ?> datastore) {
 			if(datastore ==null){
 				throw new NullPointerException("datastore can not be null");
@@ -101,10 +154,81 @@ public final class ContigDataStoreTransfomationService implements AssemblyTransf
 			this.rawQualities = datastore;
 			return this;
 		}
-		
-		
-		
+		/**
+		 * Transform contigs concurrently using the given number of
+		 * worker threads.  Each worker fetches and transforms a different
+		 * contig and the results are passed to the {@link AssemblyTransformer}
+		 * one contig at a time so the {@link AssemblyTransformer} 
+		 * does not need to be thread safe; however, the contig datastore
+		 * and any raw sequence or quality datastores must be able to
+		 * handle concurrent calls to {@code get()}.
+		 * If not set, defaults to 1 which transforms
+		 * everything on the calling thread.
+		 * 
+		 * @param numberOfThreads the number of worker threads to use; must be &ge; 1.
+		 * @return this.
+		 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder numberOfThreads(int numberOfThreads){
+			if(numberOfThreads <1){
+				throw new IllegalArgumentException("number of threads must be >= 1");
+			}
+			this.numberOfThreads = numberOfThreads;
+			return this;
+		}
+		/**
+		 * Set the maximum number of contigs that may be
+		 * transformed or waiting to be passed to the {@link AssemblyTransformer}
+		 * at any one time when using more than one thread.
+		 * This bounds how much memory a parallel transformation can use.
+		 * If not set, defaults to twice the number of threads.
+		 * 
+		 * @param maxContigsInFlight the max number of contigs in flight;
+		 * must be &ge; the number of threads.
+		 * @return this.
+		 * @throws IllegalArgumentException if maxContigsInFlight &lt; 1.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder maxContigsInFlight(int maxContigsInFlight){
+			if(maxContigsInFlight <1){
+				throw new IllegalArgumentException("max contigs in flight must be >= 1");
+			}
+			this.maxContigsInFlight = maxContigsInFlight;
+			return this;
+		}
+		/**
+		 * Should the contigs be passed to the {@link AssemblyTransformer}
+		 * in the same order as the contig datastore iterates over them
+		 * when using more than one thread.  If {@code false},
+		 * then each contig is passed along as soon as it is finished
+		 * which can use less memory if contigs vary greatly in size.
+		 * If not set, defaults to {@code true}.
+		 * 
+		 * @param preserveContigOrder {@code true} to keep the datastore order;
+		 * {@code false} otherwise.
+		 * @return this.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder preserveContigOrder(boolean preserveContigOrder){
+			this.preserveContigOrder = preserveContigOrder;
+			return this;
+		}
+		/**
+		 * Create a new {@link ContigDataStoreTransfomationService}
+		 * using the current configuration.
+		 * 
+		 * @return a new {@link ContigDataStoreTransfomationService}; will never be null.
+		 * @throws IllegalArgumentException if maxContigsInFlight was set to
+		 * fewer than the number of threads.
+		 */
 		public ContigDataStoreTransfomationService build(){
+			if(maxContigsInFlight !=null && maxContigsInFlight < numberOfThreads){
+				throw new IllegalArgumentException("max contigs in flight must be >= number of threads");
+			}
 			return new ContigDataStoreTransfomationService(this);
 		}
 		
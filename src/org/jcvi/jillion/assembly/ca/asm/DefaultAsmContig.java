@@ -115,6 +115,20 @@ final class DefaultAsmContig implements AsmContig{
 
 
 
+	@Override
+	public StreamingIterator<AsmAssembledRead> getReadsIntersecting(Range gappedRange) {
+		return contig.getReadsIntersecting(gappedRange);
+	}
+
+
+
+	@Override
+	public StreamingIterator<AsmAssembledRead> getReadsCovering(long gappedOffset) {
+		return contig.getReadsCovering(gappedOffset);
+	}
+
+
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -74,6 +74,16 @@ final class DefaultAsmUnitig implements AsmUnitig{
         return delegate.getReadIterator();
     }
 
+    @Override
+    public StreamingIterator<AsmAssembledRead> getReadsIntersecting(Range gappedRange) {
+        return delegate.getReadsIntersecting(gappedRange);
+    }
+
+    @Override
+    public StreamingIterator<AsmAssembledRead> getReadsCovering(long gappedOffset) {
+        return delegate.getReadsCovering(gappedOffset);
+    }
+
     /**
     * {@inheritDoc}
     */
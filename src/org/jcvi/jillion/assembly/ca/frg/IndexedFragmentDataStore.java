@@ -349,6 +349,10 @@ public final class IndexedFragmentDataStore extends AbstractFragmentDataStore{
     
     private class FrgIterator extends AbstractBlockingStreamingIterator<Fragment>{
 
+        FrgIterator(){
+            super(DEFAULT_RECORD_BATCH_SIZE);
+        }
+        
         /**
         * {@inheritDoc}
         */
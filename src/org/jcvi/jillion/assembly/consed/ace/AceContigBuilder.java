@@ -963,6 +963,20 @@ public final class  AceContigBuilder implements ContigBuilder<AceAssembledRead,A
 
 
 
+		@Override
+		public StreamingIterator<AceAssembledRead> getReadsIntersecting(Range gappedRange) {
+			return contig.getReadsIntersecting(gappedRange);
+		}
+
+
+
+		@Override
+		public StreamingIterator<AceAssembledRead> getReadsCovering(long gappedOffset) {
+			return contig.getReadsCovering(gappedOffset);
+		}
+
+
+
 		@Override
 		public int hashCode() {
 			final int prime = 31;
@@ -20,10 +20,15 @@
  ******************************************************************************/
 package org.jcvi.jillion.assembly.consed.nav;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jcvi.jillion.assembly.AssembledRead;
 import org.jcvi.jillion.assembly.AssemblyUtil;
+import org.jcvi.jillion.assembly.Contig;
 import org.jcvi.jillion.core.Direction;
 import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
 
 /**
  * {@code ReadNavigationElement} is a {@link NavigationElement}
@@ -102,6 +107,55 @@ public class ReadNavigationElement extends AbstractNavigationElement{
             Range gappedFeatureValidRange, 
             int fullLength,
             String comment){
+        return createReadNavigationElement(read, gappedFeatureValidRange, fullLength, comment);
+    }
+    /**
+     * Build a new {@link ReadNavigationElement} for each read
+     * in the given contig that intersects the given GAPPED consensus range.
+     * Each element will navigate to only the part of its read
+     * that is inside the consensus range.  The reads are found using
+     * {@link Contig#getReadsIntersecting(Range)} so contigs
+     * that index their reads do not have to look at every read.
+     * 
+     * @param contig the contig whose reads should be navigated; cannot be null.
+     * @param gappedConsensusRange the gapped consensus range coordinates; cannot be null.
+     * @param comment a comment that describes why these elements exist
+     * (may be null).
+     * 
+     * @return a new List of ReadNavigationElements, one for each read
+     * that intersects the range; will never be null but may be empty.
+     * 
+     * @throws NullPointerException if contig or gappedConsensusRange are null.
+     * 
+     * @since 5.3
+     */
+    public static List<ReadNavigationElement> buildReadNavigationElements(Contig<?> contig, 
+            Range gappedConsensusRange, 
+            String comment){
+        if(contig ==null){
+            throw new NullPointerException("contig can not be null");
+        }
+        if(gappedConsensusRange ==null){
+            throw new NullPointerException("consensus range can not be null");
+        }
+        List<ReadNavigationElement> elements = new ArrayList<ReadNavigationElement>();
+        try(StreamingIterator<? extends AssembledRead> iter = contig.getReadsIntersecting(gappedConsensusRange)){
+            while(iter.hasNext()){
+                AssembledRead read = iter.next();
+                long readStart = read.getGappedStartOffset();
+                Range overlap = read.asRange().intersection(gappedConsensusRange);
+                Range gappedReadRange = Range.of(overlap.getBegin() - readStart, overlap.getEnd() - readStart);
+                elements.add(createReadNavigationElement(read, gappedReadRange, 
+                        read.getReadInfo().getUngappedFullLength(), comment));
+            }
+        }
+        return elements;
+    }
+    
+    private static ReadNavigationElement createReadNavigationElement(AssembledRead read, 
+            Range gappedFeatureValidRange, 
+            int fullLength,
+            String comment){
         Range ungappedRange = AssemblyUtil.toUngappedRange(read.getNucleotideSequence(), gappedFeatureValidRange);
         if(read.getDirection() == Direction.REVERSE){
             ungappedRange =AssemblyUtil.reverseComplementValidRange(ungappedRange, fullLength);
@@ -51,6 +51,7 @@ final class PhdBallIterator extends AbstractBlockingStreamingIterator<Phd>{
         return iter;
     }
     private PhdBallIterator(File phdFile, DataStoreFilter filter) {
+    	super(DEFAULT_RECORD_BATCH_SIZE);
         this.phdFile = phdFile;
         this.filter = filter;
     }
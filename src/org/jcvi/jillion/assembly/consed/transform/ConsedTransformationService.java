@@ -23,7 +23,9 @@ package org.jcvi.jillion.assembly.consed.transform;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.jcvi.jillion.assembly.AssemblyTransformationService;
@@ -37,6 +39,8 @@ import org.jcvi.jillion.assembly.consed.ace.AceContigReadVisitor;
 import org.jcvi.jillion.assembly.consed.ace.AceContigVisitor;
 import org.jcvi.jillion.assembly.consed.ace.AceFileParser;
 import org.jcvi.jillion.assembly.consed.ace.AceFileVisitorCallback;
+import org.jcvi.jillion.assembly.consed.ace.AceFileVisitorCallback.AceFileVisitorMemento;
+import org.jcvi.jillion.assembly.consed.ace.AceParser;
 import org.jcvi.jillion.assembly.consed.phd.PhdDataStore;
 import org.jcvi.jillion.core.Direction;
 import org.jcvi.jillion.core.Range;
@@ -44,6 +48,7 @@ import org.jcvi.jillion.core.Range.CoordinateSystem;
 import org.jcvi.jillion.core.qual.QualitySequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.internal.assembly.ParallelContigTransformer;
 
 public class ConsedTransformationService implements AssemblyTransformationService{
 
@@ -51,8 +56,17 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 	File aceFile;
 	private final PhdDataStore phdDataStore;
 	
+	private final int numberOfThreads;
+	private final int maxContigsInFlight;
+	private final boolean preserveContigOrder;
+	
 	private ConsedTransformationService(Builder builder) throws IOException{
 		consedDir = builder.consedDir;
+		numberOfThreads = builder.numberOfThreads;
+		maxContigsInFlight = builder.maxContigsInFlight ==null ? 
+								Builder.DEFAULT_CONTIGS_IN_FLIGHT_PER_THREAD * numberOfThreads 
+								: builder.maxContigsInFlight;
+		preserveContigOrder = builder.preserveContigOrder;
 		if(builder.includeQualities){
 			
 			phdDataStore = ConsedUtil.createPhdDataStoreFor(consedDir);
@@ -76,6 +90,10 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 		if(transformer ==null){
 			throw new NullPointerException("transformer can not be null");
 		}
+		if(numberOfThreads >1){
+			transformInParallel(transformer);
+			return;
+		}
 		//TODO implement!!
 		AceFileParser.create(aceFile)
 						.parse(new AbstractAceFileVisitor() {
@@ -87,140 +105,7 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 									int numberOfReads,
 									int numberOfBaseSegments,
 									boolean reverseComplemented) {
-								return new AceContigVisitor() {
-									NucleotideSequenceBuilder consensusBuilder = new NucleotideSequenceBuilder();
-									boolean madeReferenceCallYet = false;
-									
-									Map<String, Integer> readStarts = new HashMap<>();
-									Map<String, Direction> readDirs = new HashMap<>();
-									
-									@Override
-									public void visitEnd() {
-										if(!madeReferenceCallYet){
-											makeReferenceCall();
-										}
-										
-									}
-									
-									@Override
-									public void visitConsensusQualities(
-											QualitySequence ungappedConsensusQualities) {
-										//no-op
-										
-									}
-									
-									@Override
-									public AceContigReadVisitor visitBeginRead(String readId, int gappedLength) {
-										if(!madeReferenceCallYet){
-											makeReferenceCall();
-										}
-										return new AceContigReadVisitor() {
-											NucleotideSequenceBuilder fullLengthReadBuilder = new NucleotideSequenceBuilder();
-											Range gappedValidRange = null;
-											
-											@Override
-											public void visitTraceDescriptionLine(String traceName, String phdName,
-													Date date) {
-												//no-op
-												
-											}
-											
-											@Override
-											public void visitQualityLine(int qualLeft, int qualRight, int alignLeft,
-													int alignRight) {
-												ClipPointsType clipPointsType = ConsedUtil.ClipPointsType.getType(qualLeft, qualRight, alignLeft, alignRight);
-												if(clipPointsType != ClipPointsType.VALID){
-													return;
-												}
-												//dkatzel 4/2011 - There have been cases when qual coords and align coords
-										        //do not match; usually qual is a sub set of align
-										        //but occasionally, qual goes beyond the align coords.
-										        //I guess this happens in a referenced based alignment for
-										        //reads at the edges when the reads have good quality 
-										        //beyond the reference.
-										        //It might also be possible that the read has been 
-										        //edited and that could have changed the coordinates.
-										        //Therefore intersect the qual and align coords
-										        //to find the region we are interested in
-										        Range qualityRange = Range.of(CoordinateSystem.RESIDUE_BASED, qualLeft,qualRight);
-										        Range alignmentRange = Range.of(CoordinateSystem.RESIDUE_BASED, alignLeft,alignRight);
-										        gappedValidRange =qualityRange.intersection(alignmentRange);
-										        
-										       
-											}
-											
-											@Override
-											public void visitEnd() {
-												
-												NucleotideSequence gappedValidRangeSequence = fullLengthReadBuilder.copy()
-																								.trim(gappedValidRange)
-																								.build();
-												//TODO make this more efficient.
-												//currently have to create NucleteotideSequence just
-												//to convert from gapped to ungapped coords
-												NucleotideSequence gappedFullLengthSequence = fullLengthReadBuilder.build();
-												
-												NucleotideSequence ungappedFullLengthSequence = fullLengthReadBuilder.ungap().build();
-												
-												
-												transformer.aligned(readId, 
-														//TODO add support for phd ball?
-														ungappedFullLengthSequence, null, null, 
-														null, contigId, 
-														readStarts.get(readId), readDirs.get(readId), 
-														gappedValidRangeSequence, 
-														new ReadInfo(AssemblyUtil.toUngappedRange(gappedFullLengthSequence, gappedValidRange),
-																(int)ungappedFullLengthSequence.getLength()));
-												
-											}
-											
-											@Override
-											public void visitBasesLine(String mixedCaseBasecalls) {
-												fullLengthReadBuilder.append(mixedCaseBasecalls);
-												
-											}
-											
-											@Override
-											public void halted() {
-												//no-op
-												
-											}
-										};
-									}
-									
-									private void makeReferenceCall() {
-										madeReferenceCallYet =true;
-										//TODO do we have to worry about contigLeft and right?
-										transformer.referenceOrConsensus(contigId, consensusBuilder.build());
-										
-									}
-
-									@Override
-									public void visitBasesLine(String mixedCaseBasecalls) {
-										consensusBuilder.append(mixedCaseBasecalls);
-										
-									}
-									
-									@Override
-									public void visitBaseSegment(Range gappedConsensusRange, String readId) {
-										//no-op
-										
-									}
-									
-									@Override
-									public void visitAlignedReadInfo(String readId, Direction dir,
-											int gappedStartPosition) {
-										//no-op
-										readStarts.put(readId, gappedStartPosition -1);
-										readDirs.put(readId, dir);
-									}
-									
-									@Override
-									public void halted() {
-										//no-op
-										
-									}
-								};
+								return createContigVisitor(transformer, contigId, null);
 							}
 
 							@Override
@@ -231,6 +116,212 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 						});
 	}
 
+	/**
+	 * Transform each contig in its own worker thread.
+	 * The ace file is first scanned once to 
+	 * get an {@link AceFileVisitorMemento} for the start of each contig
+	 * and then each worker re-parses only its contig
+	 * starting from that memento.
+	 * 
+	 * @param transformer the {@link AssemblyTransformer} to use.
+	 * @throws IOException if there is a problem parsing the ace file.
+	 */
+	private void transformInParallel(AssemblyTransformer transformer) throws IOException{
+		AceParser parser = AceFileParser.create(aceFile);
+		List<AceFileVisitorMemento> mementos = new ArrayList<>();
+		parser.parse(new AbstractAceFileVisitor() {
+
+			@Override
+			public AceContigVisitor visitContig(
+					AceFileVisitorCallback callback,
+					String contigId, int consensusLength,
+					int numberOfReads,
+					int numberOfBaseSegments,
+					boolean reverseComplemented) {
+				mementos.add(callback.createMemento());
+				//skip the contig this pass
+				return null;
+			}
+			
+		});
+		
+		ParallelContigTransformer parallelTransformer = new ParallelContigTransformer(transformer, 
+																numberOfThreads, maxContigsInFlight, preserveContigOrder);
+		try{
+			for(AceFileVisitorMemento memento : mementos){
+				parallelTransformer.submit(buffer -> parser.parse(new AbstractAceFileVisitor() {
+	
+					@Override
+					public AceContigVisitor visitContig(
+							AceFileVisitorCallback callback,
+							String contigId, int consensusLength,
+							int numberOfReads,
+							int numberOfBaseSegments,
+							boolean reverseComplemented) {
+						//the memento starts at our contig
+						return createContigVisitor(buffer, contigId, callback);
+					}
+					
+				}, memento));
+			}
+			parallelTransformer.finish();
+		}finally{
+			//no-op if already finished
+			parallelTransformer.shutdown();
+		}
+		transformer.endAssembly();
+	}
+	/**
+	 * Create a new {@link AceContigVisitor} that will
+	 * call the appropriate methods on the given transformer
+	 * for a single contig.
+	 * 
+	 * @param transformer the {@link AssemblyTransformer} to call.
+	 * @param contigId the id of the contig being visited.
+	 * @param haltCallback if not null, then the callback
+	 * to halt parsing once this contig has been completely visited.
+	 * 
+	 * @return a new {@link AceContigVisitor}.
+	 */
+	private AceContigVisitor createContigVisitor(AssemblyTransformer transformer, String contigId, AceFileVisitorCallback haltCallback){
+		return new AceContigVisitor() {
+			NucleotideSequenceBuilder consensusBuilder = new NucleotideSequenceBuilder();
+			boolean madeReferenceCallYet = false;
+			
+			Map<String, Integer> readStarts = new HashMap<>();
+			Map<String, Direction> readDirs = new HashMap<>();
+			
+			@Override
+			public void visitEnd() {
+				if(!madeReferenceCallYet){
+					makeReferenceCall();
+				}
+				if(haltCallback !=null){
+					haltCallback.haltParsing();
+				}
+			}
+			
+			@Override
+			public void visitConsensusQualities(
+					QualitySequence ungappedConsensusQualities) {
+				//no-op
+				
+			}
+			
+			@Override
+			public AceContigReadVisitor visitBeginRead(String readId, int gappedLength) {
+				if(!madeReferenceCallYet){
+					makeReferenceCall();
+				}
+				return new AceContigReadVisitor() {
+					NucleotideSequenceBuilder fullLengthReadBuilder = new NucleotideSequenceBuilder();
+					Range gappedValidRange = null;
+					
+					@Override
+					public void visitTraceDescriptionLine(String traceName, String phdName,
+							Date date) {
+						//no-op
+						
+					}
+					
+					@Override
+					public void visitQualityLine(int qualLeft, int qualRight, int alignLeft,
+							int alignRight) {
+						ClipPointsType clipPointsType = ConsedUtil.ClipPointsType.getType(qualLeft, qualRight, alignLeft, alignRight);
+						if(clipPointsType != ClipPointsType.VALID){
+							return;
+						}
+						//dkatzel 4/2011 - There have been cases when qual coords and align coords
+				        //do not match; usually qual is a sub set of align
+				        //but occasionally, qual goes beyond the align coords.
+				        //I guess this happens in a referenced based alignment for
+				        //reads at the edges when the reads have good quality 
+				        //beyond the reference.
+				        //It might also be possible that the read has been 
+				        //edited and that could have changed the coordinates.
+				        //Therefore intersect the qual and align coords
+				        //to find the region we are interested in
+				        Range qualityRange = Range.of(CoordinateSystem.RESIDUE_BASED, qualLeft,qualRight);
+				        Range alignmentRange = Range.of(CoordinateSystem.RESIDUE_BASED, alignLeft,alignRight);
+				        gappedValidRange =qualityRange.intersection(alignmentRange);
+				        
+				       
+					}
+					
+					@Override
+					public void visitEnd() {
+						
+						NucleotideSequence gappedValidRangeSequence = fullLengthReadBuilder.copy()
+																		.trim(gappedValidRange)
+																		.build();
+						//TODO make this more efficient.
+						//currently have to create NucleteotideSequence just
+						//to convert from gapped to ungapped coords
+						NucleotideSequence gappedFullLengthSequence = fullLengthReadBuilder.build();
+						
+						NucleotideSequence ungappedFullLengthSequence = fullLengthReadBuilder.ungap().build();
+						
+						
+						transformer.aligned(readId, 
+								//TODO add support for phd ball?
+								ungappedFullLengthSequence, null, null, 
+								null, contigId, 
+								readStarts.get(readId), readDirs.get(readId), 
+								gappedValidRangeSequence, 
+								new ReadInfo(AssemblyUtil.toUngappedRange(gappedFullLengthSequence, gappedValidRange),
+										(int)ungappedFullLengthSequence.getLength()));
+						
+					}
+					
+					@Override
+					public void visitBasesLine(String mixedCaseBasecalls) {
+						fullLengthReadBuilder.append(mixedCaseBasecalls);
+						
+					}
+					
+					@Override
+					public void halted() {
+						//no-op
+						
+					}
+				};
+			}
+			
+			private void makeReferenceCall() {
+				madeReferenceCallYet =true;
+				//TODO do we have to worry about contigLeft and right?
+				transformer.referenceOrConsensus(contigId, consensusBuilder.build());
+				
+			}
+
+			@Override
+			public void visitBasesLine(String mixedCaseBasecalls) {
+				consensusBuilder.append(mixedCaseBasecalls);
+				
+			}
+			
+			@Override
+			public void visitBaseSegment(Range gappedConsensusRange, String readId) {
+				//no-op
+				
+			}
+			
+			@Override
+			public void visitAlignedReadInfo(String readId, Direction dir,
+					int gappedStartPosition) {
+				//no-op
+				readStarts.put(readId, gappedStartPosition -1);
+				readDirs.put(readId, dir);
+			}
+			
+			@Override
+			public void halted() {
+				//no-op
+				
+			}
+		};
+	}
+
 	public static class Builder{
 		private final File consedDir;
 		private final File editDir;
@@ -239,6 +330,12 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 		private Integer aceVersion =null;
 		private boolean includeQualities = false;
 		
+		private static final int DEFAULT_CONTIGS_IN_FLIGHT_PER_THREAD = 2;
+		
+		private int numberOfThreads = 1;
+		private Integer maxContigsInFlight;
+		private boolean preserveContigOrder = true;
+		
 		
 		public Builder(File consedDir, String acePrefix) {
 			if(!consedDir.exists()){
@@ -269,7 +366,79 @@ public class ConsedTransformationService implements AssemblyTransformationServic
 			return this;
 		}
 		
+		/**
+		 * Transform contigs concurrently using the given number of
+		 * worker threads.  Each worker re-parses a different contig
+		 * from the ace file and the results are passed to the {@link AssemblyTransformer}
+		 * one contig at a time so the {@link AssemblyTransformer} 
+		 * does not need to be thread safe.
+		 * If not set, defaults to 1 which parses
+		 * the ace file on the calling thread.
+		 * 
+		 * @param numberOfThreads the number of worker threads to use; must be &ge; 1.
+		 * @return this.
+		 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder numberOfThreads(int numberOfThreads){
+			if(numberOfThreads <1){
+				throw new IllegalArgumentException("number of threads must be >= 1");
+			}
+			this.numberOfThreads = numberOfThreads;
+			return this;
+		}
+		/**
+		 * Set the maximum number of contigs that may be
+		 * parsed or waiting to be passed to the {@link AssemblyTransformer}
+		 * at any one time when using more than one thread.
+		 * If not set, defaults to twice the number of threads.
+		 * 
+		 * @param maxContigsInFlight the max number of contigs in flight;
+		 * must be &ge; the number of threads.
+		 * @return this.
+		 * @throws IllegalArgumentException if maxContigsInFlight &lt; 1.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder maxContigsInFlight(int maxContigsInFlight){
+			if(maxContigsInFlight <1){
+				throw new IllegalArgumentException("max contigs in flight must be >= 1");
+			}
+			this.maxContigsInFlight = maxContigsInFlight;
+			return this;
+		}
+		/**
+		 * Should the contigs be passed to the {@link AssemblyTransformer}
+		 * in the same order as they appear in the ace file
+		 * when using more than one thread.
+		 * If not set, defaults to {@code true}.
+		 * 
+		 * @param preserveContigOrder {@code true} to keep the ace file order;
+		 * {@code false} otherwise.
+		 * @return this.
+		 * 
+		 * @since 5.3
+		 */
+		public Builder preserveContigOrder(boolean preserveContigOrder){
+			this.preserveContigOrder = preserveContigOrder;
+			return this;
+		}
+		
+		/**
+		 * Create a new {@link ConsedTransformationService}
+		 * using the current configuration.
+		 * 
+		 * @return a new {@link ConsedTransformationService}; will never be null.
+		 * @throws IOException if the ace file to use can not be found
+		 * or the phd data can not be read.
+		 * @throws IllegalArgumentException if maxContigsInFlight was set to
+		 * fewer than the number of threads.
+		 */
 		public ConsedTransformationService build() throws IOException{
+			if(maxContigsInFlight !=null && maxContigsInFlight < numberOfThreads){
+				throw new IllegalArgumentException("max contigs in flight must be >= number of threads");
+			}
 			return new ConsedTransformationService(this);
 		}
 		
@@ -164,6 +164,10 @@ final class LargeTigrContigFileDataStore implements TigrContigDataStore{
 	
 	private class IdIterator extends AbstractBlockingStreamingIterator<String>{
 		
+		IdIterator(){
+			super(DEFAULT_RECORD_BATCH_SIZE);
+		}
+		
 		@Override
 		protected void backgroundThreadRunMethod() throws RuntimeException {
 			TigrContigFileVisitor visitor = new TigrContigFileVisitor() {
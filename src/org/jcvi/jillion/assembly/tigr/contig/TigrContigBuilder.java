@@ -108,6 +108,18 @@ public class TigrContigBuilder extends AbstractContigBuilder<TigrContigRead, Tig
 			return delegate.getReadIterator();
 		}
 
+
+		@Override
+		public StreamingIterator<TigrContigRead> getReadsIntersecting(Range gappedRange) {
+			return delegate.getReadsIntersecting(gappedRange);
+		}
+
+
+		@Override
+		public StreamingIterator<TigrContigRead> getReadsCovering(long gappedOffset) {
+			return delegate.getReadsCovering(gappedOffset);
+		}
+
 		@Override
 		public NucleotideSequence getConsensusSequence() {
 			return delegate.getConsensusSequence();
@@ -176,6 +176,10 @@ final class LargeTasmContigFileDataStore implements TasmContigDataStore{
 	
 	private class IdIterator extends AbstractBlockingStreamingIterator<String>{
 		
+		IdIterator(){
+			super(DEFAULT_RECORD_BATCH_SIZE);
+		}
+		
 		@Override
 		protected void backgroundThreadRunMethod() throws RuntimeException {
 			TasmVisitor visitor = new TasmVisitor() {
@@ -535,6 +535,20 @@ public final class TasmContigBuilder extends AbstractContigBuilder<TasmAssembled
     	}
 
 
+
+    	@Override
+    	public StreamingIterator<TasmAssembledRead> getReadsIntersecting(Range gappedRange) {
+    		return contig.getReadsIntersecting(gappedRange);
+    	}
+
+
+
+    	@Override
+    	public StreamingIterator<TasmAssembledRead> getReadsCovering(long gappedOffset) {
+    		return contig.getReadsCovering(gappedOffset);
+    	}
+
+
         
 
 
@@ -0,0 +1,496 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.Rangeable;
+import org.jcvi.jillion.core.util.MapUtil;
+import org.jcvi.jillion.internal.core.util.ImplicitIntervalTree;
+/**
+ * {@code CompactCoverageMap} is a {@link CoverageMap}
+ * that stores its {@link CoverageRegion}s as primitive arrays
+ * of region begin coordinates and coverage depths instead of
+ * as objects that each hold a list of their covering elements.
+ * The regions are computed by a single sweep over the sorted
+ * element begin and end coordinates.
+ * <p>
+ * Which elements cover a region is computed only when asked
+ * for (by iterating over a {@link CoverageRegion} for example) using an {@link ImplicitIntervalTree}
+ * over the elements sorted by begin coordinate.
+ * The {@link CoverageRegion} objects returned by this class are lightweight
+ * views that are created on demand.
+ * <p>
+ * This is much more memory efficient than the default CoverageMap implementation
+ * for deep coverage where each region would otherwise hold a list of thousands
+ * of elements.
+ * 
+ * @author dkatzel
+ *
+ * @param <T> the type of element in the map.
+ * 
+ * @since 5.3
+ */
+final class CompactCoverageMap<T extends Rangeable> implements CoverageMap<T> {
+	/**
+	 * Elements sorted by begin coordinate.
+	 */
+	private final Object[] elements;
+	/**
+	 * Interval tree over the begin and end (exclusive) coordinates
+	 * of each element.
+	 */
+	private final ImplicitIntervalTree tree;
+	/**
+	 * Begin coordinate of each region plus one extra
+	 * value at the end which is the last region's end + 1
+	 * since regions are contiguous.
+	 */
+	private final long[] regionBoundaries;
+	private final int[] depths;
+	
+	private CoverageMapStats stats;
+	
+	/**
+	 * Create a new CompactCoverageMap of the given elements.
+	 * Elements with empty ranges are ignored.
+	 * @param elements the elements to use.
+	 * @param startAtOrigin should the map be forced to include offset 0.
+	 * @return a new CompactCoverageMap; never null.
+	 */
+	static <T extends Rangeable> CompactCoverageMap<T> create(Collection<T> elements, boolean startAtOrigin){
+		int size = elements.size();
+		Object[] unsorted = new Object[size];
+		long[] begins = new long[size];
+		long[] ends = new long[size];
+		int n=0;
+		for(T element : elements){
+			Range range = element.asRange();
+			if(range.getLength() ==0){
+				continue;
+			}
+			unsorted[n] = element;
+			begins[n] = range.getBegin();
+			ends[n] = range.getEnd() +1;
+			n++;
+		}
+		int[] order = stableSortIndexes(begins, n);
+		
+		Object[] sortedElements = new Object[n];
+		long[] sortedBegins = new long[n];
+		long[] sortedEnds = new long[n];
+		for(int i=0; i< n; i++){
+			int j = order[i];
+			sortedElements[i] = unsorted[j];
+			sortedBegins[i] = begins[j];
+			sortedEnds[i] = ends[j];
+		}
+		return new CompactCoverageMap<>(sortedElements, sortedBegins, sortedEnds, startAtOrigin);
+	}
+	
+	private CompactCoverageMap(Object[] elements, long[] begins, long[] exclusiveEnds, boolean startAtOrigin){
+		this.elements = elements;
+		this.tree = new ImplicitIntervalTree(begins, exclusiveEnds);
+		
+		int n = elements.length;
+		if(n ==0){
+			regionBoundaries = new long[0];
+			depths = new int[0];
+			return;
+		}
+		long[] sortedEnds = Arrays.copyOf(exclusiveEnds, n);
+		Arrays.sort(sortedEnds);
+		//each element adds at most 2 boundaries
+		//+2 for the origin regions
+		long[] boundaries = new long[2*n + 2];
+		int[] depthArray = new int[2*n + 1];
+		int numberOfRegions=0;
+		
+		long firstBegin = begins[0];
+		long lastEnd = sortedEnds[n-1] -1;
+		if(startAtOrigin && firstBegin >0){
+			boundaries[numberOfRegions] = 0;
+			depthArray[numberOfRegions++] = 0;
+		}
+		//single sweep over the begin and end events
+		int i=0, k=0, depth=0;
+		long regionBegin = firstBegin;
+		while(k < n){
+			long next = i < n ? Math.min(begins[i], sortedEnds[k]) : sortedEnds[k];
+			if(next != regionBegin){
+				boundaries[numberOfRegions] = regionBegin;
+				depthArray[numberOfRegions++] = depth;
+				regionBegin = next;
+			}
+			while(i < n && begins[i] == next){
+				depth++;
+				i++;
+			}
+			while(k < n && sortedEnds[k] == next){
+				depth--;
+				k++;
+			}
+		}
+		if(startAtOrigin && firstBegin <0 && lastEnd <0){
+			boundaries[numberOfRegions] = lastEnd +1;
+			depthArray[numberOfRegions++] = 0;
+			boundaries[numberOfRegions] = 1;
+		}else{
+			boundaries[numberOfRegions] = lastEnd +1;
+		}
+		this.regionBoundaries = Arrays.copyOf(boundaries, numberOfRegions+1);
+		this.depths = Arrays.copyOf(depthArray, numberOfRegions);
+	}
+	/**
+	 * Stable merge sort of the indexes of the given keys.
+	 */
+	private static int[] stableSortIndexes(long[] keys, int n){
+		int[] order = new int[n];
+		for(int i=0; i< n; i++){
+			order[i]=i;
+		}
+		int[] tmp = new int[n];
+		for(int width=1; width < n; width*=2){
+			for(int left=0; left < n - width; left += 2*width){
+				int mid = left + width;
+				int right = Math.min(left + 2*width, n);
+				if(keys[order[mid-1]] <= keys[order[mid]]){
+					//already in order
+					continue;
+				}
+				int a = left, b = mid, out = left;
+				while(a < mid && b < right){
+					tmp[out++] = keys[order[b]] < keys[order[a]] ? order[b++] : order[a++];
+				}
+				while(a < mid){
+					tmp[out++] = order[a++];
+				}
+				while(b < right){
+					tmp[out++] = order[b++];
+				}
+				System.arraycopy(tmp, left, order, left, right - left);
+			}
+		}
+		return order;
+	}
+	/**
+	 * Get the indexes of all the elements that cover the given offset
+	 * in begin coordinate order.
+	 */
+	private int[] getElementIndexesCovering(long offset, int expectedSize){
+		int[] result = new int[expectedSize];
+		if(expectedSize ==0){
+			return result;
+		}
+		int[] resultSize = new int[1];
+		tree.forEachOverlapping(offset, offset +1, i-> result[resultSize[0]++] = i);
+		return result;
+	}
+	
+	@Override
+	public int getNumberOfRegions() {
+		return depths.length;
+	}
+
+	@Override
+	public CoverageRegion<T> getRegion(int i) {
+		if(i <0 || i >= depths.length){
+			throw new IndexOutOfBoundsException("region index " + i + " out of bounds");
+		}
+		return new CompactCoverageRegion(i);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return depths.length ==0;
+	}
+
+	@Override
+	public synchronized CoverageMapStats getStats() {
+		if(stats ==null){
+			if(isEmpty()){
+				stats = new CoverageMapStats(0, 0, 0);
+			}else{
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				long totalCoverage =0;
+				long totalLength = 0;
+				for(int i=0; i< depths.length; i++){
+					int depth = depths[i];
+					long length = regionBoundaries[i+1] - regionBoundaries[i];
+					totalLength += length;
+					totalCoverage += depth * length;
+					if(depth < min){
+						min = depth;
+					}
+					if(depth > max){
+						max = depth;
+					}
+				}
+				stats = new CoverageMapStats(min, max, totalCoverage/(double)totalLength);
+			}
+		}
+		return stats;
+	}
+
+	@Override
+	public double getAverageCoverage() {
+		return getStats().getAvgCoverage();
+	}
+
+	@Override
+	public int getMinCoverage() {
+		return getStats().getMinCoverage();
+	}
+
+	@Override
+	public int getMaxCoverage() {
+		return getStats().getMaxCoverage();
+	}
+	/**
+	 * Get the index of the region that contains the given offset.
+	 * @return the region index or -1 if the offset
+	 * is outside of this map.
+	 */
+	private int getRegionIndexFor(long offset){
+		if(isEmpty() || offset < regionBoundaries[0] || offset >= regionBoundaries[depths.length]){
+			return -1;
+		}
+		int index = Arrays.binarySearch(regionBoundaries, 0, depths.length, offset);
+		return index >=0 ? index : -index -2;
+	}
+	/**
+	 * Get the first and last region indexes that intersect the given range.
+	 * @return an int array of length 2 or {@code null} if no regions intersect.
+	 */
+	private int[] getRegionIndexesWhichIntersect(Range range){
+		if(range ==null){
+			throw new NullPointerException("range can not be null");
+		}
+		if(isEmpty() || range.isEmpty()){
+			return null;
+		}
+		long begin = Math.max(range.getBegin(), regionBoundaries[0]);
+		long end = Math.min(range.getEnd(), regionBoundaries[depths.length] -1);
+		if(begin > end){
+			return null;
+		}
+		return new int[]{getRegionIndexFor(begin), getRegionIndexFor(end)};
+	}
+	
+	@Override
+	public List<CoverageRegion<T>> getRegionsWhichIntersect(Range range) {
+		int[] indexes = getRegionIndexesWhichIntersect(range);
+		if(indexes ==null){
+			return Collections.emptyList();
+		}
+		List<CoverageRegion<T>> list = new ArrayList<>(indexes[1] - indexes[0] +1);
+		for(int i= indexes[0]; i<= indexes[1]; i++){
+			list.add(new CompactCoverageRegion(i));
+		}
+		return list;
+	}
+
+	@Override
+	public CoverageRegion<T> getRegionWhichCovers(long offset) {
+		int index = getRegionIndexFor(offset);
+		return index <0 ? null : new CompactCoverageRegion(index);
+	}
+
+	@Override
+	public Stream<CoverageRegion<T>> regions() {
+		return IntStream.range(0, depths.length).mapToObj(CompactCoverageRegion::new);
+	}
+
+	@Override
+	public Stream<CoverageRegion<T>> regions(Range range) {
+		int[] indexes = getRegionIndexesWhichIntersect(range);
+		if(indexes ==null){
+			return Stream.empty();
+		}
+		return IntStream.rangeClosed(indexes[0], indexes[1]).mapToObj(CompactCoverageRegion::new);
+	}
+
+	@Override
+	public Iterator<CoverageRegion<T>> iterator() {
+		return new Iterator<CoverageRegion<T>>(){
+			private int next=0;
+			@Override
+			public boolean hasNext() {
+				return next < depths.length;
+			}
+
+			@Override
+			public CoverageRegion<T> next() {
+				if(!hasNext()){
+					throw new NoSuchElementException();
+				}
+				return new CompactCoverageRegion(next++);
+			}
+		};
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj){
+			return true;
+		}
+		if(!(obj instanceof CoverageMap)){
+			return false;
+		}
+		CoverageMap<?> other = (CoverageMap<?>) obj;
+		if(getNumberOfRegions() !=other.getNumberOfRegions()){
+			return false;
+		}
+		for( int i=0; i<getNumberOfRegions(); i++){
+			if(!getRegion(i).equals(other.getRegion(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode(){
+		final int prime = 37;
+		int ret = 17;
+		for(CoverageRegion<T> region : this){
+			ret = ret*prime + region.hashCode();
+		}
+		return ret;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		for(CoverageRegion<T> region : this){
+			buf.append(region)
+				.append('\n');
+		}
+		return buf.toString();
+	}
+	/**
+	 * A view of a single region in the map;
+	 * the covering elements are only computed
+	 * when needed.
+	 */
+	private final class CompactCoverageRegion implements CoverageRegion<T>{
+		private final int index;
+		
+		CompactCoverageRegion(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Range asRange() {
+			return Range.of(regionBoundaries[index], regionBoundaries[index+1] -1);
+		}
+
+		@Override
+		public int getCoverageDepth() {
+			return depths[index];
+		}
+
+		@Override
+		public long getLength() {
+			return regionBoundaries[index+1] - regionBoundaries[index];
+		}
+		
+		private List<T> getElements(){
+			int[] elementIndexes = getElementIndexesCovering(regionBoundaries[index], depths[index]);
+			return new AbstractList<T>(){
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public T get(int i) {
+					return (T) elements[elementIndexes[i]];
+				}
+
+				@Override
+				public int size() {
+					return elementIndexes.length;
+				}
+				
+			};
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return getElements().iterator();
+		}
+
+		@Override
+		public Stream<T> streamElements() {
+			return getElements().stream();
+		}
+		
+		@Override
+		public String toString() {
+			return new StringBuilder(50)
+				        .append("coverage region : ")
+				        .append(asRange())
+				        .append(" coverage = ")
+				        .append(getCoverageDepth())
+				        .toString();
+		}
+		
+		@Override
+		public int hashCode() {
+			//same as DefaultCoverageRegion
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + asRange().hashCode();
+			result = prime * result + new HashSet<T>(getElements()).hashCode();
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj){
+				return true;
+			}
+			if (!(obj instanceof CoverageRegion)){
+				return false;
+			}
+			CoverageRegion<?>  other = (CoverageRegion<?>) obj;
+			if(!asRange().equals(other.asRange()) || getCoverageDepth() != other.getCoverageDepth()){
+				return false;
+			}
+			HashSet<Object> otherElements = new HashSet<>(MapUtil.computeMinHashMapSizeWithoutRehashing(getCoverageDepth()));
+			for(Object o : other){
+				otherElements.add(o);
+			}
+			return new HashSet<Object>(getElements()).equals(otherElements);
+		}
+		
+	}
+}
@@ -45,6 +45,7 @@ public final class CoverageMapBuilder<T extends Rangeable> {
 	private int minCoverage=NOT_SET;
 			
 	private boolean startAtOrigin=false;
+	private boolean compactRegions=false;
 	/**
 	 * Create a new Builder instance that will
 	 * use the given elements to eventually
@@ -150,8 +151,17 @@ public final class CoverageMapBuilder<T extends Rangeable> {
 	 * by this constructor and filtered by any options set.
 	 * @return a new {@link CoverageMap}; will never be null
 	 * but may be empty.
+	 * 
+	 * @throws IllegalStateException if {@link #compactRegions(boolean)}
+	 * is set to {@code true} and a max coverage has also been set.
 	 */
 	public CoverageMap<T> build(){
+		if(compactRegions){
+			if(maxCoverage != NOT_SET){
+				throw new IllegalStateException("compact regions can not be used with max coverage filtering");
+			}
+			return CompactCoverageMap.create(elements, startAtOrigin);
+		}
 		if(maxCoverage == NOT_SET){
 			return CoverageMapFactory.create(elements,startAtOrigin);
 		}
@@ -181,4 +191,29 @@ public final class CoverageMapBuilder<T extends Rangeable> {
 		this.startAtOrigin = flag;
 		return this;
 	}
+	/**
+	 * Should the built {@link CoverageMap} store
+	 * its {@link CoverageRegion}s in a compact form.
+	 * A compact CoverageMap only stores the region coordinates
+	 * and coverage depths as primitive arrays; the elements
+	 * that make up each region are computed on demand when
+	 * a {@link CoverageRegion}'s elements are iterated over.
+	 * This greatly reduces the memory footprint
+	 * and build time of high coverage maps
+	 * if the elements of each region are not often needed.
+	 * <p>
+	 * Compact regions can not be combined with
+	 * {@link #maxAllowedCoverage(int)} or {@link #maxAllowedCoverage(int, int)}.
+	 * <p>
+	 * If not set, then defaults to {@code false}.
+	 * @param flag {@code true} to use compact regions;
+	 * {@code false} otherwise.
+	 * @return this
+	 * 
+	 * @since 5.3
+	 */
+	public CoverageMapBuilder<T> compactRegions(boolean flag) {
+		this.compactRegions = flag;
+		return this;
+	}
 }
@@ -52,6 +52,10 @@ public final class CoverageMapCollectors {
 				}
 	 * </pre>
 	 * 
+	 * Only the range and coverage depth of each region is used
+	 * so the stats of a compact CoverageMap are computed
+	 * without materializing the elements of any region.
+	 * 
 	 * @param <T> the type of each element in the CoverageMap.
 	 * @param <R> the type of {@link CoverageRegion} in the coverageMap.
 	 * 
@@ -88,6 +92,28 @@ public final class CoverageMapCollectors {
 	}
 	/**
      * Returns a {@code Collector} that accumulates the input elements into a
+     * new compact {@code CoverageMap} which does not store
+     * the elements of each {@link CoverageRegion}; 
+     * they are only computed if a region's elements are requested.
+     *
+     * @param <T> the type of the input elements which must implement the {@link Rangeable} interface.
+     * @return a {@code Collector} which collects all the input elements into a
+     * compact {@code CoverageMap}.
+     * 
+     * @see CoverageMapBuilder#compactRegions(boolean)
+     * 
+     * @since 5.3
+     */
+	public static <T extends Rangeable> Collector<T, List<T>, CoverageMap<T>> toCompactCoverageMap(){
+		return Collector.of(ArrayList::new,
+				List::add,
+				(a,b) ->{ a.addAll(b); return a;},
+                (List<T> list) ->new CoverageMapBuilder<T>(list).compactRegions(true).build(),
+                Characteristics.UNORDERED
+                );
+	}
+	/**
+     * Returns a {@code Collector} that accumulates the input elements into a
      * new {@code CoverageMap} that has limited each coverage region to the specified maxCoverage.
      * Any elements that provide additional coverage than the specified max will not be included in the CoverageMap.
      *
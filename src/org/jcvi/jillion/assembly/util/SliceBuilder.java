@@ -385,6 +385,21 @@ public final class SliceBuilder implements Builder<Slice>{
     public boolean isEmpty() {
         return ids.isEmpty();
     }
+    /**
+     * Remove all the SliceElements and the consensus
+     * from this builder but keep the allocated buffers
+     * so this builder can be reused to build another Slice.
+     * 
+     * @return this.
+     * 
+     * @since 5.3
+     */
+    SliceBuilder reset(){
+    	ids.clear();
+    	bytes.clear();
+    	consensus = null;
+    	return this;
+    }
 
 
 }
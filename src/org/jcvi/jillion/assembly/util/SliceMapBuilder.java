@@ -20,7 +20,11 @@
  ******************************************************************************/
 package org.jcvi.jillion.assembly.util;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.ObjLongConsumer;
 import java.util.function.Predicate;
 
 import org.jcvi.jillion.assembly.AssembledRead;
@@ -114,6 +118,47 @@ public final class SliceMapBuilder<R extends AssembledRead> implements Builder<S
 		}
 	}
 
+	/**
+	 * Build each {@link Slice} of the contig one at a time
+	 * and pass it to the given consumer
+	 * instead of building the entire {@link SliceMap}.
+	 * The reads are sorted by gapped start offset and
+	 * streamed through a {@link StreamingSliceBuilder}
+	 * so only the slices currently overlapped by reads
+	 * are held in memory at any one time.
+	 * 
+	 * @param consumer the consumer of each Slice and its offset;
+	 * will be called in offset order exactly once for every offset
+	 * in the contig consensus.  Can not be null.
+	 * 
+	 * @throws NullPointerException if consumer is null.
+	 * 
+	 * @since 5.3
+	 */
+	public void streamSlices(ObjLongConsumer<? super Slice> consumer){
+		List<R> reads = new ArrayList<>((int) contig.getNumberOfReads());
+		try(StreamingIterator<R> iter = filter ==null ? contig.getReadIterator() : new FilteredIterator(contig.getReadIterator())){
+			while(iter.hasNext()){
+				reads.add(iter.next());
+			}
+		}
+		reads.sort(Comparator.comparingLong(AssembledRead::getGappedStartOffset));
+		
+		StreamingSliceBuilder<R> builder = qualities ==null ? 
+				new StreamingSliceBuilder<R>(contig.getConsensusSequence(), defaultQuality, consumer)
+				: new StreamingSliceBuilder<R>(contig.getConsensusSequence(), qualities, consumer);
+		builder.gapQualityValueStrategy(qualityValueStrategy);
+		try{
+			for(R read : reads){
+				builder.add(read);
+			}
+			//emit the remaining slices
+			builder.close();
+		} catch (DataStoreException e) {
+			throw new IllegalStateException("error building Slices",e);
+		}
+	}
+
 	private class FilteredIterator implements StreamingIterator<R>{
 		private final Object endToken = new Object();
 		
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.function.ObjLongConsumer;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code StreamingSliceBuilder} builds the {@link Slice}s
+ * of a contig from reads that are given to it sorted
+ * by gapped start offset and passes each completed {@link Slice}
+ * to a consumer as soon as no more reads can overlap it.
+ * <p>
+ * Unlike a {@link SliceMap} which holds a Slice for every consensus offset,
+ * only the slices currently overlapped by reads (the active window)
+ * are kept in memory and their buffers are reused once
+ * the slice has been emitted. This allows
+ * very large, very deep contigs to be processed in a small heap,
+ * for example to call the consensus with a
+ * {@link org.jcvi.jillion.assembly.util.consensus.ConsensusCaller}:
+ * 
+ * <pre>
+ * NucleotideSequenceBuilder consensusBuilder = new NucleotideSequenceBuilder(consensus.getLength());
+ * try(StreamingSliceBuilder&lt;AssembledRead&gt; builder = new StreamingSliceBuilder&lt;&gt;(consensus, defaultQuality, 
+ * 	(slice, offset) -&gt; consensusBuilder.append(caller.callConsensus(slice).getConsensus()))){
+ * 	for(AssembledRead read : readsSortedByStartOffset){
+ * 		builder.add(read);
+ * 	}
+ * }
+ * </pre>
+ * 
+ * Slices are passed to the consumer in offset order, exactly once
+ * for every offset in the consensus (including offsets without
+ * any coverage) and the final slices are emitted by {@link #close()}.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @author dkatzel
+ *
+ * @param <R> the type of {@link AssembledRead}.
+ * 
+ * @since 5.3
+ * 
+ * @see SliceMapBuilder#streamSlices(ObjLongConsumer)
+ */
+public final class StreamingSliceBuilder<R extends AssembledRead> implements Closeable{
+
+	private static final int INITIAL_WINDOW_SIZE = 1024;
+	
+	private final ObjLongConsumer<? super Slice> consumer;
+	private final QualitySequenceDataStore qualities;
+	private final PhredQuality defaultQuality;
+	private GapQualityValueStrategy qualityValueStrategy = GapQualityValueStrategy.LOWEST_FLANKING;
+	
+	private final long consensusLength;
+	private final Iterator<Nucleotide> consensusIterator;
+	/**
+	 * Circular buffer of the SliceBuilders in the active window
+	 * the builder for offset i is at {@code i & mask}.
+	 */
+	private SliceBuilder[] window;
+	private int mask;
+	/**
+	 * The next offset to emit.
+	 */
+	private long windowStart=0;
+	/**
+	 * Exclusive end of the offsets currently in the window.
+	 */
+	private long windowEnd=0;
+	
+	private long lastReadStart = Long.MIN_VALUE;
+	
+	private final SliceBuilder emptySliceBuilder = new SliceBuilder();
+	
+	private boolean closed=false;
+	/**
+	 * Create a new StreamingSliceBuilder that gives every 
+	 * base the same quality value.
+	 * 
+	 * @param consensus the contig consensus; can not be null.
+	 * @param defaultQuality the quality value to use for every base; can not be null.
+	 * @param consumer the consumer of each completed Slice and its offset; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public StreamingSliceBuilder(NucleotideSequence consensus, PhredQuality defaultQuality, ObjLongConsumer<? super Slice> consumer){
+		this(consensus, null, defaultQuality, consumer);
+		if(defaultQuality ==null){
+			throw new NullPointerException("defaultQuality can not be null");
+		}
+	}
+	/**
+	 * Create a new StreamingSliceBuilder that looks up the quality values
+	 * of each read from the given {@link QualitySequenceDataStore}.
+	 * 
+	 * @param consensus the contig consensus; can not be null.
+	 * @param readQualities the {@link QualitySequenceDataStore} of the full length
+	 * read qualities; can not be null.
+	 * @param consumer the consumer of each completed Slice and its offset; can not be null.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public StreamingSliceBuilder(NucleotideSequence consensus, QualitySequenceDataStore readQualities, ObjLongConsumer<? super Slice> consumer){
+		this(consensus, readQualities, null, consumer);
+		if(readQualities ==null){
+			throw new NullPointerException("readQualities can not be null");
+		}
+	}
+	
+	private StreamingSliceBuilder(NucleotideSequence consensus, QualitySequenceDataStore readQualities, PhredQuality defaultQuality, ObjLongConsumer<? super Slice> consumer){
+		if(consensus ==null){
+			throw new NullPointerException("consensus can not be null");
+		}
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		this.consumer = consumer;
+		this.qualities = readQualities;
+		this.defaultQuality = defaultQuality;
+		this.consensusLength = consensus.getLength();
+		this.consensusIterator = consensus.iterator();
+		
+		this.window = new SliceBuilder[INITIAL_WINDOW_SIZE];
+		this.mask = window.length -1;
+		for(int i=0; i< window.length; i++){
+			window[i] = new SliceBuilder();
+		}
+	}
+	/**
+	 * Change the {@link GapQualityValueStrategy} used to compute the
+	 * quality values of gaps when qualities come from a {@link QualitySequenceDataStore}.
+	 * If not set, defaults to {@link GapQualityValueStrategy#LOWEST_FLANKING}.
+	 * 
+	 * @param strategy the {@link GapQualityValueStrategy} to use; can not be null.
+	 * @return this
+	 * @throws NullPointerException if strategy is null.
+	 */
+	public StreamingSliceBuilder<R> gapQualityValueStrategy(GapQualityValueStrategy strategy){
+		if(strategy==null){
+			throw new NullPointerException("GapQualityValueStrategies can not be null");
+		}
+		this.qualityValueStrategy = strategy;
+		return this;
+	}
+	/**
+	 * Add the given read to the pileup.  Any slices
+	 * before this read's start offset are complete and are 
+	 * passed to the consumer before this method returns.
+	 * 
+	 * @param read the read to add; can not be null and its gapped start offset
+	 * must be &ge; the gapped start offset of all previously added reads.
+	 * @return this
+	 * 
+	 * @throws NullPointerException if read is null or its qualities are not in the
+	 * QualitySequenceDataStore.
+	 * @throws IllegalArgumentException if the read is not in start offset order
+	 * or extends beyond the consensus.
+	 * @throws IllegalStateException if this builder has already been closed.
+	 * @throws DataStoreException if there is a problem getting the read's qualities.
+	 */
+	public StreamingSliceBuilder<R> add(R read) throws DataStoreException{
+		if(closed){
+			throw new IllegalStateException("already closed");
+		}
+		long start = read.getGappedStartOffset();
+		long end = read.getGappedEndOffset() +1;
+		if(start < lastReadStart){
+			throw new IllegalArgumentException("reads must be sorted by start offset : " + read.getId() 
+							+ " starts at " + start + " which is before previous read start " + lastReadStart);
+		}
+		if(start <0 || end > consensusLength){
+			throw new IllegalArgumentException("read " + read.getId() + " " + read.asRange() + " extends beyond consensus length " + consensusLength);
+		}
+		lastReadStart = start;
+		emitUpTo(start);
+		extendWindowTo(end);
+		
+		String id = read.getId();
+		Direction dir = read.getDirection();
+		Iterator<PhredQuality> qualityIterator = null;
+		if(qualities !=null){
+			QualitySequence fullQualities = qualities.get(id);
+			if(fullQualities ==null){
+				throw new NullPointerException("could not get qualities for "+id);
+			}
+			qualityIterator = qualityValueStrategy.getGappedValidRangeQualitySequenceFor(read, fullQualities)
+												.iterator();
+		}
+		Iterator<Nucleotide> baseIterator = read.getNucleotideSequence().iterator();
+		long offset = start;
+		while(baseIterator.hasNext()){
+			PhredQuality quality = qualityIterator ==null ? defaultQuality : qualityIterator.next();
+			window[(int) (offset & mask)].addNew(id, baseIterator.next(), quality, dir);
+			offset++;
+		}
+		return this;
+	}
+	/**
+	 * Get the number of consensus offsets currently held in memory.
+	 * 
+	 * @return the number of slices that have not yet been emitted
+	 * but are overlapped by reads already added.
+	 */
+	public long getCurrentWindowLength(){
+		return windowEnd - windowStart;
+	}
+	/**
+	 * Emit all the remaining slices through the end of the consensus.
+	 * Calling close multiple times has no effect.
+	 */
+	@Override
+	public void close() {
+		if(closed){
+			return;
+		}
+		closed = true;
+		emitUpTo(consensusLength);
+	}
+	
+	private void emitUpTo(long exclusiveEnd){
+		while(windowStart < exclusiveEnd){
+			Nucleotide consensus = consensusIterator.next();
+			if(windowStart < windowEnd){
+				SliceBuilder builder = window[(int) (windowStart & mask)];
+				Slice slice = builder.setConsensus(consensus).build();
+				builder.reset();
+				consumer.accept(slice, windowStart);
+			}else{
+				consumer.accept(emptySliceBuilder.setConsensus(consensus).build(), windowStart);
+			}
+			windowStart++;
+		}
+		if(windowEnd < windowStart){
+			windowEnd = windowStart;
+		}
+	}
+	
+	private void extendWindowTo(long exclusiveEnd){
+		if(exclusiveEnd <= windowEnd){
+			return;
+		}
+		long length = exclusiveEnd - windowStart;
+		if(length > window.length){
+			int newSize = window.length;
+			while(newSize < length){
+				newSize <<=1;
+			}
+			SliceBuilder[] newWindow = new SliceBuilder[newSize];
+			int newMask = newSize -1;
+			for(long i= windowStart; i< windowStart + window.length; i++){
+				newWindow[(int) (i & newMask)] = window[(int) (i & mask)];
+			}
+			for(int i=0; i< newSize; i++){
+				if(newWindow[i] ==null){
+					newWindow[i] = new SliceBuilder();
+				}
+			}
+			window = newWindow;
+			mask = newMask;
+		}
+		windowEnd = exclusiveEnd;
+	}
+}
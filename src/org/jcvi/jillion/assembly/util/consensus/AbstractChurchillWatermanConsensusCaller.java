@@ -26,22 +26,11 @@
 package org.jcvi.jillion.assembly.util.consensus;
 
 import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.BASES_TO_CONSIDER;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.EnumMap;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.NUMBER_OF_BASES_TO_CONSIDER;
 
 import org.jcvi.jillion.assembly.util.Slice;
-import org.jcvi.jillion.assembly.util.SliceElement;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
-import org.jcvi.jillion.core.util.SingleThreadAdder;
 /**
  * Calculate Consensus for a slice using Bayes formula and the procedure from
  * <pre>
@@ -53,8 +42,24 @@ import org.jcvi.jillion.core.util.SingleThreadAdder;
  *
  *
  */
-abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCaller{
+abstract class AbstractChurchillWatermanConsensusCaller implements SliceCountsConsensusCaller{
     
+	private static final double ONE_TENTH = 0.1D;
+
+    private static final double ONE_QUARTER = 0.25D;
+    /**
+     * Reused array of the normalized error probabilities
+     * followed by the raw probabilities and then the error 
+     * probabilities of each base's cumulative quality.
+     */
+    private static final ThreadLocal<double[]> PROBABILITY_SCRATCH = new ThreadLocal<double[]>(){
+
+		@Override
+		protected double[] initialValue() {
+			return new double[3*NUMBER_OF_BASES_TO_CONSIDER];
+		}
+    	
+    };
    
 	 private final PhredQuality highQualityThreshold;
 	  
@@ -86,14 +91,14 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
     /**
      * Get the consensus for the given Slice which
      * is guaranteed to have coverage.
-     * @param normalizedConsensusProbabilities the {@link ConsensusProbabilities}
-     * containing the probabilities of each non-ambiguous base
-     * normalized to total 100%.
-     * @param slice the {@link Slice} to compute the consensus of.
+     * @param normalizedErrorProbabilities the probability that each non-ambiguous base
+     * is NOT the consensus normalized to total 100%; indexed in 
+     * A,C,G,T,gap order.  This array is reused and should not be modified.
+     * @param counts the {@link SliceCounts} of the Slice to compute the consensus of.
      * @return a {@link Nucleotide} that is the consensus of all the bases in this
      * slice; the return may be an ambiguous {@link Nucleotide}.
      */
-    protected abstract Nucleotide getConsensus(ConsensusProbabilities normalizedConsensusProbabilities,Slice slice) ;
+    protected abstract Nucleotide getConsensus(double[] normalizedErrorProbabilities, SliceCounts counts) ;
     
     @Override
     public final ConsensusResult callConsensus(Slice slice) {
@@ -101,124 +106,109 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
             //by definition, an empty slice is a Gap
             return new DefaultConsensusResult(Nucleotide.Gap,0);
         }
-        Map<Nucleotide, Integer> qualityValueSumMap = generateQualityValueSumMap(slice);
-        ConsensusProbabilities normalizedErrorProbabilityStruct = generateNormalizedProbabilityStruct(qualityValueSumMap);
-        Nucleotide consensus=  getConsensus(normalizedErrorProbabilityStruct,slice);
-        return new DefaultConsensusResult(consensus,
-                
-                getErrorProbability(normalizedErrorProbabilityStruct,
-                        slice));
+        return callConsensus(ConsensusUtil.getResetThreadLocalSliceCounts().addAll(slice));
     }
     
-    protected final Map<Nucleotide, Integer> generateQualityValueSumMap(Slice slice) {
-        Map<Nucleotide, SingleThreadAdder> qualityValueSumMap = initalizeNucleotideMap();
-        for(SliceElement sliceElement : slice){
-            Nucleotide basecall =sliceElement.getBase();
-            final SingleThreadAdder previousSum = qualityValueSumMap.get(basecall);
-            //ignore not ACGT-?
-            if(previousSum!=null){
-               previousSum.add(sliceElement.getQuality().getQualityScore());
-            }
-            
-        }
-        Map<Nucleotide, Integer> map = new EnumMap<>(Nucleotide.class);
-        for(Entry<Nucleotide, SingleThreadAdder> entry :qualityValueSumMap.entrySet()){
-        	map.put(entry.getKey(), entry.getValue().intValue());
+    @Override
+    public final ConsensusResult callConsensus(SliceCounts counts) {
+    	if(counts.getCoverageDepth() ==0){
+            //by definition, an empty slice is a Gap
+            return new DefaultConsensusResult(Nucleotide.Gap,0);
         }
-        return map;
+    	double[] normalizedErrorProbabilities = computeNormalizedErrorProbabilities(counts);
+    	Nucleotide consensus=  getConsensus(normalizedErrorProbabilities,counts);
+    	return new DefaultConsensusResult(consensus,
+    			getErrorProbability(normalizedErrorProbabilities, counts));
     }
-
-    private Map<Nucleotide, SingleThreadAdder> initalizeNucleotideMap() {
-        Map<Nucleotide, SingleThreadAdder> map = new EnumMap<Nucleotide, SingleThreadAdder>(Nucleotide.class);
-        for(Nucleotide glyph : ConsensusUtil.BASES_TO_CONSIDER){
-            map.put(glyph, new SingleThreadAdder(0));
-        }
-        return map;
+    /**
+     * Compute the error probability of each base
+     * using the Churchill-Waterman formula. Each considered base
+     * with cumulative quality q contributes an error probability
+     * {@code p = 10^(-q/10)} so the raw probability of base b
+     * is the product of {@code 1-p} for b and {@code p/4} for every other base.
+     */
+    private static double[] computeNormalizedErrorProbabilities(SliceCounts counts){
+    	double[] scratch = PROBABILITY_SCRATCH.get();
+    	
+    	int errorOffset = 2*NUMBER_OF_BASES_TO_CONSIDER;
+    	for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+    		int cumulativeQualityValue = counts.getQualitySum(BASES_TO_CONSIDER.get(i));
+    		scratch[errorOffset + i] = Math.pow(ONE_TENTH, cumulativeQualityValue*ONE_TENTH);
+    	}
+    	double sumOfRawProbabilities= 0D;
+    	for(int base=0; base< NUMBER_OF_BASES_TO_CONSIDER; base++){
+    		double raw = 1D;
+    		for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+    			double errorProbability = scratch[errorOffset + i];
+    			raw *= i==base ? 1 - errorProbability : errorProbability* ONE_QUARTER;
+    		}
+    		scratch[NUMBER_OF_BASES_TO_CONSIDER + base] = raw;
+    		sumOfRawProbabilities+= raw;
+    	}
+    	for(int base=0; base< NUMBER_OF_BASES_TO_CONSIDER; base++){
+    		double result= 0D;
+    		for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+    			if(i != base){
+    				result+= scratch[NUMBER_OF_BASES_TO_CONSIDER + i];
+    			}
+    		}
+    		scratch[base] = result/sumOfRawProbabilities;
+    	}
+    	return scratch;
     }
 
-
     private int getErrorProbability(
-            ConsensusProbabilities normalizedErrorProbabilityStruct,
-            Slice slice) {
-        double normalizedProbability= getProbabilityFor(normalizedErrorProbabilityStruct);
-        if(normalizedProbability == 0.0D){
-            //special case if we only have matches, then sum slice qualities
-            int sum =0;
-            for(SliceElement element : slice){
-                sum += element.getQuality().getQualityScore();
-            }
-            return sum;
-        }
-            return PhredQuality.computeQualityScore(normalizedProbability);
-    }
-
-   
-    
-    private double getProbabilityFor(ConsensusProbabilities normalizedErrorProbabilityStruct){
-        //find lowest
-        Double lowest = Double.MAX_VALUE;
-        for(Entry<Nucleotide, Double> entry: normalizedErrorProbabilityStruct.entrySet()){
-            Double currentValue = entry.getValue();
-            if(currentValue.compareTo(lowest) <0){
-                lowest = currentValue;
-            }
-        }
-        if(lowest.equals(Double.MAX_VALUE)){
-            //no probabilities
-            return 0D;
-        }
-        return lowest;
-    }
-    private ConsensusProbabilities generateNormalizedProbabilityStruct(
-            Map<Nucleotide, Integer> qualityValueSumMap) {
-        List<ConsensusProbabilities> probabilityStructs = createProbabilityStructsForEachBase(qualityValueSumMap);
-        ConsensusProbabilities rawErrorProbabilityStruct = createRawErrorProbabilityStruct(probabilityStructs);
-        return rawErrorProbabilityStruct.normalize();
-    }
-    private ConsensusProbabilities createRawErrorProbabilityStruct(
-            List<ConsensusProbabilities> probabilityStructs) {
-        Map<Nucleotide, Double> rawErrorProbabilityMap = new EnumMap<Nucleotide, Double>(Nucleotide.class);
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            rawErrorProbabilityMap.put(base, calculateRawErrorProbabilityFor(base, probabilityStructs));
-        }        
-        return new ConsensusProbabilities(rawErrorProbabilityMap);
-    }
-
-    private List<ConsensusProbabilities> createProbabilityStructsForEachBase(
-            Map<Nucleotide, Integer> qualityValueSumMap) {
-        List<ConsensusProbabilities> probabilityStructs= new ArrayList<ConsensusProbabilities>();
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            probabilityStructs.add(new ConsensusProbabilities(base, qualityValueSumMap.get(base)));
+            double[] normalizedErrorProbabilities,
+            SliceCounts counts) {
+    	//find lowest
+        double normalizedProbability= Double.MAX_VALUE;
+        for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+        	if(Double.compare(normalizedErrorProbabilities[i], normalizedProbability) <0){
+        		normalizedProbability = normalizedErrorProbabilities[i];
+        	}
         }
-               
-        return probabilityStructs;
-    }
-
-    private double calculateRawErrorProbabilityFor(Nucleotide base,
-            List<ConsensusProbabilities> probabilityStructs) {
-        double result = 1D;
-        for(ConsensusProbabilities struct : probabilityStructs){
-            result *=struct.getProbabilityFor(base);
+        //NaN if there aren't any A,C,G,T or gaps
+        if(normalizedProbability == 0.0D || normalizedProbability == Double.MAX_VALUE){
+            //special case if we only have matches, then sum slice qualities
+            return counts.getTotalQualitySum();
         }
-        return result;
+        return PhredQuality.computeQualityScore(normalizedProbability);
     }
    
-    protected final Set<Nucleotide> getBasesUsedTowardsAmbiguity(
-            ConsensusProbabilities normalizedErrorProbabilityStruct, int baseCount) {
+    /**
+     * Get the bases to use towards the ambiguity by
+     * adding bases in order of lowest error probability
+     * until the cumulative error probability is above the high quality
+     * threshold.
+     * @param normalizedErrorProbabilities the normalized error probabilities 
+     * in A,C,G,T,gap order.
+     * @param baseCount the max number of bases to use.
+     * @return a bit mask of the bases used where bit i is set
+     * if the ith base is used.
+     */
+    protected final int getBasesUsedTowardsAmbiguity(
+            double[] normalizedErrorProbabilities, int baseCount) {
         double errorProbabilityOfAmbiguity;
         double sumOfProbabilitySuccess=0D;
-        Set<Nucleotide> basesUsed = EnumSet.noneOf(Nucleotide.class);
-        List<Nucleotide> basesToConsider = new ArrayList<Nucleotide>(BASES_TO_CONSIDER);
-        Collections.sort(basesToConsider, new LowestProbabilityComparator(normalizedErrorProbabilityStruct));
+        int basesUsed=0;
+        int numberOfBasesUsed=0;
         do
         {
-            Nucleotide baseWithLowestErrorProbability = basesToConsider.remove(0);
-            sumOfProbabilitySuccess += (1 - normalizedErrorProbabilityStruct.getProbabilityFor(
-                    baseWithLowestErrorProbability));
-            basesUsed.add(baseWithLowestErrorProbability);
+        	//find unused base with lowest error probability
+        	//ties go to the first base
+        	int lowest=-1;
+        	for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+        		if((basesUsed & (1<<i)) ==0 
+        				&& (lowest ==-1 || Double.compare(normalizedErrorProbabilities[i], normalizedErrorProbabilities[lowest]) <0)){
+        			lowest = i;
+        		}
+        	}
+            sumOfProbabilitySuccess += (1 - normalizedErrorProbabilities[lowest]);
+            basesUsed |= 1<<lowest;
+            numberOfBasesUsed++;
             errorProbabilityOfAmbiguity = 1-sumOfProbabilitySuccess;
         }while( sumOfProbabilitySuccess <1D && underThreshold(errorProbabilityOfAmbiguity)
-                && basesUsed.size()< baseCount );
+                && numberOfBasesUsed< baseCount && numberOfBasesUsed < NUMBER_OF_BASES_TO_CONSIDER);
         
         return basesUsed;
     }
@@ -226,22 +216,4 @@ abstract class AbstractChurchillWatermanConsensusCaller implements ConsensusCall
     private boolean underThreshold(double errorProbability){
         return PhredQuality.computeQualityScore(errorProbability) < getHighQualityThreshold().getQualityScore();
      }
-    /**
-     * Sorts {@link ConsensusProbabilities} by comparing the 
-     * probability of the given {@link Nucleotide}.
-     * @author dkatzel
-     *
-     *
-     */
-    private static class LowestProbabilityComparator implements Comparator<Nucleotide>{
-        private final ConsensusProbabilities probabilityStruct;
-        LowestProbabilityComparator(ConsensusProbabilities probabilityStruct){
-            this.probabilityStruct = probabilityStruct;
-        }
-        @Override
-        public int compare(Nucleotide o1, Nucleotide o2) {
-            return probabilityStruct.getProbabilityFor(o1).compareTo(probabilityStruct.getProbabilityFor(o2));
-        }
-        
-    }
 }
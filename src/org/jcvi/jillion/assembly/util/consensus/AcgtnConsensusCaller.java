@@ -20,7 +20,6 @@
  ******************************************************************************/
 package org.jcvi.jillion.assembly.util.consensus;
 
-import org.jcvi.jillion.assembly.util.Slice;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 
@@ -40,9 +39,9 @@ public class AcgtnConsensusCaller extends NoAmbiguityConsensusCaller{
 
     @Override
     protected Nucleotide getConsensus(
-            ConsensusProbabilities normalizedConsensusProbabilities, Slice slice) {
-      Nucleotide acgt = super.getConsensus(normalizedConsensusProbabilities, slice);
-      if(slice.getNucleotideCounts().get(acgt) >0){
+            double[] normalizedErrorProbabilities, SliceCounts counts) {
+      Nucleotide acgt = super.getConsensus(normalizedErrorProbabilities, counts);
+      if(counts.getCount(acgt) >0){
     	  return acgt;
       }
       return Nucleotide.Unknown;
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.jcvi.jillion.assembly.util.Slice;
+import org.jcvi.jillion.assembly.util.SliceMap;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+/**
+ * Utility class that calls the consensus
+ * of every {@link Slice} in a {@link SliceMap}
+ * in parallel.  The offsets of the SliceMap are split into ranges
+ * and each range is computed by a single thread
+ * that reuses one {@link SliceCounts} instance for every slice in its range
+ * if the {@link ConsensusCaller} is a {@link SliceCountsConsensusCaller}.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+public final class BatchConsensusCaller {
+	/**
+	 * The default number of consecutive offsets
+	 * computed by each parallel task.
+	 */
+	public static final int DEFAULT_RANGE_LENGTH = 8192;
+	
+	private BatchConsensusCaller(){
+		//can not instantiate
+	}
+	/**
+	 * Compute the consensus of every slice in the given {@link SliceMap} in parallel.
+	 * 
+	 * @param sliceMap the {@link SliceMap} to use; can not be null and its 
+	 * {@link SliceMap#getSlice(long)} must be safe to call from multiple threads.
+	 * @param caller the {@link ConsensusCaller} to use; can not be null and must be thread-safe.
+	 * 
+	 * @return a new {@link NucleotideSequence} the same length as the sliceMap.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static NucleotideSequence callConsensus(SliceMap sliceMap, ConsensusCaller caller){
+		return callConsensus(sliceMap, caller, null, DEFAULT_RANGE_LENGTH);
+	}
+	/**
+	 * Compute the consensus of every slice in the given {@link SliceMap} in parallel
+	 * and also store the consensus quality of each slice.
+	 * 
+	 * @param sliceMap the {@link SliceMap} to use; can not be null and its 
+	 * {@link SliceMap#getSlice(long)} must be safe to call from multiple threads.
+	 * @param caller the {@link ConsensusCaller} to use; can not be null and must be thread-safe.
+	 * @param consensusQualities an array to put the {@link ConsensusResult#getConsensusQuality()}
+	 * of each offset; may be null if the qualities are not needed.  If not null,
+	 * then the length must be &ge; the sliceMap size.
+	 * 
+	 * @return a new {@link NucleotideSequence} the same length as the sliceMap.
+	 * 
+	 * @throws NullPointerException if sliceMap or caller is null.
+	 * @throws IllegalArgumentException if consensusQualities is too small.
+	 */
+	public static NucleotideSequence callConsensus(SliceMap sliceMap, ConsensusCaller caller, int[] consensusQualities){
+		return callConsensus(sliceMap, caller, consensusQualities, DEFAULT_RANGE_LENGTH);
+	}
+	/**
+	 * Compute the consensus of every slice in the given {@link SliceMap} in parallel
+	 * and also store the consensus quality of each slice.
+	 * 
+	 * @param sliceMap the {@link SliceMap} to use; can not be null and its 
+	 * {@link SliceMap#getSlice(long)} must be safe to call from multiple threads.
+	 * @param caller the {@link ConsensusCaller} to use; can not be null and must be thread-safe.
+	 * @param consensusQualities an array to put the {@link ConsensusResult#getConsensusQuality()}
+	 * of each offset; may be null if the qualities are not needed.  If not null,
+	 * then the length must be &ge; the sliceMap size.
+	 * @param rangeLength the number of consecutive offsets each parallel task computes;
+	 * must be &ge; 1.
+	 * 
+	 * @return a new {@link NucleotideSequence} the same length as the sliceMap.
+	 * 
+	 * @throws NullPointerException if sliceMap or caller is null.
+	 * @throws IllegalArgumentException if consensusQualities is too small or rangeLength &lt; 1.
+	 */
+	public static NucleotideSequence callConsensus(SliceMap sliceMap, ConsensusCaller caller, int[] consensusQualities, int rangeLength){
+		if(sliceMap ==null){
+			throw new NullPointerException("sliceMap can not be null");
+		}
+		if(caller ==null){
+			throw new NullPointerException("consensus caller can not be null");
+		}
+		if(rangeLength <1){
+			throw new IllegalArgumentException("range length must be >= 1");
+		}
+		int size = (int) sliceMap.getSize();
+		if(consensusQualities !=null && consensusQualities.length < size){
+			throw new IllegalArgumentException("consensus qualities array too small : " + consensusQualities.length + " need " + size);
+		}
+		
+		byte[] consensusOrdinals = new byte[size];
+		int numberOfRanges = (int) ((size + (long) rangeLength -1)/rangeLength);
+		SliceCountsConsensusCaller countsCaller = caller instanceof SliceCountsConsensusCaller ? (SliceCountsConsensusCaller) caller : null;
+		
+		IntStream.range(0, numberOfRanges)
+					.parallel()
+					.forEach(range ->{
+						int start = range * rangeLength;
+						int end = (int) Math.min(size, start + (long) rangeLength);
+						SliceCounts counts = countsCaller ==null ? null : new SliceCounts();
+						for(int i= start; i< end; i++){
+							Slice slice = sliceMap.getSlice(i);
+							ConsensusResult result = counts ==null || slice ==null ? 
+														caller.callConsensus(slice) 
+														: countsCaller.callConsensus(counts.reset().addAll(slice));
+							consensusOrdinals[i] = result.getConsensus().getOrdinalAsByte();
+							if(consensusQualities !=null){
+								consensusQualities[i] = result.getConsensusQuality();
+							}
+						}
+					});
+		
+		List<Nucleotide> values = Nucleotide.getAllValues();
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder(size);
+		for(int i=0; i< size; i++){
+			builder.append(values.get(consensusOrdinals[i]));
+		}
+		return builder.build();
+	}
+}
@@ -25,9 +25,6 @@
  */
 package org.jcvi.jillion.assembly.util.consensus;
 
-import java.util.Set;
-
-import org.jcvi.jillion.assembly.util.Slice;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 /**
@@ -57,11 +54,11 @@ public final class ChurchillWatermanConsensusCaller extends AbstractChurchillWat
 
     @Override
     protected Nucleotide getConsensus(
-            ConsensusProbabilities normalizedConsensusProbabilities,
-            Slice slice) {
-        final Set<Nucleotide> basesUsedTowardsAmbiguity = getBasesUsedTowardsAmbiguity(normalizedConsensusProbabilities,
+            double[] normalizedErrorProbabilities,
+            SliceCounts counts) {
+        final int basesUsedTowardsAmbiguity = getBasesUsedTowardsAmbiguity(normalizedErrorProbabilities,
                         MAX_NUMBER_OF_BASES_TOWARDS_AMBIGUITY);
-        return Nucleotide.getAmbiguityFor(basesUsedTowardsAmbiguity);
+        return ConsensusUtil.getAmbiguityFor(basesUsedTowardsAmbiguity);
         
     }
     
@@ -25,11 +25,9 @@
  */
 package org.jcvi.jillion.assembly.util.consensus;
 
-import java.util.EnumSet;
-import java.util.Map;
-import java.util.Set;
+import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.BASES_TO_CONSIDER;
+import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.NUMBER_OF_BASES_TO_CONSIDER;
 
-import org.jcvi.jillion.assembly.util.Slice;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 
@@ -117,59 +115,30 @@ public class ConicConsensusCaller extends AbstractChurchillWatermanConsensusCall
     private double computeEffectiveAngle(double ambiguityAngle) {
         return Math.min(MAX_EFFECTIVE_ANGLE, ambiguityAngle/2);
     }
-    @SuppressWarnings("PMD.CompareObjectsWithEquals")
-    private Set<Nucleotide> getBasesUsedTowardsAmbiguity(
-            Map<Nucleotide, Integer> qualityValueSumMap,
-            MaxQualityStruct maxQualityStruct) {
-        Set<Nucleotide> basesTowardsAmbiguity = EnumSet.noneOf(Nucleotide.class);
-        final Nucleotide maxQualityBase = maxQualityStruct.base;
-        basesTowardsAmbiguity.add(maxQualityBase);
+    @Override
+    protected Nucleotide getConsensus(
+            double[] normalizedErrorProbabilities, SliceCounts counts) {
        
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            if(base !=maxQualityBase ){
-                double tangent = qualityValueSumMap.get(base).doubleValue()/maxQualityStruct.sum;
-                if(tangent < upperlimit && tangent > lowerlimit){
-                    basesTowardsAmbiguity.add(base);
-                }
-            }
-        }
-        return basesTowardsAmbiguity;
-    }
-    private MaxQualityStruct createMaxQualityStruct(
-            Map<Nucleotide, Integer> qualityValueSumMap) {
+        //find the base with the max cumulative quality
         int maxQualitySum=0;
-        Nucleotide maxQualityBase= Nucleotide.Gap;
-        for(Nucleotide base : ConsensusUtil.BASES_TO_CONSIDER){
-            int qualitySum = qualityValueSumMap.get(base);
+        int maxQualityIndex= BASES_TO_CONSIDER.indexOf(Nucleotide.Gap);
+        for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+            int qualitySum = counts.getQualitySum(BASES_TO_CONSIDER.get(i));
             if(qualitySum > maxQualitySum){
                 maxQualitySum = qualitySum;
-                maxQualityBase = base;
+                maxQualityIndex = i;
             }
         }
-        return  new MaxQualityStruct(maxQualityBase, maxQualitySum);
-    }
-
-    private static class MaxQualityStruct{
-    	
-		private final int sum;
-		private final Nucleotide base;
-         
-        public MaxQualityStruct(Nucleotide base, int sum) {
-            this.base = base;
-            this.sum = sum;
+        int basesTowardsAmbiguity = 1<<maxQualityIndex;
+        for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+            if(i !=maxQualityIndex ){
+                double tangent = counts.getQualitySum(BASES_TO_CONSIDER.get(i))/(double)maxQualitySum;
+                if(tangent < upperlimit && tangent > lowerlimit){
+                    basesTowardsAmbiguity |= 1<<i;
+                }
+            }
         }
-       
+        return ConsensusUtil.getAmbiguityFor(basesTowardsAmbiguity);
     }
-
-    @Override
-    protected Nucleotide getConsensus(
-            ConsensusProbabilities normalizedConsensusProbabilities, Slice slice) {
-       
-        Map<Nucleotide, Integer> qualityValueSumMap = generateQualityValueSumMap(slice);        
-        MaxQualityStruct maxQualityStruct = createMaxQualityStruct(qualityValueSumMap);
-        Set<Nucleotide> basesTowardsAmbiguity = getBasesUsedTowardsAmbiguity(qualityValueSumMap, maxQualityStruct);
-        return Nucleotide.getAmbiguityFor(basesTowardsAmbiguity);
-    }
-
     
 }
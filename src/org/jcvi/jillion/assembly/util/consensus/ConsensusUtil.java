@@ -26,7 +26,9 @@
 package org.jcvi.jillion.assembly.util.consensus;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 
@@ -43,8 +45,67 @@ final class ConsensusUtil {
 																Nucleotide.Thymine,
 																Nucleotide.Gap);
     
+    /**
+     * The number of bases in {@link #BASES_TO_CONSIDER}.
+     */
+    static final int NUMBER_OF_BASES_TO_CONSIDER = BASES_TO_CONSIDER.size();
+    /**
+     * Ambiguity for each bit mask of {@link #BASES_TO_CONSIDER}
+     * where bit i is set if {@code BASES_TO_CONSIDER.get(i)} is
+     * used towards the ambiguity.
+     */
+    private static final Nucleotide[] AMBIGUITY_FOR_MASK = new Nucleotide[1<< NUMBER_OF_BASES_TO_CONSIDER];
+    
+    private static final ThreadLocal<SliceCounts> SLICE_COUNTS = new ThreadLocal<SliceCounts>(){
+
+		@Override
+		protected SliceCounts initialValue() {
+			return new SliceCounts();
+		}
+    	
+    };
+    
+    static{
+    	for(int mask=0; mask < AMBIGUITY_FOR_MASK.length; mask++){
+    		AMBIGUITY_FOR_MASK[mask] = Nucleotide.getAmbiguityFor(getBasesFor(mask));
+    	}
+    }
+    
     private ConsensusUtil(){
         throw new RuntimeException("should never be instantiated");
     }
     
+    /**
+     * Get the {@link Nucleotide}s in the given
+     * bit mask of {@link #BASES_TO_CONSIDER}.
+     * @param basesToConsiderMask the bit mask.
+     * @return a new mutable Set.
+     */
+    static Set<Nucleotide> getBasesFor(int basesToConsiderMask){
+    	Set<Nucleotide> set = EnumSet.noneOf(Nucleotide.class);
+    	for(int i=0; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+    		if((basesToConsiderMask & (1<<i)) !=0){
+    			set.add(BASES_TO_CONSIDER.get(i));
+    		}
+    	}
+    	return set;
+    }
+    /**
+     * Get the same {@link Nucleotide} as 
+     * {@link Nucleotide#getAmbiguityFor(java.util.Collection)}
+     * for the given bit mask of {@link #BASES_TO_CONSIDER}
+     * without creating any objects.
+     * @param basesToConsiderMask the bit mask.
+     * @return the Nucleotide.
+     */
+    static Nucleotide getAmbiguityFor(int basesToConsiderMask){
+    	return AMBIGUITY_FOR_MASK[basesToConsiderMask];
+    }
+    /**
+     * Get the cleared {@link SliceCounts} instance for the current thread.
+     * @return a reset SliceCounts; never null.
+     */
+    static SliceCounts getResetThreadLocalSliceCounts(){
+    	return SLICE_COUNTS.get().reset();
+    }
 }
@@ -25,18 +25,10 @@
  */
 package org.jcvi.jillion.assembly.util.consensus;
 
-import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.SortedMap;
+import java.util.List;
 
 import org.jcvi.jillion.assembly.util.Slice;
-import org.jcvi.jillion.assembly.util.SliceElement;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
-import org.jcvi.jillion.core.util.MapValueComparator;
-import org.jcvi.jillion.core.util.SingleThreadAdder;
 /**
  * {@code MostFrequentBasecallConsensusCaller} is a {@link ConsensusCaller}
  * implementation that will return the most frequent basecall in
@@ -50,7 +42,7 @@ import org.jcvi.jillion.core.util.SingleThreadAdder;
  * @author dkatzel
  *
  */
-public enum MostFrequentBasecallConsensusCaller implements ConsensusCaller{
+public enum MostFrequentBasecallConsensusCaller implements SliceCountsConsensusCaller{
 	INSTANCE;
 	
     @Override
@@ -58,75 +50,45 @@ public enum MostFrequentBasecallConsensusCaller implements ConsensusCaller{
         if(slice==null){
             return new DefaultConsensusResult(Nucleotide.Unknown, 0);
         }
-        Map<Nucleotide, SingleThreadAdder> histogramMap = new EnumMap<Nucleotide, SingleThreadAdder>(Nucleotide.class);
-        Map<Nucleotide, SingleThreadAdder> qualitySums = new EnumMap<Nucleotide, SingleThreadAdder>(Nucleotide.class);
-        for(SliceElement sliceElement : slice){
-            Nucleotide base =sliceElement.getBase();
-            SingleThreadAdder sum = histogramMap.get(base);
-            if(sum ==null){
-            	histogramMap.put(base, new SingleThreadAdder(1));
-            	qualitySums.put(base, new SingleThreadAdder(sliceElement.getQuality().getQualityScore()));
-            }else{
-            	sum.increment();
-            	qualitySums.get(base).add(sliceElement.getQuality().getQualityScore());
-            }
-                   
-        }
-        Nucleotide consensus= findMostOccuringBaseWithHighestQvs(histogramMap, qualitySums);
-        int sum = getCumulativeQualityConsensusValue(qualitySums, consensus);
+        return callConsensus(ConsensusUtil.getResetThreadLocalSliceCounts().addAll(slice));
+    }
+    
+    @Override
+    public ConsensusResult callConsensus(SliceCounts counts) {
+    	Nucleotide consensus= findMostOccuringBaseWithHighestQvs(counts);
+    	if(consensus ==null){
+    		return new DefaultConsensusResult(Nucleotide.Unknown, 0);
+    	}
+    	//quality sum of the consensus minus the quality sum of everything else
+        int sum = 2* counts.getQualitySum(consensus) - counts.getTotalQualitySum();
         return new DefaultConsensusResult(consensus, sum);
     }
-
-
-	private int getCumulativeQualityConsensusValue(
-			Map<Nucleotide, SingleThreadAdder> qualitySums, Nucleotide consensus) {
-		int sum=0;
-        for(Entry<Nucleotide, SingleThreadAdder> entry : qualitySums.entrySet()){
-            if(entry.getKey() == consensus){
-                sum+= entry.getValue().intValue();
-            }
-            else{
-                sum -= entry.getValue().intValue();
-            }
-        }
-		return sum;
-	}
-
     
     /**
      * Get the most occurring basecall,
      * if multiple basecalls have the same highest frequency,
      * then pick the one with the highest cumulative quality score.
-     * @param histogramMap
-     * @param qualitySums
-     * @return
+     * @param counts the counts of the slice.
+     * @return the most occurring base or {@code null} if the slice is empty.
      */
-    private Nucleotide findMostOccuringBaseWithHighestQvs(Map<Nucleotide, SingleThreadAdder> histogramMap,Map<Nucleotide, SingleThreadAdder> qualitySums ){
-        if(histogramMap.isEmpty()){
-            return Nucleotide.Unknown;
-        }
-        Map<Nucleotide, Integer> intMap = new HashMap<Nucleotide, Integer>();
-        for(Entry<Nucleotide, SingleThreadAdder> entry : histogramMap.entrySet()){
-        	intMap.put(entry.getKey(), entry.getValue().intValue());
-        }
-       
-        SortedMap<Nucleotide, Integer> sortedMap = MapValueComparator.sortDescending(intMap);
-        
-        Iterator<Entry<Nucleotide, Integer>> iter = sortedMap.entrySet().iterator();
-        //has to have at least one
-        Entry<Nucleotide, Integer> most = iter.next();
-        Nucleotide consensus = most.getKey();
-        int count = most.getValue().intValue();
-        int bestQv = qualitySums.get(consensus).intValue();
-        while(iter.hasNext()){
-        	Entry<Nucleotide, Integer> next = iter.next();
-        	if(next.getValue().intValue() <count){
-        		break;
+    private Nucleotide findMostOccuringBaseWithHighestQvs(SliceCounts counts){
+        Nucleotide consensus = null;
+        int bestCount=0;
+        int bestQv = 0;
+        List<Nucleotide> allValues = Nucleotide.getAllValues();
+        //check in reverse ordinal order so ties in both count
+        //and quality go to the last base
+        for(int i= allValues.size()-1; i>=0; i--){
+        	Nucleotide base = allValues.get(i);
+        	int count = counts.getCount(base);
+        	if(count ==0){
+        		continue;
         	}
-        	int currentQv = qualitySums.get(next.getKey()).intValue();
-			if(currentQv > bestQv){
-        		bestQv = currentQv;
-        		consensus = next.getKey();
+        	int qv = counts.getQualitySum(base);
+        	if(count > bestCount || (count == bestCount && qv > bestQv)){
+        		consensus = base;
+        		bestCount = count;
+        		bestQv = qv;
         	}
         }
         return consensus;
@@ -25,13 +25,9 @@
  */
 package org.jcvi.jillion.assembly.util.consensus;
 
-import static org.jcvi.jillion.core.residue.nt.Nucleotide.Adenine;
-import static org.jcvi.jillion.core.residue.nt.Nucleotide.Cytosine;
-import static org.jcvi.jillion.core.residue.nt.Nucleotide.Gap;
-import static org.jcvi.jillion.core.residue.nt.Nucleotide.Guanine;
-import static org.jcvi.jillion.core.residue.nt.Nucleotide.Thymine;
+import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.BASES_TO_CONSIDER;
+import static org.jcvi.jillion.assembly.util.consensus.ConsensusUtil.NUMBER_OF_BASES_TO_CONSIDER;
 
-import org.jcvi.jillion.assembly.util.Slice;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 /**
@@ -50,27 +46,17 @@ public class NoAmbiguityConsensusCaller extends AbstractChurchillWatermanConsens
 
     @Override
     protected Nucleotide getConsensus(
-            ConsensusProbabilities normalizedConsensusProbabilities, Slice slice) {
+            double[] normalizedErrorProbabilities, SliceCounts counts) {
       //assume A is the answer initially
-        Nucleotide result = Adenine;
-        double lowestErrorProbability = normalizedConsensusProbabilities.getProbabilityFor(Adenine);
-        
-        if(normalizedConsensusProbabilities.getProbabilityFor(Cytosine).compareTo(lowestErrorProbability) <0){
-            result = Cytosine;
-            lowestErrorProbability = normalizedConsensusProbabilities.getProbabilityFor(Cytosine);
+        int result = 0;
+        double lowestErrorProbability = normalizedErrorProbabilities[0];
+        //then check C,G,T and gap
+        for(int i=1; i< NUMBER_OF_BASES_TO_CONSIDER; i++){
+        	if(Double.compare(normalizedErrorProbabilities[i], lowestErrorProbability) <0){
+        		result = i;
+        		lowestErrorProbability = normalizedErrorProbabilities[i];
+        	}
         }
-        if(normalizedConsensusProbabilities.getProbabilityFor(Guanine).compareTo(lowestErrorProbability) <0){
-            result = Guanine;
-            lowestErrorProbability = normalizedConsensusProbabilities.getProbabilityFor(Guanine);
-        }
-        if(normalizedConsensusProbabilities.getProbabilityFor(Thymine).compareTo(lowestErrorProbability) <0){
-            result = Thymine;
-            lowestErrorProbability = normalizedConsensusProbabilities.getProbabilityFor(Thymine);
-        }
-        if(normalizedConsensusProbabilities.getProbabilityFor(Gap).compareTo(lowestErrorProbability) <0){
-            result = Gap;
-            lowestErrorProbability = normalizedConsensusProbabilities.getProbabilityFor(Gap);
-        }
-        return result;
+        return BASES_TO_CONSIDER.get(result);
     }
 }
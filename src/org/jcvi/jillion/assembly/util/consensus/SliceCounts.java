@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import java.util.Arrays;
+
+import org.jcvi.jillion.assembly.util.Slice;
+import org.jcvi.jillion.assembly.util.SliceElement;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.internal.assembly.util.NoConsensusCompactedSlice;
+/**
+ * {@code SliceCounts} is a mutable summary of a single {@link Slice}
+ * that only keeps the number of times each basecall was seen,
+ * the sum of their quality values and their highest quality value
+ * in primitive arrays indexed by {@link Nucleotide#ordinal()}.
+ * This is all the information most {@link ConsensusCaller}s need
+ * and the same instance can be {@link #reset()} and reused for every slice
+ * in a contig so calling consensus does not have to create any objects per slice.
+ * <p>
+ * This class is not thread-safe; each thread should
+ * use its own instance.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ * 
+ * @see SliceCountsConsensusCaller#callConsensus(SliceCounts)
+ */
+public final class SliceCounts {
+
+	private static final int NUMBER_OF_NUCLEOTIDES = Nucleotide.values().length;
+	
+	private final int[] counts = new int[NUMBER_OF_NUCLEOTIDES];
+	private final int[] qualitySums = new int[NUMBER_OF_NUCLEOTIDES];
+	private final int[] maxQualities = new int[NUMBER_OF_NUCLEOTIDES];
+	
+	private int coverageDepth;
+	private int totalQualitySum;
+	/**
+	 * Create a new empty SliceCounts.
+	 */
+	public SliceCounts(){
+		//empty
+	}
+	/**
+	 * Create a new SliceCounts
+	 * that contains the counts of the given Slice.
+	 * 
+	 * @param slice the Slice to count; can not be null.
+	 * 
+	 * @throws NullPointerException if slice is null.
+	 */
+	public SliceCounts(Slice slice){
+		addAll(slice);
+	}
+	/**
+	 * Remove all the counts so this
+	 * object can be reused.
+	 * @return this.
+	 */
+	public SliceCounts reset(){
+		Arrays.fill(counts, 0);
+		Arrays.fill(qualitySums, 0);
+		Arrays.fill(maxQualities, 0);
+		coverageDepth=0;
+		totalQualitySum=0;
+		return this;
+	}
+	/**
+	 * Add a single basecall.
+	 * @param base the basecall; can not be null.
+	 * @param quality the quality value of this basecall.
+	 * @return this.
+	 * @throws NullPointerException if base is null.
+	 */
+	public SliceCounts add(Nucleotide base, PhredQuality quality){
+		return add(base.ordinal(), quality.getQualityScore());
+	}
+	/**
+	 * Add a single basecall.
+	 * @param base the basecall; can not be null.
+	 * @param qualityScore the quality score of this basecall.
+	 * @return this.
+	 * @throws NullPointerException if base is null.
+	 */
+	public SliceCounts add(Nucleotide base, int qualityScore){
+		return add(base.ordinal(), qualityScore);
+	}
+	
+	private SliceCounts add(int ordinal, int qualityScore){
+		counts[ordinal]++;
+		qualitySums[ordinal] += qualityScore;
+		if(qualityScore > maxQualities[ordinal]){
+			maxQualities[ordinal] = qualityScore;
+		}
+		coverageDepth++;
+		totalQualitySum+=qualityScore;
+		return this;
+	}
+	/**
+	 * Add all the basecalls of the given Slice.
+	 * @param slice the Slice to add; can not be null.
+	 * @return this.
+	 * @throws NullPointerException if slice is null.
+	 */
+	public SliceCounts addAll(Slice slice){
+		if(slice instanceof NoConsensusCompactedSlice){
+			//read the encoded values directly
+			//to avoid creating SliceElement objects
+			NoConsensusCompactedSlice compactedSlice = (NoConsensusCompactedSlice) slice;
+			int depth = compactedSlice.getCoverageDepth();
+			for(int i=0; i< depth; i++){
+				short encoded = compactedSlice.getEncodedElement(i);
+				add((encoded >>>8) & 0xF, encoded & 0xFF);
+			}
+		}else{
+			for(SliceElement element : slice){
+				add(element.getBase(), element.getQuality());
+			}
+		}
+		return this;
+	}
+	/**
+	 * Get the number of basecalls added.
+	 * @return the coverage depth; will always be &ge; 0.
+	 */
+	public int getCoverageDepth() {
+		return coverageDepth;
+	}
+	/**
+	 * Get the sum of all the quality scores
+	 * of every basecall added.
+	 * @return the total quality sum.
+	 */
+	public int getTotalQualitySum() {
+		return totalQualitySum;
+	}
+	/**
+	 * Get the number of times the given basecall was added.
+	 * @param base the basecall; can not be null.
+	 * @return the count; will always be &ge; 0.
+	 * @throws NullPointerException if base is null.
+	 */
+	public int getCount(Nucleotide base){
+		return counts[base.ordinal()];
+	}
+	/**
+	 * Get the sum of the quality scores
+	 * of the given basecall.
+	 * @param base the basecall; can not be null.
+	 * @return the quality sum; will be 0 if the base wasn't added.
+	 * @throws NullPointerException if base is null.
+	 */
+	public int getQualitySum(Nucleotide base){
+		return qualitySums[base.ordinal()];
+	}
+	/**
+	 * Get the highest quality score
+	 * of the given basecall.
+	 * @param base the basecall; can not be null.
+	 * @return the max quality score; will be 0 if the base wasn't added.
+	 * @throws NullPointerException if base is null.
+	 */
+	public int getMaxQuality(Nucleotide base){
+		return maxQualities[base.ordinal()];
+	}
+	/**
+	 * Get the number of different basecalls that were added.
+	 * @return the number of basecalls whose count is &gt; 0.
+	 */
+	public int getNumberOfDifferentBases(){
+		int numberOfDifferentBases=0;
+		for(int i=0; i< counts.length; i++){
+			if(counts[i] >0){
+				numberOfDifferentBases++;
+			}
+		}
+		return numberOfDifferentBases;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("SliceCounts [depth=").append(coverageDepth);
+		for(Nucleotide n : Nucleotide.values()){
+			int count = counts[n.ordinal()];
+			if(count >0){
+				builder.append(", ").append(n.getCharacter()).append('=').append(count)
+						.append('[').append(qualitySums[n.ordinal()]).append(']');
+			}
+		}
+		return builder.append(']').toString();
+	}
+	
+}
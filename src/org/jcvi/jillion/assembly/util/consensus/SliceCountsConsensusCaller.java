@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import org.jcvi.jillion.assembly.util.Slice;
+/**
+ * A {@link ConsensusCaller} that can also compute the consensus
+ * from only the basecall counts and quality sums of a Slice.
+ * This allows a single reusable {@link SliceCounts}
+ * to be used for every slice in a contig.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ * 
+ * @see BatchConsensusCaller
+ */
+public interface SliceCountsConsensusCaller extends ConsensusCaller{
+    /**
+     * Compute the {@link ConsensusResult} from only the
+     * basecall counts and quality sums of a Slice.
+     * The result must be the same as calling {@link #callConsensus(Slice)}
+     * on the Slice the counts came from.
+     * 
+     * @param counts the {@link SliceCounts} of the slice to compute the consensus for;
+     * can not be null.
+     * @return a {@link ConsensusResult} will never be <code>null</code>.
+     * 
+     * @throws NullPointerException if counts is null.
+     */
+    ConsensusResult callConsensus(SliceCounts counts);
+}
@@ -26,10 +26,9 @@
 package org.jcvi.jillion.assembly.util.consensus;
 
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
-import org.jcvi.jillion.assembly.util.Slice;
-import org.jcvi.jillion.assembly.util.SliceElement;
 import org.jcvi.jillion.core.qual.PhredQuality;
 import org.jcvi.jillion.core.residue.nt.Nucleotide;
 /**
@@ -55,33 +54,32 @@ public class TigrAnnotationConsensusCaller extends AbstractChurchillWatermanCons
      */
     @Override
     protected Nucleotide getConsensus(
-            ConsensusProbabilities normalizedConsensusProbabilities, Slice slice) {
-        Set<Nucleotide> basesTowardsAmbiguity = getCWBasesTowardsAmbiguity(normalizedConsensusProbabilities, slice);
-        basesTowardsAmbiguity.addAll(findAllHighQualityBases(slice));
-        return Nucleotide.getAmbiguityFor(basesTowardsAmbiguity);
-        
-    }
-
-    private Set<Nucleotide> getCWBasesTowardsAmbiguity(
-            ConsensusProbabilities normalizedErrorProbabilityStruct,
-            Slice slice) {
-    	int numberOfDifferentBasesInSlice=0;
-    	for(int counts :slice.getNucleotideCounts().values()){
-    		if(counts >0){
-    			numberOfDifferentBasesInSlice++;
-    		}
-    	}      
-        return getBasesUsedTowardsAmbiguity(normalizedErrorProbabilityStruct, numberOfDifferentBasesInSlice);
-    }
-
-    private Set<Nucleotide> findAllHighQualityBases(Slice slice) {
-        Set<Nucleotide> highQualityDiffs = EnumSet.noneOf(Nucleotide.class);
-        for(SliceElement sliceElement : slice){
-            if(sliceElement.getQuality().compareTo(getHighQualityThreshold()) >=0){
-                highQualityDiffs.add(sliceElement.getBase());
-            }
+            double[] normalizedErrorProbabilities, SliceCounts counts) {
+        int basesTowardsAmbiguity = getBasesUsedTowardsAmbiguity(normalizedErrorProbabilities, counts.getNumberOfDifferentBases());
+        Set<Nucleotide> otherHighQualityBases = null;
+        int threshold = getHighQualityThreshold().getQualityScore();
+        List<Nucleotide> allValues = Nucleotide.getAllValues();
+        for(int i=0; i< allValues.size(); i++){
+        	Nucleotide base = allValues.get(i);
+        	if(counts.getCount(base) >0 && counts.getMaxQuality(base) >= threshold){
+        		int index = ConsensusUtil.BASES_TO_CONSIDER.indexOf(base);
+        		if(index >=0){
+        			basesTowardsAmbiguity |= 1<<index;
+        		}else{
+        			//high quality ambiguous base 
+        			if(otherHighQualityBases ==null){
+        				otherHighQualityBases = EnumSet.noneOf(Nucleotide.class);
+        			}
+        			otherHighQualityBases.add(base);
+        		}
+        	}
+        }
+        if(otherHighQualityBases ==null){
+        	return ConsensusUtil.getAmbiguityFor(basesTowardsAmbiguity);
         }
-        return highQualityDiffs;
+        otherHighQualityBases.addAll(ConsensusUtil.getBasesFor(basesTowardsAmbiguity));
+        return Nucleotide.getAmbiguityFor(otherHighQualityBases);
+        
     }
 
 }
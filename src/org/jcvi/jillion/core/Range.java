@@ -33,6 +33,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -102,6 +103,17 @@ import org.jcvi.jillion.internal.core.util.JillionUtil;
  * ...
  * </pre>
  * 
+ * The cache can be changed or turned off for the whole JVM by setting the
+ * {@value #CACHE_PROPERTY} system property before this class is loaded to one of:
+ * <ul>
+ * <li>{@code soft} - (the default) a thread safe cache of {@link java.lang.ref.SoftReference}s
+ * that does not make threads wait on each other.</li>
+ * <li>{@code weak} - the same as {@code soft} but uses {@link java.lang.ref.WeakReference}s
+ * so ranges are released as soon as they are no longer used.</li>
+ * <li>{@code synchronized} - the single lock cache used by previous versions of Jillion.</li>
+ * <li>{@code none} - don't cache at all, every range built is a new instance.</li>
+ * </ul>
+ * 
  * Range is Serializable in a (hopefully)
  * forwards compatible way. However, there is no 
  * guarantee that the Range implementation will be the same
@@ -155,10 +167,18 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
      * Regular expression in the form (left) , (right).
      */
     private static Pattern COMMA_PATTERN = Pattern.compile("(\\d+)\\s*,\\s*(\\d+)");
+    /**
+     * Name of the System property used to choose
+     * what kind of cache (if any) to use.
+     * 
+     * @since 5.3
+     */
+    public static final String CACHE_PROPERTY = "jillion.range.cache";
     /**
      * Cache of previously built ranges.  
-     * This cache uses  {@link SoftReference}s
-     * so memory can be reclaimed if needed.
+     * By default, this cache uses  {@link SoftReference}s
+     * so memory can be reclaimed if needed; 
+     * may be null if caching is turned off.
      */
     private static final Map<CacheKey, Range> CACHE;
     
@@ -412,10 +432,21 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
     }
     
     /**
-     * Initialize cache with a soft reference cache that will grow as needed.
+     * Initialize cache with a concurrent soft reference cache that will grow as needed
+     * unless the System property says to use something else.
      */
     static{
-         CACHE = Caches.createSoftReferencedValueCache(INITIAL_CACHE_SIZE);
+         CACHE = createCache(System.getProperty(CACHE_PROPERTY, "soft"));
+    }
+    
+    private static Map<CacheKey, Range> createCache(String type){
+    	switch(type.trim().toLowerCase(Locale.US)){
+    		case "none" : return null;
+    		case "weak" : return Caches.createConcurrentWeakReferencedValueCache(INITIAL_CACHE_SIZE);
+    		case "synchronized" : return Caches.createSoftReferencedValueCache(INITIAL_CACHE_SIZE);
+    		case "soft" : return Caches.createConcurrentSoftReferencedValueCache(INITIAL_CACHE_SIZE);
+    		default : throw new IllegalArgumentException("unknown " + CACHE_PROPERTY + " value : " + type);
+    	}
     }
     /**
      * Factory method to get a {@link Range} object in
@@ -615,7 +646,7 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
 	 */
 	static synchronized Range removeFromCache(Range range){
 	    CacheKey key = CacheKey.createCacheKeyFor(range);
-	    if(key !=null){
+	    if(key !=null && CACHE !=null){
 		return CACHE.remove(key);
 	    }
 	    return null;
@@ -3078,7 +3109,7 @@ public abstract class Range implements Rangeable,Iterable<Long>, Serializable{
     		
     		CacheKey cacheKey = CacheKey.createCacheKeyFor(begin, end);
     		
-    		if(cacheKey!=null){
+    		if(cacheKey!=null && CACHE !=null){
     		    return CACHE.computeIfAbsent(cacheKey, k->{ 
     		        if(k.end >= k.begin) {
     		            return buildNewRange(k.begin,k.end); 
@@ -31,6 +31,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import org.jcvi.jillion.core.util.ThrowingStream;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
@@ -344,6 +345,26 @@ public interface DataStore<T> extends Closeable{
     public static <D extends DataStore<?>> D cache(Class<D> c,D delegate, int cacheSize){
         return DataStoreUtil.createNewCachedDataStore(c, delegate, cacheSize);
     }
+    /**
+     * Create a new cached DataStore wrapping the given DataStore
+     * whose cache is bounded by the total weight (usually the number of bytes)
+     * of the cached records instead of the number of records.
+     * @param <T> the type of record in the DataStore.
+     * @param <D> interface of DataStore to proxy
+     * @param c class object of D
+     * @param delegate instance of DataStore
+     * @param maxWeight the maximum total weight of all the cached records; must be &ge; 1.
+     * @param weigher function that computes the weight of a single record;
+     * can not be null.
+     * @return a proxy instance of type D which wraps the given delegate
+     * and caches all results returned by get in an LRU cache.
+     * @see DataStoreUtil#createNewCachedDataStore(Class, DataStore, long, ToLongFunction)
+     * 
+     * @since 5.3
+     */
+    public static <T, D extends DataStore<T>> D cache(Class<D> c,D delegate, long maxWeight, ToLongFunction<? super T> weigher){
+        return DataStoreUtil.createNewCachedDataStore(c, delegate, maxWeight, weigher);
+    }
     
     /**
      * Create a new DataStore instance of the given
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.datastore;
+/**
+ * {@code DataStoreCacheStats} is an immutable snapshot
+ * of the performance metrics of a cached {@link DataStore}
+ * created by {@link DataStoreUtil#createNewCachedDataStore(Class, DataStore, int)}.
+ * 
+ * @author dkatzel
+ * 
+ * @see DataStoreUtil.CacheableDataStore#getCacheStats()
+ * 
+ * @since 5.3
+ */
+public final class DataStoreCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long size;
+	private final long weightedSize;
+	
+	DataStoreCacheStats(long hitCount, long missCount, long evictionCount,
+			long size, long weightedSize) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+		this.weightedSize = weightedSize;
+	}
+	/**
+	 * Get the number of times {@link DataStore#get(String)}
+	 * returned a cached record.
+	 * @return the number of hits; always &ge; 0.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+	/**
+	 * Get the number of times {@link DataStore#get(String)}
+	 * had to fetch the record from the wrapped DataStore.
+	 * @return the number of misses; always &ge; 0.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+	/**
+	 * Get the total number of times {@link DataStore#get(String)}
+	 * was called.
+	 * @return the hit count + the miss count.
+	 */
+	public long getRequestCount(){
+		return hitCount + missCount;
+	}
+	/**
+	 * Get the ratio of cache hits to requests.
+	 * @return a number between 0 and 1; will be 1 if
+	 * there have not been any requests yet.
+	 */
+	public double getHitRate(){
+		long requests = getRequestCount();
+		return requests ==0 ? 1D : (double) hitCount / requests;
+	}
+	/**
+	 * Get the number of records removed from the cache 
+	 * either to stay within the cache's bounds or
+	 * because the JVM needed the memory.  Clearing the cache
+	 * does not count as evictions.
+	 * @return the number of evictions; always &ge; 0.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	/**
+	 * Get the number of records in the cache
+	 * at the time of this snapshot.
+	 * @return the number of cached records; always &ge; 0.
+	 */
+	public long getSize() {
+		return size;
+	}
+	/**
+	 * Get the total weight of the records
+	 * in the cache at the time of this snapshot.  If the cache
+	 * was created without a weigher, each record has a weight of 1.
+	 * @return the total weight; always &ge; 0.
+	 */
+	public long getWeightedSize() {
+		return weightedSize;
+	}
+	@Override
+	public String toString() {
+		return "DataStoreCacheStats [hitCount=" + hitCount + ", missCount="
+				+ missCount + ", evictionCount=" + evictionCount + ", size="
+				+ size + ", weightedSize=" + weightedSize + "]";
+	}
+	
+}
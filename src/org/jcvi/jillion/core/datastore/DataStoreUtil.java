@@ -26,13 +26,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.util.ThrowingStream;
@@ -40,7 +41,7 @@ import org.jcvi.jillion.core.util.iter.IteratorUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
-import org.jcvi.jillion.internal.core.util.Caches;
+import org.jcvi.jillion.internal.core.util.ConcurrentSegmentedLRUCache;
 import org.jcvi.jillion.internal.core.util.Sneak;
 /**
  * Utility class containing static
@@ -298,14 +299,19 @@ public final class DataStoreUtil {
     
     
     /**
-     * Create a new Dynamic Proxy wrapping the given DataStore.  The returned
+     * Create a new DataStore wrapping the given DataStore.  The returned
      * object is similar to the wrapped dataStore except
      * all {@link DataStore#get(String)} results are cached
-     * in an Least Recently Used (LRU) SoftReference cache of the specified size
+     * in a thread-safe segmented Least Recently Used (LRU) SoftReference cache of the specified size
      * and an additional interface, {@link CacheableDataStore} has been added
      * to the list of interfaces the returned {@link DataStore} implements.  This will
      * keep the Most recent {@code cacheSize} records in memory as long as the JVM doesn't
      * need the memory for other things.
+     * <p>
+     * If the given interface is {@link DataStore} itself, then the returned object
+     * is a plain class; otherwise a Dynamic Proxy is used to implement the interface
+     * but the core {@link DataStore} methods are still dispatched directly
+     * without reflection.
      * @param <D> interface of DataStore to proxy
      * @param c class object of D
      * @param delegate instance of DataStore
@@ -315,13 +321,46 @@ public final class DataStoreUtil {
      * and caches all results returned by get in an LRU cache.
      * @see #clearCacheFrom(DataStore)
      * @see #isACachedDataStore(DataStore)
+     * @see CacheableDataStore#getCacheStats()
      */
-    @SuppressWarnings("unchecked")
     public static <D extends DataStore<?>> D createNewCachedDataStore(Class<D> c,D delegate, int cacheSize){
-        return (D) Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[]{c, CacheableDataStore.class}, 
-                new CachedDataStoreInvocationHandler<D>(delegate,cacheSize));
+        return createCachedDataStore(c, delegate, new ConcurrentSegmentedLRUCache<>(cacheSize));
+    }
+    /**
+     * Create a new DataStore wrapping the given DataStore 
+     * whose {@link DataStore#get(String)} results are cached
+     * in a cache bounded by the total weight of the cached records
+     * instead of the number of records.  This is otherwise
+     * the same as {@link #createNewCachedDataStore(Class, DataStore, int)}.
+     * @param <T> the type of record in the DataStore.
+     * @param <D> interface of DataStore to proxy
+     * @param c class object of D
+     * @param delegate instance of DataStore
+     * @param maxWeight the maximum total weight of all the cached records;
+     * usually the number of bytes; must be &ge; 1.
+     * @param weigher function that computes the weight of a single record
+     * in the same units as maxWeight; can not be null and must not return negative values.
+     * Records that weigh more than a portion of the maxWeight might not be cached.
+     * @return a proxy instance of type D which wraps the given delegate
+     * and caches all results returned by get in an LRU cache.
+     * @throws NullPointerException if weigher is null.
+     * @throws IllegalArgumentException if maxWeight &lt; 1.
+     * @see #createNewCachedDataStore(Class, DataStore, int)
+     * @since 5.3
+     */
+    public static <T, D extends DataStore<T>> D createNewCachedDataStore(Class<D> c,D delegate, long maxWeight, ToLongFunction<? super T> weigher){
+        return createCachedDataStore(c, delegate, new ConcurrentSegmentedLRUCache<>(maxWeight, weigher));
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <D extends DataStore<?>> D createCachedDataStore(Class<D> c,D delegate, ConcurrentSegmentedLRUCache cache){
+    	CachedDataStore<?> cachedDataStore = new CachedDataStore<>((DataStore) delegate, cache);
+    	if(c.isInstance(cachedDataStore)){
+    		return (D) cachedDataStore;
+    	}
+        return (D) Proxy.newProxyInstance(c.getClassLoader(), new Class<?>[]{c, CacheableDataStore.class}, 
+                new CachedDataStoreInvocationHandler(delegate, cachedDataStore));
+    }
     
     /**
      * Clears the cache from a DataStore created by this utility
@@ -713,61 +752,192 @@ public final class DataStoreUtil {
 
 	
 	/**
-	 * {@code CachedDataStore} uses the Java Proxy classes to
-	 * wrap a given DataStore instance with a cache for objects returned
+	 * {@code CachedDataStore} wraps a given DataStore instance with a cache for objects returned
 	 * by {@link DataStore#get(String)}.
 	 * @author dkatzel
 	 *
 	 *
 	 */
-	private static final class CachedDataStoreInvocationHandler <D extends DataStore<?>> implements InvocationHandler{
+	private static final class CachedDataStore<T> implements CacheableDataStore<T>{
+		private final DataStore<T> delegate;
+		private final ConcurrentSegmentedLRUCache<String, T> cache;
+		
+		CachedDataStore(DataStore<T> delegate, ConcurrentSegmentedLRUCache<String, T> cache){
+			this.delegate = delegate;
+			this.cache = cache;
+		}
 
-	    private final D delegate;
-	    private final Map<String, Object> cache;
-	    private static final Class<?>[] GET_PARAMETERS = new Class<?>[]{String.class};
+		@Override
+		public T get(String id) throws DataStoreException {
+			if(id ==null){
+				//let the delegate decide how to handle null
+				return delegate.get(id);
+			}
+			T result = cache.get(id);
+			if(result !=null){
+				return result;
+			}
+			//concurrent misses for the same id might
+			//both fetch from the delegate; this is OK
+			//since it's better than holding a lock during I/O.
+			T obj = delegate.get(id);
+			if(obj !=null){
+				//we don't put nulls in our cache because
+				//it might kickout something else
+				//and cause us to refetch anyway
+				//since we assume a null value means it's not in the cache.
+				cache.put(id, obj);
+			}
+			return obj;
+		}
+
+		@Override
+		public void clearCache() {
+			cache.clear();
+		}
+		
+		@Override
+		public DataStoreCacheStats getCacheStats() {
+			return new DataStoreCacheStats(cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount(),
+					cache.size(), cache.weightedSize());
+		}
+
+		@Override
+		public void close() throws IOException {
+			cache.clear();
+			delegate.close();
+		}
+
+		@Override
+		public StreamingIterator<String> idIterator() throws DataStoreException {
+			return delegate.idIterator();
+		}
+
+		@Override
+		public boolean contains(String id) throws DataStoreException {
+			return delegate.contains(id);
+		}
+
+		@Override
+		public long getNumberOfRecords() throws DataStoreException {
+			return delegate.getNumberOfRecords();
+		}
+
+		@Override
+		public boolean isClosed() {
+			return delegate.isClosed();
+		}
+
+		@Override
+		public StreamingIterator<T> iterator() throws DataStoreException {
+			return delegate.iterator();
+		}
+
+		@Override
+		public StreamingIterator<DataStoreEntry<T>> entryIterator()
+				throws DataStoreException {
+			return delegate.entryIterator();
+		}
+		
+	}
+	/**
+	 * {@code CachedDataStoreInvocationHandler} is used
+	 * to implement DataStore sub-interfaces.  The core 
+	 * {@link DataStore} and {@link CacheableDataStore} methods
+	 * are dispatched directly to a {@link CachedDataStore};
+	 * only additional methods declared by the sub-interface
+	 * are invoked reflectively on the delegate.
+	 * @author dkatzel
+	 *
+	 */
+	private static final class CachedDataStoreInvocationHandler implements InvocationHandler{
+		
+		private enum Dispatch{
+			GET, CONTAINS, CLOSE, CLEAR_CACHE, CACHE_STATS, IS_CLOSED, 
+			NUMBER_OF_RECORDS, ID_ITERATOR, ITERATOR, ENTRY_ITERATOR, 
+			DELEGATE
+		}
+		/**
+		 * Proxy classes pass the same Method instances on every call
+		 * so the dispatch only has to be computed once per method.
+		 * The table for each Method is stored per declaring class
+		 * using a {@link ClassValue} so it is shared across all instances
+		 * but does not keep the caller's DataStore interfaces from being unloaded.
+		 */
+		private static final ClassValue<Map<Method, Dispatch>> DISPATCH_TABLES = new ClassValue<Map<Method, Dispatch>>(){
+
+			@Override
+			protected Map<Method, Dispatch> computeValue(Class<?> type) {
+				return new ConcurrentHashMap<>();
+			}
+			
+		};
+		
+	    private final Object delegate;
+	    private final CachedDataStore<?> cachedDataStore;
 	   
-	    private CachedDataStoreInvocationHandler(D delegate, int cacheSize){
+	    private CachedDataStoreInvocationHandler(Object delegate, CachedDataStore<?> cachedDataStore){
 	        this.delegate = delegate;
-	        cache= Caches.createSoftReferencedValueLRUCache(cacheSize);
+	        this.cachedDataStore = cachedDataStore;
 	    }
 	   
+	    private static Dispatch computeDispatch(Method method){
+	    	if(method.isDefault() && method.getDeclaringClass() != CacheableDataStore.class){
+	    		return Dispatch.DELEGATE;
+	    	}
+	    	int numberOfParameters = method.getParameterCount();
+	    	String methodName = method.getName();
+	    	if(numberOfParameters==1){
+	    		if(method.getParameterTypes()[0] != String.class){
+	    			return Dispatch.DELEGATE;
+	    		}
+	    		switch(methodName){
+	    			case "get" : return Dispatch.GET;
+	    			case "contains" : return Dispatch.CONTAINS;
+	    			default: return Dispatch.DELEGATE;
+	    		}
+	    	}
+	    	if(numberOfParameters ==0){
+	    		switch(methodName){
+	    			case "close" : return Dispatch.CLOSE;
+	    			case "clearCache" : return Dispatch.CLEAR_CACHE;
+	    			case "getCacheStats" : return Dispatch.CACHE_STATS;
+	    			case "isClosed" : return Dispatch.IS_CLOSED;
+	    			case "getNumberOfRecords" : return Dispatch.NUMBER_OF_RECORDS;
+	    			case "idIterator" : return Dispatch.ID_ITERATOR;
+	    			case "iterator" : return Dispatch.ITERATOR;
+	    			case "entryIterator" : return Dispatch.ENTRY_ITERATOR;
+	    			default: return Dispatch.DELEGATE;
+	    		}
+	    	}
+	    	return Dispatch.DELEGATE;
+	    }
+	    
 	    @Override
-	    public synchronized Object invoke(Object proxy, Method method, Object[] args)
+	    public Object invoke(Object proxy, Method method, Object[] args)
 	            throws Throwable {
-	    	try{
-		        final String methodName = method.getName();
-		        if("close".equals(methodName) && args==null){
-		            cache.clear();
-		        }
-		        else if("clearCache".equals(methodName) && args==null){
-		            cache.clear();
-		            return null;
-		        }
-		        else if("get".equals(methodName) && Arrays.equals(GET_PARAMETERS,method.getParameterTypes())){
-		            String id = (String)args[0];
-		            //we are have to check for null
-		            //because the object could be removed
-		            //between checking and getting
-		            //even in a synchronized block?
-		            Object result =cache.get(id);
-		            if(result !=null){
-		                return result;
-		            }
-		            
-		            Object obj =method.invoke(delegate, args);
-		            if(obj==null){
-		            	//we don't put nulls in our cache because
-			            //it might kickout something else
-			            //and cause us to refetch anyway
-			            //since we assume a null value means it's not in the cache.
-		            	return null;
-		            }		            
-		            cache.put(id, obj);
-		            return obj;
-		        }
-		        return method.invoke(delegate, args);
-	    	}catch(InvocationTargetException e){
-	    		throw e.getCause();
+	    	Map<Method, Dispatch> dispatchTable = DISPATCH_TABLES.get(method.getDeclaringClass());
+	    	Dispatch dispatch = dispatchTable.get(method);
+	    	if(dispatch ==null){
+	    		dispatch = dispatchTable.computeIfAbsent(method, CachedDataStoreInvocationHandler::computeDispatch);
+	    	}
+	    	switch(dispatch){
+	    		case GET : return cachedDataStore.get((String) args[0]);
+	    		case CONTAINS : return cachedDataStore.contains((String) args[0]);
+	    		case CLOSE : cachedDataStore.close(); return null;
+	    		case CLEAR_CACHE : cachedDataStore.clearCache(); return null;
+	    		case CACHE_STATS : return cachedDataStore.getCacheStats();
+	    		case IS_CLOSED : return cachedDataStore.isClosed();
+	    		case NUMBER_OF_RECORDS : return cachedDataStore.getNumberOfRecords();
+	    		case ID_ITERATOR : return cachedDataStore.idIterator();
+	    		case ITERATOR : return cachedDataStore.iterator();
+	    		case ENTRY_ITERATOR : return cachedDataStore.entryIterator();
+	    		default:
+	    			try{
+	    				return method.invoke(delegate, args);
+	    			}catch(InvocationTargetException e){
+	    	    		throw e.getCause();
+	    	    	}
 	    	}
 	    }   
 	    
@@ -785,5 +955,13 @@ public final class DataStoreUtil {
          * closing the datastore.
          */
         void clearCache();
+        /**
+         * Get a snapshot of the current 
+         * hit, miss and eviction counts of this cache.
+         * @return a new {@link DataStoreCacheStats}; will never be null.
+         * 
+         * @since 5.3
+         */
+        DataStoreCacheStats getCacheStats();
     }
 }
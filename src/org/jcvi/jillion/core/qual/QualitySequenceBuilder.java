@@ -298,7 +298,7 @@ public final class QualitySequenceBuilder implements SequenceBuilder<PhredQualit
 	public QualitySequence build() {
 		byte[] array = builder.toArray();
 		if(!turnOffDataCompression){
-			byte[] runLengthEncoded = RunLengthEncodedQualityCodec.INSTANCE.encode(array);
+			byte[] runLengthEncoded = RunLengthEncodedQualityCodec.INSTANCE.encodeWithCheckpoints(array);
 			if(runLengthEncoded.length < builder.getCurrentLength()){
 				return new RunLengthEncodedQualitySequence(runLengthEncoded);
 			}
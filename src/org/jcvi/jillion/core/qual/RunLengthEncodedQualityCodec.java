@@ -43,6 +43,11 @@ import org.jcvi.jillion.internal.core.util.RunLength;
  * Encodes {@link PhredQuality} values in a run-length encoding.
  * Since reads often have clusters of basecalls with the same quality value
  * encoding them in a run-length format could have significant memory savings.
+ * <p>
+ * Long encodings can optionally include a sparse checkpoint table
+ * of the decoded offset and byte position of every {@code N}th encoded run
+ * so random access only has to walk at most {@code N} runs
+ * instead of every run from the beginning.
  * @author dkatzel
  *
  */
@@ -51,6 +56,20 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
 	 * Singleton instance.
 	 */
     public static final RunLengthEncodedQualityCodec INSTANCE = new RunLengthEncodedQualityCodec(Byte.MIN_VALUE);
+    /**
+     * The default number of encoded runs between checkpoints
+     * used by {@link #encodeWithCheckpoints(byte[])}.
+     */
+    static final int DEFAULT_RUNS_PER_CHECKPOINT = 32;
+    /**
+     * Bit set in the size strategy byte of the header 
+     * if the encoding has a checkpoint table.
+     */
+    private static final int CHECKPOINT_FLAG = 0x80;
+    /**
+     * Each checkpoint is an int decoded offset and an int byte position.
+     */
+    private static final int CHECKPOINT_SIZE = 8;
     
     private final byte guard;
 
@@ -63,7 +82,7 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
     	  ByteBuffer buf = ByteBuffer.wrap(encodedData);
           int size = buf.getInt();
           byte guard = buf.get();
-          ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
+          ValueSizeStrategy valueSizeStrategy = readSizeStrategyAndSkipCheckpoints(buf);
           return new RunLengthIterator(buf, guard,valueSizeStrategy, size);
     }
     public Iterator<PhredQuality> iterator(byte[] encodedData, Range r){
@@ -74,12 +93,66 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         			String.format("can not iterate over %s when sequence is only %d long", r, size));
         }
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
-        return new RunLengthIterator(buf, guard,valueSizeStrategy, r.getEnd()+1, r.getBegin());
+        int sizeStrategyCode = buf.get() & 0xFF;
+        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[sizeStrategyCode & ~CHECKPOINT_FLAG];
+        int runStartOffset = seekToClosestCheckpoint(buf, sizeStrategyCode, r.getBegin());
+        return new RunLengthIterator(buf, guard,valueSizeStrategy, r.getEnd()+1, r.getBegin(), runStartOffset);
   }
+    /**
+     * Read the size strategy byte of the header
+     * and if there is a checkpoint table, skip over it
+     * so the buffer is positioned at the first run.
+     * @param buf the buffer positioned at the size strategy byte.
+     * @return the {@link ValueSizeStrategy} to use.
+     */
+    private static ValueSizeStrategy readSizeStrategyAndSkipCheckpoints(ByteBuffer buf){
+    	int sizeStrategyCode = buf.get() & 0xFF;
+    	if((sizeStrategyCode & CHECKPOINT_FLAG) !=0){
+    		int numberOfCheckpoints = buf.getInt();
+    		buf.position(buf.position() + numberOfCheckpoints * CHECKPOINT_SIZE);
+    	}
+    	return ValueSizeStrategy.values()[sizeStrategyCode & ~CHECKPOINT_FLAG];
+    }
+    /**
+     * Position the buffer at the start of the last run that begins
+     * at or before the given decoded offset using the checkpoint table
+     * if there is one; otherwise position the buffer at the first run.
+     * @param buf the buffer positioned just after the size strategy byte.
+     * @param sizeStrategyCode the size strategy byte from the header.
+     * @param index the decoded offset to seek to.
+     * @return the decoded offset of the start of the run
+     * the buffer is now positioned at.
+     */
+    private static int seekToClosestCheckpoint(ByteBuffer buf, int sizeStrategyCode, long index){
+    	if((sizeStrategyCode & CHECKPOINT_FLAG) ==0){
+    		return 0;
+    	}
+    	int numberOfCheckpoints = buf.getInt();
+    	int tableStart = buf.position();
+    	//binary search for the last checkpoint <= index
+    	int low = 0;
+    	int high = numberOfCheckpoints -1;
+    	int found = -1;
+    	while(low <= high){
+    		int mid = (low + high) >>> 1;
+    		if(buf.getInt(tableStart + mid * CHECKPOINT_SIZE) <= index){
+    			found = mid;
+    			low = mid +1;
+    		}else{
+    			high = mid -1;
+    		}
+    	}
+    	if(found <0){
+    		buf.position(tableStart + numberOfCheckpoints * CHECKPOINT_SIZE);
+    		return 0;
+    	}
+    	int checkpointOffset = tableStart + found * CHECKPOINT_SIZE;
+    	buf.position(buf.getInt(checkpointOffset +4));
+    	return buf.getInt(checkpointOffset);
+    }
     
-    private PhredQuality get(ByteBuffer buf, byte guard,  ValueSizeStrategy valueSizeStrategy, long index){
-    	int currentOffset=0;
+    private PhredQuality get(ByteBuffer buf, byte guard,  ValueSizeStrategy valueSizeStrategy, long index, int runStartOffset){
+    	int currentOffset=runStartOffset;
 		while(buf.hasRemaining()){
             byte runLengthCode = buf.get(); 
             byte currentValue;
@@ -119,8 +192,10 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         	throw new IndexOutOfBoundsException("can not have index beyond length");
         }
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
-        return get(buf,guard,valueSizeStrategy, index);
+        int sizeStrategyCode = buf.get() & 0xFF;
+        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[sizeStrategyCode & ~CHECKPOINT_FLAG];
+        int runStartOffset = seekToClosestCheckpoint(buf, sizeStrategyCode, index);
+        return get(buf,guard,valueSizeStrategy, index, runStartOffset);
     }
 
     @Override
@@ -143,24 +218,87 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         List<RunLength<PhredQuality>> runLengthList = runLengthEncode(qualityIterable);
         return createEncodedByteArray(numberOfQualities, runLengthList);
     }
+    /**
+     * Encode the given quality values with a checkpoint table
+     * every {@value #DEFAULT_RUNS_PER_CHECKPOINT} runs.
+     * @param qualities the quality values to encode.
+     * @return the encoded bytes; sequences with too few runs
+     * to need checkpoints are encoded the same as {@link #encode(byte[])}.
+     */
+    public byte[] encodeWithCheckpoints(byte[] qualities){
+    	return encodeWithCheckpoints(qualities, DEFAULT_RUNS_PER_CHECKPOINT);
+    }
+    /**
+     * Encode the given quality values with a checkpoint table
+     * every {@code runsPerCheckpoint} runs.
+     * @param qualities the quality values to encode.
+     * @param runsPerCheckpoint the number of encoded runs between
+     * checkpoints; must be &ge; 1.
+     * @return the encoded bytes; sequences with too few runs
+     * to need checkpoints are encoded the same as {@link #encode(byte[])}.
+     * @throws IllegalArgumentException if runsPerCheckpoint &lt; 1.
+     */
+    public byte[] encodeWithCheckpoints(byte[] qualities, int runsPerCheckpoint){
+    	if(runsPerCheckpoint <1){
+    		throw new IllegalArgumentException("runs per checkpoint must be >= 1");
+    	}
+    	List<RunLength<PhredQuality>> runLengthList = runLengthEncode(qualities);
+    	return createEncodedByteArray(qualities.length, runLengthList, runsPerCheckpoint);
+    }
+    
 	private byte[] createEncodedByteArray(int numberOfQualities,
 			List<RunLength<PhredQuality>> runLengthList) {
+		return createEncodedByteArray(numberOfQualities, runLengthList, Integer.MAX_VALUE);
+	}
+	
+	private byte[] createEncodedByteArray(int numberOfQualities,
+			List<RunLength<PhredQuality>> runLengthList, int runsPerCheckpoint) {
 		Metrics metrics = new Metrics(runLengthList);
 		ValueSizeStrategy sizeStrategy = metrics.getSizeStrategy();
-        ByteBuffer buf = ByteBuffer.allocate(metrics.computeEncodingSize());
+		//first run never needs a checkpoint
+		int numberOfCheckpoints = (metrics.getNumberOfEncodedRuns() -1) / runsPerCheckpoint;
+		
+		int encodingSize = metrics.computeEncodingSize();
+		if(numberOfCheckpoints >0){
+			encodingSize += 4 + numberOfCheckpoints * CHECKPOINT_SIZE;
+		}
+        ByteBuffer buf = ByteBuffer.allocate(encodingSize);
         buf.putInt(numberOfQualities);
         buf.put(guard);
-        buf.put((byte)sizeStrategy.ordinal());
+        int checkpointPosition =-1;
+        if(numberOfCheckpoints >0){
+        	buf.put((byte)(sizeStrategy.ordinal() | CHECKPOINT_FLAG));
+        	buf.putInt(numberOfCheckpoints);
+        	checkpointPosition = buf.position();
+        	buf.position(checkpointPosition + numberOfCheckpoints * CHECKPOINT_SIZE);
+        }else{
+        	buf.put((byte)sizeStrategy.ordinal());
+        }
+        int encodedRunCount=0;
+        int decodedOffset=0;
+        int checkpointCountdown = runsPerCheckpoint;
         for(RunLength<PhredQuality> runLength : runLengthList){
             if(runLength.getValue().getQualityScore() == guard){
                 
                 for(int repeatCount = 0; repeatCount<runLength.getLength(); repeatCount++){
+                	if(checkpointPosition >=0 && encodedRunCount>0 && --checkpointCountdown ==0){
+                		checkpointPosition = putCheckpoint(buf, checkpointPosition, decodedOffset);
+                		checkpointCountdown = runsPerCheckpoint;
+                	}
+                	encodedRunCount++;
+                	decodedOffset++;
                     buf.put(guard);
                     sizeStrategy.put(buf, 0);
                 }
                
             }
             else{
+            	if(checkpointPosition >=0 && encodedRunCount>0 && --checkpointCountdown ==0){
+            		checkpointPosition = putCheckpoint(buf, checkpointPosition, decodedOffset);
+            		checkpointCountdown = runsPerCheckpoint;
+            	}
+            	encodedRunCount++;
+            	decodedOffset += runLength.getLength();
                 if(runLength.getLength() ==1){
                     buf.put(runLength.getValue().getQualityScore());
                 }
@@ -173,6 +311,16 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         }
         return buf.array();
 	}
+	/**
+	 * Write a checkpoint for the run that is about to be written
+	 * at the current buffer position.
+	 * @return the position of the next checkpoint entry in the table.
+	 */
+	private static int putCheckpoint(ByteBuffer buf, int checkpointPosition, int decodedOffset){
+		buf.putInt(checkpointPosition, decodedOffset);
+		buf.putInt(checkpointPosition +4, buf.position());
+		return checkpointPosition + CHECKPOINT_SIZE;
+	}
 
     
     @Override
@@ -256,7 +404,7 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         }
        
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
+        ValueSizeStrategy valueSizeStrategy = readSizeStrategyAndSkipCheckpoints(buf);
 		
         long sum=0;
         
@@ -300,7 +448,7 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         }
        
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
+        ValueSizeStrategy valueSizeStrategy = readSizeStrategyAndSkipCheckpoints(buf);
 		
         byte min = PhredQuality.MAX_VALUE;
         
@@ -346,7 +494,7 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         }
        
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
+        ValueSizeStrategy valueSizeStrategy = readSizeStrategyAndSkipCheckpoints(buf);
 		
         byte max = PhredQuality.MIN_VALUE;
         
@@ -392,7 +540,7 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
         }
         byte[] result = new byte[length];
         byte guard = buf.get();
-        ValueSizeStrategy valueSizeStrategy = ValueSizeStrategy.values()[buf.get()];
+        ValueSizeStrategy valueSizeStrategy = readSizeStrategyAndSkipCheckpoints(buf);
         int currentOffset=0;
         
         
@@ -433,13 +581,20 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
 		private final ValueSizeStrategy valueSizeStrategy;
 		
 		RunLengthIterator(ByteBuffer buf, byte guard,ValueSizeStrategy valueSizeStrategy, long length){
-			this(buf,guard,valueSizeStrategy, length,0L);
+			this(buf,guard,valueSizeStrategy, length,0L, 0);
 		}
-		RunLengthIterator(ByteBuffer buf, byte guard, ValueSizeStrategy valueSizeStrategy,long length, long startOffset){
+		/**
+		 * 
+		 * @param buf the buffer positioned at the start of a run.
+		 * @param startOffset the decoded offset to start iterating from.
+		 * @param runStartOffset the decoded offset of the run the buffer is positioned at.
+		 */
+		RunLengthIterator(ByteBuffer buf, byte guard, ValueSizeStrategy valueSizeStrategy,long length, long startOffset, int runStartOffset){
 			this.buf = buf;
 			this.guard =guard;
 			this.valueSizeStrategy = valueSizeStrategy;
 			currentOffset=startOffset;
+			currentRunEndOffset = runStartOffset;
 			this.length = length;
 			populateCurrentRun();
 			while(currentOffset>=currentRunEndOffset){
@@ -538,6 +693,14 @@ final class RunLengthEncodedQualityCodec implements QualitySymbolCodec{
 		public final ValueSizeStrategy getSizeStrategy() {
 			return sizeStrategy;
 		}
+		/**
+		 * Get the number of runs in the encoding;
+		 * each guard value is its own run.
+		 * @return the number of encoded runs.
+		 */
+		public int getNumberOfEncodedRuns(){
+			return numGuards + singletons + nonSingletons;
+		}
     	
     	
     }
@@ -21,7 +21,6 @@
 package org.jcvi.jillion.core.residue;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Spliterators;
 import java.util.function.Consumer;
 
@@ -29,6 +28,12 @@ import org.jcvi.jillion.core.Range;
 /**
  * Internal class that uses a {@link java.util.Spliterator} to make
  * {@link java.util.stream.Stream}s of {@link Kmer}s.
+ * The last k residues are kept in a circular window
+ * so only a single builder is created per kmer.
+ * For nucleotide kmer counting see 
+ * {@link org.jcvi.jillion.core.residue.nt.NucleotideSequence#packedKmers(int)}
+ * which does not allocate any objects per kmer.
+ * 
  * @author dkatzel
  *
  * @param <R>
@@ -38,55 +43,50 @@ import org.jcvi.jillion.core.Range;
  * @since 5.3
  */
 class KmerSpliterator<R extends Residue, S extends ResidueSequence<R, S, B>, B extends ResidueSequenceBuilder<R, S>> extends Spliterators.AbstractSpliterator<Kmer<S>> {
-    private LinkedList<ResidueSequenceBuilder<R, S>> builders = new LinkedList<>();
+    private final Object[] window;
+    private int windowStart;
+    private int windowSize;
     private long counter;
     private final Iterator<R> iter;
     
     private final int k;
     private final S sequence;
     public KmerSpliterator(int k, S residueSequence, Range range){
-        super(residueSequence.getLength() - k +1, 0);
+        super(Math.max(0, range.getLength() - k +1), 0);
+        if(k < 1){
+            throw new IllegalArgumentException("k must be >= 1");
+        }
         this.k = k;
         counter=range.getBegin();
         this.sequence = residueSequence;
         iter = residueSequence.iterator(range);
+        window = new Object[k];
         
-        if(residueSequence.getLength() >=k){
-            for(int i=0; i< k; i++){
-                addNextBase();
-            }
+        while(windowSize < k-1 && iter.hasNext()){
+            window[windowSize++] = iter.next();
         }
-        
     }
     
-   
-        
-        
-        private void addNextBase(){
-            if(iter.hasNext()){
-                R n = iter.next();
-               
-                builders.addLast(sequence.newEmptyBuilder(k).turnOffDataCompression(true));
-                
-                builders.forEach( b-> b.append(n));
-            }else if(!builders.isEmpty()){
-                //no more left remove all except the first if it's long enough
-                ResidueSequenceBuilder<R, S> head = builders.pop();
-                builders.clear();
-                if(head.getLength() == k){
-                    builders.add(head);
-                }
-                
-            }
+    @Override
+    public boolean tryAdvance(Consumer<? super Kmer<S>> action) {
+        if(!iter.hasNext()){
+            return false;
+        }
+        R next = iter.next();
+        if(windowSize < k){
+            window[windowSize++] = next;
+        }else{
+            window[windowStart] = next;
+            windowStart = (windowStart +1) % k;
         }
-        @Override
-        public boolean tryAdvance(Consumer<? super Kmer<S>> action) {
-            if(builders.isEmpty()){
-                return false;
-            }
-            action.accept( new Kmer<>(counter++, builders.pop().build()));
-            addNextBase();
-            return !builders.isEmpty();
+        ResidueSequenceBuilder<R, S> builder = sequence.newEmptyBuilder(k).turnOffDataCompression(true);
+        for(int i=0; i< k; i++){
+            @SuppressWarnings("unchecked")
+            R r = (R) window[(windowStart + i) % k];
+            builder.append(r);
         }
+        action.accept( new Kmer<>(counter++, builder.build()));
+        return true;
+    }
     
 }
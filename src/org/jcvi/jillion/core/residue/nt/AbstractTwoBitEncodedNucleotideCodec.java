@@ -23,6 +23,9 @@ package org.jcvi.jillion.core.residue.nt;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.core.io.ValueSizeStrategy;
+
 /**
  * Encodes each basecall into two bytes.
  * The sentinel value can then be used to store
@@ -100,6 +103,69 @@ abstract class AbstractTwoBitEncodedNucleotideCodec extends AbstractNucleotideCo
 	protected int getNucleotidesPerGroup() {
 		return 4;
 	}
+	/**
+	 * Create a {@link PackedKmerSpliterator} that reads the 2-bit
+	 * values directly out of the encoded bytes
+	 * without copying or decoding them into {@link Nucleotide}s.
+	 * 
+	 * @param encodedData the encoded sequence.
+	 * @param k the kmer size.
+	 * @param range the range to use; or null for the whole sequence.
+	 * @param canonical should canonical kmers be returned.
+	 * @return a new PackedKmerSpliterator.
+	 */
+	PackedKmerSpliterator packedKmerSpliterator(byte[] encodedData, int k, Range range, boolean canonical){
+		ByteBuffer buf = ByteBuffer.wrap(encodedData);
+		ValueSizeStrategy offsetStrategy = ValueSizeStrategy.values()[buf.get()];
+		int sequenceLength = offsetStrategy.getNext(buf);
+		ValueSizeStrategy sentinelStrategy = ValueSizeStrategy.values()[buf.get()];
+		int[] sentinels;
+		if(sentinelStrategy == ValueSizeStrategy.NONE){
+			sentinels = new int[0];
+		}else{
+			sentinels = new int[sentinelStrategy.getNext(buf)];
+			for(int i=0; i< sentinels.length; i++){
+				sentinels[i] = offsetStrategy.getNext(buf);
+			}
+		}
+		int start, end;
+		if(range ==null){
+			start=0;
+			end = sequenceLength;
+		}else{
+			if(range.getBegin()<0 || range.getEnd()>=sequenceLength){
+				throw new IndexOutOfBoundsException("range "+range +" is out of range of sequence which is only "+ new Range.Builder(sequenceLength).build());
+			}
+			start = (int) range.getBegin();
+			end = (int) range.getEnd() +1;
+		}
+		int firstSentinel=0;
+		while(firstSentinel < sentinels.length && sentinels[firstSentinel] < start){
+			firstSentinel++;
+		}
+		int dataStart = buf.position();
+		int initialSentinelIndex = firstSentinel;
+		return new PackedKmerSpliterator(end - start - k +1, k, canonical) {
+			private int offset = start;
+			private int sentinelIndex = initialSentinelIndex;
+			private int nextSentinel = sentinelIndex < sentinels.length ? sentinels[sentinelIndex] : -1;
+			
+			@Override
+			protected int nextCode() {
+				if(offset >=end){
+					return END;
+				}
+				int current = offset++;
+				if(current == nextSentinel){
+					sentinelIndex++;
+					nextSentinel = sentinelIndex < sentinels.length ? sentinels[sentinelIndex] : -1;
+					return INVALID;
+				}
+				//base i is stored in bits (i%4)*2 of byte i/4
+				return (encodedData[dataStart + (current >>>2)] >>> ((current & 0x3) <<1)) & 0x3;
+			}
+		};
+	}
 
 	
 
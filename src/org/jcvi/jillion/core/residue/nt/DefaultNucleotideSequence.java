@@ -227,6 +227,23 @@ final class DefaultNucleotideSequence extends AbstractResidueSequence<Nucleotide
     public int getNumberOfGaps() {
     	return codec.getNumberOfGaps(data);
     }
+	/**
+	 * Create a {@link java.util.Spliterator.OfLong} of packed kmers
+	 * that reads our encoded data directly if our codec supports it.
+	 * 
+	 * @param k the kmer size.
+	 * @param range the range to use; or null for the whole sequence.
+	 * @param canonical should canonical kmers be returned.
+	 * @return a new PackedKmerSpliterator or {@code null} if 
+	 * our codec can not read packed bases directly.
+	 */
+	PackedKmerSpliterator packedKmerSpliterator(int k, Range range, boolean canonical){
+		if(codec instanceof AbstractTwoBitEncodedNucleotideCodec){
+			return ((AbstractTwoBitEncodedNucleotideCodec)codec).packedKmerSpliterator(data, k, range, canonical);
+		}
+		return null;
+	}
+	
 	@Override
 	public Iterator<Nucleotide> iterator() {
 		return iteratorWrapper(codec.iterator(data));
@@ -29,8 +29,10 @@ package org.jcvi.jillion.core.residue.nt;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.jcvi.jillion.core.Range;
@@ -256,6 +258,84 @@ public interface NucleotideSequence extends ResidueSequence<Nucleotide, Nucleoti
      */
     boolean isDna();
 
+    /**
+     * Create a new {@link LongStream} of all the k-mers in this sequence
+     * of the given size, each packed 2 bits per base into a {@code long}.
+     * Packed kmers are computed with a rolling hash so no objects are created
+     * per kmer which makes this much faster than {@link #kmers(int)}
+     * for counting kmers.  Kmers that would contain
+     * any base other than A,C,G, T or U (gaps, N's or other ambiguities) are skipped.
+     * 
+     * @param k the size of each kmer; must be between 1 and {@value PackedKmers#MAX_K}.
+     * 
+     * @return a new LongStream which will never be null but may be empty.
+     * 
+     * @throws IllegalArgumentException if k is not between 1 and {@value PackedKmers#MAX_K}.
+     * 
+     * @see PackedKmers
+     * @since 5.3
+     */
+    default LongStream packedKmers(int k){
+        return PackedKmers.stream(this, k, null, false);
+    }
+    /**
+     * Create a new {@link LongStream} of all the packed k-mers in the 
+     * given sub range of this sequence.
+     * 
+     * @param k the size of each kmer; must be between 1 and {@value PackedKmers#MAX_K}.
+     * @param range the sub range to use; can not be null or out of range of the sequence.
+     * 
+     * @return a new LongStream which will never be null but may be empty.
+     * 
+     * @throws IllegalArgumentException if k is not between 1 and {@value PackedKmers#MAX_K}.
+     * @throws IndexOutOfBoundsException if Range contains
+     * values outside of the possible sequence offsets.
+     * @throws NullPointerException if range is null.
+     * 
+     * @see #packedKmers(int)
+     * @since 5.3
+     */
+    default LongStream packedKmers(int k, Range range){
+        return PackedKmers.stream(this, k, Objects.requireNonNull(range), false);
+    }
+    /**
+     * Create a new {@link LongStream} of all the canonical packed k-mers in this sequence.
+     * The canonical kmer is the smaller of the packed kmer and its reverse complement
+     * so the same kmer on either strand will have the same value.
+     * 
+     * @param k the size of each kmer; must be between 1 and {@value PackedKmers#MAX_K}.
+     * 
+     * @return a new LongStream which will never be null but may be empty.
+     * 
+     * @throws IllegalArgumentException if k is not between 1 and {@value PackedKmers#MAX_K}.
+     * 
+     * @see #packedKmers(int)
+     * @see PackedKmers#canonical(long, int)
+     * @since 5.3
+     */
+    default LongStream canonicalPackedKmers(int k){
+        return PackedKmers.stream(this, k, null, true);
+    }
+    /**
+     * Create a new {@link LongStream} of all the canonical packed k-mers 
+     * in the given sub range of this sequence.
+     * 
+     * @param k the size of each kmer; must be between 1 and {@value PackedKmers#MAX_K}.
+     * @param range the sub range to use; can not be null or out of range of the sequence.
+     * 
+     * @return a new LongStream which will never be null but may be empty.
+     * 
+     * @throws IllegalArgumentException if k is not between 1 and {@value PackedKmers#MAX_K}.
+     * @throws IndexOutOfBoundsException if Range contains
+     * values outside of the possible sequence offsets.
+     * @throws NullPointerException if range is null.
+     * 
+     * @see #canonicalPackedKmers(int)
+     * @since 5.3
+     */
+    default LongStream canonicalPackedKmers(int k, Range range){
+        return PackedKmers.stream(this, k, Objects.requireNonNull(range), true);
+    }
     /**
      * Is this sequence RNA.
      * @return {@code true} if RNA, otherwise false.
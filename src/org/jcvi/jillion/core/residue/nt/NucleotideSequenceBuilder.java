@@ -333,6 +333,39 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     	}
         return append(new NewValues(sequence));
     }
+    /**
+     * Appends the given slice of ASCII encoded
+     * bases to the end
+     * of the builder's mutable sequence without
+     * first converting them into a String.
+     * Any whitespace or '\0' characters will be ignored.
+     *  This method is able to parse both
+     * '*' (consed) and '-' (TIGR) as gap characters. 
+     * 
+     * @param asciiSequence the array containing the ASCII bases to append.
+     * @param offset the offset into the array of the first base to append.
+     * @param length the number of bytes to append.
+     * 
+     * @return this.
+     * 
+     * @throws NullPointerException if asciiSequence is null.
+     * @throws ArrayIndexOutOfBoundsException if the offset and length
+     * are not inside the array.
+     * @throws IllegalArgumentException if any non-whitespace
+     * character in the slice can not be converted
+     * into a {@link Nucleotide}.
+     * 
+     * @since 5.3
+     */
+    public NucleotideSequenceBuilder append(byte[] asciiSequence, int offset, int length){
+    	if(asciiSequence ==null){
+    		throw new NullPointerException(NULL_SEQUENCE_ERROR_MSG);
+    	}
+    	if(offset <0 || length <0 || offset + length > asciiSequence.length){
+    		throw new ArrayIndexOutOfBoundsException("invalid offset " + offset + " and length " + length + " for array of length " + asciiSequence.length);
+    	}
+        return append(new NewValues(asciiSequence, offset, length));
+    }
     
     /**
      * Appends the given sequence to the end
@@ -1840,6 +1873,22 @@ public final class NucleotideSequenceBuilder implements ResidueSequenceBuilder<N
     		}
     		
     	}
+    	public NewValues(byte[] asciiSequence, int start, int length){
+    		nOffsets = new GrowableIntArray(12);
+			gapOffsets = new GrowableIntArray(12);
+			data = new GrowableByteArray(length);
+			
+    		int offset=0;
+    		int end = start + length;
+    		for(int i=start; i<end; i++){
+				Nucleotide n = Nucleotide.parseOrNull((char)(asciiSequence[i] & 0xFF));
+				if(n !=null){
+    				handle(n, offset);
+                	offset++;
+    			}
+    		}
+    		
+    	}
     	
     	
     	/**
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.util.Iterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+/**
+ * A {@link java.util.Spliterator.OfLong} that emits rolling 2-bit packed
+ * k-mers.  Each new base is shifted into the current k-mer
+ * (and its reverse complement) so each position is O(1) and
+ * nothing is allocated per position.
+ * Any base that isn't A,C,G or T (or U) resets the k-mer
+ * so no k-mers containing gaps or ambiguities are emitted.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+abstract class PackedKmerSpliterator extends Spliterators.AbstractLongSpliterator{
+	/**
+	 * Value returned by {@link #nextCode()} when there are no more bases.
+	 */
+	static final int END = -2;
+	/**
+	 * Value returned by {@link #nextCode()} when the next base
+	 * can not be packed into 2 bits.
+	 */
+	static final int INVALID = -1;
+	
+	private final int k;
+	private final long mask;
+	private final int reverseComplementShift;
+	private final boolean canonical;
+	
+	private long kmer;
+	private long reverseComplement;
+	private int numberOfValidBases;
+	
+	PackedKmerSpliterator(long estimatedSize, int k, boolean canonical){
+		super(Math.max(0, estimatedSize), ORDERED);
+		this.k = k;
+		this.canonical = canonical;
+		this.mask = PackedKmers.mask(k);
+		this.reverseComplementShift = 2 * (k-1);
+	}
+	/**
+	 * Get the 2-bit code of the next base.
+	 * @return the code (0-3), or {@link #INVALID} if the base can't be packed
+	 * or {@link #END} if there are no more bases.
+	 */
+	protected abstract int nextCode();
+	
+	@Override
+	public boolean tryAdvance(LongConsumer action) {
+		int code;
+		while((code = nextCode()) != END){
+			if(shiftIn(code)){
+				action.accept(current());
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public void forEachRemaining(LongConsumer action) {
+		int code;
+		while((code = nextCode()) != END){
+			if(shiftIn(code)){
+				action.accept(current());
+			}
+		}
+	}
+	/**
+	 * Shift the given code into the current kmer.
+	 * @param code the 2-bit code or {@link #INVALID}.
+	 * @return {@code true} if there is now a complete kmer.
+	 */
+	private boolean shiftIn(int code){
+		if(code == INVALID){
+			numberOfValidBases=0;
+			return false;
+		}
+		kmer = ((kmer << 2) | code) & mask;
+		reverseComplement = (reverseComplement >>> 2) | ((long)(3 - code) << reverseComplementShift);
+		if(numberOfValidBases < k){
+			numberOfValidBases++;
+		}
+		return numberOfValidBases ==k;
+	}
+	
+	private long current(){
+		if(canonical){
+			return Long.compareUnsigned(kmer, reverseComplement) <=0 ? kmer : reverseComplement;
+		}
+		return kmer;
+	}
+	
+	/**
+	 * Create a new {@link PackedKmerSpliterator} that 
+	 * gets its bases from an Iterator of {@link Nucleotide}s.
+	 * 
+	 * @param iter the {@link Iterator} of {@link Nucleotide}s to use.
+	 * @param length the number of bases in the iterator.
+	 * @param k the kmer size.
+	 * @param canonical should the canonical kmers be returned.
+	 * @return a new {@link PackedKmerSpliterator}.
+	 */
+	static PackedKmerSpliterator create(Iterator<Nucleotide> iter, long length, int k, boolean canonical){
+		return new PackedKmerSpliterator(length - k +1, k, canonical){
+
+			@Override
+			protected int nextCode() {
+				if(!iter.hasNext()){
+					return END;
+				}
+				return PackedKmers.toCode(iter.next());
+			}
+			
+		};
+	}
+}
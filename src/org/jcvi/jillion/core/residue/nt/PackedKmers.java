@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.jcvi.jillion.core.Range;
+/**
+ * Utility class for working with k-mers
+ * packed 2 bits per base into a single {@code long}
+ * as returned by {@link NucleotideSequence#packedKmers(int)}
+ * and {@link NucleotideSequence#canonicalPackedKmers(int)}.
+ * <p>
+ * Bases are encoded as A=0, C=1, G=2, T (or U)=3 with the first base
+ * of the k-mer in the most significant bits used, so 
+ * packed k-mers of the same size sort lexicographically 
+ * and the largest supported k is 32.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class PackedKmers {
+	/**
+	 * The largest kmer size that can be packed into a {@code long}.
+	 */
+	public static final int MAX_K = 32;
+	
+	private PackedKmers(){
+		//can not instantiate
+	}
+	/**
+	 * Pack the given sequence into a single {@code long}.
+	 * 
+	 * @param kmer the sequence to pack; can not be null, must have
+	 * a length between 1 and {@value #MAX_K} and only contain A,C,G,T or U.
+	 * 
+	 * @return the packed kmer.
+	 * 
+	 * @throws NullPointerException if kmer is null.
+	 * @throws IllegalArgumentException if the sequence is the wrong length 
+	 * or contains any other bases.
+	 */
+	public static long pack(NucleotideSequence kmer){
+		checkK((int) Math.min(Integer.MAX_VALUE, kmer.getLength()));
+		long packed=0;
+		Iterator<Nucleotide> iter = kmer.iterator();
+		while(iter.hasNext()){
+			Nucleotide n = iter.next();
+			int code = toCode(n);
+			if(code <0){
+				throw new IllegalArgumentException("can not pack base " + n);
+			}
+			packed = (packed << 2) | code;
+		}
+		return packed;
+	}
+	/**
+	 * Convert the given packed kmer back into a {@link NucleotideSequence}.
+	 * 
+	 * @param packedKmer the packed kmer.
+	 * @param k the size of the kmer.
+	 * 
+	 * @return a new {@link NucleotideSequence}; will never be null.
+	 * 
+	 * @throws IllegalArgumentException if k is not between 1 and {@value #MAX_K}.
+	 */
+	public static NucleotideSequence unpack(long packedKmer, int k){
+		checkK(k);
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder(k);
+		for(int shift = 2*(k-1); shift >=0; shift -=2){
+			builder.append(fromCode((int)((packedKmer >>> shift) & 0x3)));
+		}
+		return builder.build();
+	}
+	/**
+	 * Compute the reverse complement of the given packed kmer.
+	 * 
+	 * @param packedKmer the packed kmer.
+	 * @param k the size of the kmer.
+	 * 
+	 * @return the packed reverse complement.
+	 * 
+	 * @throws IllegalArgumentException if k is not between 1 and {@value #MAX_K}.
+	 */
+	public static long reverseComplement(long packedKmer, int k){
+		checkK(k);
+		long result=0;
+		long value = packedKmer;
+		for(int i=0; i<k; i++){
+			result = (result << 2) | (3 - (value & 0x3));
+			value >>>=2;
+		}
+		return result;
+	}
+	/**
+	 * Get the canonical form of the given packed kmer
+	 * which is the smaller (unsigned) of the kmer and its reverse complement.
+	 * 
+	 * @param packedKmer the packed kmer.
+	 * @param k the size of the kmer.
+	 * 
+	 * @return the canonical packed kmer.
+	 * 
+	 * @throws IllegalArgumentException if k is not between 1 and {@value #MAX_K}.
+	 */
+	public static long canonical(long packedKmer, int k){
+		long rc = reverseComplement(packedKmer, k);
+		return Long.compareUnsigned(packedKmer, rc) <=0 ? packedKmer : rc;
+	}
+	
+	static void checkK(int k){
+		if(k <1 || k > MAX_K){
+			throw new IllegalArgumentException("k must be between 1 and " + MAX_K + " : " + k);
+		}
+	}
+	
+	static long mask(int k){
+		return k == MAX_K ? -1L : (1L << (2*k)) -1;
+	}
+	
+	static int toCode(Nucleotide n){
+		switch(n){
+			case Adenine: return 0;
+			case Cytosine: return 1;
+			case Guanine: return 2;
+			case Thymine:
+			case Uracil: return 3;
+			default: return PackedKmerSpliterator.INVALID;
+		}
+	}
+	
+	private static Nucleotide fromCode(int code){
+		switch(code){
+			case 0: return Nucleotide.Adenine;
+			case 1: return Nucleotide.Cytosine;
+			case 2: return Nucleotide.Guanine;
+			default: return Nucleotide.Thymine;
+		}
+	}
+	/**
+	 * Create a LongStream of packed kmers of the given sequence 
+	 * using the fastest implementation available for that sequence.
+	 * 
+	 * @param seq the sequence.
+	 * @param k the kmer size.
+	 * @param range the range of the sequence to use; or null for the whole sequence.
+	 * @param canonical should canonical kmers be returned.
+	 * @return a new LongStream.
+	 */
+	static LongStream stream(NucleotideSequence seq, int k, Range range, boolean canonical){
+		checkK(k);
+		Spliterator.OfLong spliterator=null;
+		if(seq instanceof DefaultNucleotideSequence){
+			spliterator = ((DefaultNucleotideSequence) seq).packedKmerSpliterator(k, range, canonical);
+		}
+		if(spliterator ==null){
+			if(range ==null){
+				spliterator = PackedKmerSpliterator.create(seq.iterator(), seq.getLength(), k, canonical);
+			}else{
+				spliterator = PackedKmerSpliterator.create(seq.iterator(range), range.getLength(), k, canonical);
+			}
+		}
+		return StreamSupport.longStream(spliterator, false);
+	}
+}
@@ -64,9 +64,16 @@ public class PrimerDetector {
 																.ambiguityScore(2)
 																.build();
 */
+    private static final int MATCH_SCORE = 5;
+    /**
+     * The best score a column that isn't an exact match
+     * can have (an ambiguity).
+     */
+    private static final int AMBIGUITY_SCORE = 2;
+    
     private static final NucleotideSubstitutionMatrix MATRIX = new NucleotideSubstitutionMatrixBuilder(-14)
-								.setMatch(5)
-								.ambiguityScore(2)
+								.setMatch(MATCH_SCORE)
+								.ambiguityScore(AMBIGUITY_SCORE)
 								.build();
     /**
      * Create a new {@link PrimerDetector} with that will only find
@@ -111,78 +118,10 @@ public class PrimerDetector {
         while(iter.hasNext()){
         	NucleotideSequence primer = iter.next();
             if(primer.getLength()>=minLength){
-               
-            	NucleotidePairwiseSequenceAlignment forwardAlignment =PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(primer, sequence, MATRIX)
-																					.gapPenalty(gapOpenPenalty, gapExtendPenalty)
-																					.build();
-            	
-                final NucleotidePairwiseSequenceAlignment reverseAlignment;
-                if(alsoCheckReverseCompliment){
-                	NucleotideSequence reversePrimer = new NucleotideSequenceBuilder(primer)
-												.reverseComplement()
-												.build();
-					reverseAlignment =  PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(reversePrimer, sequence, MATRIX)
-																.gapPenalty(gapOpenPenalty, gapExtendPenalty)
-																.build();
-                }else{
-                    reverseAlignment = NullAlignment.INSTANCE;
-                }
-                if(maxNumMismatches ==null){
-                	boolean forwardValid = forwardAlignment.getPercentIdentity() > minPercentIdentity
-                					&& forwardAlignment.getAlignmentLength() >= minLength;
-					
-                	boolean reverseValid = reverseAlignment.getPercentIdentity() > minPercentIdentity
-        					&& reverseAlignment.getAlignmentLength() >= minLength;	
-        					
-      	           if(forwardValid || reverseValid){
-      	        	  final Direction direction;
-	                   final NucleotidePairwiseSequenceAlignment bestAlignment;
-		               if(forwardValid && !reverseValid){
-		            	   bestAlignment = forwardAlignment;
-	                   		direction = Direction.FORWARD;
-		               }else if(!forwardValid && reverseValid){
-		            	   bestAlignment = reverseAlignment;
-	                   	direction = Direction.REVERSE;
-		               }else{
-		            	   //forward AND reverse both valid
-		                    if(reverseAlignment.getScore() > forwardAlignment.getScore()){
-		                    	bestAlignment = reverseAlignment;
-		                    	direction = Direction.REVERSE;
-		                    }else{
-		                    	bestAlignment = forwardAlignment;
-		                    	direction = Direction.FORWARD;
-		                    }	                	
-		                }
-	               DirectedRange range = DirectedRange.create(
-                   		bestAlignment.getSubjectRange().asRange(), direction);
-                   ranges.add(range);
-      	           }
-                }else{
-                	int maxAllowedMismatches = maxNumMismatches;
-                	boolean forwardIsCandidate = forwardAlignment.getAlignmentLength() >= minLength && forwardAlignment.getNumberOfMismatches() <= maxAllowedMismatches;
-                	boolean reverseIsCandidate = reverseAlignment.getAlignmentLength() >= minLength && reverseAlignment.getNumberOfMismatches() <= maxAllowedMismatches;
-                	
-                	if(forwardIsCandidate && reverseIsCandidate){
-                		if(reverseAlignment.getScore() > forwardAlignment.getScore()){
-                			DirectedRange range = DirectedRange.create(
-	                    			reverseAlignment.getSubjectRange().asRange(), Direction.REVERSE);
-		                    ranges.add(range);
-                		}else{
-                			DirectedRange range = DirectedRange.create(
-	                    			forwardAlignment.getSubjectRange().asRange(), Direction.FORWARD);
-		                    ranges.add(range);
-                		}
-                	}else if(forwardIsCandidate){
-                		DirectedRange range = DirectedRange.create(
-                    			forwardAlignment.getSubjectRange().asRange(), Direction.FORWARD);
-	                    ranges.add(range);
-                	}else if(reverseIsCandidate){
-                		DirectedRange range = DirectedRange.create(
-                    			reverseAlignment.getSubjectRange().asRange(), Direction.REVERSE);
-	                    ranges.add(range);
-                	}
-	                   
-
+                NucleotideSequence reversePrimer = alsoCheckReverseCompliment ? reverseComplement(primer) : null;
+                DirectedRange range = detect(sequence, primer, reversePrimer, true, true);
+                if(range !=null){
+                    ranges.add(range);
                 }
             }
         }
@@ -194,6 +133,238 @@ public class PrimerDetector {
         }
     }
     
+    int getMinLength(){
+    	return minLength;
+    }
+    
+    boolean isAlsoCheckingReverseComplement(){
+    	return alsoCheckReverseCompliment;
+    }
+    /**
+     * Compute the length of the longest run of exact matches
+     * that every alignment of a primer of the given length
+     * must contain to be a hit by {@link #detect(NucleotideSequence, NucleotideSequenceDataStore)}.
+     * An alignment with M matches that is broken up by at most b
+     * mismatches or gaps must contain a run of at least ceil(M/(b+1)) matches;
+     * this finds the worst case M and b allowed by our thresholds.
+     * 
+     * @param primerLength the length of the primer.
+     * 
+     * @return the minimum exact match length which may be 0
+     * if there is no guarantee.
+     * 
+     * @since 5.3
+     */
+    int computeGuaranteedExactMatchLength(int primerLength){
+    	if(maxNumMismatches ==null){
+    		return computeGuaranteedExactMatchLengthByPercentIdentity(primerLength);
+    	}
+    	return computeGuaranteedExactMatchLengthByMismatches(primerLength);
+    }
+    
+    private int computeGuaranteedExactMatchLengthByPercentIdentity(int primerLength){
+    	int min = Integer.MAX_VALUE;
+    	//every match uses a primer base so M <= primerLength
+    	for(int alignmentLength = Math.max(1, minLength); ; alignmentLength++){
+    		//round down a little so floating point errors can only make this smaller
+    		int minMatches = Math.max(0, (int) Math.ceil(minPercentIdentity * alignmentLength - 1E-9));
+    		if(minMatches > primerLength){
+    			break;
+    		}
+    		int maxBreaks = alignmentLength - minMatches;
+    		min = Math.min(min, ceilDivide(minMatches, maxBreaks+1));
+    		if(min ==0){
+    			break;
+    		}
+    	}
+    	return min == Integer.MAX_VALUE ? primerLength : min;
+    }
+    
+    private int computeGuaranteedExactMatchLengthByMismatches(int primerLength){
+    	int maxMismatches = maxNumMismatches;
+    	int openPenalty = -gapOpenPenalty;
+    	int extendPenalty = -gapExtendPenalty;
+    	if(openPenalty <=0 || extendPenalty <=0){
+    		//can't bound the number of gaps
+    		return 0;
+    	}
+    	//a local alignment has a positive score
+    	//so the gaps can't cost more than the matches and ambiguities score
+    	int maxGapOpenings = (MATCH_SCORE * primerLength + AMBIGUITY_SCORE * maxMismatches -1)/openPenalty;
+    	int min = Integer.MAX_VALUE;
+    	for(int gapOpenings =0; gapOpenings <= maxGapOpenings; gapOpenings++){
+    		for(int mismatches =0; mismatches <= maxMismatches; mismatches++){
+    			for(int matches =0; matches <= primerLength; matches++){
+    				int maxGapColumns=0;
+    				if(gapOpenings >0){
+    					int remainingScore = MATCH_SCORE * matches + AMBIGUITY_SCORE * mismatches - 1 - gapOpenings * openPenalty;
+    					if(remainingScore <0){
+    						continue;
+    					}
+    					maxGapColumns = gapOpenings + remainingScore/extendPenalty;
+    				}
+    				if(matches + mismatches + maxGapColumns >= minLength){
+    					//fewest matches that can make a long enough alignment
+    					min = Math.min(min, ceilDivide(matches, mismatches + gapOpenings +1));
+    					break;
+    				}
+    			}
+    		}
+    	}
+    	return min == Integer.MAX_VALUE ? primerLength : min;
+    }
+    
+    private static int ceilDivide(int numerator, int denominator){
+    	return (numerator + denominator -1)/denominator;
+    }
+    
+    static NucleotideSequence reverseComplement(NucleotideSequence primer){
+        return new NucleotideSequenceBuilder(primer)
+						.reverseComplement()
+						.build();
+    }
+    /**
+     * Align a single primer (and optionally its reverse complement) 
+     * against the given sequence and decide if either is a hit.
+     * 
+     * @param sequence the sequence to search.
+     * @param primer the primer; must be at least minLength long.
+     * @param reversePrimer the reverse complement of the primer,
+     * or {@code null} if the reverse complement should not be checked.
+     * @param alignForward should the forward primer be aligned; if {@code false}
+     * then the forward primer is treated as not aligning at all.
+     * @param alignReverse should the reverse primer be aligned; if {@code false}
+     * then the reverse primer is treated as not aligning at all.
+     * 
+     * @return the {@link DirectedRange} of the hit or {@code null} if there is no hit.
+     * 
+     * @since 5.3
+     */
+    DirectedRange detect(NucleotideSequence sequence, NucleotideSequence primer, NucleotideSequence reversePrimer,
+            boolean alignForward, boolean alignReverse){
+        final NucleotidePairwiseSequenceAlignment forwardAlignment;
+        if(alignForward){
+            forwardAlignment =align(primer, sequence);
+        }else{
+            forwardAlignment = NullAlignment.INSTANCE;
+        }
+        final NucleotidePairwiseSequenceAlignment reverseAlignment;
+        if(alignReverse && reversePrimer !=null){
+			reverseAlignment =  align(reversePrimer, sequence);
+        }else{
+            reverseAlignment = NullAlignment.INSTANCE;
+        }
+        return selectHit(forwardAlignment, 0, reverseAlignment, 0);
+    }
+    
+    private NucleotidePairwiseSequenceAlignment align(NucleotideSequence primer, NucleotideSequence sequence){
+    	return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(primer, sequence, MATRIX)
+										.gapPenalty(gapOpenPenalty, gapExtendPenalty)
+										.build();
+    }
+    /**
+     * Align a primer against a window of a sequence using
+     * a banded local alignment with the same scoring
+     * as {@link #detect(NucleotideSequence, NucleotideSequenceDataStore)}.
+     * 
+     * @param primer the primer to align.
+     * @param window the part of the sequence to align against.
+     * @param bandWidth the number of extra diagonals to use in the band.
+     * 
+     * @return the {@link NucleotidePairwiseSequenceAlignment} whose
+     * subject range is relative to the window.
+     * 
+     * @since 5.3
+     */
+    NucleotidePairwiseSequenceAlignment alignBanded(NucleotideSequence primer, NucleotideSequence window, int bandWidth){
+    	return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(primer, window, MATRIX)
+										.gapPenalty(gapOpenPenalty, gapExtendPenalty)
+										.useBandedAlignment(bandWidth)
+										.build();
+    }
+    /**
+     * Compute the most gap columns that any alignment of a primer
+     * of the given length can have and still have a positive score.
+     * 
+     * @param primerLength the length of the primer.
+     * 
+     * @return the max number of gap columns or -1 if
+     * the gap penalties do not bound the number of gaps.
+     * 
+     * @since 5.3
+     */
+    int computeMaxGapColumns(int primerLength){
+    	int minGapColumnPenalty = Math.min(-gapOpenPenalty, -gapExtendPenalty);
+    	if(minGapColumnPenalty <=0){
+    		return -1;
+    	}
+    	//every column that isn't a gap scores at most a match
+    	//and there can't be more of those than the primer length
+    	return Math.max(0, MATCH_SCORE * primerLength -1)/minGapColumnPenalty;
+    }
+    /**
+     * Decide if either the forward or reverse primer alignment is a hit.
+     * 
+     * @param forwardAlignment the alignment of the forward primer; can not be null.
+     * @param forwardShift the amount to shift the subject range of the forward alignment.
+     * @param reverseAlignment the alignment of the reverse primer; can not be null.
+     * @param reverseShift the amount to shift the subject range of the reverse alignment.
+     * 
+     * @return the {@link DirectedRange} of the hit or {@code null} if there is no hit.
+     * 
+     * @since 5.3
+     */
+    DirectedRange selectHit(NucleotidePairwiseSequenceAlignment forwardAlignment, long forwardShift,
+    		NucleotidePairwiseSequenceAlignment reverseAlignment, long reverseShift){
+        if(maxNumMismatches ==null){
+        	boolean forwardValid = forwardAlignment.getPercentIdentity() > minPercentIdentity
+        					&& forwardAlignment.getAlignmentLength() >= minLength;
+					
+        	boolean reverseValid = reverseAlignment.getPercentIdentity() > minPercentIdentity
+        					&& reverseAlignment.getAlignmentLength() >= minLength;	
+        	
+        	if(forwardValid && !reverseValid){
+        		return DirectedRange.create(shift(forwardAlignment, forwardShift), Direction.FORWARD);
+        	}
+        	if(!forwardValid && reverseValid){
+        		return DirectedRange.create(shift(reverseAlignment, reverseShift), Direction.REVERSE);
+        	}
+        	if(forwardValid && reverseValid){
+        		//forward AND reverse both valid
+        		if(reverseAlignment.getScore() > forwardAlignment.getScore()){
+        			return DirectedRange.create(shift(reverseAlignment, reverseShift), Direction.REVERSE);
+        		}
+        		return DirectedRange.create(shift(forwardAlignment, forwardShift), Direction.FORWARD);
+        	}
+        }else{
+        	int maxAllowedMismatches = maxNumMismatches;
+        	boolean forwardIsCandidate = forwardAlignment.getAlignmentLength() >= minLength && forwardAlignment.getNumberOfMismatches() <= maxAllowedMismatches;
+        	boolean reverseIsCandidate = reverseAlignment.getAlignmentLength() >= minLength && reverseAlignment.getNumberOfMismatches() <= maxAllowedMismatches;
+        	
+        	if(forwardIsCandidate && reverseIsCandidate){
+        		if(reverseAlignment.getScore() > forwardAlignment.getScore()){
+        			return DirectedRange.create(shift(reverseAlignment, reverseShift), Direction.REVERSE);
+        		}
+        		return DirectedRange.create(shift(forwardAlignment, forwardShift), Direction.FORWARD);
+        	}
+        	if(forwardIsCandidate){
+        		return DirectedRange.create(shift(forwardAlignment, forwardShift), Direction.FORWARD);
+        	}
+        	if(reverseIsCandidate){
+        		return DirectedRange.create(shift(reverseAlignment, reverseShift), Direction.REVERSE);
+        	}
+        }
+        return null;
+    }
+    
+    private static Range shift(NucleotidePairwiseSequenceAlignment alignment, long shift){
+    	Range range = alignment.getSubjectRange().asRange();
+    	if(shift ==0){
+    		return range;
+    	}
+    	return new Range.Builder(range).shift(shift).build();
+    }
+    
     public List<PrimerHit> detect(NucleotideSequence sequence,
             NucleotideFastaDataStore primersDataStore) {
         List<PrimerHit> hits = new ArrayList<PrimerHit>();
@@ -329,7 +500,7 @@ public class PrimerDetector {
 	 * @author dkatzel
 	 *
 	 */
-    private enum  NullAlignment implements NucleotidePairwiseSequenceAlignment{
+    enum  NullAlignment implements NucleotidePairwiseSequenceAlignment{
 
     	INSTANCE
     	;
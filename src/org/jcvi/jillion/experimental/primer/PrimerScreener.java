@@ -0,0 +1,633 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.experimental.primer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.jcvi.jillion.align.pairwise.NucleotidePairwiseSequenceAlignment;
+import org.jcvi.jillion.core.DirectedRange;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceDataStore;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
+/**
+ * {@code PrimerScreener} finds the same primer hits
+ * as {@link PrimerDetector#detect(NucleotideSequence, NucleotideSequenceDataStore)}
+ * but is designed to screen a fixed set of primers against many sequences.
+ * <p>
+ * When the screener is built, all the k-mers (seeds) of each primer and its reverse complement
+ * are put into a hash table.  Each screened sequence is then scanned once
+ * to find which primers share a seed with it.  Each of those primers is only aligned
+ * against a window around the diagonals of its seed matches using a banded alignment
+ * with the same scoring and hit criteria as the {@link PrimerDetector}.  The window extends
+ * the primer length plus the most gap columns a positive scoring alignment can have
+ * on either side of the seed diagonals.
+ * </p>
+ * <p>
+ * Screening does not lose any hits: the seed length used for each primer is capped at
+ * the shortest run of exact matches that any alignment passing the {@link PrimerDetector}'s
+ * thresholds must contain so every such alignment lies completely inside one of the windows.
+ * Primers whose guaranteed exact run is too short to be a useful seed,
+ * or which contain ambiguous bases, are always aligned against the whole sequence.
+ * </p>
+ * <p>
+ * The {@link PrimerDetector} only looks at the best scoring alignment
+ * over the whole sequence.  If that alignment doesn't pass the thresholds
+ * but a lower scoring alignment inside a window does, the screener
+ * will report a hit that the detector does not.  Use {@link Builder#alignWholeSequence(boolean)}
+ * if the results must always be identical to the detector.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class PrimerScreener {
+	/**
+	 * Seeds shorter than this will be found in
+	 * nearly every sequence so it isn't worth looking them up.
+	 */
+	private static final int MIN_SEED_LENGTH = 4;
+	/**
+	 * Longest seed that can be packed 2 bits per base into a long.
+	 */
+	private static final int MAX_SEED_LENGTH = 31;
+	
+	private static final int DEFAULT_SEED_LENGTH = 12;
+	
+	private static final int BATCH_SIZE = 256;
+	
+	private final PrimerDetector detector;
+	private final NucleotideSequence[] primers;
+	private final NucleotideSequence[] reversePrimers;
+	private final boolean[] alwaysAlign;
+	/**
+	 * The number of bases on either side of
+	 * the seed diagonals to include in the alignment window
+	 * for each primer.
+	 */
+	private final int[] windowPadding;
+	private final boolean alignWholeSequence;
+	private final SeedTable[] seedTables;
+	private final int numberOfThreads;
+	
+	private PrimerScreener(Builder builder, List<NucleotideSequence> primerList) {
+		this.detector = builder.detector;
+		this.numberOfThreads = builder.numberOfThreads;
+		this.alignWholeSequence = builder.alignWholeSequence;
+		
+		int numberOfPrimers = primerList.size();
+		primers = primerList.toArray(new NucleotideSequence[numberOfPrimers]);
+		reversePrimers = new NucleotideSequence[numberOfPrimers];
+		alwaysAlign = new boolean[numberOfPrimers];
+		windowPadding = new int[numberOfPrimers];
+		//group the primers by seed length so each sequence is only scanned once per seed length
+		Map<Integer, SeedTable> tables = new TreeMap<>();
+		for(int i=0; i< numberOfPrimers; i++){
+			NucleotideSequence primer = primers[i];
+			if(detector.isAlsoCheckingReverseComplement()){
+				reversePrimers[i] = PrimerDetector.reverseComplement(primer);
+			}
+			int seedLength = Math.min(builder.seedLength, 
+								detector.computeGuaranteedExactMatchLength((int) primer.getLength()));
+			byte[] forwardCodes = encodeIfUnambiguous(primer);
+			int maxGapColumns = forwardCodes ==null ? -1 : detector.computeMaxGapColumns(forwardCodes.length);
+			if(seedLength < MIN_SEED_LENGTH || maxGapColumns <0){
+				alwaysAlign[i] = true;
+				continue;
+			}
+			windowPadding[i] = forwardCodes.length + maxGapColumns;
+			SeedTable table = tables.computeIfAbsent(seedLength, SeedTable::new);
+			table.addSeeds(forwardCodes, 2*i);
+			if(reversePrimers[i] !=null){
+				table.addSeeds(encodeIfUnambiguous(reversePrimers[i]), 2*i +1);
+			}
+		}
+		seedTables = tables.values().toArray(new SeedTable[tables.size()]);
+		for(SeedTable table : seedTables){
+			table.index();
+		}
+	}
+	/**
+	 * Find all the primer hits in the given sequence.
+	 * This returns every hit found by
+	 * {@link PrimerDetector#detect(NucleotideSequence, NucleotideSequenceDataStore)}
+	 * using the primers this screener was built with in the same order;
+	 * see the class documentation for when this can also find hits the detector does not.
+	 * This method is thread safe.
+	 * 
+	 * @param sequence the sequence to screen; can not be null.
+	 * 
+	 * @return a List of {@link DirectedRange}s of each primer hit in primer order;
+	 * will never be null but may be empty.
+	 * 
+	 * @throws NullPointerException if sequence is null.
+	 */
+	public List<DirectedRange> detect(NucleotideSequence sequence){
+		if(sequence.getLength() ==0){
+			//obviously an empty sequence can't have any hits
+			return Collections.emptyList();
+		}
+		SeedHits seedHits = new SeedHits(primers.length *2);
+		if(seedTables.length >0){
+			byte[] codes = encode(sequence);
+			for(SeedTable table : seedTables){
+				table.markCandidates(codes, seedHits);
+			}
+		}
+		//the seed diagonals are in ungapped coordinates
+		boolean useWindows = !alignWholeSequence && sequence.getNumberOfGaps() ==0;
+		List<DirectedRange> ranges = new ArrayList<DirectedRange>();
+		for(int i=0; i< primers.length; i++){
+			boolean alignForward = alwaysAlign[i] || seedHits.hasHits(2*i);
+			boolean alignReverse = alwaysAlign[i] || seedHits.hasHits(2*i+1);
+			if(alignForward || alignReverse){
+				DirectedRange range;
+				if(useWindows && !alwaysAlign[i]){
+					range = detectInWindows(sequence, i, seedHits);
+				}else{
+					range = detector.detect(sequence, primers[i], reversePrimers[i], alignForward, alignReverse);
+				}
+				if(range !=null){
+					ranges.add(range);
+				}
+			}
+		}
+		return ranges;
+	}
+	
+	private DirectedRange detectInWindows(NucleotideSequence sequence, int primerIndex, SeedHits seedHits){
+		WindowedAlignment forward = alignWindows(sequence, primers[primerIndex], windowPadding[primerIndex], seedHits, 2*primerIndex);
+		WindowedAlignment reverse = reversePrimers[primerIndex] ==null 
+										? WindowedAlignment.NONE 
+										: alignWindows(sequence, reversePrimers[primerIndex], windowPadding[primerIndex], seedHits, 2*primerIndex+1);
+		return detector.selectHit(forward.alignment, forward.shift, reverse.alignment, reverse.shift);
+	}
+	/**
+	 * Align the primer against the windows around each group of 
+	 * seed diagonals and return the best scoring alignment.
+	 * Windows that overlap are merged into a single window.
+	 */
+	private WindowedAlignment alignWindows(NucleotideSequence sequence, NucleotideSequence primer, int padding, 
+			SeedHits seedHits, int value){
+		int numberOfDiagonals = seedHits.sortDiagonals(value);
+		if(numberOfDiagonals ==0){
+			return WindowedAlignment.NONE;
+		}
+		int[] diagonals = seedHits.diagonals[value];
+		int primerLength = (int) primer.getUngappedLength();
+		int maxGapColumns = padding - primerLength;
+		int lastOffset = (int) sequence.getLength() -1;
+		
+		WindowedAlignment best = WindowedAlignment.NONE;
+		int i=0;
+		while(i < numberOfDiagonals){
+			int lowestDiagonal = diagonals[i];
+			int highestDiagonal = lowestDiagonal;
+			while(i+1 < numberOfDiagonals && diagonals[i+1] - padding <= highestDiagonal + padding +1){
+				highestDiagonal = diagonals[++i];
+			}
+			i++;
+			int begin = Math.max(0, lowestDiagonal - padding);
+			int end = Math.min(lastOffset, highestDiagonal + padding);
+			//the band always covers the diagonals from the start and to the end 
+			//of the window so only widen it if the seed diagonals 
+			//plus any gaps fall outside of that
+			int windowLength = end - begin +1;
+			int lowestBandDiagonal = Math.min(0, windowLength - primerLength);
+			int highestBandDiagonal = Math.max(0, windowLength - primerLength);
+			int bandWidth = Math.max(0, Math.max(lowestBandDiagonal - (lowestDiagonal - maxGapColumns - begin),
+												(highestDiagonal + maxGapColumns - begin) - highestBandDiagonal));
+			
+			NucleotideSequence window = new NucleotideSequenceBuilder(sequence, Range.of(begin, end)).build();
+			NucleotidePairwiseSequenceAlignment alignment = detector.alignBanded(primer, window, bandWidth);
+			if(best == WindowedAlignment.NONE || alignment.getScore() > best.alignment.getScore()){
+				best = new WindowedAlignment(alignment, begin);
+			}
+		}
+		return best;
+	}
+	
+	private static final class WindowedAlignment{
+		static final WindowedAlignment NONE = new WindowedAlignment(PrimerDetector.NullAlignment.INSTANCE, 0);
+		
+		private final NucleotidePairwiseSequenceAlignment alignment;
+		private final long shift;
+		
+		WindowedAlignment(NucleotidePairwiseSequenceAlignment alignment, long shift) {
+			this.alignment = alignment;
+			this.shift = shift;
+		}
+	}
+	/**
+	 * The diagonals (sequence offset - primer offset)
+	 * of the seed matches for each primer and direction
+	 * found in a single sequence.
+	 */
+	private static final class SeedHits{
+		private final int[][] diagonals;
+		private final int[] counts;
+		
+		SeedHits(int numberOfValues){
+			diagonals = new int[numberOfValues][];
+			counts = new int[numberOfValues];
+		}
+		
+		boolean hasHits(int value){
+			return counts[value] >0;
+		}
+		
+		void add(int value, int diagonal){
+			int count = counts[value];
+			if(count ==0){
+				diagonals[value] = new int[4];
+			}else if(diagonals[value][count-1] == diagonal){
+				//consecutive seeds of the same exact run
+				return;
+			}else if(count == diagonals[value].length){
+				diagonals[value] = Arrays.copyOf(diagonals[value], count*2);
+			}
+			diagonals[value][count] = diagonal;
+			counts[value] = count+1;
+		}
+		
+		int sortDiagonals(int value){
+			int count = counts[value];
+			if(count >1){
+				Arrays.sort(diagonals[value], 0, count);
+			}
+			return count;
+		}
+	}
+	/**
+	 * Screen all the given items using this screener's number of threads.
+	 * The items are screened in batches but the consumer
+	 * is always called by the calling thread in the same order as the items
+	 * so it does not have to be thread safe.  Only a few batches are screened
+	 * ahead of the consumer so memory usage is bounded no matter how many items there are.
+	 * 
+	 * @param items the items to screen; can not be null.  The iterator
+	 * is only accessed by the calling thread.
+	 * @param toSequence function to get the {@link NucleotideSequence} of each item
+	 * (for example {@code FastqRecord::getNucleotideSequence}); can not be null.
+	 * @param consumer the consumer of each item and its hits as returned by
+	 * {@link #detect(NucleotideSequence)}; can not be null.
+	 * 
+	 * @param <T> the type of item to screen.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public <T> void detect(Iterator<? extends T> items, Function<? super T, NucleotideSequence> toSequence,
+			BiConsumer<? super T, List<DirectedRange>> consumer){
+		if(items ==null){
+			throw new NullPointerException("items can not be null");
+		}
+		if(toSequence ==null){
+			throw new NullPointerException("sequence function can not be null");
+		}
+		if(consumer ==null){
+			throw new NullPointerException("consumer can not be null");
+		}
+		if(numberOfThreads ==1){
+			while(items.hasNext()){
+				T item = items.next();
+				consumer.accept(item, detect(toSequence.apply(item)));
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory("jillion-primer-screener"));
+		Deque<ScreenedBatch<T>> inFlight = new ArrayDeque<>();
+		int maxBatchesInFlight = 2 * numberOfThreads;
+		try{
+			while(items.hasNext()){
+				List<T> batch = new ArrayList<>(BATCH_SIZE);
+				while(batch.size() < BATCH_SIZE && items.hasNext()){
+					batch.add(items.next());
+				}
+				inFlight.add(new ScreenedBatch<T>(batch, executor.submit(() -> {
+					List<List<DirectedRange>> results = new ArrayList<>(batch.size());
+					for(T item : batch){
+						results.add(detect(toSequence.apply(item)));
+					}
+					return results;
+				})));
+				if(inFlight.size() >= maxBatchesInFlight){
+					inFlight.poll().consume(consumer);
+				}
+			}
+			while(!inFlight.isEmpty()){
+				inFlight.poll().consume(consumer);
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+	}
+	
+	private static final class ScreenedBatch<T>{
+		private final List<T> items;
+		private final Future<List<List<DirectedRange>>> results;
+		
+		ScreenedBatch(List<T> items, Future<List<List<DirectedRange>>> results) {
+			this.items = items;
+			this.results = results;
+		}
+		
+		void consume(BiConsumer<? super T, List<DirectedRange>> consumer){
+			List<List<DirectedRange>> ranges;
+			try {
+				ranges = results.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while screening primers", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException){
+					throw (RuntimeException) cause;
+				}
+				if(cause instanceof Error){
+					throw (Error) cause;
+				}
+				throw new IllegalStateException("error screening primers", cause);
+			}
+			Iterator<List<DirectedRange>> rangeIter = ranges.iterator();
+			for(T item : items){
+				consumer.accept(item, rangeIter.next());
+			}
+		}
+	}
+	
+	private static byte encode(Nucleotide base){
+		switch(base){
+			case Adenine : return 0;
+			case Cytosine : return 1;
+			case Guanine : return 2;
+			case Thymine : return 3;
+			default : return -1;
+		}
+	}
+	/**
+	 * Encode the sequence as 2 bit values with 
+	 * any ambiguous bases encoded as -1.  Gaps are skipped
+	 * since the alignments ignore them too.
+	 */
+	private static byte[] encode(NucleotideSequence sequence){
+		byte[] codes = new byte[(int) sequence.getLength()];
+		int length=0;
+		Iterator<Nucleotide> iter = sequence.iterator();
+		while(iter.hasNext()){
+			Nucleotide base = iter.next();
+			if(base != Nucleotide.Gap){
+				codes[length++] = encode(base);
+			}
+		}
+		return length == codes.length ? codes : Arrays.copyOf(codes, length);
+	}
+	
+	private static byte[] encodeIfUnambiguous(NucleotideSequence primer){
+		byte[] codes = encode(primer);
+		for(byte code : codes){
+			if(code <0){
+				return null;
+			}
+		}
+		return codes;
+	}
+	/**
+	 * Open addressing hash table of 2 bit packed seeds
+	 * to the list of primer (and direction) values
+	 * that contain that seed.
+	 * 
+	 * @author dkatzel
+	 *
+	 */
+	private static final class SeedTable{
+		private final int seedLength;
+		private final long mask;
+		
+		private long[] seeds = new long[16];
+		private int[] values = new int[16];
+		/**
+		 * The offset into the primer where each seed starts.
+		 */
+		private int[] offsets = new int[16];
+		private int numberOfSeeds;
+		
+		private long[] keys;
+		/**
+		 * index+1 of the first entry for each key
+		 * or 0 if the slot is empty.
+		 */
+		private int[] heads;
+		private int[] next;
+		private int shift;
+		
+		SeedTable(int seedLength){
+			this.seedLength = seedLength;
+			this.mask = (1L << (2*seedLength)) -1;
+		}
+		
+		void addSeeds(byte[] codes, int value){
+			long seed=0;
+			for(int i=0; i< codes.length; i++){
+				seed = ((seed << 2) | codes[i]) & mask;
+				if(i >= seedLength -1){
+					if(numberOfSeeds == seeds.length){
+						seeds = Arrays.copyOf(seeds, numberOfSeeds*2);
+						values = Arrays.copyOf(values, numberOfSeeds*2);
+						offsets = Arrays.copyOf(offsets, numberOfSeeds*2);
+					}
+					seeds[numberOfSeeds] = seed;
+					offsets[numberOfSeeds] = i - seedLength +1;
+					values[numberOfSeeds++] = value;
+				}
+			}
+		}
+		
+		void index(){
+			int capacity = Integer.highestOneBit(Math.max(16, numberOfSeeds*2) -1) <<1;
+			shift = 64 - Integer.numberOfTrailingZeros(capacity);
+			keys = new long[capacity];
+			heads = new int[capacity];
+			next = new int[numberOfSeeds];
+			for(int i=0; i< numberOfSeeds; i++){
+				int slot = slot(seeds[i]);
+				next[i] = heads[slot];
+				keys[slot] = seeds[i];
+				heads[slot] = i+1;
+			}
+		}
+		
+		private int slot(long seed){
+			int slot = (int) ((seed * 0x9E3779B97F4A7C15L) >>> shift);
+			int slotMask = keys.length -1;
+			while(heads[slot] !=0 && keys[slot] != seed){
+				slot = (slot +1) & slotMask;
+			}
+			return slot;
+		}
+		
+		void markCandidates(byte[] codes, SeedHits seedHits){
+			long seed=0;
+			int validLength=0;
+			for(int i=0; i< codes.length; i++){
+				byte code = codes[i];
+				if(code <0){
+					//ambiguous bases are never an exact match
+					validLength=0;
+					continue;
+				}
+				seed = ((seed << 2) | code) & mask;
+				if(++validLength >= seedLength){
+					int seedStart = i - seedLength +1;
+					for(int entry = heads[slot(seed)]; entry !=0; entry = next[entry-1]){
+						seedHits.add(values[entry-1], seedStart - offsets[entry-1]);
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Builder to create a new {@link PrimerScreener}.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class Builder{
+		private final PrimerDetector detector;
+		private final NucleotideSequenceDataStore primers;
+		
+		private int seedLength = DEFAULT_SEED_LENGTH;
+		private int numberOfThreads = 1;
+		private boolean alignWholeSequence = false;
+		/**
+		 * Create a new Builder that will screen the given primers
+		 * using the alignment settings and thresholds of the given {@link PrimerDetector}.
+		 * 
+		 * @param detector the {@link PrimerDetector} to use; can not be null.
+		 * @param primers the primers to screen for; can not be null.
+		 * 
+		 * @throws NullPointerException if any parameter is null.
+		 */
+		public Builder(PrimerDetector detector, NucleotideSequenceDataStore primers){
+			if(detector ==null){
+				throw new NullPointerException("detector can not be null");
+			}
+			if(primers ==null){
+				throw new NullPointerException("primers can not be null");
+			}
+			this.detector = detector;
+			this.primers = primers;
+		}
+		/**
+		 * The longest seed length to use.  Longer seeds
+		 * find fewer false candidates but each primer's seed length is still capped
+		 * so no hits are missed.  Defaults to 12.
+		 * 
+		 * @param seedLength the max seed length; must be between 4 and 31 inclusive.
+		 * 
+		 * @return this.
+		 * 
+		 * @throws IllegalArgumentException if seedLength is out of range.
+		 */
+		public Builder seedLength(int seedLength){
+			if(seedLength < MIN_SEED_LENGTH || seedLength > MAX_SEED_LENGTH){
+				throw new IllegalArgumentException("seed length must be between " + MIN_SEED_LENGTH + " and " + MAX_SEED_LENGTH + " : " + seedLength);
+			}
+			this.seedLength = seedLength;
+			return this;
+		}
+		/**
+		 * The number of threads {@link PrimerScreener#detect(Iterator, Function, BiConsumer)}
+		 * should use.  Defaults to 1.
+		 * 
+		 * @param numberOfThreads the number of threads; must be &ge; 1.
+		 * 
+		 * @return this.
+		 * 
+		 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+		 */
+		public Builder numberOfThreads(int numberOfThreads){
+			if(numberOfThreads <1){
+				throw new IllegalArgumentException("number of threads must be >= 1");
+			}
+			this.numberOfThreads = numberOfThreads;
+			return this;
+		}
+		/**
+		 * Should each candidate primer be aligned against the whole 
+		 * sequence instead of only the windows around its seed matches.
+		 * This is much slower but always returns exactly the same results
+		 * as {@link PrimerDetector#detect(NucleotideSequence, NucleotideSequenceDataStore)}
+		 * even when the best scoring alignment over the whole sequence
+		 * is not a hit.  Defaults to {@code false}.
+		 * 
+		 * @param alignWholeSequence {@code true} to align the whole sequence;
+		 * {@code false} to only align the seed windows.
+		 * 
+		 * @return this.
+		 */
+		public Builder alignWholeSequence(boolean alignWholeSequence){
+			this.alignWholeSequence = alignWholeSequence;
+			return this;
+		}
+		/**
+		 * Create a new {@link PrimerScreener}; all the primers
+		 * are read and indexed by this method.
+		 * 
+		 * @return a new {@link PrimerScreener}; will never be null.
+		 * 
+		 * @throws DataStoreException if there is a problem reading the primers.
+		 */
+		public PrimerScreener build() throws DataStoreException{
+			List<NucleotideSequence> primerList = new ArrayList<>();
+			try(StreamingIterator<NucleotideSequence> iter = primers.iterator()){
+				while(iter.hasNext()){
+					NucleotideSequence primer = iter.next();
+					//same filter as PrimerDetector
+					if(primer.getLength() >= detector.getMinLength()){
+						primerList.add(primer);
+					}
+				}
+			}
+			return new PrimerScreener(this, primerList);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.assembly;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.jcvi.jillion.assembly.AssemblyTransformer;
+import org.jcvi.jillion.assembly.ReadInfo;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.pos.PositionSequence;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+/**
+ * {@code BufferedAssemblyTransformer} is an {@link AssemblyTransformer}
+ * that records every call made to it so that the calls
+ * can be replayed in the same order on a different
+ * {@link AssemblyTransformer} later (and possibly on a different thread).
+ * This lets a worker thread transform a single contig
+ * without touching the real transformer which might not be thread safe.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class BufferedAssemblyTransformer implements AssemblyTransformer{
+
+	private final List<Consumer<AssemblyTransformer>> calls = new ArrayList<>();
+	
+	@Override
+	public void referenceOrConsensus(String id,
+			NucleotideSequence gappedReference) {
+		calls.add(t -> t.referenceOrConsensus(id, gappedReference));
+	}
+
+	@Override
+	public void endAssembly() {
+		calls.add(AssemblyTransformer::endAssembly);
+	}
+
+	@Override
+	public void notAligned(String id, NucleotideSequence nucleotideSequence,
+			QualitySequence qualitySequence, PositionSequence positions,
+			URI uri) {
+		calls.add(t -> t.notAligned(id, nucleotideSequence, qualitySequence, positions, uri));
+	}
+
+	@Override
+	public void aligned(String readId, NucleotideSequence nucleotideSequence,
+			QualitySequence qualitySequence, PositionSequence positions,
+			URI sourceFileUri, String referenceId, long gappedStartOffset,
+			Direction direction, NucleotideSequence gappedSequence,
+			ReadInfo readInfo) {
+		calls.add(t -> t.aligned(readId, nucleotideSequence, qualitySequence, positions, 
+				sourceFileUri, referenceId, gappedStartOffset, 
+				direction, gappedSequence, readInfo));
+	}
+
+	@Override
+	public void assemblyCommand(String name, String version, String parameters) {
+		calls.add(t -> t.assemblyCommand(name, version, parameters));
+	}
+
+	@Override
+	public void referenceFile(URI uri) {
+		calls.add(t -> t.referenceFile(uri));
+	}
+
+	@Override
+	public void readFile(URI uri) {
+		calls.add(t -> t.readFile(uri));
+	}
+	/**
+	 * Get the number of calls recorded so far.
+	 * @return the number of recorded calls; will always be &ge; 0.
+	 */
+	public int getNumberOfRecordedCalls(){
+		return calls.size();
+	}
+	/**
+	 * Call all the recorded methods in the order they were 
+	 * originally called on the given transformer and then clear
+	 * the recorded calls.
+	 * 
+	 * @param transformer the {@link AssemblyTransformer} to replay
+	 * the calls on; can not be null.
+	 * 
+	 * @throws NullPointerException if transformer is null.
+	 */
+	public void replayAndClear(AssemblyTransformer transformer){
+		if(transformer ==null){
+			throw new NullPointerException("transformer can not be null");
+		}
+		for(Consumer<AssemblyTransformer> call : calls){
+			call.accept(transformer);
+		}
+		calls.clear();
+	}
+}
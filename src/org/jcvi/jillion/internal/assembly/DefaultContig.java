@@ -49,6 +49,11 @@ public final class DefaultContig<T extends AssembledRead> implements Contig<T>{
 	private final NucleotideSequence consensus;
     private final String id;
     private final Map<String, T> mapById;
+    /**
+     * Built lazily the first time it is needed
+     * since many contigs are never queried by region.
+     */
+    private volatile ReadIntervalIndex<T> readIndex;
     
     public DefaultContig(String id, NucleotideSequence consensus, Set<T> assembledReads){
     	if(id==null){
@@ -116,6 +121,48 @@ public final class DefaultContig<T extends AssembledRead> implements Contig<T>{
     public boolean containsRead(String placedReadId) {
         return mapById.containsKey(placedReadId);
     }
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The reads are returned sorted by gapped start offset.
+	 */
+	@Override
+	public StreamingIterator<T> getReadsIntersecting(Range gappedRange) {
+		if(gappedRange ==null){
+    		throw new NullPointerException("range can not be null");
+    	}
+		if(gappedRange.isEmpty()){
+    		return IteratorUtil.createEmptyStreamingIterator();
+    	}
+		return IteratorUtil.createStreamingIterator(
+				getReadIndex().getReadsIntersecting(gappedRange.getBegin(), gappedRange.getEnd())
+				.iterator());
+	}
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The reads are returned sorted by gapped start offset.
+	 */
+	@Override
+	public StreamingIterator<T> getReadsCovering(long gappedOffset) {
+		return IteratorUtil.createStreamingIterator(
+				getReadIndex().getReadsIntersecting(gappedOffset, gappedOffset)
+				.iterator());
+	}
+	
+	private ReadIntervalIndex<T> getReadIndex(){
+		ReadIntervalIndex<T> index = readIndex;
+		if(index ==null){
+			synchronized (this) {
+				index = readIndex;
+				if(index ==null){
+					index = ReadIntervalIndex.create(mapById.values());
+					readIndex = index;
+				}
+			}
+		}
+		return index;
+	}
 
 	@Override
 	public int hashCode() {
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.assembly;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.jcvi.jillion.assembly.AssemblyTransformer;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
+/**
+ * {@code ParallelContigTransformer} transforms
+ * independent contigs concurrently using a pool of worker threads.
+ * Each submitted {@link ContigTransformation} writes to its own
+ * {@link BufferedAssemblyTransformer} on a worker thread and the buffered
+ * calls are then replayed on the wrapped {@link AssemblyTransformer}
+ * one contig at a time so the wrapped transformer never has to be thread safe.
+ * <p>
+ * The number of contigs that are being transformed or are
+ * waiting to be replayed is bounded so memory usage
+ * stays constant no matter how many contigs are in the assembly;
+ * {@link #submit(ContigTransformation)} blocks until there is room.
+ * Contigs may optionally be replayed in the same order they were submitted.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class ParallelContigTransformer {
+	/**
+	 * The work to transform a single contig.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	@FunctionalInterface
+	public interface ContigTransformation{
+		/**
+		 * Transform a single contig by calling the appropriate methods
+		 * on the given transformer.
+		 * 
+		 * @param transformer the {@link AssemblyTransformer} to use;
+		 * will never be null.
+		 * 
+		 * @throws IOException if there is a problem reading the contig.
+		 */
+		void transform(AssemblyTransformer transformer) throws IOException;
+	}
+	
+	private final AssemblyTransformer delegate;
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	private final int maxContigsInFlight;
+	private final boolean preserveOrder;
+	
+	private final Object replayLock = new Object();
+	//guarded by replayLock
+	private final Map<Long, BufferedAssemblyTransformer> completed = new HashMap<>();
+	//guarded by replayLock
+	private long nextSequenceToReplay;
+	//guarded by replayLock
+	private Throwable error;
+	
+	private long nextSequenceToSubmit;
+	private boolean finished;
+	/**
+	 * Create a new {@link ParallelContigTransformer}.
+	 * 
+	 * @param delegate the {@link AssemblyTransformer} the buffered contig
+	 * transformations will be replayed on; can not be null.
+	 * @param numberOfThreads the number of worker threads to use; must be &ge; 1.
+	 * @param maxContigsInFlight the maximum number of contigs that
+	 * can be transformed or waiting to be replayed at any one time; must be &ge; numberOfThreads.
+	 * @param preserveOrder if {@code true}, then contigs are replayed in 
+	 * the order they were submitted; otherwise they are replayed as soon as they are done.
+	 * 
+	 * @throws NullPointerException if delegate is null.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1 or maxContigsInFlight &lt; numberOfThreads.
+	 */
+	public ParallelContigTransformer(AssemblyTransformer delegate, int numberOfThreads, int maxContigsInFlight, boolean preserveOrder){
+		if(delegate ==null){
+			throw new NullPointerException("transformer can not be null");
+		}
+		if(numberOfThreads <1){
+			throw new IllegalArgumentException("number of threads must be >= 1");
+		}
+		if(maxContigsInFlight < numberOfThreads){
+			throw new IllegalArgumentException("max contigs in flight must be >= number of threads");
+		}
+		this.delegate = delegate;
+		this.maxContigsInFlight = maxContigsInFlight;
+		this.preserveOrder = preserveOrder;
+		this.inFlight = new Semaphore(maxContigsInFlight);
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory("jillion-contig-transformer"));
+	}
+	/**
+	 * Submit a single contig to be transformed in a worker thread.
+	 * This method will block if the maximum number of contigs are 
+	 * already in flight.
+	 * 
+	 * @param transformation the contig transformation to perform; can not be null.
+	 * 
+	 * @throws IOException if a previously submitted contig failed or if
+	 * the thread was interrupted while waiting.
+	 * @throws NullPointerException if transformation is null.
+	 * @throws IllegalStateException if {@link #finish()} has already been called.
+	 */
+	public void submit(ContigTransformation transformation) throws IOException{
+		if(transformation ==null){
+			throw new NullPointerException("transformation can not be null");
+		}
+		if(finished){
+			throw new IllegalStateException("already finished");
+		}
+		checkForError();
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting to submit contig");
+		}
+		long sequence = nextSequenceToSubmit++;
+		executor.execute(()-> transform(sequence, transformation));
+	}
+	
+	private void transform(long sequence, ContigTransformation transformation){
+		BufferedAssemblyTransformer buffer = new BufferedAssemblyTransformer();
+		Throwable t=null;
+		if(!hasError()){
+			try{
+				transformation.transform(buffer);
+			}catch(Throwable e){
+				t = e;
+			}
+		}
+		synchronized(replayLock){
+			if(t !=null){
+				setError(t);
+			}
+			if(preserveOrder){
+				completed.put(sequence, buffer);
+				BufferedAssemblyTransformer next;
+				while((next = completed.remove(nextSequenceToReplay)) !=null){
+					nextSequenceToReplay++;
+					replay(next);
+				}
+			}else{
+				replay(buffer);
+			}
+		}
+	}
+	/**
+	 * Replay the given buffer on the delegate unless we have
+	 * already encountered an error, and always release the in flight permit.
+	 * Must be called while holding the replayLock.
+	 */
+	private void replay(BufferedAssemblyTransformer buffer){
+		try{
+			if(error ==null){
+				buffer.replayAndClear(delegate);
+			}
+		}catch(Throwable t){
+			setError(t);
+		}finally{
+			inFlight.release();
+		}
+	}
+	
+	private void setError(Throwable t){
+		if(error ==null){
+			error = t;
+		}
+	}
+	
+	private boolean hasError(){
+		synchronized(replayLock){
+			return error !=null;
+		}
+	}
+	
+	private void checkForError() throws IOException{
+		Throwable t;
+		synchronized(replayLock){
+			t = error;
+		}
+		if(t ==null){
+			return;
+		}
+		if(t instanceof IOException){
+			throw (IOException) t;
+		}
+		if(t instanceof RuntimeException){
+			throw (RuntimeException) t;
+		}
+		if(t instanceof Error){
+			throw (Error) t;
+		}
+		throw new IOException("error transforming contig", t);
+	}
+	/**
+	 * Wait for all the submitted contigs to be transformed
+	 * and replayed and then shutdown the worker threads.
+	 * This method must be called exactly once after the last contig has
+	 * been submitted and before any non-contig method
+	 * such as {@link AssemblyTransformer#endAssembly()} is called
+	 * on the wrapped transformer.
+	 * 
+	 * @throws IOException if any contig failed to be transformed
+	 * or if the thread was interrupted while waiting.
+	 * @throws IllegalStateException if finish has already been called.
+	 */
+	public void finish() throws IOException{
+		if(finished){
+			throw new IllegalStateException("already finished");
+		}
+		finished = true;
+		try{
+			//once we can get all the permits, nothing is in flight
+			inFlight.acquire(maxContigsInFlight);
+			inFlight.release(maxContigsInFlight);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for contigs to finish");
+		}finally{
+			shutdown();
+		}
+		checkForError();
+	}
+	/**
+	 * Stop all worker threads without waiting for
+	 * any submitted contigs to finish.  Calling this method
+	 * after {@link #finish()} has no effect.
+	 */
+	public void shutdown(){
+		executor.shutdownNow();
+	}
+}
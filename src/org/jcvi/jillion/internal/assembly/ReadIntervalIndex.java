@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.assembly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.internal.core.util.ImplicitIntervalTree;
+/**
+ * {@code ReadIntervalIndex} is an immutable index of 
+ * {@link AssembledRead}s by their gapped contig coordinates
+ * that can quickly find all the reads that intersect a region
+ * without looking at every read.
+ * <p>
+ * The reads are sorted by gapped start offset and stored
+ * in an {@link ImplicitIntervalTree} so a query
+ * takes O(log n + k) time where k is the number of reads returned.
+ * 
+ * @author dkatzel
+ *
+ * @param <T> the type of {@link AssembledRead}.
+ * 
+ * @since 5.3
+ */
+public final class ReadIntervalIndex<T extends AssembledRead> {
+	
+	private final Object[] reads;
+	private final ImplicitIntervalTree tree;
+	
+	/**
+	 * Create a new ReadIntervalIndex containing the given reads.
+	 * 
+	 * @param reads the reads to index; can not be null or contain null elements.
+	 * 
+	 * @return a new ReadIntervalIndex; will never be null.
+	 * 
+	 * @throws NullPointerException if reads is null or contains a null.
+	 */
+	public static <T extends AssembledRead> ReadIntervalIndex<T> create(Collection<? extends T> reads){
+		return new ReadIntervalIndex<T>(reads);
+	}
+	
+	private ReadIntervalIndex(Collection<? extends T> reads){
+		AssembledRead[] sorted = reads.toArray(new AssembledRead[reads.size()]);
+		Arrays.sort(sorted, Comparator.comparingLong(AssembledRead::getGappedStartOffset));
+		int n = sorted.length;
+		this.reads = sorted;
+		long[] starts = new long[n];
+		long[] ends = new long[n];
+		for(int i=0; i< n; i++){
+			starts[i] = sorted[i].getGappedStartOffset();
+			ends[i] = sorted[i].getGappedEndOffset() +1;
+		}
+		tree = new ImplicitIntervalTree(starts, ends);
+	}
+	/**
+	 * Get the number of reads in this index.
+	 * 
+	 * @return the number of reads; will always be &ge; 0.
+	 */
+	public int getNumberOfReads(){
+		return reads.length;
+	}
+	/**
+	 * Get all the reads whose gapped contig range 
+	 * intersects the given gapped coordinates.
+	 * 
+	 * @param gappedBegin the inclusive begin gapped offset.
+	 * @param gappedEnd the inclusive end gapped offset.
+	 * 
+	 * @return a new List of the reads sorted by gapped start offset;
+	 * will never be null but may be empty.  If {@code gappedEnd < gappedBegin}
+	 * then the list will always be empty.
+	 */
+	public List<T> getReadsIntersecting(long gappedBegin, long gappedEnd){
+		List<T> result = new ArrayList<>();
+		if(gappedEnd < gappedBegin){
+			return result;
+		}
+		tree.forEachOverlapping(gappedBegin, gappedEnd +1, i-> result.add(get(i)));
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T get(int i){
+		return (T) reads[i];
+	}
+}
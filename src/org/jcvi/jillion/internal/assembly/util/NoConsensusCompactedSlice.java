@@ -166,6 +166,19 @@ public class NoConsensusCompactedSlice implements Slice{
             
     }
     
+    /**
+     * Get the encoded direction, base and quality of the ith element
+     * without creating a {@link SliceElement} object.
+     * @param i the index of the element.
+     * @return the encoded value; the base ordinal is in bits 8-11
+     * and the quality score is the lowest 8 bits.
+     * 
+     * @since 5.3
+     */
+    public short getEncodedElement(int i){
+    	return elements[i];
+    }
+    
     private CompactedSliceElement getElement(int i){
     	String id = ids[i];
         return CompactedSliceElement.create(id, elements[i]);
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+/**
+ * {@code ByteLineReader} scans lines of text
+ * directly out of a byte buffer without
+ * creating any Strings.  Unlike {@link LineParser}s,
+ * each line is exposed as a slice of the internal buffer
+ * ({@link #getBuffer()}, {@link #getLineStart()}, {@link #getLineEnd()})
+ * which does NOT include the end of line characters.  
+ * This class considers a line to be terminated by either '\n',
+ * (UNIX format) or '\r\n' (Windows/DOS) or '\r' (Apple family until Mac OS 9). 
+ * <p>
+ * The buffer slice of the current line is only valid until the next
+ * call to {@link #nextLine()} since the buffer is reused (and may be replaced
+ * if a line is longer than the buffer).
+ * </p>
+ * This class is not Thread-safe
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class ByteLineReader implements Closeable{
+	
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	
+	private static final byte LF = '\n';
+	
+	private static final byte CR = '\r';
+	/**
+	 * The InputStream to read from; 
+	 * will be null if we are wrapping a fixed array.
+	 */
+	private final InputStream in;
+	
+	private byte[] buffer;
+	/**
+	 * Offset into the buffer of the next unread byte.
+	 */
+	private int position;
+	/**
+	 * Offset into the buffer one past the last valid byte.
+	 */
+	private int limit;
+	/**
+	 * Number of bytes consumed before the start of the buffer.
+	 */
+	private long bufferStartOffset;
+	
+	private boolean endOfInput;
+	
+	private int lineStart, lineEnd;
+	private long lineStartOffset;
+	/**
+	 * Create a new ByteLineReader that reads from the given
+	 * {@link InputStream} whose first byte is considered
+	 * offset 0.
+	 * @param in the {@link InputStream} to read; can not be null.
+	 * @throws NullPointerException if in is null.
+	 */
+	public ByteLineReader(InputStream in){
+		this(in, 0L);
+	}
+	/**
+	 * Create a new ByteLineReader that reads from the given
+	 * {@link InputStream} whose first byte is at the given offset
+	 * in the larger file.  This is used to compute {@link #getPosition()}
+	 * when the stream has already been skipped ahead.
+	 * 
+	 * @param in the {@link InputStream} to read; can not be null.
+	 * @param initialOffset the offset of the first byte of the stream; must be &ge; 0.
+	 * @throws NullPointerException if in is null.
+	 * @throws IllegalArgumentException if initialOffset is negative.
+	 */
+	public ByteLineReader(InputStream in, long initialOffset){
+		if(in ==null){
+			throw new NullPointerException("inputStream can not be null");
+		}
+		if(initialOffset <0){
+			throw new IllegalArgumentException("initial offset can not be negative");
+		}
+		this.in = in;
+		this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+		this.bufferStartOffset = initialOffset;
+	}
+	/**
+	 * Create a new ByteLineReader that reads lines
+	 * from a section of an array already in memory.  The array is
+	 * not copied, so it should not be modified while lines are being read.
+	 * 
+	 * @param data the byte array to read; can not be null.
+	 * @param offset the offset into the array to start reading from.
+	 * @param length the number of bytes to read.
+	 * @param initialOffset the offset in the larger file (if any) of {@code data[offset]};
+	 * used to compute {@link #getPosition()}.
+	 * 
+	 * @throws NullPointerException if data is null.
+	 * @throws IndexOutOfBoundsException if the offset and length are not valid for the array.
+	 */
+	public ByteLineReader(byte[] data, int offset, int length, long initialOffset){
+		if(offset <0 || length <0 || offset + length > data.length){
+			throw new IndexOutOfBoundsException("invalid offset or length");
+		}
+		this.in = null;
+		this.buffer = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.endOfInput = true;
+		this.bufferStartOffset = initialOffset - offset;
+	}
+	/**
+	 * Advance to the next line.
+	 * 
+	 * @return {@code true} if there was another line;
+	 * {@code false} if the end of the input has been reached.
+	 * 
+	 * @throws IOException if there is a problem reading from the InputStream.
+	 */
+	public boolean nextLine() throws IOException{
+		int scanFrom = position;
+		while(true){
+			for(int i= scanFrom; i< limit; i++){
+				byte b = buffer[i];
+				if(b == LF || b == CR){
+					if(b == CR){
+						//check for windows \r\n
+						//which might be split across buffers
+						if(i+1 == limit && !endOfInput){
+							int lineOffset = i - position;
+							if(fill()){
+								i = position + lineOffset;
+							}
+						}
+						if(i+1 < limit && buffer[i+1] == LF){
+							setCurrentLine(i, i+2);
+							return true;
+						}
+					}
+					setCurrentLine(i, i+1);
+					return true;
+				}
+			}
+			if(endOfInput){
+				if(position == limit){
+					return false;
+				}
+				//last line without end of line chars
+				setCurrentLine(limit, limit);
+				return true;
+			}
+			int alreadyScanned = limit - position;
+			fill();
+			scanFrom = position + alreadyScanned;
+		}
+	}
+	
+	private void setCurrentLine(int endOfLine, int nextPosition){
+		lineStart = position;
+		lineEnd = endOfLine;
+		lineStartOffset = bufferStartOffset + position;
+		position = nextPosition;
+	}
+	/**
+	 * Read more data into the buffer keeping
+	 * the unread part of the buffer, compacting
+	 * or growing the buffer if needed.
+	 * @return {@code true} if the unread data moved.
+	 */
+	private boolean fill() throws IOException{
+		boolean moved = false;
+		if(position > 0){
+			int unread = limit - position;
+			System.arraycopy(buffer, position, buffer, 0, unread);
+			bufferStartOffset += position;
+			position = 0;
+			limit = unread;
+			moved = true;
+		}
+		if(limit == buffer.length){
+			//a single line is bigger than our buffer
+			buffer = Arrays.copyOf(buffer, buffer.length *2);
+		}
+		int bytesRead = in.read(buffer, limit, buffer.length - limit);
+		if(bytesRead < 0){
+			endOfInput = true;
+		}else{
+			limit += bytesRead;
+		}
+		return moved;
+	}
+	/**
+	 * Get the buffer containing the current line.
+	 * @return the buffer; the current line is from
+	 * {@link #getLineStart()} inclusive to {@link #getLineEnd()} exclusive.
+	 */
+	public byte[] getBuffer(){
+		return buffer;
+	}
+	/**
+	 * Get the offset into {@link #getBuffer()} of the first byte of the current line.
+	 * @return the offset.
+	 */
+	public int getLineStart(){
+		return lineStart;
+	}
+	/**
+	 * Get the offset into {@link #getBuffer()} one past the last byte of the current line
+	 * not counting the end of line characters.
+	 * @return the offset.
+	 */
+	public int getLineEnd(){
+		return lineEnd;
+	}
+	/**
+	 * Get the number of bytes in the current line not counting the
+	 * end of line characters.
+	 * @return the length; will always be &ge; 0.
+	 */
+	public int getLineLength(){
+		return lineEnd - lineStart;
+	}
+	/**
+	 * Get the offset in the input of the start of the current line.
+	 * @return the offset.
+	 */
+	public long getLineStartPosition(){
+		return lineStartOffset;
+	}
+	/**
+	 * Get the number of bytes of the input
+	 * that have been consumed by the lines returned so far
+	 * (plus any initial offset).
+	 * @return the position.
+	 */
+	public long getPosition(){
+		return bufferStartOffset + position;
+	}
+	/**
+	 * Create a new String of the current line
+	 * (without end of line characters) where 
+	 * each byte is a single character.
+	 * 
+	 * @return a new String; will never be null.
+	 */
+	public String getLineAsString(){
+		return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(in !=null){
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,487 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.core.util.GrowableLongArray;
+/**
+ * {@code SidecarHashIndex} is an on-disk hash table
+ * written as a sidecar file next to the file it indexes
+ * that maps the 64-bit hash of a String key (a read name for example)
+ * to one or more long values (usually file offsets) so 
+ * records can be looked up without keeping a key map in memory 
+ * or re-parsing the indexed file each time it is opened.
+ * <p>
+ * The index file is memory mapped when opened and is laid out as
+ * a table of bucket offsets followed by fixed length entries
+ * of (hash of the key, value) grouped by bucket.  
+ * Entries with the same key are kept in the order they were added.
+ * Since different keys can hash to the same value, callers 
+ * must check the key of each record returned.  All values 
+ * are 8 byte aligned so the file can be mapped in several
+ * segments if it is larger than 2GB.
+ * </p>
+ * <p>
+ * The file format is:
+ * </p>
+ * <pre>
+ * magic number       4 bytes specific to the type of index
+ * int                number of buckets (b) always a power of 2
+ * long               length of the indexed file when indexed
+ * long               last modified time of the indexed file when indexed
+ * long               number of entries (n)
+ * long               metadata specific to the type of index
+ * long[b+1]          index of the first entry of each bucket, the last value is n
+ * (long,long)[n]     the entries (hash, value) in bucket order
+ * </pre>
+ * <p>
+ * An index is written using a {@link Writer} which
+ * spills the entries to a temp file as they are added so the heap
+ * usage does not depend on the number of entries.  The new index is 
+ * built in a temp file and then moved over the old index file
+ * so a partially written index is never seen by readers.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class SidecarHashIndex implements Closeable{
+	
+	private static final int MAGIC_NUMBER_LENGTH = 4;
+	
+	private static final int HEADER_LENGTH = MAGIC_NUMBER_LENGTH + 4 + 8 + 8 + 8 + 8;
+	
+	private static final int ENTRY_LENGTH = 16;
+	/**
+	 * Average number of entries per bucket.
+	 */
+	private static final int ENTRIES_PER_BUCKET = 4;
+	
+	private static final int MAX_NUMBER_OF_BUCKETS = 1 << 27;
+	/**
+	 * Each mapped segment is 1GB which is a multiple of 8
+	 * so no long value ever spans 2 segments.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) -1;
+	
+	private static final int SPILL_BUFFER_SIZE = 1 << 16;
+	
+	private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_64_PRIME = 0x100000001b3L;
+	
+	private final MappedByteBuffer[] segments;
+	private final int numberOfBuckets;
+	private final long numberOfEntries;
+	private final long metadata;
+	private final long entriesOffset;
+	
+	private SidecarHashIndex(MappedByteBuffer[] segments, int numberOfBuckets, long numberOfEntries, long metadata){
+		this.segments = segments;
+		this.numberOfBuckets = numberOfBuckets;
+		this.numberOfEntries = numberOfEntries;
+		this.metadata = metadata;
+		this.entriesOffset = computeEntriesOffset(numberOfBuckets);
+	}
+	
+	private static long computeEntriesOffset(int numberOfBuckets){
+		return HEADER_LENGTH + (numberOfBuckets +1L) * 8;
+	}
+	/**
+	 * Is the given index file a valid index of the given type 
+	 * for the current version of the given indexed file.
+	 * 
+	 * @param indexedFile the file that was indexed; can not be null.
+	 * @param indexFile the index file; can not be null.
+	 * @param magicNumber the 4 byte magic number of the type of index.
+	 * 
+	 * @return {@code true} if the index exists, is complete and the indexed file has not changed 
+	 * since it was indexed; {@code false} otherwise.
+	 * 
+	 * @throws IOException if there is a problem reading the index file.
+	 */
+	public static boolean isUpToDate(File indexedFile, File indexFile, byte[] magicNumber) throws IOException{
+		checkMagicNumber(magicNumber);
+		if(!indexFile.exists() || indexFile.length() < HEADER_LENGTH){
+			return false;
+		}
+		try(FileChannel ch = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)){
+			ByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, HEADER_LENGTH);
+			byte[] magic = new byte[MAGIC_NUMBER_LENGTH];
+			buf.get(magic);
+			int numberOfBuckets = buf.getInt();
+			long length = buf.getLong();
+			long lastModified = buf.getLong();
+			long numberOfEntries = buf.getLong();
+			
+			return Arrays.equals(magicNumber, magic) 
+					&& length == indexedFile.length()
+					&& lastModified == indexedFile.lastModified()
+					&& numberOfBuckets >0 && Integer.bitCount(numberOfBuckets) ==1
+					&& numberOfEntries >=0
+					&& ch.size() == computeEntriesOffset(numberOfBuckets) + numberOfEntries * ENTRY_LENGTH;
+		}
+	}
+	/**
+	 * Open the given index file.
+	 * 
+	 * @param indexFile the index file to open; can not be null.
+	 * @param magicNumber the 4 byte magic number of the type of index.
+	 * 
+	 * @return a new SidecarHashIndex; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading the index file
+	 * or if it is not an index of the given type.
+	 */
+	public static SidecarHashIndex open(File indexFile, byte[] magicNumber) throws IOException{
+		checkMagicNumber(magicNumber);
+		try(FileChannel ch = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)){
+			if(ch.size() < HEADER_LENGTH){
+				throw new IOException("invalid index file " + indexFile.getAbsolutePath());
+			}
+			MappedByteBuffer[] segments = map(ch, MapMode.READ_ONLY, ch.size());
+			ByteBuffer header = segments[0].duplicate();
+			byte[] magic = new byte[MAGIC_NUMBER_LENGTH];
+			header.get(magic);
+			if(!Arrays.equals(magicNumber, magic)){
+				throw new IOException("invalid index file " + indexFile.getAbsolutePath());
+			}
+			int numberOfBuckets = header.getInt();
+			//skip indexed file length and last modified
+			header.getLong();
+			header.getLong();
+			long numberOfEntries = header.getLong();
+			long metadata = header.getLong();
+			
+			//mapped buffers stay valid after the channel is closed
+			return new SidecarHashIndex(segments, numberOfBuckets, numberOfEntries, metadata);
+		}
+	}
+	/**
+	 * Create a new {@link Writer} to build a new index of the given file.
+	 * The length and last modified time of the indexed file are captured now
+	 * so if the file changes while it is being parsed, the index will be out of date.
+	 * 
+	 * @param indexedFile the file being indexed; can not be null.
+	 * @param indexFile the index file to write; will be replaced when
+	 * the writer is committed.
+	 * @param magicNumber the 4 byte magic number of the type of index.
+	 * 
+	 * @return a new Writer; will never be null.
+	 * 
+	 * @throws IOException if there is a problem creating the temp files.
+	 */
+	public static Writer createWriter(File indexedFile, File indexFile, byte[] magicNumber) throws IOException{
+		checkMagicNumber(magicNumber);
+		return new Writer(indexedFile, indexFile, magicNumber);
+	}
+	
+	private static void checkMagicNumber(byte[] magicNumber){
+		if(magicNumber.length != MAGIC_NUMBER_LENGTH){
+			throw new IllegalArgumentException("magic number must be " + MAGIC_NUMBER_LENGTH + " bytes");
+		}
+	}
+	
+	private static MappedByteBuffer[] map(FileChannel ch, MapMode mode, long size) throws IOException{
+		int numberOfSegments = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		MappedByteBuffer[] segments = new MappedByteBuffer[numberOfSegments];
+		for(int i=0; i< numberOfSegments; i++){
+			long start = ((long) i) << SEGMENT_SHIFT;
+			segments[i] = ch.map(mode, start, Math.min(size - start, 1L << SEGMENT_SHIFT));
+		}
+		return segments;
+	}
+	
+	private static void putLong(MappedByteBuffer[] segments, long position, long value){
+		segments[(int)(position >>> SEGMENT_SHIFT)].putLong((int)(position & SEGMENT_MASK), value);
+	}
+	
+	private static long getLong(MappedByteBuffer[] segments, long position){
+		return segments[(int)(position >>> SEGMENT_SHIFT)].getLong((int)(position & SEGMENT_MASK));
+	}
+	
+	private static int computeNumberOfBuckets(long numberOfEntries){
+		long desired = Math.min(MAX_NUMBER_OF_BUCKETS, Math.max(1, numberOfEntries / ENTRIES_PER_BUCKET));
+		//round down to power of 2 so we can mask instead of mod
+		return Integer.highestOneBit((int) desired);
+	}
+	
+	private static int bucket(long hash, int mask){
+		//fold the high bits into the low bits
+		//since we only use a few low bits to pick the bucket
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+	/**
+	 * Compute the 64-bit FNV-1a hash of the given key.
+	 * This must never change since the values are persisted
+	 * in the index files.
+	 * 
+	 * @param key the key to hash; can not be null.
+	 * @return the hash value.
+	 */
+	public static long hash(String key){
+		long hash = FNV_64_OFFSET_BASIS;
+		int length = key.length();
+		for(int i=0; i< length; i++){
+			hash ^= key.charAt(i);
+			hash *= FNV_64_PRIME;
+		}
+		return hash;
+	}
+	/**
+	 * Get the total number of entries in this index.
+	 * @return the number of entries; will always be &ge; 0.
+	 */
+	public long getNumberOfEntries(){
+		return numberOfEntries;
+	}
+	/**
+	 * Get the metadata value that was written
+	 * by {@link Writer#commit(long)}.
+	 * @return the metadata value.
+	 */
+	public long getMetadata(){
+		return metadata;
+	}
+	/**
+	 * Get the values of all the entries 
+	 * that might have the given key in the order they were added.  
+	 * Since different keys can have the same hash value, 
+	 * some of these values might be for different keys.
+	 * 
+	 * @param key the key to look for; can not be null.
+	 * 
+	 * @return an array of values; will never be null
+	 * but may be empty if there are no entries with that key.
+	 */
+	public long[] getCandidateValuesFor(String key){
+		long hash = hash(key);
+		int bucket = bucket(hash, numberOfBuckets -1);
+		
+		long startEntry = getLong(segments, HEADER_LENGTH + bucket * 8L);
+		long endEntry = getLong(segments, HEADER_LENGTH + (bucket +1) * 8L);
+		
+		GrowableLongArray values = new GrowableLongArray(2);
+		for(long i=startEntry; i< endEntry; i++){
+			long position = entriesOffset + i * ENTRY_LENGTH;
+			if(getLong(segments, position) == hash){
+				values.append(getLong(segments, position +8));
+			}
+		}
+		return values.toArray();
+	}
+
+	@Override
+	public void close() {
+		//mapped buffers can't be explicitly unmapped;
+		//they are released when garbage collected.
+		Arrays.fill(segments, null);
+	}
+	/**
+	 * Writes a new {@link SidecarHashIndex} file.
+	 * Entries are appended to a temp spill file as they are added.
+	 * When the writer is committed, the spill file is read twice:
+	 * once to count the entries in each bucket directly into
+	 * the memory mapped bucket table of the new index and
+	 * once to scatter each entry into its bucket.
+	 * Closing a writer that hasn't been committed
+	 * deletes the temp files and leaves any existing index untouched.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class Writer implements Closeable{
+		private final File indexFile;
+		private final byte[] magicNumber;
+		private final long indexedFileLength;
+		private final long indexedFileLastModified;
+		private final File spillFile;
+		private final DataOutputStream spill;
+		
+		private long numberOfEntries;
+		private boolean closed;
+		
+		private Writer(File indexedFile, File indexFile, byte[] magicNumber) throws IOException{
+			this.indexFile = indexFile;
+			this.magicNumber = magicNumber.clone();
+			this.indexedFileLength = indexedFile.length();
+			this.indexedFileLastModified = indexedFile.lastModified();
+			
+			IOUtil.mkdirs(getParentDir());
+			spillFile = File.createTempFile(indexFile.getName(), ".spill", getParentDir());
+			spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), SPILL_BUFFER_SIZE));
+		}
+		
+		private File getParentDir(){
+			return indexFile.getAbsoluteFile().getParentFile();
+		}
+		/**
+		 * Add a new entry.
+		 * 
+		 * @param key the key of the entry; can not be null.
+		 * @param value the value of the entry.
+		 * 
+		 * @throws IOException if there is a problem writing to the spill file.
+		 * @throws IllegalStateException if this writer has already been committed or closed.
+		 */
+		public void add(String key, long value) throws IOException{
+			checkNotClosed();
+			spill.writeLong(hash(key));
+			spill.writeLong(value);
+			numberOfEntries++;
+		}
+		
+		private void checkNotClosed(){
+			if(closed){
+				throw new IllegalStateException("writer already closed");
+			}
+		}
+		/**
+		 * Write the index file containing all the entries added so far
+		 * and close this writer.
+		 * 
+		 * @param metadata the metadata value to write in the header.
+		 * 
+		 * @throws IOException if there is a problem writing the index file.
+		 * @throws IllegalStateException if this writer has already been committed or closed.
+		 */
+		public void commit(long metadata) throws IOException{
+			checkNotClosed();
+			spill.close();
+			File tmp = File.createTempFile(indexFile.getName(), ".tmp", getParentDir());
+			try{
+				writeIndex(tmp, metadata);
+				moveInto(tmp, indexFile);
+			}finally{
+				IOUtil.deleteIgnoreError(tmp);
+				close();
+			}
+		}
+		
+		private void writeIndex(File tmp, long metadata) throws IOException{
+			int numberOfBuckets = computeNumberOfBuckets(numberOfEntries);
+			int mask = numberOfBuckets -1;
+			long entriesOffset = computeEntriesOffset(numberOfBuckets);
+			long size = entriesOffset + numberOfEntries * ENTRY_LENGTH;
+			
+			try(FileChannel ch = FileChannel.open(tmp.toPath(), 
+					StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+				MappedByteBuffer[] segments = map(ch, MapMode.READ_WRITE, size);
+				//the bucket table starts out as the count of each bucket
+				//shifted over by one
+				try(DataInputStream in = openSpill()){
+					for(long i=0; i< numberOfEntries; i++){
+						long position = HEADER_LENGTH + (bucket(in.readLong(), mask) +1) * 8L;
+						putLong(segments, position, getLong(segments, position) +1);
+						in.readLong();
+					}
+				}
+				//running sum turns the counts into the start of each bucket
+				for(int i=1; i<= numberOfBuckets; i++){
+					long position = HEADER_LENGTH + i * 8L;
+					putLong(segments, position, getLong(segments, position) + getLong(segments, position -8));
+				}
+				//scatter the entries using the table as the next position in each bucket
+				//which keeps the entries in a bucket in the order they were added
+				try(DataInputStream in = openSpill()){
+					for(long i=0; i< numberOfEntries; i++){
+						long hash = in.readLong();
+						long value = in.readLong();
+						long tablePosition = HEADER_LENGTH + bucket(hash, mask) * 8L;
+						long entryIndex = getLong(segments, tablePosition);
+						putLong(segments, tablePosition, entryIndex +1);
+						
+						long position = entriesOffset + entryIndex * ENTRY_LENGTH;
+						putLong(segments, position, hash);
+						putLong(segments, position +8, value);
+					}
+				}
+				//now each bucket's value is the start of the next bucket
+				//so shift the table back over by one
+				for(int i= numberOfBuckets -1; i>0; i--){
+					long position = HEADER_LENGTH + i * 8L;
+					putLong(segments, position, getLong(segments, position -8));
+				}
+				putLong(segments, HEADER_LENGTH, 0);
+				
+				ByteBuffer header = segments[0];
+				header.position(0);
+				header.put(magicNumber);
+				header.putInt(numberOfBuckets);
+				header.putLong(indexedFileLength);
+				header.putLong(indexedFileLastModified);
+				header.putLong(numberOfEntries);
+				header.putLong(metadata);
+				
+				for(MappedByteBuffer segment : segments){
+					segment.force();
+				}
+			}
+		}
+		
+		private DataInputStream openSpill() throws IOException{
+			return new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), SPILL_BUFFER_SIZE));
+		}
+		
+		private static void moveInto(File tmp, File indexFile) throws IOException{
+			try{
+				Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}catch(AtomicMoveNotSupportedException e){
+				Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		/**
+		 * Delete the temp files.  If this writer
+		 * has not been committed, then no index file is written.
+		 */
+		@Override
+		public void close() {
+			if(closed){
+				return;
+			}
+			closed = true;
+			IOUtil.closeAndIgnoreErrors(spill);
+			IOUtil.deleteIgnoreError(spillFile);
+		}
+	}
+}
@@ -40,6 +40,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.jcvi.jillion.core.util.MapUtil;
 
@@ -280,6 +283,46 @@ public final class Caches
         return new WeakReferenceCache<K,V>(maxSize);
     }
     
+    /**
+     * Creates a thread safe Map where the VALUES in the map
+     * are each wrapped with a {@link SoftReference}.  Unlike
+     * {@link #createSoftReferencedValueCache(int)}, threads never block 
+     * each other on a single lock:  lookups are lock free and 
+     * writes only contend for the same hash bin.
+     * Entries whose values have been garbage collected are cleaned up
+     * a few at a time by whichever thread is already using the cache
+     * so there is never one long sweep.
+     * The size of this map <strong>CAN GROW</strong> if more
+     * entries are inserted.
+     * @param <K> the (strongly reference) key type
+     * @param <V> the softly referenced value type
+     * @param initialCapacity the initialCapacity of this cache which is used
+     * to calculate when the map should grow and be re-hashed.
+     * @return a new Map instance with the given capacity.
+     * 
+     * @since 5.3
+     */
+    public static <K,V> Map<K,V> createConcurrentSoftReferencedValueCache(int initialCapacity){
+        return new ConcurrentReferencedCache<K, V>(initialCapacity, true);
+    }
+    /**
+     * Creates a thread safe Map where the VALUES in the map
+     * are each wrapped with a {@link WeakReference}.
+     * This is the same as {@link #createConcurrentSoftReferencedValueCache(int)}
+     * except entries are removed as soon as their values 
+     * are only weakly reachable.
+     * @param <K> the (strongly reference) key type
+     * @param <V> the weakly referenced value type
+     * @param initialCapacity the initialCapacity of this cache which is used
+     * to calculate when the map should grow and be re-hashed.
+     * @return a new Map instance with the given capacity.
+     * 
+     * @since 5.3
+     */
+    public static <K,V> Map<K,V> createConcurrentWeakReferencedValueCache(int initialCapacity){
+        return new ConcurrentReferencedCache<K, V>(initialCapacity, false);
+    }
+    
     private static <K,V> Map<K,V> createNonLRUMap(int maxSize){
     	return new LinkedHashMap<K, V>(maxSize);
     }
@@ -601,4 +644,202 @@ public final class Caches
         }
 
     }
+    
+    /**
+     * A Reference that remembers which key
+     * it was stored under so it can be removed from the map
+     * without needing a second reverse lookup map.
+     */
+    private interface KeyedReference<K>{
+    	K getKey();
+    }
+    
+    private static final class KeyedSoftReference<K,V> extends SoftReference<V> implements KeyedReference<K>{
+    	private final K key;
+    	KeyedSoftReference(K key, V value, ReferenceQueue<? super V> queue){
+    		super(value, queue);
+    		this.key = key;
+    	}
+		@Override
+		public K getKey() {
+			return key;
+		}
+    }
+    
+    private static final class KeyedWeakReference<K,V> extends WeakReference<V> implements KeyedReference<K>{
+    	private final K key;
+    	KeyedWeakReference(K key, V value, ReferenceQueue<? super V> queue){
+    		super(value, queue);
+    		this.key = key;
+    	}
+		@Override
+		public K getKey() {
+			return key;
+		}
+    }
+    /**
+     * {@code ConcurrentReferencedCache} is a referenced value cache
+     * backed by a {@link ConcurrentHashMap}.
+     * Garbage collected entries are drained from the
+     * reference queue by at most one thread at a time
+     * and only a bounded number per call; other threads
+     * skip the cleanup instead of waiting.
+     * Cleanup is only attempted on cache misses and writes
+     * and only writes shared state if there is something to clean
+     * so concurrent cache hits don't contend with each other.
+     * @author dkatzel
+     *
+     */
+    private static final class ConcurrentReferencedCache<K,V> extends AbstractMap<K,V>{
+    	/**
+    	 * Max number of collected references to remove per
+    	 * call so no caller pays for a large backlog.
+    	 */
+    	private static final int MAX_CLEANUP_PER_CALL = 64;
+    	
+    	private final ConcurrentHashMap<K, Reference<V>> cache;
+    	private final ReferenceQueue<V> referenceQueue = new ReferenceQueue<V>();
+    	private final AtomicBoolean cleaning = new AtomicBoolean();
+    	private final boolean useSoftReferences;
+    	
+    	ConcurrentReferencedCache(int initialCapacity, boolean useSoftReferences){
+    		cache = new ConcurrentHashMap<>(MapUtil.computeMinHashMapSizeWithoutRehashing(initialCapacity));
+    		this.useSoftReferences = useSoftReferences;
+    	}
+    	
+    	private Reference<V> createReferenceFor(K key, V value){
+    		if(useSoftReferences){
+    			return new KeyedSoftReference<K,V>(key, value, referenceQueue);
+    		}
+    		return new KeyedWeakReference<K,V>(key, value, referenceQueue);
+    	}
+    	
+    	private void removeSomeGarbageCollectedEntries(){
+    		//only read shared state until we know there is something to clean
+    		//so the common case never writes to a shared cache line.
+    		//Polling an empty reference queue is just a volatile read.
+    		if(cleaning.get()){
+    			//another thread is already cleaning
+    			return;
+    		}
+    		Reference<? extends V> collectedReference = referenceQueue.poll();
+    		if(collectedReference ==null){
+    			return;
+    		}
+    		removeCollected(collectedReference);
+    		if(!cleaning.compareAndSet(false, true)){
+    			return;
+    		}
+    		try{
+	    		for(int i=1; i< MAX_CLEANUP_PER_CALL; i++){
+		    		collectedReference = referenceQueue.poll();
+		    		if(collectedReference ==null){
+		    			return;
+		    		}
+		    		removeCollected(collectedReference);
+	    		}
+    		}finally{
+    			cleaning.set(false);
+    		}
+    	}
+    	
+    	private void removeCollected(Reference<? extends V> collectedReference){
+    		@SuppressWarnings("unchecked")
+			K key = ((KeyedReference<K>) collectedReference).getKey();
+    		//only remove if the entry hasn't already been replaced
+    		cache.remove(key, collectedReference);
+    	}
+    	
+    	private V getReference(Reference<V> ref){
+            if(ref ==null){
+                return null;
+            }
+            return ref.get();
+        }
+    	
+		@Override
+		public V get(Object key) {
+			V value = getReference(cache.get(key));
+			if(value ==null){
+				//only clean up on a miss so cache hits stay read only
+				removeSomeGarbageCollectedEntries();
+			}
+			return value;
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) !=null;
+		}
+		
+		@Override
+		public V put(K key, V value) {
+			removeSomeGarbageCollectedEntries();
+			return getReference(cache.put(key, createReferenceFor(key, value)));
+		}
+		
+		@Override
+		public V remove(Object key) {
+			removeSomeGarbageCollectedEntries();
+			return getReference(cache.remove(key));
+		}
+		
+		@Override
+		public V computeIfAbsent(K key,
+				Function<? super K, ? extends V> mappingFunction) {
+			Reference<V> ref = cache.get(key);
+			V value = getReference(ref);
+			if(value !=null){
+				return value;
+			}
+			removeSomeGarbageCollectedEntries();
+			V newValue = mappingFunction.apply(key);
+			if(newValue ==null){
+				return null;
+			}
+			Reference<V> newRef = createReferenceFor(key, newValue);
+			while(true){
+				if(ref ==null){
+					ref = cache.putIfAbsent(key, newRef);
+					if(ref ==null){
+						return newValue;
+					}
+				}else if(cache.replace(key, ref, newRef)){
+					//old value was garbage collected
+					return newValue;
+				}else{
+					ref = cache.get(key);
+				}
+				//another thread beat us to it
+				value = getReference(ref);
+				if(value !=null){
+					return value;
+				}
+			}
+		}
+		
+		@Override
+		public int size() {
+			removeSomeGarbageCollectedEntries();
+			return cache.size();
+		}
+		
+		@Override
+		public void clear() {
+			cache.clear();
+		}
+
+		@Override
+		public Set<Entry<K, V>> entrySet() {
+			removeSomeGarbageCollectedEntries();
+			Set<Entry<K,V>> result = new LinkedHashSet<Entry<K, V>>();
+			for(Entry<K, Reference<V>> entry : cache.entrySet()){
+				V value = entry.getValue().get();
+				if(value !=null){
+					result.add(new SimpleImmutableEntry<K,V>(entry.getKey(), value));
+				}
+			}
+			return result;
+		}
+    }
 }
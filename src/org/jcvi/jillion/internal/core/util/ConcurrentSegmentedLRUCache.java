@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@code ConcurrentSegmentedLRUCache} is a thread-safe
+ * bounded cache that uses a Segmented LRU (SLRU) eviction policy.
+ * Keys are hashed into independently locked stripes so concurrent
+ * readers of different keys do not contend on a single lock.
+ * Each stripe is split into a probationary segment where
+ * new entries are put and a protected segment where entries are promoted
+ * to once they are accessed a second time.  This keeps a burst of one-off
+ * lookups from flushing out the frequently used entries.
+ * <p>
+ * The bound is expressed as a total weight; each entry's weight
+ * is computed by a {@link ToLongFunction} weigher (usually an estimate of the number of bytes)
+ * or is 1 per entry if no weigher is given.
+ * Values are held by {@link SoftReference}s so the cache will
+ * never prevent the JVM from reclaiming memory.
+ * <p>
+ * {@code null} keys and values are not allowed.
+ * 
+ * @author dkatzel
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * 
+ * @since 5.3
+ */
+public final class ConcurrentSegmentedLRUCache<K,V> {
+	/**
+	 * Maximum number of stripes.
+	 */
+	private static final int MAX_STRIPES = 64;
+	/**
+	 * The percentage of each stripe's weight that can be protected.
+	 */
+	private static final int PROTECTED_PERCENTAGE = 80;
+	
+	private final Segment<K,V>[] segments;
+	private final int mask;
+	private final ToLongFunction<? super V> weigher;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	/**
+	 * Create a new cache that holds at most {@code maxSize} entries.
+	 * @param maxSize the max number of entries to keep; must be &ge; 1.
+	 * @throws IllegalArgumentException if maxSize &lt; 1.
+	 */
+	public ConcurrentSegmentedLRUCache(int maxSize){
+		this(maxSize, null, computeNumberOfStripes(maxSize, 16));
+	}
+	/**
+	 * Create a new cache whose total weight is at most {@code maxWeight}.
+	 * @param maxWeight the max total weight of all the entries; must be &ge; 1.
+	 * @param weigher the function to compute the weight of each value;
+	 * can not be null.  Weights must be &ge; 0.
+	 * @throws IllegalArgumentException if maxWeight &lt; 1.
+	 * @throws NullPointerException if weigher is null.
+	 */
+	public ConcurrentSegmentedLRUCache(long maxWeight, ToLongFunction<? super V> weigher){
+		this(maxWeight, Objects.requireNonNull(weigher), computeNumberOfStripes(maxWeight, 1<<20));
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private ConcurrentSegmentedLRUCache(long maxWeight, ToLongFunction<? super V> weigher, int numberOfStripes){
+		if(maxWeight <1){
+			throw new IllegalArgumentException("max weight must be >= 1");
+		}
+		this.weigher = weigher;
+		segments = new Segment[numberOfStripes];
+		long perSegment = maxWeight / numberOfStripes;
+		long remainder = maxWeight % numberOfStripes;
+		for(int i=0; i< numberOfStripes; i++){
+			segments[i] = new Segment<>(perSegment + (i < remainder ? 1 : 0));
+		}
+		mask = numberOfStripes -1;
+	}
+	/**
+	 * Compute the number of stripes to use: enough to spread
+	 * the lock contention across the available processors
+	 * but not so many that each stripe is too small to be a good LRU.
+	 * @return a power of 2 &ge;1.
+	 */
+	private static int computeNumberOfStripes(long maxWeight, long minWeightPerStripe){
+		long bySize = Math.max(1, maxWeight / minWeightPerStripe);
+		long byConcurrency = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors() * 4L);
+		return Integer.highestOneBit((int) Math.min(bySize, byConcurrency));
+	}
+	
+	private Segment<K,V> segmentFor(Object key){
+		int h = key.hashCode();
+		h ^= h >>>16;
+		return segments[h & mask];
+	}
+	/**
+	 * Get the value for the given key.
+	 * @param key the key; can not be null.
+	 * @return the value or {@code null} if the value
+	 * is not in the cache.
+	 * @throws NullPointerException if key is null.
+	 */
+	public V get(K key){
+		V value = segmentFor(key).get(key, evictions);
+		if(value ==null){
+			misses.increment();
+		}else{
+			hits.increment();
+		}
+		return value;
+	}
+	/**
+	 * Put the given key-value pair into the cache, replacing
+	 * any previous value for that key.  This may cause
+	 * other entries to be evicted.  If the value
+	 * weighs more than can fit in its stripe, then it is not
+	 * cached.
+	 * @param key the key; can not be null.
+	 * @param value the value; can not be null.
+	 * @throws NullPointerException if either parameter is null.
+	 */
+	public void put(K key, V value){
+		Objects.requireNonNull(value);
+		long weight = weigher==null? 1 : weigher.applyAsLong(value);
+		if(weight <0){
+			throw new IllegalStateException("weight can not be negative : " + weight);
+		}
+		segmentFor(key).put(key, value, weight, evictions);
+	}
+	/**
+	 * Remove all the entries from this cache.
+	 * The hit, miss and eviction counts are not reset.
+	 */
+	public void clear(){
+		for(Segment<K,V> segment : segments){
+			segment.clear();
+		}
+	}
+	/**
+	 * Get the number of entries currently in the cache.
+	 * This count may include values whose
+	 * references have been cleared by the garbage collector
+	 * but not yet noticed by the cache.
+	 * @return the number of entries.
+	 */
+	public long size(){
+		long size=0;
+		for(Segment<K,V> segment : segments){
+			size += segment.size();
+		}
+		return size;
+	}
+	/**
+	 * Get the total weight of the entries in the cache.
+	 * @return the total weight; will be {@link #size()} if
+	 * no weigher was used.
+	 */
+	public long weightedSize(){
+		long weight=0;
+		for(Segment<K,V> segment : segments){
+			weight += segment.weight();
+		}
+		return weight;
+	}
+	/**
+	 * Get the number of calls to {@link #get(Object)}
+	 * that returned a value.
+	 * @return the hit count.
+	 */
+	public long getHitCount(){
+		return hits.sum();
+	}
+	/**
+	 * Get the number of calls to {@link #get(Object)}
+	 * that returned {@code null}.
+	 * @return the miss count.
+	 */
+	public long getMissCount(){
+		return misses.sum();
+	}
+	/**
+	 * Get the number of entries removed either
+	 * to stay under the weight bound or because
+	 * their value was garbage collected.
+	 * Explicit calls to {@link #clear()} are not counted.
+	 * @return the eviction count.
+	 */
+	public long getEvictionCount(){
+		return evictions.sum();
+	}
+	
+	private static final class Node<V> extends SoftReference<V>{
+		final long weight;
+		boolean isProtected;
+		
+		Node(V value, long weight) {
+			super(value);
+			this.weight = weight;
+		}
+	}
+	/**
+	 * One lock stripe of the cache; all methods
+	 * are guarded by the segment's monitor.
+	 */
+	private static final class Segment<K,V>{
+		private final long maxWeight;
+		private final long maxProtectedWeight;
+		/**
+		 * Both maps are access ordered so the eldest entry
+		 * is the least recently used.
+		 */
+		private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75F, true);
+		private final LinkedHashMap<K, Node<V>> protectedMap = new LinkedHashMap<>(16, 0.75F, true);
+		
+		private long weight;
+		private long protectedWeight;
+		
+		Segment(long maxWeight){
+			this.maxWeight = maxWeight;
+			this.maxProtectedWeight = maxWeight * PROTECTED_PERCENTAGE /100;
+		}
+		
+		synchronized V get(K key, LongAdder evictions){
+			Node<V> node = protectedMap.get(key);
+			if(node !=null){
+				V value = node.get();
+				if(value ==null){
+					protectedMap.remove(key);
+					weight -= node.weight;
+					protectedWeight -= node.weight;
+					evictions.increment();
+				}
+				return value;
+			}
+			node = probation.remove(key);
+			if(node ==null){
+				return null;
+			}
+			V value = node.get();
+			if(value ==null){
+				weight -= node.weight;
+				evictions.increment();
+				return null;
+			}
+			//second access: promote to protected
+			node.isProtected = true;
+			protectedMap.put(key, node);
+			protectedWeight += node.weight;
+			Iterator<Map.Entry<K, Node<V>>> iter = protectedMap.entrySet().iterator();
+			while(protectedWeight > maxProtectedWeight && iter.hasNext()){
+				Map.Entry<K, Node<V>> eldest = iter.next();
+				if(eldest.getValue() == node){
+					//never demote what we just promoted
+					break;
+				}
+				iter.remove();
+				Node<V> demoted = eldest.getValue();
+				demoted.isProtected = false;
+				protectedWeight -= demoted.weight;
+				probation.put(eldest.getKey(), demoted);
+			}
+			return value;
+		}
+		
+		synchronized void put(K key, V value, long valueWeight, LongAdder evictions){
+			Node<V> old = probation.remove(key);
+			if(old ==null){
+				old = protectedMap.remove(key);
+			}
+			if(old !=null){
+				weight -= old.weight;
+				if(old.isProtected){
+					protectedWeight -= old.weight;
+				}
+			}
+			if(valueWeight > maxWeight){
+				//too big to ever fit
+				return;
+			}
+			Node<V> node = new Node<>(value, valueWeight);
+			probation.put(key, node);
+			weight += valueWeight;
+			//evict from the probationary segment first
+			//and only touch the protected entries if the new node
+			//is the only thing left on probation.
+			evict(probation, node, evictions);
+			evict(protectedMap, node, evictions);
+		}
+		
+		private void evict(LinkedHashMap<K, Node<V>> map, Node<V> newNode, LongAdder evictions){
+			Iterator<Node<V>> iter = map.values().iterator();
+			while(weight > maxWeight && iter.hasNext()){
+				Node<V> eldest = iter.next();
+				if(eldest == newNode){
+					break;
+				}
+				iter.remove();
+				weight -= eldest.weight;
+				if(eldest.isProtected){
+					protectedWeight -= eldest.weight;
+				}
+				evictions.increment();
+			}
+		}
+		
+		synchronized void clear(){
+			probation.clear();
+			protectedMap.clear();
+			weight=0;
+			protectedWeight=0;
+		}
+		
+		synchronized long size(){
+			return probation.size() + protectedMap.size();
+		}
+		
+		synchronized long weight(){
+			return weight;
+		}
+	}
+}
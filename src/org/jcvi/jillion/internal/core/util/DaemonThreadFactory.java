@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * {@code DaemonThreadFactory} is a {@link ThreadFactory}
+ * that creates daemon threads with a common name prefix
+ * so that any worker threads Jillion creates in the background
+ * will never keep the JVM from exiting and are easy to identify
+ * in thread dumps.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class DaemonThreadFactory implements ThreadFactory{
+
+	private final String namePrefix;
+	private final AtomicInteger threadCount = new AtomicInteger();
+	/**
+	 * Create a new {@link DaemonThreadFactory}
+	 * whose threads will be named {@code namePrefix-N}.
+	 * 
+	 * @param namePrefix the prefix of each thread name; can not be null.
+	 * 
+	 * @throws NullPointerException if namePrefix is null.
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		if(namePrefix ==null){
+			throw new NullPointerException("name prefix can not be null");
+		}
+		this.namePrefix = namePrefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, namePrefix + "-" + threadCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util;
+
+import java.util.function.IntConsumer;
+/**
+ * {@code ImplicitIntervalTree} is an immutable augmented interval tree
+ * over primitive begin and end coordinates that are already sorted by begin.
+ * <p>
+ * The sorted array <em>is</em> the tree: the node at index i has level
+ * equal to the number of trailing 1 bits in i
+ * and each node also stores the max end of its subtree.
+ * This only needs one extra {@code long[]} on top of the coordinates
+ * and a query takes O(log n + k) time where k is the number of intervals found.
+ * Callers keep their own objects in a parallel array and use the indexes
+ * returned by the queries to look them up.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+public final class ImplicitIntervalTree {
+	/**
+	 * Subtrees at this level or below are
+	 * small enough that it is faster to scan them linearly.
+	 */
+	private static final int MAX_LINEAR_SCAN_LEVEL = 3;
+	
+	private final long[] begins;
+	private final long[] exclusiveEnds;
+	private final long[] maxEnds;
+	private final int rootLevel;
+	/**
+	 * Create a new tree.  The arrays are not copied
+	 * and must not be modified afterwards.
+	 * 
+	 * @param begins the begin coordinate of each interval sorted in ascending order;
+	 * can not be null.
+	 * @param exclusiveEnds the exclusive end coordinate of each interval
+	 * in the same order as the begins; can not be null.
+	 * 
+	 * @throws NullPointerException if either array is null.
+	 * @throws IllegalArgumentException if the arrays are different lengths.
+	 */
+	public ImplicitIntervalTree(long[] begins, long[] exclusiveEnds){
+		if(begins.length != exclusiveEnds.length){
+			throw new IllegalArgumentException("begins and ends must be the same length");
+		}
+		this.begins = begins;
+		this.exclusiveEnds = exclusiveEnds;
+		this.maxEnds = new long[begins.length];
+		this.rootLevel = computeMaxEnds();
+	}
+	/**
+	 * Populate the max end values of each node in the implicit tree.
+	 * Leaves (the even indexes) just have their own end; each internal node at level k
+	 * takes the max of its own end and the max ends of its 2 children which
+	 * are 2<sup>k-1</sup> away on either side.  If the right child is past the end of the array,
+	 * then the max end of the last complete subtree is used instead.
+	 * 
+	 * @return the level of the root node, or -1 if there are no intervals.
+	 */
+	private int computeMaxEnds(){
+		int n = begins.length;
+		if(n ==0){
+			return -1;
+		}
+		long lastIndex =0;
+		long lastMaxEnd =0;
+		for(int i=0; i< n; i+=2){
+			lastIndex = i;
+			maxEnds[i] = exclusiveEnds[i];
+			lastMaxEnd = exclusiveEnds[i];
+		}
+		int k;
+		for(k=1; (1L<<k) <= n; k++){
+			long x = 1L << (k-1);
+			long step = x << 2;
+			for(long i= (x<<1) -1; i< n; i+=step){
+				long leftEnd = maxEnds[(int) (i-x)];
+				long rightEnd = i+x < n ? maxEnds[(int)(i+x)] : lastMaxEnd;
+				maxEnds[(int)i] = Math.max(exclusiveEnds[(int) i], Math.max(leftEnd, rightEnd));
+			}
+			lastIndex = ((lastIndex >> k) & 1) ==1 ? lastIndex - x : lastIndex + x;
+			if(lastIndex < n && maxEnds[(int)lastIndex] > lastMaxEnd){
+				lastMaxEnd = maxEnds[(int) lastIndex];
+			}
+		}
+		return k-1;
+	}
+	/**
+	 * Get the number of intervals in this tree.
+	 * 
+	 * @return the number of intervals; will always be &ge; 0.
+	 */
+	public int size(){
+		return begins.length;
+	}
+	/**
+	 * Call the given consumer with the index of every interval
+	 * that overlaps the given half open coordinates
+	 * in ascending index order.
+	 * 
+	 * @param begin the inclusive begin coordinate.
+	 * @param exclusiveEnd the exclusive end coordinate; if this is &le; begin,
+	 * then nothing overlaps.
+	 * @param consumer the consumer of the indexes; can not be null.
+	 * 
+	 * @return the number of overlapping intervals found.
+	 * 
+	 * @throws NullPointerException if consumer is null.
+	 */
+	public int forEachOverlapping(long begin, long exclusiveEnd, IntConsumer consumer){
+		if(exclusiveEnd <= begin || rootLevel <0){
+			return 0;
+		}
+		int n = begins.length;
+		int count=0;
+		//each level is on the stack at most twice
+		long[] nodes = new long[2*rootLevel + 4];
+		int[] levels = new int[nodes.length];
+		boolean[] leftDone = new boolean[nodes.length];
+		int size=0;
+		nodes[size] = (1L<<rootLevel) -1;
+		levels[size] = rootLevel;
+		leftDone[size++] = false;
+		
+		while(size >0){
+			size--;
+			long x = nodes[size];
+			int k = levels[size];
+			if(k <= MAX_LINEAR_SCAN_LEVEL){
+				//small subtree just scan it in order
+				long first = x >> k << k;
+				long last = Math.min(n, first + (1L << (k+1)) -1);
+				for(int i = (int) first; i < last && begins[i] < exclusiveEnd; i++){
+					if(begin < exclusiveEnds[i]){
+						consumer.accept(i);
+						count++;
+					}
+				}
+			}else if(!leftDone[size]){
+				long left = x - (1L<<(k-1));
+				//revisit this node after the left subtree is done
+				leftDone[size++] = true;
+				//the left child may be past the end of the array
+				if(left >= n || maxEnds[(int) left] > begin){
+					nodes[size] = left;
+					levels[size] = k-1;
+					leftDone[size++] = false;
+				}
+			}else if(x < n && begins[(int) x] < exclusiveEnd){
+				if(begin < exclusiveEnds[(int) x]){
+					consumer.accept((int) x);
+					count++;
+				}
+				nodes[size] = x + (1L<<(k-1));
+				levels[size] = k-1;
+				leftDone[size++] = false;
+			}
+		}
+		return count;
+	}
+}
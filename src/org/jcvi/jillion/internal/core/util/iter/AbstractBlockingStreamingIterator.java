@@ -21,10 +21,15 @@
 package org.jcvi.jillion.internal.core.util.iter;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.NoSuchElementException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
@@ -33,12 +38,22 @@ import org.jcvi.jillion.core.util.iter.StreamingIterator;
  * {@code AbstractBlockingStreamingIterator}
  * is a {@link StreamingIterator} that is
  * meant be used to iterate over a large computationally intensive
- * or memory intensive process.  Only 1 record (the next record
- * to be returned by {@link Iterator#next()}) will be referenced by this class.
+ * or memory intensive process.  
  * This class will perform the intensive computation in a background Thread
- * and will block that Thread until the next item to be iterated 
- * is required.  Elements to be iterated over are placed onto the blocking
+ * and will block that Thread when too many records are waiting
+ * to be iterated.  Elements to be iterated over are placed onto the blocking
  * iterator by {@link #blockingPut(Object)}.
+ * <p/>
+ * Elements are handed to the iterating thread in batches
+ * (see {@link #AbstractBlockingStreamingIterator(int)}) so the two threads
+ * only have to synchronize once per batch.  By default the batch size is 1
+ * so only a few records will be referenced by this class at a time;
+ * subclasses that iterate over many small records should use
+ * a larger batch size such as {@link #DEFAULT_RECORD_BATCH_SIZE}.
+ * <p/>
+ * The background work is run by a shared pool of daemon threads
+ * (or virtual threads if the JVM supports them) so 
+ * a blocked iterator will never prevent the JVM from exiting.
  * <strong>WARNING:</strong> Client code must be very careful
  * to always make sure that this iterator is closed when finished.
  * If the iterator does not reach the end or
@@ -106,43 +121,76 @@ import org.jcvi.jillion.core.util.iter.StreamingIterator;
  * @param <T> the type of elements being iterated over.
  */
 public abstract class AbstractBlockingStreamingIterator<T> implements StreamingIterator<T>{
-
+	/**
+	 * Suggested batch size for subclasses that iterate
+	 * over lots of small records like reads or ids.
+	 */
+	protected static final int DEFAULT_RECORD_BATCH_SIZE = 128;
+	/**
+	 * Number of batches the background thread can
+	 * get ahead of the iterating thread.
+	 */
+	private static final int NUMBER_OF_BATCHES = 4;
+	
 	private final Object endOfFileToken = new Object();
-    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(1);
-    private volatile Object nextRecord=null;
+	private final BatchRingBuffer ringBuffer;
+	
     private volatile boolean isClosed=false;
     
     private volatile RuntimeException uncaughtException;
-
+    //only accessed by the iterating thread
+    private Object nextRecord=null;
+    private Object[] consumerBatch;
+    private int consumerBatchSize, consumerOffset;
+    //only accessed by the background thread
+    private Object[] producerBatch;
+    private int producerOffset;
+    
+    /**
+     * Create a new instance that hands
+     * each record to the iterating thread one at a time.
+     */
+    protected AbstractBlockingStreamingIterator(){
+    	this(1);
+    }
     /**
-     * @throws InterruptedException 
+     * Create a new instance that hands
+     * records to the iterating thread in batches.
+     * @param batchSize the max number of records in each batch;
+     * must be &ge; 1.
      * 
+     * @throws IllegalArgumentException if batchSize &lt; 1.
      */
+    protected AbstractBlockingStreamingIterator(int batchSize){
+    	ringBuffer = new BatchRingBuffer(NUMBER_OF_BATCHES, batchSize);
+    }
+    
     private void blockingGetNextRecord(){
-        if(!isClosed){
-            try {
-            	Object obj =null;
-            	while(obj ==null){
-            		//to avoid a deadlock we will 
-            		//stop blocking after 1 second
-            		//to check if an exception was thrown
-            		obj = queue.poll(1, TimeUnit.SECONDS);
-            		if(obj ==null){
-            			//check exception
-            			if(uncaughtException !=null){
-            				nextRecord = null;
-            				break;
-            			}
-            		}else{
-            			nextRecord = obj;
-            		}
-            	}
-				
-			} catch (InterruptedException e) {
-				//assume interrupted is closed?
-				IOUtil.closeAndIgnoreErrors(this);
-			}     
+        if(isClosed){
+        	return;
         }
+    	if(consumerBatch !=null){
+    		if(consumerOffset < consumerBatchSize){
+    			nextRecord = consumerBatch[consumerOffset++];
+    			return;
+    		}
+    		consumerBatch = null;
+    		ringBuffer.release();
+    	}
+        try {
+        	int size = ringBuffer.acquire();
+        	if(size < 0){
+        		nextRecord = endOfFileToken;
+        		return;
+        	}
+        	consumerBatch = ringBuffer.consumerSlot();
+        	consumerBatchSize = size;
+        	consumerOffset = 1;
+        	nextRecord = consumerBatch[0];
+		} catch (InterruptedException e) {
+			//assume interrupted is closed?
+			IOUtil.closeAndIgnoreErrors(this);
+		}     
     }
     /**
      * This starts the visiting in a separate thread.
@@ -150,19 +198,20 @@ public abstract class AbstractBlockingStreamingIterator<T> implements StreamingI
      * {@link #hasNext()} or {@link #next()}.
      */
     public void start(){
-      final IteratorThread iteratorThread =new IteratorThread();
-        iteratorThread.start();
-        //if the vm exits while we are still blocking
-        //we will run forever...
-        //add shutdown hook to try to kill ourselves
-        Runtime.getRuntime().addShutdownHook(new Thread(){
-            @Override
-            public void run() {
-                iteratorThread.kill();
-            }
-        });
+    	BackgroundExecutor.INSTANCE.execute(this::runInBackground);
         blockingGetNextRecord();
-		
+    }
+    
+    private void runInBackground(){
+    	try{
+            backgroundThreadRunMethod();
+            finishedIterating();
+        }catch(RuntimeException e){
+       	 	setErroredOut(e);                
+        }catch(Error e){
+        	setErroredOut(new IllegalStateException(e));
+        	throw e;
+        }
     }
     /**
      * This is the method that is called by the {@link Thread#run()}
@@ -187,21 +236,41 @@ public abstract class AbstractBlockingStreamingIterator<T> implements StreamingI
 	 * are no more records left to block for.
 	 */
     private void finishedIterating(){
-    	blockingPut(endOfFileToken);
+    	if(producerOffset > 0){
+    		ringBuffer.publish(producerOffset);
+    		producerBatch = null;
+    		producerOffset = 0;
+    	}
+    	ringBuffer.finish();
     }
     /**
      * Put the given object onto the queue to be iterated over
      * and block until there is room for it in the queue.
+     * Objects are only visible to the iterating thread
+     * once their batch is full or the background method returns.
      * @param obj the object to put.
      */
     public final void blockingPut(Object obj){
-        if(!isClosed){
-	        try {
-	            queue.put(obj);
-	        } catch (InterruptedException e) {
-	            throw new IllegalStateException(e);
-	        }
-	    }
+        if(isClosed){
+        	return;
+        }
+        try {
+        	if(producerBatch ==null){
+        		producerBatch = ringBuffer.producerSlot();
+        		if(producerBatch ==null){
+        			//closed while we waited
+        			return;
+        		}
+        	}
+        	producerBatch[producerOffset++] = obj;
+        	if(producerOffset == producerBatch.length){
+        		ringBuffer.publish(producerOffset);
+        		producerBatch = null;
+        		producerOffset = 0;
+        	}
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
     }
     /**
      * 
@@ -225,14 +294,13 @@ public abstract class AbstractBlockingStreamingIterator<T> implements StreamingI
     	}
         isClosed=true;
         nextRecord=endOfFileToken;
-        queue.clear();	        
+        consumerBatch = null;
+        ringBuffer.close();
     }
 	
     private void setErroredOut(RuntimeException uncaughtException){
 		AbstractBlockingStreamingIterator.this.uncaughtException = uncaughtException;
-		nextRecord=endOfFileToken;
-		
-		queue.clear();
+		ringBuffer.finish();
     }
 	/**
 	 * Safety-net to close the iterator
@@ -271,11 +339,17 @@ public abstract class AbstractBlockingStreamingIterator<T> implements StreamingI
 	     @Override
 	     @SuppressWarnings("PMD.CompareObjectsWithEquals")
 	     public final boolean hasNext() {
-	         if(!isClosed && uncaughtException !=null){
+	    	 if(isClosed){
+	    		 return false;
+	    	 }
+	    	 //records published before the background thread
+	    	 //threw an exception are still iterated over
+	    	 //before the exception is re-thrown
+	         if(nextRecord ==endOfFileToken && uncaughtException !=null){
                 throw uncaughtException;
              }
 	         
-	        return !isClosed && nextRecord !=endOfFileToken;
+	        return nextRecord !=endOfFileToken;
 	     }
 	    
 	     
@@ -287,27 +361,33 @@ public abstract class AbstractBlockingStreamingIterator<T> implements StreamingI
 	 	}
 
 	     /**
-	      * Background thread that runs this iterator
-	      * and can be killed
-	      * @author dkatzel
-	      *
-	      *
+	      * Shared pool that runs the background methods
+	      * of all the iterators.  Each running iterator
+	      * needs its own thread since it blocks until its records
+	      * are consumed, so the pool can't cap the number of running tasks
+	      * without risking deadlock, but idle threads are reused
+	      * and die off after a while.  Threads are daemons
+	      * so abandoned iterators can't keep the JVM alive.
 	      */
-	     private class IteratorThread extends Thread{
-	         /**
-	          * closes the blocked iterator.
-	          */
-	         public void kill(){
-	             IOUtil.closeAndIgnoreErrors(AbstractBlockingStreamingIterator.this);                
-	         }
-	         @Override
-	         public void run() {
-	             try{
-	                 backgroundThreadRunMethod();
-	                 finishedIterating();
-	             }catch(RuntimeException e){
-	            	 setErroredOut(e);                
-	             }
-	         }
+	     private static final class BackgroundExecutor{
+	    	 static final ExecutorService INSTANCE = create();
+	    	 
+	    	 private static ExecutorService create(){
+	    		 try{
+	    			 //Java 21+ virtual threads are cheap to block
+	    			 Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+	    			 return (ExecutorService) m.invoke(null);
+	    		 }catch(ReflectiveOperationException | RuntimeException e){
+	    			 //not supported fall back to pooled platform threads
+	    		 }
+	    		 AtomicInteger counter = new AtomicInteger();
+	    		 ThreadFactory factory = r ->{
+	    			 Thread t = new Thread(r, "jillion-streaming-iterator-" + counter.incrementAndGet());
+	    			 t.setDaemon(true);
+	    			 return t;
+	    		 };
+	    		 return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 
+	    				 30L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), factory);
+	    	 }
 	     }
 }
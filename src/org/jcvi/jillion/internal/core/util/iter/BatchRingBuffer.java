@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util.iter;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed size ring of reusable batch arrays used to hand
+ * elements from a single producer thread to a single consumer thread.
+ * The producer fills the slot at the tail of the ring outside of any lock
+ * and then publishes it; the consumer reads the slot at the head in place
+ * and releases it when done so the same arrays are used over and over.
+ * Threads only synchronize once per batch instead of once per element.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class BatchRingBuffer {
+
+	private final Object[][] slots;
+	private final int[] sizes;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	/**
+	 * Number of published slots that have not been released yet;
+	 * this includes the slot the consumer is currently reading.
+	 */
+	private int count;
+	private int head, tail;
+	private boolean finished, closed;
+	
+	/**
+	 * Create a new ring buffer.
+	 * @param numberOfSlots the number of batches that can be in flight at once;
+	 * must be &ge; 1.
+	 * @param batchSize the max number of elements in each batch; must be &ge; 1.
+	 * 
+	 * @throws IllegalArgumentException if either parameter is &lt; 1.
+	 */
+	BatchRingBuffer(int numberOfSlots, int batchSize){
+		if(numberOfSlots < 1){
+			throw new IllegalArgumentException("number of slots must be >= 1");
+		}
+		if(batchSize < 1){
+			throw new IllegalArgumentException("batch size must be >= 1");
+		}
+		slots = new Object[numberOfSlots][batchSize];
+		sizes = new int[numberOfSlots];
+	}
+	
+	int getBatchSize(){
+		return slots[0].length;
+	}
+	/**
+	 * Get the next empty slot for the producer to fill,
+	 * blocking until one is available.
+	 * @return the slot array, or {@code null} if this buffer has been closed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	Object[] producerSlot() throws InterruptedException{
+		lock.lock();
+		try{
+			while(count == slots.length && !closed){
+				notFull.await();
+			}
+			return closed ? null : slots[tail];
+		}finally{
+			lock.unlock();
+		}
+	}
+	/**
+	 * Publish the slot returned by the last call to {@link #producerSlot()}.
+	 * @param size the number of elements the producer put into the slot.
+	 */
+	void publish(int size){
+		lock.lock();
+		try{
+			if(closed){
+				Arrays.fill(slots[tail], 0, size, null);
+				return;
+			}
+			sizes[tail] = size;
+			tail = (tail +1) % slots.length;
+			count++;
+			notEmpty.signal();
+		}finally{
+			lock.unlock();
+		}
+	}
+	/**
+	 * The producer will not publish any more batches.
+	 */
+	void finish(){
+		lock.lock();
+		try{
+			finished = true;
+			notEmpty.signalAll();
+		}finally{
+			lock.unlock();
+		}
+	}
+	/**
+	 * Get the number of elements in the slot at the head of the ring,
+	 * blocking until the producer publishes one.  The elements
+	 * can then be read from {@link #consumerSlot()} until
+	 * {@link #release()} is called.
+	 * @return the number of elements in the head slot; or -1
+	 * if there are no more batches because the producer finished or this buffer
+	 * was closed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	int acquire() throws InterruptedException{
+		lock.lock();
+		try{
+			while(count ==0 && !finished && !closed){
+				notEmpty.await();
+			}
+			if(closed || count ==0){
+				return -1;
+			}
+			return sizes[head];
+		}finally{
+			lock.unlock();
+		}
+	}
+	
+	Object[] consumerSlot(){
+		return slots[head];
+	}
+	/**
+	 * Done reading the head slot, clear out its references
+	 * so they can be garbage collected and hand the slot back to the producer.
+	 */
+	void release(){
+		lock.lock();
+		try{
+			if(count ==0){
+				return;
+			}
+			Arrays.fill(slots[head], 0, sizes[head], null);
+			head = (head +1) % slots.length;
+			count--;
+			notFull.signal();
+		}finally{
+			lock.unlock();
+		}
+	}
+	/**
+	 * Close this buffer, waking up any blocked threads
+	 * and dropping any unread batches.
+	 */
+	void close(){
+		lock.lock();
+		try{
+			closed = true;
+			for(Object[] slot : slots){
+				Arrays.fill(slot, null);
+			}
+			count=0;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		}finally{
+			lock.unlock();
+		}
+	}
+}
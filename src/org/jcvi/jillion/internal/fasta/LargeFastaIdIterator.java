@@ -59,7 +59,7 @@ public final class LargeFastaIdIterator extends AbstractBlockingStreamingIterato
      * @param fastaFile
      */
     private LargeFastaIdIterator(FastaParser parser, Predicate<String> filter) {
-    	
+    	super(DEFAULT_RECORD_BATCH_SIZE);
         this.parser = parser;
         this.filter = filter;
     }
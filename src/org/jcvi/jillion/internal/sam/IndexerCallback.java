@@ -24,4 +24,23 @@ import org.jcvi.jillion.sam.VirtualFileOffset;
 
 public interface IndexerCallback{
 	void encodedIndex(VirtualFileOffset start, VirtualFileOffset end);
+	/**
+	 * Get an {@link IndexerCallback} that has captured
+	 * any state this callback needs about the current write
+	 * so that {@link #encodedIndex(VirtualFileOffset, VirtualFileOffset)}
+	 * can be called later after more data has been written.
+	 * This is needed by writers that don't know the final
+	 * {@link VirtualFileOffset}s of the data at the time it is written
+	 * (for example, if the data is compressed in a background thread).
+	 * The returned callbacks will be called in the same order
+	 * they were captured.
+	 * 
+	 * @return an {@link IndexerCallback}; will never be null
+	 * but may be this same instance if no state needs to be captured.
+	 * 
+	 * @since 5.3
+	 */
+	default IndexerCallback captureCurrentState(){
+		return this;
+	}
 }
@@ -23,6 +23,7 @@ package org.jcvi.jillion.internal.sam;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.text.DateFormat;
@@ -456,13 +457,16 @@ public final class SamUtil {
 	
 	
 	public static void writeAsBamRecord(OutputStream out, SamHeader header, SamRecord record, int refIndex, int nextNameIndex) throws IOException{
-		//TODO compute buffer size first?
-		//it would be hard because
-		//we would have to know how many bytes
-		//the attributes are encoded as...
-		//for now just pick a large buffer size
-		//and hope we don't overflow...
-		ByteBuffer buf = ByteBuffer.allocate(8096);
+		//the fixed length parts of the record are easy to compute
+		//but it would be hard to know how many bytes
+		//the attributes are encoded as
+		//so just leave a lot of room for them
+		//and grow the buffer if an attribute doesn't fit.
+		NucleotideSequence seq =record.getSequence();
+		int seqLength = seq ==null ? 0 :(int)seq.getLength();
+		int numberOfCigarOps = record.mapped()? record.getCigar().getNumberOfElements() : 0;
+		int fixedLength = 36 + record.getQueryName().length() +1 + 4* numberOfCigarOps + (seqLength+1)/2 + seqLength;
+		ByteBuffer buf = ByteBuffer.allocate(fixedLength + 8096);
 		buf.order(ByteOrder.LITTLE_ENDIAN);
 		//skip first 4 bytes so we can write the length of record last
 		buf.position(4);
@@ -496,8 +500,6 @@ public final class SamUtil {
 		//makes sure we only have lower 4 bytes of data
 		buf.putInt((int) (bin & 0x00000000FFFFFFFFL ));
 		buf.putInt((int) (flagsAndNumCigarOps & 0x00000000FFFFFFFFL ));
-		NucleotideSequence seq =record.getSequence();
-		int seqLength = seq ==null ? 0 :(int)seq.getLength();			
 		
 		buf.putInt(seqLength);
 		buf.putInt(nextNameIndex);
@@ -514,24 +516,49 @@ public final class SamUtil {
 			writeQualities(buf, seqLength, record.getQualities());
 		}
 		for(SamAttribute attribute : record.getAttributes()){
-			SamAttributeKey key =attribute.getKey();
-			
-			buf.put((byte)(key.getFirstChar() & 0xFF));
-			buf.put((byte)(key.getSecondChar() & 0xFF));
-			
-			SamAttributeType type = attribute.getType();
-			
-			type.encodeInBam(attribute.getValue(), buf);
+			int attributeStart = buf.position();
+			while(true){
+				try{
+					encodeAttributeInBam(attribute, buf);
+					break;
+				}catch(BufferOverflowException e){
+					//attribute too big for remaining space
+					//re-encode it into a larger buffer
+					buf = growBamRecordBuffer(buf, attributeStart);
+				}
+			}
 		}
 		
 		int bytesWritten =buf.position();
 		buf.position(0);
 		buf.putInt(bytesWritten -4);
 
-		out.write(Arrays.copyOf(buf.array(), bytesWritten));
+		out.write(buf.array(), 0, bytesWritten);
 	}
 	
 	
+	private static void encodeAttributeInBam(SamAttribute attribute, ByteBuffer buf) throws IOException{
+		SamAttributeKey key =attribute.getKey();
+		
+		buf.put((byte)(key.getFirstChar() & 0xFF));
+		buf.put((byte)(key.getSecondChar() & 0xFF));
+		
+		SamAttributeType type = attribute.getType();
+		
+		type.encodeInBam(attribute.getValue(), buf);
+	}
+	/**
+	 * Create a new buffer twice the capacity of the given buffer
+	 * which contains the first {@code length} bytes of the given buffer
+	 * and is positioned right after them.
+	 */
+	private static ByteBuffer growBamRecordBuffer(ByteBuffer buf, int length){
+		ByteBuffer bigger = ByteBuffer.allocate(Math.multiplyExact(buf.capacity(), 2));
+		bigger.order(ByteOrder.LITTLE_ENDIAN);
+		bigger.put(buf.array(), 0, length);
+		return bigger;
+	}
+	
 	private static void writeQualities(ByteBuffer in, int seqLength, QualitySequence qualities) throws IOException {
 		if(qualities ==null){
 			byte[] fake = new byte[seqLength];
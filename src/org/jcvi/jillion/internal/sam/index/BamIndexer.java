@@ -98,6 +98,12 @@ public class BamIndexer implements IndexerCallback{
 		addRecord(currentRecord, start, end);
 
 	}
+	
+	@Override
+	public IndexerCallback captureCurrentState() {
+		SamRecord record = currentRecord;
+		return (start, end) -> addRecord(record, start, end);
+	}
 
 	public BamIndex createBamIndex(){
 		return new BamIndex(header, createReferenceIndexes(), totalNumberOfUnmappedReads);
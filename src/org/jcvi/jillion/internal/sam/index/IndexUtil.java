@@ -224,6 +224,94 @@ public final class IndexUtil {
 		return new BaiBin(METADATA_BIN_ID, chunks);
 	}
 
+	/**
+	 * Get the sorted, non-overlapping list of {@link Chunk}s
+	 * that must be read to find all the records in the given 
+	 * {@link ReferenceIndex} that might overlap
+	 * the given alignment range.  Only chunks in bins that can overlap the range
+	 * are used, chunks that end before the lowest possible offset 
+	 * according to the linear index are skipped, and chunks
+	 * that overlap or are in the same BGZF block are merged
+	 * so each part of the file is only read once.
+	 * 
+	 * @param refIndex the {@link ReferenceIndex} to query; can not be null.
+	 * @param alignmentRange the 0-based alignment {@link Range} to query; can not be null.
+	 * 
+	 * @return a new List of {@link Chunk}s sorted by begin offset;
+	 * will never be null but may be empty if there can't be any records that overlap.
+	 * 
+	 * @throws NullPointerException if any parameter is null.
+	 * 
+	 * @since 5.3
+	 */
+	public static List<Chunk> getChunksOverlapping(ReferenceIndex refIndex, Range alignmentRange){
+		int[] overlappingBins = SamUtil.getCandidateOverlappingBins(alignmentRange);
+		VirtualFileOffset minOffset = getMinOffsetFromLinearIndex(refIndex.getIntervals(), (int) alignmentRange.getBegin());
+		
+		List<Chunk> chunks = new ArrayList<>();
+		for(Bin bin : refIndex.getBins()){
+			if(Arrays.binarySearch(overlappingBins, bin.getBinNumber()) <0){
+				continue;
+			}
+			for(Chunk chunk : bin.getChunks()){
+				if(minOffset ==null){
+					chunks.add(chunk);
+				}else if(chunk.getEnd().compareTo(minOffset) >0){
+					//no records we care about
+					//can start before the min offset so we can skip that part of the chunk
+					chunks.add(chunk.getBegin().compareTo(minOffset) <0 ? new Chunk(minOffset, chunk.getEnd()) : chunk);
+				}
+			}
+		}
+		if(chunks.size() <2){
+			return chunks;
+		}
+		chunks.sort((a,b)-> a.getBegin().compareTo(b.getBegin()));
+		
+		List<Chunk> merged = new ArrayList<>(chunks.size());
+		Iterator<Chunk> iter = chunks.iterator();
+		Chunk current = iter.next();
+		while(iter.hasNext()){
+			Chunk next = iter.next();
+			//merge if the chunks overlap or if the next chunk
+			//starts in the same BGZF block that the current chunk ends in
+			//since it's cheaper to keep reading than to seek
+			if(next.getBegin().compareTo(current.getEnd()) <=0 
+					|| next.getBegin().getCompressedBamBlockOffset() == current.getEnd().getCompressedBamBlockOffset()){
+				if(next.getEnd().compareTo(current.getEnd()) >0){
+					current = new Chunk(current.getBegin(), next.getEnd());
+				}
+			}else{
+				merged.add(current);
+				current = next;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+	/**
+	 * Get the lowest {@link VirtualFileOffset} a record that
+	 * overlaps the given genomic offset can start at
+	 * according to the linear index.
+	 * 
+	 * @param intervals the linear index intervals.
+	 * @param genomicOffset the 0-based genomic offset.
+	 * @return the {@link VirtualFileOffset} or {@code null}
+	 * if the linear index can't be used.
+	 */
+	private static VirtualFileOffset getMinOffsetFromLinearIndex(VirtualFileOffset[] intervals, int genomicOffset){
+		if(intervals.length ==0){
+			return null;
+		}
+		//like samtools, if the range is past the last interval
+		//use the last interval
+		int i = Math.min(getIntervalOffsetFor(genomicOffset), intervals.length -1);
+		while(i >=0 && intervals[i] ==null){
+			i--;
+		}
+		return i <0 ? null : intervals[i];
+	}
+
 	/**
 	 * Sorts Bins by bin number in increasing order.
 	 * @author dkatzel
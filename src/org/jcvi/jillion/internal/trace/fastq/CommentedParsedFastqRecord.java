@@ -32,6 +32,20 @@ public class CommentedParsedFastqRecord extends ParsedFastqRecord {
         super(id, nucleotideSequence, encodedQualities, qualityCodec, turnOffCompression);
         this.comment = optionalComment;
     }
+    /**
+     * Create a new CommentedParsedFastqRecord using the ASCII
+     * bytes of the bases and encoded qualities as they
+     * appear in the fastq file. The arrays are not copied
+     * so the caller must not modify them afterwards.
+     * 
+     * @since 5.3
+     */
+    public CommentedParsedFastqRecord(String id, byte[] asciiBases,
+            byte[] encodedQualities, FastqQualityCodec qualityCodec,
+            boolean turnOffCompression, String optionalComment) {
+        super(id, asciiBases, encodedQualities, qualityCodec, turnOffCompression);
+        this.comment = optionalComment;
+    }
     
     @Override
     public String getComment() {
@@ -20,6 +20,7 @@
  ******************************************************************************/
 package org.jcvi.jillion.internal.trace.fastq;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalDouble;
@@ -35,10 +36,10 @@ import org.jcvi.jillion.trace.fastq.FastqRecordBuilder;
 public class ParsedFastqRecord implements FastqRecord {
 
     private final String id;
-    private final String encodedQualities;
+    private final byte[] encodedQualities;
     private final FastqQualityCodec qualityCodec;
     
-    private final String nucleotideSequenceString;
+    private final byte[] asciiBases;
     private NucleotideSequence nucleotideSequence;
     private QualitySequence qualitySequence;
     
@@ -48,8 +49,23 @@ public class ParsedFastqRecord implements FastqRecord {
     public ParsedFastqRecord(String id, String nucleotideSequence,
             String encodedQualities, FastqQualityCodec qualityCodec,
             boolean turnOffCompression) {
+        this(id, nucleotideSequence.getBytes(StandardCharsets.ISO_8859_1), 
+        		encodedQualities.getBytes(StandardCharsets.ISO_8859_1),
+        		qualityCodec, turnOffCompression);
+    }
+    /**
+     * Create a new ParsedFastqRecord using the ASCII
+     * bytes of the bases and encoded qualities as they
+     * appear in the fastq file. The arrays are not copied
+     * so the caller must not modify them afterwards.
+     * 
+     * @since 5.3
+     */
+    public ParsedFastqRecord(String id, byte[] asciiBases,
+            byte[] encodedQualities, FastqQualityCodec qualityCodec,
+            boolean turnOffCompression) {
         this.id = id;
-        this.nucleotideSequenceString = nucleotideSequence;
+        this.asciiBases = asciiBases;
         this.encodedQualities = encodedQualities;
         this.qualityCodec = qualityCodec;
         this.turnOffCompression = turnOffCompression;
@@ -57,9 +73,9 @@ public class ParsedFastqRecord implements FastqRecord {
 
     @Override
 	public long getLength() {
-    	//get the string length which will be faster
+    	//get the array length which will be faster
     	//than parsing the length from most NucleotideSequence implementations.
-		return nucleotideSequenceString.length();
+		return asciiBases.length;
 	}
 
 	@Override
@@ -70,7 +86,8 @@ public class ParsedFastqRecord implements FastqRecord {
     @Override
     public NucleotideSequence getNucleotideSequence() {
     	if(nucleotideSequence==null){
-    		nucleotideSequence = new NucleotideSequenceBuilder(nucleotideSequenceString)
+    		nucleotideSequence = new NucleotideSequenceBuilder()
+    									.append(asciiBases, 0, asciiBases.length)
     									.turnOffDataCompression(turnOffCompression)
     									.build();
     	}
@@ -93,7 +110,7 @@ public class ParsedFastqRecord implements FastqRecord {
 
 
     public String getEncodedQualities() {
-        return encodedQualities;
+        return new String(encodedQualities, StandardCharsets.ISO_8859_1);
     }
 
     public FastqQualityCodec getQualityCodec() {
@@ -117,14 +134,13 @@ public class ParsedFastqRecord implements FastqRecord {
         //this should be much faster since we 
         //still have the encoded quality string.
         long total =0;
-        char[] chars = encodedQualities.toCharArray();
-        if(chars.length ==0){
+        if(encodedQualities.length ==0){
             return OptionalDouble.empty();
         }
-        for(int i=0; i< chars.length; i++){
-            total+= chars[i];
+        for(int i=0; i< encodedQualities.length; i++){
+            total+= encodedQualities[i] & 0xFF;
         }
-        double avg = total/chars.length;
+        double avg = total/encodedQualities.length;
         
         return OptionalDouble.of(avg - qualityCodec.getOffset());
     }
@@ -164,15 +180,40 @@ public class ParsedFastqRecord implements FastqRecord {
         return true;
     }
 
+	/**
+	 * Get the ASCII bytes of the bases as they 
+	 * appeared in the fastq file.
+	 * The returned array is not a copy and must not be modified.
+	 * 
+	 * @return the backing array of bases.
+	 * 
+	 * @since 5.3
+	 */
+	public byte[] getAsciiBases() {
+		return asciiBases;
+	}
+	/**
+	 * Get the ASCII bytes of the encoded qualities as they 
+	 * appeared in the fastq file.
+	 * The returned array is not a copy and must not be modified.
+	 * 
+	 * @return the backing array of encoded qualities.
+	 * 
+	 * @since 5.3
+	 */
+	public byte[] getEncodedQualityBytes() {
+		return encodedQualities;
+	}
+	
 	public String getNucleotideString() {
-		return nucleotideSequenceString;
+		return new String(asciiBases, StandardCharsets.ISO_8859_1);
 	}
 	
 	
 	@Override
         public String toString() {
                 return "UncommentedFastqRecord [id=" + id + ", nucleotides="
-                                + nucleotideSequenceString + ", qualities=" + getQualitySequence() + "]";
+                                + getNucleotideString() + ", qualities=" + getQualitySequence() + "]";
         }
 
 	
@@ -191,9 +232,9 @@ public class ParsedFastqRecord implements FastqRecord {
         public ParsedFastqRecordBuilder(FastqRecord record) {
             ParsedFastqRecord r = (ParsedFastqRecord) record;
             this.id = r.id;
-            this.encodedQualities = r.encodedQualities;
+            this.encodedQualities = r.getEncodedQualities();
             this.qualityCodec = r.qualityCodec;
-            this.nucleotideSequenceString = r.nucleotideSequenceString;
+            this.nucleotideSequenceString = r.getNucleotideString();
             this.turnOffCompression = r.turnOffCompression;           
             this.comment = r.getComment();
             
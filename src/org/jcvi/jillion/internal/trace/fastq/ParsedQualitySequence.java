@@ -33,7 +33,7 @@ import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
 import org.jcvi.jillion.trace.fastq.FastqQualityCodec;
 /**
  * A special implementation of {@link QualitySequence}
- * that decodes on the fly from the encoded String from a 
+ * that decodes on the fly from the encoded ASCII bytes from a 
  * fastq file.  This allows random access and conversion
  * to byte arrays and {@link QualitySequenceBuilder}s
  * without the overhead of building a {@link QualitySequence}
@@ -49,7 +49,7 @@ import org.jcvi.jillion.trace.fastq.FastqQualityCodec;
 class ParsedQualitySequence implements QualitySequence{
 
     private final FastqQualityCodec codec;
-    private final String encodedQualities;
+    private final byte[] encodedQualities;
     private DoubleSummaryStatistics stats;
     /**
      * cached hashcode.
@@ -57,7 +57,7 @@ class ParsedQualitySequence implements QualitySequence{
     private int hash;
     
     ParsedQualitySequence(FastqQualityCodec codec,
-            String encodedQualities) {
+            byte[] encodedQualities) {
         //this is package private, we 
         //don't check for nulls since we assume the caller is trusted.
         this.codec = codec;
@@ -66,12 +66,12 @@ class ParsedQualitySequence implements QualitySequence{
 
     @Override
     public PhredQuality get(long offset) {
-        return codec.decode(encodedQualities.charAt((int)offset));
+        return codec.decode((char)(encodedQualities[(int)offset] & 0xFF));
     }
 
     @Override
     public long getLength() {
-        return encodedQualities.length();
+        return encodedQualities.length;
     }
 
     @Override
@@ -91,11 +91,10 @@ class ParsedQualitySequence implements QualitySequence{
 
     @Override
     public byte[] toArray() {
-        char[] chars = encodedQualities.toCharArray();
-        byte[] ret = new byte[chars.length];
+        byte[] ret = new byte[encodedQualities.length];
         int offset = codec.getOffset();
-        for(int i=0; i< chars.length; i++){
-            ret[i] = (byte)(chars[i] - offset);
+        for(int i=0; i< encodedQualities.length; i++){
+            ret[i] = (byte)(encodedQualities[i] - offset);
         }
         return ret;
     }
@@ -104,13 +103,12 @@ class ParsedQualitySequence implements QualitySequence{
 
     @Override
     public byte[] toArray(Range range) {
-        char[] chars = encodedQualities.toCharArray();
-        byte[] ret = new byte[chars.length];
+        byte[] ret = new byte[encodedQualities.length];
         int offset = codec.getOffset();
         int end = (int)range.getEnd();
         int shift = (int)range.getBegin();
         for(int i=shift; i<=end; i++){
-            ret[i-shift] = (byte)(chars[i] - offset);
+            ret[i-shift] = (byte)(encodedQualities[i] - offset);
         }
         return ret;
     }
@@ -123,14 +121,13 @@ class ParsedQualitySequence implements QualitySequence{
         if(stats !=null){
             return;
         }
-        if(encodedQualities.isEmpty()){
+        if(encodedQualities.length ==0){
             stats = new DoubleSummaryStatistics();
             return;
         }
         DoubleSummaryStatistics stats2 = new DoubleSummaryStatistics();
-        char[] chars = encodedQualities.toCharArray();
-        for(int i=0; i< chars.length; i++){
-            stats2.accept(chars[i]);
+        for(int i=0; i< encodedQualities.length; i++){
+            stats2.accept(encodedQualities[i] & 0xFF);
         }
         
         stats = stats2;
@@ -185,7 +182,7 @@ class ParsedQualitySequence implements QualitySequence{
             ParsedQualitySequence other = (ParsedQualitySequence) obj;
             if (codec == other.codec) {
                //if same quality code can do quick check
-                return encodedQualities.equals(other.encodedQualities);
+                return Arrays.equals(encodedQualities, other.encodedQualities);
             }
             //else fall through
         }
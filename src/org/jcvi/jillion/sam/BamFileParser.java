@@ -41,6 +41,7 @@ import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
 import org.jcvi.jillion.internal.core.io.TextLineParser;
 import org.jcvi.jillion.internal.sam.SamUtil;
+import org.jcvi.jillion.sam.SamParser.SamParserOptions;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback.SamVisitorMemento;
 import org.jcvi.jillion.sam.attribute.InvalidAttributeException;
 import org.jcvi.jillion.sam.attribute.ReservedAttributeValidator;
@@ -64,16 +65,25 @@ class BamFileParser extends AbstractSamFileParser {
 
 	
 	private static final VirtualFileOffset BEGINNING_OF_FILE = new VirtualFileOffset(0);
+	protected static final SamParserOptions DEFAULT_OPTIONS = new SamParserOptions();
 	protected final File bamFile;
 	protected final SamAttributeValidator validator;
 	protected final String[] refNames;
 	protected final SamHeader header;
-	
+	/**
+	 * Number of threads to use to inflate
+	 * the BGZF blocks; 1 means inflate
+	 * on the parsing thread.
+	 */
+	protected final int numberOfInflaterThreads;
 	
 	public BamFileParser(File bamFile) throws IOException {
 		this(bamFile, ReservedAttributeValidator.INSTANCE);
 	}
 	public BamFileParser(File bamFile, SamAttributeValidator validator) throws IOException {
+		this(bamFile, validator, 1);
+	}
+	public BamFileParser(File bamFile, SamAttributeValidator validator, int numberOfInflaterThreads) throws IOException {
 		if(bamFile ==null){
 			throw new NullPointerException("bam file can not be null");
 		}
@@ -89,8 +99,12 @@ class BamFileParser extends AbstractSamFileParser {
 		if(validator ==null){
 			throw new NullPointerException("validator can not be null");
 		}
+		if(numberOfInflaterThreads <1){
+			throw new IllegalArgumentException("number of inflater threads must be >= 1");
+		}
 		this.bamFile = bamFile;
 		this.validator = validator;
+		this.numberOfInflaterThreads = numberOfInflaterThreads;
 		
 		try(BgzfInputStream in = new BgzfInputStream(bamFile)){
 			
@@ -129,41 +143,41 @@ class BamFileParser extends AbstractSamFileParser {
            
             
             if(options.getReferenceRange().isPresent()){
-                _parse(options.getReferenceName().get(), options.getReferenceRange().get(), options.shouldCreateMementos(), visitor);
+                _parse(options.getReferenceName().get(), options.getReferenceRange().get(), options, visitor);
             }else{
-                _parse(options.getReferenceName().get(), options.shouldCreateMementos(), visitor);
+                _parse(options.getReferenceName().get(), options, visitor);
                 
             }
             return;
         }else{
             predicate = record -> true;
         }
-        accept(visitor, options.shouldCreateMementos(), predicate);
+        accept(visitor, options, predicate);
         
     }
 	
 
-	protected void _parse(String referenceName, Range alignmentRange, boolean shouldCreateMementos, SamVisitor visitor) throws IOException{
+	protected void _parse(String referenceName, Range alignmentRange, SamParserOptions options, SamVisitor visitor) throws IOException{
 	    verifyReferenceInHeader(referenceName);
-            accept(visitor, shouldCreateMementos, SamUtil.alignsToReference(referenceName, alignmentRange));
+            accept(visitor, options, SamUtil.alignsToReference(referenceName, alignmentRange));
 	}
-	protected void _parse(String referenceName, boolean shouldCreateMementos, SamVisitor visitor ) throws IOException{
+	protected void _parse(String referenceName, SamParserOptions options, SamVisitor visitor ) throws IOException{
             verifyReferenceInHeader(referenceName);
-            accept(visitor, shouldCreateMementos, SamUtil.alignsToReference(referenceName));
+            accept(visitor, options, SamUtil.alignsToReference(referenceName));
         }
 	
     @Override
 	public void parse(String referenceName, SamVisitor visitor) throws IOException {
-		 _parse(referenceName, false, visitor);
+		 _parse(referenceName, DEFAULT_OPTIONS, visitor);
 	}
 	@Override
 	public void parse(String referenceName, Range alignmentRange, SamVisitor visitor) throws IOException {
-	    _parse(referenceName, alignmentRange, false, visitor);		
+	    _parse(referenceName, alignmentRange, DEFAULT_OPTIONS, visitor);		
 	}
 	
 	@Override
 	public void parse(SamVisitor visitor) throws IOException {
-		accept(visitor, false, (record)->true);
+		accept(visitor, DEFAULT_OPTIONS, (record)->true);
 	}
 	
 	@Override
@@ -189,27 +203,62 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		
 		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, vfs)){
+		try(BgzfInputStream in = BgzfInputStream.create(bamFile, vfs, numberOfInflaterThreads)){
 			AtomicBoolean keepParsing = new AtomicBoolean(true);
 
-			parseBamRecords(visitor, (record)->true, (v)->true, in, keepParsing, new MementoLessBamCallback(keepParsing));
+			parseBamRecords(visitor, (record)->true, (v)->true, in, keepParsing, new MementoLessBamCallback(keepParsing), createRecordReader(DEFAULT_OPTIONS));
 		}
 		
 	}
 	
 	
 	
-	private void accept(SamVisitor visitor, boolean enableMementos, Predicate<SamRecord> filter) throws IOException {
+	/**
+	 * Parse the single {@link SamRecord} that starts
+	 * at the given {@link VirtualFileOffset}.
+	 * 
+	 * @param recordStart the {@link VirtualFileOffset} of the start of the record
+	 * as reported by {@link SamVisitor#visitRecord(SamVisitor.SamVisitorCallback, SamRecord, VirtualFileOffset, VirtualFileOffset)};
+	 * can not be null.
+	 * 
+	 * @return the parsed {@link SamRecord}; will never be null.
+	 * 
+	 * @throws IOException if there is a problem parsing the record.
+	 * @throws NullPointerException if recordStart is null.
+	 * 
+	 * @since 5.3
+	 */
+	SamRecord parseRecordAt(VirtualFileOffset recordStart) throws IOException{
+		Objects.requireNonNull(recordStart);
+		//only need to inflate 1 record so don't bother with threads
+		try(BgzfInputStream in = BgzfInputStream.create(bamFile, recordStart)){
+			return parseNextSamRecord(in, refNames, header, validator);
+		}
+	}
+	
+	private void accept(SamVisitor visitor, SamParserOptions options, Predicate<SamRecord> filter) throws IOException {
 		if(visitor ==null){
 			throw new NullPointerException("visitor can not be null");
 		}
-		try(BgzfInputStream in=new BgzfInputStream(bamFile)){			
+		try(BgzfInputStream in=BgzfInputStream.create(bamFile, numberOfInflaterThreads)){			
 			
-			parseBamFromBeginning(visitor, enableMementos, filter, (vfs)->true, in);
+			parseBamFromBeginning(visitor, options, filter, (vfs)->true, in);
 		}
 	}
+	/**
+	 * Create a new {@link BamRecordReader} for a single parse
+	 * that will decode the records as specified by the given options.
+	 * 
+	 * @param options the {@link SamParserOptions} to use.
+	 * @return a new {@link BamRecordReader}.
+	 * 
+	 * @since 5.3
+	 */
+	protected BamRecordReader createRecordReader(SamParserOptions options){
+		return BamRecordReader.create(options, refNames, header, validator);
+	}
 	
-	protected void parseBamFromBeginning(SamVisitor visitor, boolean enableMementos, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in) throws IOException {
+	protected void parseBamFromBeginning(SamVisitor visitor, SamParserOptions options, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in) throws IOException {
 		verifyMagicNumber(in);
 		//have to keep parsing header again for now
 		//since it updates the file pointer in our bgzf stream
@@ -218,20 +267,43 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		parseReferenceNamesAndAddToHeader(in, headerBuilder);
 		AtomicBoolean keepParsing = new AtomicBoolean(true);
-		AbstractBamCallback callback = enableMementos ? new BamCallback(keepParsing) : new MementoLessBamCallback(keepParsing);
+		AbstractBamCallback callback = options.shouldCreateMementos() ? new BamCallback(keepParsing) : new MementoLessBamCallback(keepParsing);
 		visitor.visitHeader(callback, header);
 		
-		parseBamRecords(visitor, filter, keepParsingPredicate, in, keepParsing, callback);
+		parseBamRecords(visitor, filter, keepParsingPredicate, in, keepParsing, callback, createRecordReader(options));
 	}
 	
-	protected void parseBamRecords(SamVisitor visitor, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in, AtomicBoolean keepParsing, AbstractBamCallback callback) throws IOException {
+	protected void parseBamRecords(SamVisitor visitor, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in, AtomicBoolean keepParsing, AbstractBamCallback callback, BamRecordReader recordReader) throws IOException {
+		
+		if(visitBamRecords(visitor, filter, keepParsingPredicate, in, keepParsing, callback, recordReader)){
+			visitor.visitEnd();
+		}else{
+			visitor.halted();
+		}
+	}
+	/**
+	 * Visit the records from the given {@link BgzfInputStream}
+	 * until either the keepParsingPredicate fails, the end of the file
+	 * is reached or the visitor halts parsing.  Unlike 
+	 * {@link #parseBamRecords(SamVisitor, Predicate, Predicate, BgzfInputStream, AtomicBoolean, AbstractBamCallback, BamRecordReader)}
+	 * this method does not call {@link SamVisitor#visitEnd()} or {@link SamVisitor#halted()}
+	 * so it can be called multiple times to visit several sections of the same file.
+	 * 
+	 * @return {@code true} if parsing stopped because the keepParsingPredicate
+	 * failed or there was no more data; {@code false} if the visitor halted parsing.
+	 * 
+	 * @throws IOException if there is a problem parsing the records.
+	 * 
+	 * @since 5.3
+	 */
+	protected boolean visitBamRecords(SamVisitor visitor, Predicate<SamRecord> filter, Predicate<VirtualFileOffset> keepParsingPredicate, BgzfInputStream in, AtomicBoolean keepParsing, AbstractBamCallback callback, BamRecordReader recordReader) throws IOException {
 		
 		boolean canceledByPredicate=false;
 		
 		try{
 			VirtualFileOffset start = in.getCurrentVirutalFileOffset();
 			while(keepParsing.get() && in.hasMoreData()){	
-				SamRecord record = parseNextSamRecord(in, refNames, header);
+				SamRecord record = recordReader.readNext(in);
 				
 				VirtualFileOffset end = in.getCurrentVirutalFileOffset();
 				if(keepParsingPredicate.test(start)){
@@ -240,8 +312,8 @@ class BamFileParser extends AbstractSamFileParser {
 					    visitor.visitRecord(callback, record, start,end);
 					}
 				}else{
-					keepParsing.set(false);
 					canceledByPredicate=true;
+					break;
 				}
 				
 				//update start to be old end
@@ -252,16 +324,44 @@ class BamFileParser extends AbstractSamFileParser {
 			//EOF until after we hit it otherwise
 			//we will mess up the offset computations
 		}
-		if(canceledByPredicate || keepParsing.get()){
-			visitor.visitEnd();
-		}else{
-			visitor.halted();
-		}
+		return canceledByPredicate || keepParsing.get();
 	}
 	
-	private SamRecord parseNextSamRecord(InputStream in, String[] refNames, SamHeader header) throws IOException {
+	/**
+	 * Parse the next BAM encoded alignment record 
+	 * (starting with the block_size) from the given stream.
+	 * 
+	 * @param in the (uncompressed) stream to read from.
+	 * @param refNames the reference names in the order they are referred to by their refIDs.
+	 * @param header the {@link SamHeader} to use to validate the record.
+	 * @param validator the {@link SamAttributeValidator} to use.
+	 * 
+	 * @return the parsed {@link SamRecord}.
+	 * @throws IOException if there is a problem reading the stream.
+	 * 
+	 * @since 5.3
+	 */
+	static SamRecord parseNextSamRecord(InputStream in, String[] refNames, SamHeader header, SamAttributeValidator validator) throws IOException {
 		//next alignment
 		int blockSize = getSignedInt(in);
+		return parseSamRecord(in, blockSize, refNames, header, validator);
+	}
+	/**
+	 * Parse a BAM encoded alignment record whose block_size
+	 * has already been read from the given stream.
+	 * 
+	 * @param in the (uncompressed) stream to read from.
+	 * @param blockSize the number of bytes in the rest of this record.
+	 * @param refNames the reference names in the order they are referred to by their refIDs.
+	 * @param header the {@link SamHeader} to use to validate the record.
+	 * @param validator the {@link SamAttributeValidator} to use.
+	 * 
+	 * @return the parsed {@link SamRecord}.
+	 * @throws IOException if there is a problem reading the stream.
+	 * 
+	 * @since 5.3
+	 */
+	static SamRecord parseSamRecord(InputStream in, int blockSize, String[] refNames, SamHeader header, SamAttributeValidator validator) throws IOException {
 		SamRecordBuilder builder = new SamRecordBuilder(header, validator);
 		
 		int refId = getSignedInt(in);
@@ -320,7 +420,7 @@ class BamFileParser extends AbstractSamFileParser {
 		
 		return builder.build();
 	}
-	private Cigar parseCigar(InputStream in, int numCigarOps)
+	static Cigar parseCigar(InputStream in, int numCigarOps)
 			throws IOException {
 		Cigar.Builder cigarBuilder = new Cigar.Builder(numCigarOps);
 		for(int i=0; i<numCigarOps; i++){
@@ -331,7 +431,7 @@ class BamFileParser extends AbstractSamFileParser {
 		}
 		return cigarBuilder.build();
 	}
-	private void parseAttributesIfAnyAndAddToBuilder(InputStream in,
+	private static void parseAttributesIfAnyAndAddToBuilder(InputStream in,
 			SamRecordBuilder builder, int blockSize, int bytesReadSoFar)
 			throws IOException {
 		int attributeByteLength =  blockSize - bytesReadSoFar;
@@ -380,7 +480,7 @@ class BamFileParser extends AbstractSamFileParser {
 		}
 		return refNames;
 	}
-	private SamAttribute parseAttribute(OpenAwareInputStream in) throws IOException {
+	static SamAttribute parseAttribute(OpenAwareInputStream in) throws IOException {
 		SamAttributeKey key = SamAttributeKeyFactory.getKey((char) in.read(), (char) in.read());
 		
 		char type = (char) in.read();
@@ -409,7 +509,7 @@ class BamFileParser extends AbstractSamFileParser {
 	}
 	
 	
-	private SamAttribute handleArray(SamAttributeKey key, OpenAwareInputStream in) throws IOException {
+	private static SamAttribute handleArray(SamAttributeKey key, OpenAwareInputStream in) throws IOException {
 		char arrayType = (char) in.read();
 		int length = IOUtil.readSignedInt(in);
 		//for memory packing, we read everything as
@@ -433,17 +533,17 @@ class BamFileParser extends AbstractSamFileParser {
 
 	}
 
-	private byte[] toByteArray(String hex) {
+	private static byte[] toByteArray(String hex) {
 		//2 chars per byte
 		byte[] array = new byte[hex.length()/2];
 		char[] chars = hex.toCharArray();
 		for(int i=0; i<chars.length; i+=2){
-			array[i] = Byte.parseByte(new String(chars, i, 2),16);
+			array[i/2] = (byte) Integer.parseInt(new String(chars, i, 2),16);
 		}
 		return array;
 	}
 	
-	private String readNullTerminatedStringAttribute(OpenAwareInputStream in) throws IOException {
+	private static String readNullTerminatedStringAttribute(OpenAwareInputStream in) throws IOException {
 		//it looks like Strings are just null terminated
 		//the length is not encoded
 		//so just keep reading till we get to '\0'
@@ -461,7 +561,7 @@ class BamFileParser extends AbstractSamFileParser {
 	}
 	
 	
-	private QualitySequence readQualities(InputStream in, int seqLength) throws IOException{
+	static QualitySequence readQualities(InputStream in, int seqLength) throws IOException{
 		byte[] bytes = new byte[seqLength];
 		IOUtil.blockingRead(in, bytes);
 		if(bytes[0] == -1){
@@ -485,13 +585,13 @@ class BamFileParser extends AbstractSamFileParser {
 					.turnOffDataCompression(true)
 					.build();
 	}
-	private long getUnsignedInt(InputStream in) throws IOException {
+	private static long getUnsignedInt(InputStream in) throws IOException {
 		return IOUtil.readUnsignedInt(in, ByteOrder.LITTLE_ENDIAN);
 	}
-	private int getSignedInt(InputStream in) throws IOException {
+	private static int getSignedInt(InputStream in) throws IOException {
 		return (int) IOUtil.readUnsignedInt(in, ByteOrder.LITTLE_ENDIAN);
 	}
-	private void verifyMagicNumber(InputStream in) throws IOException {
+	private static void verifyMagicNumber(InputStream in) throws IOException {
 		byte[] header = new byte[4];
 		IOUtil.blockingRead(in, header);
 		
@@ -500,11 +600,11 @@ class BamFileParser extends AbstractSamFileParser {
 		}
 	}
 
-	private String readPascalString(InputStream in ) throws IOException{
+	private static String readPascalString(InputStream in ) throws IOException{
 		int length =getSignedInt(in);
 		return readNullTerminatedString(in, length);
 	}
-	private String readNullTerminatedString(InputStream in, int lengthIncludingNull) throws IOException {
+	private static String readNullTerminatedString(InputStream in, int lengthIncludingNull) throws IOException {
 		if(lengthIncludingNull ==0){
 			return "";
 		}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.sam.SamParser.SamParserOptions;
+import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
+import org.jcvi.jillion.sam.header.SamHeader;
+/**
+ * {@code BamRecordReader} reads the next
+ * BAM encoded alignment record from an uncompressed BAM stream
+ * and turns it into a {@link SamRecord} either by 
+ * eagerly decoding every field, or by wrapping the raw bytes
+ * in a {@link LazyBamSamRecord} which may be reused for each record.
+ * 
+ * A new instance should be created for each parse since
+ * reusing records is not thread safe.
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+abstract class BamRecordReader {
+	
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+	
+	protected final String[] refNames;
+	protected final SamHeader header;
+	protected final SamAttributeValidator validator;
+	/**
+	 * Create a new {@link BamRecordReader} that will decode
+	 * records as specified by the given {@link SamParserOptions}.
+	 * 
+	 * @param options the {@link SamParserOptions} to use; can not be null.
+	 * @param refNames the reference names in the order they are referred to by their refIDs.
+	 * @param header the {@link SamHeader} of the bam file.
+	 * @param validator the {@link SamAttributeValidator} to use.
+	 * 
+	 * @return a new {@link BamRecordReader}; will never be null.
+	 */
+	static BamRecordReader create(SamParserOptions options, String[] refNames, SamHeader header, SamAttributeValidator validator){
+		if(options.shouldReuseRecords()){
+			return new FlyweightBamRecordReader(refNames, header, validator);
+		}
+		if(options.shouldDecodeLazily()){
+			return new LazyBamRecordReader(refNames, header, validator);
+		}
+		return new EagerBamRecordReader(refNames, header, validator);
+	}
+	
+	protected BamRecordReader(String[] refNames, SamHeader header, SamAttributeValidator validator) {
+		this.refNames = refNames;
+		this.header = header;
+		this.validator = validator;
+	}
+	/**
+	 * Read the next record (starting with the block_size)
+	 * from the given stream.
+	 * 
+	 * @param in the uncompressed stream to read from.
+	 * @return the {@link SamRecord}; will never be null.
+	 * @throws IOException if there is a problem reading the record.
+	 */
+	abstract SamRecord readNext(InputStream in) throws IOException;
+	
+	protected static int readBlockSize(InputStream in) throws IOException{
+		int blockSize = (int) IOUtil.readUnsignedInt(in, ByteOrder.LITTLE_ENDIAN);
+		if(blockSize <0){
+			throw new IOException("invalid bam record block size " + blockSize);
+		}
+		return blockSize;
+	}
+	
+	private static final class EagerBamRecordReader extends BamRecordReader{
+
+		EagerBamRecordReader(String[] refNames, SamHeader header,
+				SamAttributeValidator validator) {
+			super(refNames, header, validator);
+		}
+
+		@Override
+		SamRecord readNext(InputStream in) throws IOException {
+			return BamFileParser.parseNextSamRecord(in, refNames, header, validator);
+		}
+		
+	}
+	
+	private static final class LazyBamRecordReader extends BamRecordReader{
+
+		LazyBamRecordReader(String[] refNames, SamHeader header,
+				SamAttributeValidator validator) {
+			super(refNames, header, validator);
+		}
+
+		@Override
+		SamRecord readNext(InputStream in) throws IOException {
+			int blockSize = readBlockSize(in);
+			byte[] data = new byte[blockSize];
+			IOUtil.blockingRead(in, data);
+			return new LazyBamSamRecord(header, validator, refNames, false)
+							.reset(data, blockSize);
+		}
+		
+	}
+	
+	private static final class FlyweightBamRecordReader extends BamRecordReader{
+		private final LazyBamSamRecord record;
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+		
+		FlyweightBamRecordReader(String[] refNames, SamHeader header,
+				SamAttributeValidator validator) {
+			super(refNames, header, validator);
+			record = new LazyBamSamRecord(header, validator, refNames, true);
+		}
+
+		@Override
+		SamRecord readNext(InputStream in) throws IOException {
+			int blockSize = readBlockSize(in);
+			if(blockSize > buffer.length){
+				buffer = new byte[Math.max(blockSize, buffer.length*2)];
+			}
+			IOUtil.blockingRead(in, buffer, 0, blockSize);
+			return record.reset(buffer, blockSize);
+		}
+		
+	}
+}
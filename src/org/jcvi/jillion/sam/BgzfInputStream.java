@@ -66,6 +66,8 @@ import org.jcvi.jillion.internal.core.io.RandomAccessFileInputStream;
 class BgzfInputStream extends InflaterInputStream {
 	
 	 private static final int BGZF_XLEN_LENGTH = 6;
+	 
+	 private static final VirtualFileOffset BEGINNING_OF_FILE = new VirtualFileOffset(0L);
 
 	/**
      * GZIP header magic number.
@@ -165,12 +167,68 @@ class BgzfInputStream extends InflaterInputStream {
     	}
 		
     	BgzfInputStream bgzfStream = new BgzfInputStream(in);
+    	//our offsets have to be relative to the beginning
+    	//of the file not where we seeked to
+    	//or the virtual file offsets we return will be wrong.
+    	bgzfStream.compressedBlockBytesReadSoFar = compressedBamBlockOffset;
     	
     	IOUtil.blockingSkip(bgzfStream, vfs.getUncompressedOffset());
     	
     	return bgzfStream;
     	
     }
+    /**
+     * Creates a new {@link BgzfInputStream} 
+     * that will inflate upcoming BGZF blocks
+     * concurrently using the given number of threads.
+     * If the number of threads is 1, then
+     * this is the same as {@link #create(File)}.
+     * 
+     * @param bamFile The bam file to parse.
+     * @param numberOfThreads the number of threads to use
+     * to inflate the BGZF blocks; must be &ge; 1.
+     * 
+     * @return a new {@link BgzfInputStream}; will never be null.
+     * 
+     * @throws IOException if an I/O error has occurred.
+     * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+     * 
+     * @since 5.3
+     */
+    static BgzfInputStream create(File bamFile, int numberOfThreads) throws IOException{
+    	return create(bamFile, BEGINNING_OF_FILE, numberOfThreads);
+    }
+    /**
+     * Creates a new {@link BgzfInputStream} starting
+     * from the given {@link VirtualFileOffset}
+     * that will inflate upcoming BGZF blocks
+     * concurrently using the given number of threads.
+     * If the number of threads is 1, then
+     * this is the same as {@link #create(File, VirtualFileOffset)}.
+     * 
+     * @param bamFile The bam file to parse.
+     * @param vfs the {@link VirtualFileOffset} to use to seek to before reading
+     * any bytes from the stream; can not be null.
+     * @param numberOfThreads the number of threads to use
+     * to inflate the BGZF blocks; must be &ge; 1.
+     * 
+     * @return a new {@link BgzfInputStream}; will never be null.
+     * 
+     * @throws IOException if an I/O error has occurred.
+     * @throws NullPointerException if either bamFile or vfs is null.
+     * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+     * 
+     * @since 5.3
+     */
+    static BgzfInputStream create(File bamFile, VirtualFileOffset vfs, int numberOfThreads) throws IOException{
+    	if(numberOfThreads <1){
+    		throw new IllegalArgumentException("number of threads must be >=1");
+    	}
+    	if(numberOfThreads ==1){
+    		return create(bamFile, vfs);
+    	}
+    	return ParallelBgzfInputStream.create(bamFile, vfs, numberOfThreads);
+    }
     
     /**
      * Creates a new input stream with the specified buffer size.
@@ -183,8 +241,29 @@ class BgzfInputStream extends InflaterInputStream {
      * @throws IllegalArgumentException if size is <= 0
      */
     private BgzfInputStream(InputStream in, int size) throws IOException {
+        this(in, size, true);
+    }
+    /**
+     * Creates a new input stream with the specified buffer size
+     * and optionally parses the first block header.
+     * Subclasses that do their own block parsing
+     * should not have this class parse the header.
+     * 
+     * @param in the input stream
+     * @param size the input buffer size
+     * @param parseFirstBlockHeader should the first BGZF block header
+     * be read from the given stream.
+     * 
+     * @throws ZipException if a GZIP format error has occurred or the
+     *                         compression method used is unsupported
+     * @throws IOException if an I/O error has occurred
+     * @throws IllegalArgumentException if size is <= 0
+     */
+    BgzfInputStream(InputStream in, int size, boolean parseFirstBlockHeader) throws IOException {
         super(in, new Inflater(true), size);
-        parseBlockHeader(in);
+        if(parseFirstBlockHeader){
+        	parseBlockHeader(in);
+        }
     }
 
     /**
@@ -55,7 +55,7 @@ final class BgzfOutputStream extends OutputStream{
 	 * BAM files whose largest offset is (1<<16) -1
 	 * we can make the max length 1<<16.
 	 */
-	private static final int MAX_COMPRESSED_BLOCK_SIZE = 1 <<16;
+	static final int MAX_COMPRESSED_BLOCK_SIZE = 1 <<16;
 	/**
 	 * Size of BGZF block not counting the actual compressed data
 	 */
@@ -66,7 +66,7 @@ final class BgzfOutputStream extends OutputStream{
 	 * by the virtual file offsets when indexing
 	 * BAM files to at most (1<<16) -1.
 	 */
-	private static final int MAX_UNCOMPRESSED_BLOCK_SIZE = MAX_COMPRESSED_BLOCK_SIZE - BGZF_BLOCK_FULL_HEADER_LENGTH;
+	static final int MAX_UNCOMPRESSED_BLOCK_SIZE = MAX_COMPRESSED_BLOCK_SIZE - BGZF_BLOCK_FULL_HEADER_LENGTH;
 	
 	/**
 	 * Use the compression level SAMTool's Picard uses,
@@ -104,7 +104,7 @@ final class BgzfOutputStream extends OutputStream{
 	 * An End of File Trailer block written to the end
 	 * of BAM files so that unintended file truncation can be easily detected.
 	 */
-	private static final byte[] EOF_MARKER;	
+	static final byte[] EOF_MARKER;	
 	
 	private final CRC32 currentCrc32 = new CRC32();
 	/**
@@ -308,47 +308,7 @@ final class BgzfOutputStream extends OutputStream{
 	@Override
 	public void flush() throws IOException {
 		if(currentUsedBufferLength >0){
-			//create a new Deflater each time.
-			//There were problems caused by re-using
-			//the deflater across blocks
-			//probably because we call finish() ?
-			Deflater currentDeflater = new Deflater(GZIP_COMPRESSION_LEVEL, true);
-			
-			currentDeflater.setInput(uncompressedBuffer, 0, currentUsedBufferLength);
-			currentDeflater.finish();
-			
-			int compressedLength =currentDeflater.deflate(compressedBuffer);
-			if(!currentDeflater.finished()){
-				Deflater noCompresessionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-				noCompresessionDeflater.setInput(uncompressedBuffer, 0, currentUsedBufferLength);
-				noCompresessionDeflater.finish();
-				
-				compressedLength =noCompresessionDeflater.deflate(compressedBuffer);
-				if(!noCompresessionDeflater.finished()){
-					//shouldn't happen
-					throw new IOException("could not compress block to fit max size");
-				}
-			}
-			currentCrc32.reset();
-			//CRC is the check sum of the UNCOMPRESSED data
-			currentCrc32.update(uncompressedBuffer, 0, currentUsedBufferLength);
-
-			ByteBuffer bgzfBlockBuffer = ByteBuffer.allocate(compressedLength + BGZF_BLOCK_FULL_HEADER_LENGTH);
-			bgzfBlockBuffer.order(ByteOrder.LITTLE_ENDIAN);
-			bgzfBlockBuffer.put(BGZF_BLOCK_HEADER);
-			//spec says write BSIZE -1
-			//I guess to make sure the 
-			//size will always fit in unsigned short.
-			//
-			//since we don't write out empty blocks
-			//in this format subtracting 1 will never make a negative number.
-			bgzfBlockBuffer.putShort((short)(bgzfBlockBuffer.capacity() -1));
-			bgzfBlockBuffer.put(compressedBuffer,0,compressedLength);
-			bgzfBlockBuffer.putInt((int)currentCrc32.getValue());
-			bgzfBlockBuffer.putInt(currentUsedBufferLength);
-			bgzfBlockBuffer.flip();
-			byte[] asBytes = new byte[bgzfBlockBuffer.remaining()];
-			bgzfBlockBuffer.get(asBytes);
+			byte[] asBytes = createBgzfBlock(uncompressedBuffer, currentUsedBufferLength, compressedBuffer, currentCrc32);
 			out.write(asBytes);
 			//out.flush();
 			//update counters
@@ -357,6 +317,71 @@ final class BgzfOutputStream extends OutputStream{
 			currentUsedBufferLength = 0;
 		}
 	}
+	/**
+	 * Compress the given uncompressed data into a single
+	 * complete BGZF block including the header and footer.
+	 * 
+	 * @param uncompressedBuffer the data to compress.
+	 * @param length the number of bytes in the uncompressedBuffer to compress;
+	 * must be &le; {@link #MAX_UNCOMPRESSED_BLOCK_SIZE}.
+	 * @param compressedBuffer temporary buffer to use to store the compressed data; 
+	 * must be at least {@link #MAX_COMPRESSED_BLOCK_SIZE} long.
+	 * @param crc32 the {@link CRC32} instance to use to compute the checksum.
+	 * 
+	 * @return a new byte array containing the entire BGZF block.
+	 * 
+	 * @throws IOException if there is a problem compressing the block.
+	 */
+	static byte[] createBgzfBlock(byte[] uncompressedBuffer, int length, byte[] compressedBuffer, CRC32 crc32) throws IOException{
+		//create a new Deflater each time.
+		//There were problems caused by re-using
+		//the deflater across blocks
+		//probably because we call finish() ?
+		Deflater currentDeflater = new Deflater(GZIP_COMPRESSION_LEVEL, true);
+		int compressedLength;
+		try{
+			currentDeflater.setInput(uncompressedBuffer, 0, length);
+			currentDeflater.finish();
+			
+			compressedLength =currentDeflater.deflate(compressedBuffer);
+			if(!currentDeflater.finished()){
+				Deflater noCompresessionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+				try{
+					noCompresessionDeflater.setInput(uncompressedBuffer, 0, length);
+					noCompresessionDeflater.finish();
+					
+					compressedLength =noCompresessionDeflater.deflate(compressedBuffer);
+					if(!noCompresessionDeflater.finished()){
+						//shouldn't happen
+						throw new IOException("could not compress block to fit max size");
+					}
+				}finally{
+					noCompresessionDeflater.end();
+				}
+			}
+		}finally{
+			currentDeflater.end();
+		}
+		crc32.reset();
+		//CRC is the check sum of the UNCOMPRESSED data
+		crc32.update(uncompressedBuffer, 0, length);
+
+		ByteBuffer bgzfBlockBuffer = ByteBuffer.allocate(compressedLength + BGZF_BLOCK_FULL_HEADER_LENGTH);
+		bgzfBlockBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		bgzfBlockBuffer.put(BGZF_BLOCK_HEADER);
+		//spec says write BSIZE -1
+		//I guess to make sure the 
+		//size will always fit in unsigned short.
+		//
+		//since we don't write out empty blocks
+		//in this format subtracting 1 will never make a negative number.
+		bgzfBlockBuffer.putShort((short)(bgzfBlockBuffer.capacity() -1));
+		bgzfBlockBuffer.put(compressedBuffer,0,compressedLength);
+		bgzfBlockBuffer.putInt((int)crc32.getValue());
+		bgzfBlockBuffer.putInt(length);
+		//buffer is exactly the size of the block
+		return bgzfBlockBuffer.array();
+	}
 
 	@Override
 	public void close() throws IOException {
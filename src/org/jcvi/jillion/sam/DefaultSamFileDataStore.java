@@ -375,6 +375,10 @@ class DefaultSamFileDataStore implements SamFileDataStore {
     
     private class FilteredVisitor extends AbstractBlockingStreamingIterator<SamRecord>{
 
+        FilteredVisitor(){
+            super(DEFAULT_RECORD_BATCH_SIZE);
+        }
+        
         @Override
         protected void backgroundThreadRunMethod() throws RuntimeException {
             try {
@@ -405,7 +409,7 @@ class DefaultSamFileDataStore implements SamFileDataStore {
         private final String refname;
         
         protected SingleReferenceFilteredVisitor(String refname) {
-            super();
+            super(DEFAULT_RECORD_BATCH_SIZE);
             this.refname = refname;
         }
 
@@ -438,7 +442,7 @@ class DefaultSamFileDataStore implements SamFileDataStore {
         private final Range range;
         
         protected SingleReferenceAndRangeFilteredVisitor(String refname, Range range) {
-            super();
+            super(DEFAULT_RECORD_BATCH_SIZE);
             this.refname = refname;
             this.range = range;
         }
@@ -41,10 +41,10 @@ enum Encoding{
 	 */
 	SAM(".sam"){
 		@Override
-		SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData)
+		SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads)
 				throws IOException {
-			//indexer parameter ignored
-			//since it is only used in BAM files.
+			//indexer and numberOfDeflaterThreads parameters ignored
+			//since they are only used in BAM files.
 			return new PresortedSamFileWriter(out, header, validator);
 		}
 		@Override
@@ -57,9 +57,9 @@ enum Encoding{
 	 */
 	BAM(".bam"){
 		@Override
-		SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData)
+		SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads)
 				throws IOException {
-			return new PresortedBamFileWriter(header, out, indexer, validator,includeIndexMetaData);
+			return new PresortedBamFileWriter(header, out, indexer, validator,includeIndexMetaData, numberOfDeflaterThreads);
 		}
 
 		@Override
@@ -94,13 +94,15 @@ enum Encoding{
 	 * @param out the output file to write to if the file
 	 * already exists, it will be overwritten.
 	 * @param header the {@link SamHeader} to use.
+	 * @param numberOfDeflaterThreads the number of threads to use
+	 * to compress BAM blocks; must be &ge; 1.  Ignored for SAM files.
 	 * @return a new {@link SamWriter} will never be null.
 	 * @throws IOException if there is a problem creating the new output file.
 	 */
-	SamWriter createPreSortedNoValidationOutputWriter(File out, SamHeader header, BamIndexer indexer, boolean includeIndexMetaData) throws IOException{
+	SamWriter createPreSortedNoValidationOutputWriter(File out, SamHeader header, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads) throws IOException{
 		//no validation since we have already validated
 		//the reads when we added them to our in memcheck
-		return createPreSortedOutputWriter(out, header, NullSamAttributeValidator.INSTANCE, indexer, includeIndexMetaData);
+		return createPreSortedOutputWriter(out, header, NullSamAttributeValidator.INSTANCE, indexer, includeIndexMetaData, numberOfDeflaterThreads);
 	}
 	
 	
@@ -118,10 +120,12 @@ enum Encoding{
 	 * @param header the {@link SamHeader} to use; can not be null.
 	 * @param validator the {@link SamAttributeValidator} to use;
 	 * can not be null.
+	 * @param numberOfDeflaterThreads the number of threads to use
+	 * to compress BAM blocks; must be &ge; 1.  Ignored for SAM files.
 	 * @return a new {@link SamWriter} will never be null.
 	 * @throws IOException if there is a problem creating the new output file.
 	 */
-	abstract SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData)throws IOException;
+	abstract SamWriter createPreSortedOutputWriter(File out, SamHeader header, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads)throws IOException;
 
 	/**
 	 * Create a new {@link SamWriter} implementation
@@ -140,14 +144,21 @@ enum Encoding{
 	 * can not be null. 
 	 * @param includeIndexMetaData if the provided {@link BamIndexer} is not null,
 	 * should the samtools/picard specific additional metadata be included also.
+	 * @param numberOfDeflaterThreads the number of threads to use
+	 * to compress BAM blocks; must be &ge; 1.  Ignored for SAM files.
+	 * @param numberOfSortThreads the number of background threads to use
+	 * to sort and write temp files; must be &ge; 1.
+	 * @param compressTempFiles should the temp files be compressed.
 	 * 
 	 * @return a new {@link SamWriter} will never be null.
 	 * @throws IOException if there is a problem creating the new output file.
 	 */
 	SamWriter createReSortedOutputWriter(File out, File tmpDirRoot,
-			SamHeader header, int maxRecordsToKeepInMemory, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData)
+			SamHeader header, int maxRecordsToKeepInMemory, SamAttributeValidator validator, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads,
+			int numberOfSortThreads, boolean compressTempFiles)
 			throws IOException {
-		return new ReSortSamFileWriter(out, tmpDirRoot,header, maxRecordsToKeepInMemory, validator, this, indexer, includeIndexMetaData);
+		return new ReSortSamFileWriter(out, tmpDirRoot,header, maxRecordsToKeepInMemory, validator, this, indexer, includeIndexMetaData, numberOfDeflaterThreads,
+				numberOfSortThreads, compressTempFiles);
 	}
 	
 	
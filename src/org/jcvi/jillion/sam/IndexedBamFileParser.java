@@ -25,16 +25,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 import org.jcvi.jillion.core.Range;
-import org.jcvi.jillion.internal.sam.SamUtil;
 import org.jcvi.jillion.internal.sam.index.IndexUtil;
+import org.jcvi.jillion.sam.SamParser.SamParserOptions;
 import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
 import org.jcvi.jillion.sam.index.BamIndex;
+import org.jcvi.jillion.sam.index.Chunk;
 import org.jcvi.jillion.sam.index.ReferenceIndex;
 
 class IndexedBamFileParser extends BamFileParser{
@@ -42,7 +43,11 @@ class IndexedBamFileParser extends BamFileParser{
 	private static VirtualFileOffset BEGINING_OF_FILE = new VirtualFileOffset(0L);
 	
 	public IndexedBamFileParser(File bamFile, File baiFile, SamAttributeValidator validator) throws IOException {
-		super(bamFile, validator);
+		this(bamFile, baiFile, validator, 1);
+	}
+	
+	public IndexedBamFileParser(File bamFile, File baiFile, SamAttributeValidator validator, int numberOfInflaterThreads) throws IOException {
+		super(bamFile, validator, numberOfInflaterThreads);
 		try(InputStream in = new BufferedInputStream(new FileInputStream(baiFile))){
 			index = IndexUtil.parseIndex(in, this.getHeader());
 		}
@@ -51,7 +56,7 @@ class IndexedBamFileParser extends BamFileParser{
    
 
     @Override
-    protected void _parse(String referenceName, boolean shouldCreateMementos,
+    protected void _parse(String referenceName, SamParserOptions options,
             SamVisitor visitor) throws IOException {
        
 		Objects.requireNonNull(referenceName);
@@ -74,10 +79,10 @@ class IndexedBamFileParser extends BamFileParser{
 		
 		
 		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, start)){
+		try(BgzfInputStream in = BgzfInputStream.create(bamFile, start, numberOfInflaterThreads)){
 			if(BEGINING_OF_FILE.equals(start)){
 				this.parseBamFromBeginning(visitor, 
-				        shouldCreateMementos,
+				        options,
 						recordMatchPredicate,
 						endPredicate, in);
 			}else{
@@ -87,13 +92,14 @@ class IndexedBamFileParser extends BamFileParser{
 						recordMatchPredicate,
 						endPredicate,
 						in,
-						keepParsing, shouldCreateMementos ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing));
+						keepParsing, options.shouldCreateMementos() ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing),
+						createRecordReader(options));
 			}
 		}
 	}
     @Override
     protected void _parse(String referenceName, Range alignmentRange,
-            boolean shouldCreateMementos, SamVisitor visitor)
+            SamParserOptions options, SamVisitor visitor)
             throws IOException {
        
 		Objects.requireNonNull(referenceName);
@@ -103,36 +109,38 @@ class IndexedBamFileParser extends BamFileParser{
 		if(refIndex ==null){
 			throw new IllegalArgumentException("no reference with name '"+ referenceName +"'");
 		}
-		//only let things pass that match some bin
-		int[] overlappingBins = SamUtil.getCandidateOverlappingBins(alignmentRange);
-		
-		//TODO can probably do better filtering by specific bins...
-		VirtualFileOffset start = refIndex.getLowestStartOffset();
-		VirtualFileOffset end = refIndex.getHighestEndOffset();
+		List<Chunk> chunks = IndexUtil.getChunksOverlapping(refIndex, alignmentRange);
 		
-		Predicate<SamRecord> recordBinFilter = (record) -> {
+		Predicate<SamRecord> recordFilter = (record) -> {
 			if(!referenceName.equals(record.getReferenceName())){
 				return false;
 			}
-		
 			Range readAlignmentRange = record.getAlignmentRange();
-			int bin = SamUtil.computeBinFor(readAlignmentRange);
-			if(Arrays.binarySearch(overlappingBins, bin) <0){
-				return false;
-			}
-			return readAlignmentRange.isSubRangeOf(alignmentRange);
+			return readAlignmentRange !=null && readAlignmentRange.isSubRangeOf(alignmentRange);
 		};
 		
-		try(BgzfInputStream in = BgzfInputStream.create(bamFile, start)){
-			//assume anything in this interval matches?
-			AtomicBoolean keepParsing = new AtomicBoolean(true);
-			this.parseBamRecords(visitor, 
-					recordBinFilter,
-					(vfs)-> vfs.compareTo(end) <=0,
-					in,
-					keepParsing,
-					shouldCreateMementos ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing));
+		AtomicBoolean keepParsing = new AtomicBoolean(true);
+		AbstractBamCallback callback = options.shouldCreateMementos() ? new BamCallback(keepParsing) :new MementoLessBamCallback(keepParsing);
+		BamRecordReader recordReader = createRecordReader(options);
+		
+		for(Chunk chunk : chunks){
+			VirtualFileOffset chunkEnd = chunk.getEnd();
+			//only read the records that start inside this chunk
+			//then seek to the next one
+			try(BgzfInputStream in = BgzfInputStream.create(bamFile, chunk.getBegin(), numberOfInflaterThreads)){
+				if(!this.visitBamRecords(visitor, 
+						recordFilter,
+						(vfs)-> vfs.compareTo(chunkEnd) <0,
+						in,
+						keepParsing,
+						callback,
+						recordReader)){
+					visitor.halted();
+					return;
+				}
+			}
 		}
+		visitor.visitEnd();
 	}
 
 	
@@ -0,0 +1,436 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
+import org.jcvi.jillion.internal.sam.SamUtil;
+import org.jcvi.jillion.sam.attribute.InvalidAttributeException;
+import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
+import org.jcvi.jillion.sam.attribute.SamAttribute;
+import org.jcvi.jillion.sam.attribute.SamAttributeKey;
+import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
+import org.jcvi.jillion.sam.cigar.Cigar;
+import org.jcvi.jillion.sam.header.SamHeader;
+/**
+ * {@code LazyBamSamRecord} is a {@link SamRecord}
+ * that wraps the raw bytes of a single BAM encoded alignment
+ * record (everything after the block_size) and only decodes
+ * the fields as they are requested.  The fixed length fields
+ * like the flags, positions and mapping quality are read directly
+ * from the bytes each time; the read name, {@link Cigar}, sequence, qualities
+ * and attributes are decoded the first time they are requested and then cached.
+ * <p>
+ * Attributes are validated by the {@link SamAttributeValidator}
+ * when they are first decoded instead of when the record is parsed.
+ * Since the getter methods can not throw checked exceptions, 
+ * any problems decoding the bytes are thrown as {@link UncheckedIOException}s.
+ * </p>
+ * <p>
+ * If a record is reused (flyweight mode) then it is only valid
+ * until the next record is read; use {@link #asImmutable()} to
+ * get a copy that can be kept.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class LazyBamSamRecord implements SamRecord{
+	/**
+	 * Bytes in the fixed length portion of a BAM record
+	 * (not including the block_size).
+	 */
+	private static final int FIXED_LENGTH = 32;
+	
+	private final SamHeader header;
+	private final SamAttributeValidator validator;
+	private final String[] refNames;
+	private final boolean reused;
+	
+	private byte[] data;
+	private int length;
+	
+	private int refId, startPosition, readNameLength, flags, numCigarOps, seqLength,
+				nextRefId, nextPosition, observedTemplateLength;
+	private byte mappingQuality;
+	
+	private String queryName;
+	private Cigar cigar;
+	private NucleotideSequence sequence;
+	private QualitySequence qualities;
+	private boolean qualitiesDecoded;
+	private Map<SamAttributeKey, SamAttribute> attributes;
+	
+	/**
+	 * Create a new {@link LazyBamSamRecord}.
+	 * 
+	 * @param header the {@link SamHeader} of the bam file.
+	 * @param validator the {@link SamAttributeValidator} to validate the attributes with
+	 * when they are decoded.
+	 * @param refNames the reference names in the order they are referred to by their refIDs.
+	 * @param reused will this instance be {@link #reset(byte[], int)} with new data.
+	 */
+	LazyBamSamRecord(SamHeader header, SamAttributeValidator validator, String[] refNames, boolean reused) {
+		this.header = header;
+		this.validator = validator;
+		this.refNames = refNames;
+		this.reused = reused;
+	}
+	/**
+	 * Wrap the given bytes which must contain a single
+	 * BAM alignment record not including the block_size
+	 * and clear any previously decoded fields.
+	 * The byte array is not copied.
+	 * 
+	 * @param data the byte array containing the record starting at offset 0.
+	 * @param length the number of bytes in the record (the block_size).
+	 * 
+	 * @return this.
+	 * 
+	 * @throws IOException if the record is too short.
+	 */
+	LazyBamSamRecord reset(byte[] data, int length) throws IOException{
+		if(length < FIXED_LENGTH){
+			throw new IOException("invalid bam record block size " + length);
+		}
+		this.data = data;
+		this.length = length;
+		
+		refId = getInt(0);
+		startPosition = getInt(4);
+		readNameLength = data[8] & 0xFF;
+		mappingQuality = data[9];
+		//bin is bytes 10-11 which we don't care about
+		numCigarOps = getUnsignedShort(12);
+		flags = getUnsignedShort(14);
+		seqLength = getInt(16);
+		nextRefId = getInt(20);
+		nextPosition = getInt(24);
+		observedTemplateLength = getInt(28);
+		
+		if(getAttributeOffset() > length){
+			throw new IOException("invalid bam record, variable length fields extend beyond block size");
+		}
+		queryName = null;
+		cigar = null;
+		sequence = null;
+		qualities = null;
+		qualitiesDecoded = false;
+		attributes = null;
+		return this;
+	}
+	
+	private int getInt(int offset){
+		return (data[offset] & 0xFF)
+				| (data[offset+1] & 0xFF) <<8
+				| (data[offset+2] & 0xFF) <<16
+				| (data[offset+3] & 0xFF) <<24;
+	}
+	
+	private int getUnsignedShort(int offset){
+		return (data[offset] & 0xFF)
+				| (data[offset+1] & 0xFF) <<8;
+	}
+	
+	private int getCigarOffset(){
+		return FIXED_LENGTH + readNameLength;
+	}
+	private int getSequenceOffset(){
+		return getCigarOffset() + 4*numCigarOps;
+	}
+	private int getQualityOffset(){
+		return getSequenceOffset() + (seqLength+1)/2;
+	}
+	private int getAttributeOffset(){
+		return getQualityOffset() + Math.max(0, seqLength);
+	}
+	
+	private ByteArrayInputStream streamFrom(int offset){
+		return new ByteArrayInputStream(data, offset, length - offset);
+	}
+	
+	@Override
+	public SamRecord asImmutable() {
+		if(!reused){
+			return this;
+		}
+		try {
+			return new LazyBamSamRecord(header, validator, refNames, false)
+							.reset(Arrays.copyOf(data, length), length);
+		} catch (IOException e) {
+			//can't happen we already checked the length
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public boolean isPrimary() {
+		return !(hasFlag(SamRecordFlag.SECONDARY_ALIGNMENT) || hasFlag(SamRecordFlag.SUPPLEMENTARY_ALIGNMENT));
+	}
+
+	@Override
+	public boolean useForAnalysis() {
+		return !hasFlag(SamRecordFlag.SECONDARY_ALIGNMENT);
+	}
+	
+	private boolean hasFlag(SamRecordFlag flag){
+		return getFlags().contains(flag);
+	}
+
+	@Override
+	public String getQueryName() {
+		if(queryName ==null){
+			//don't include \0 at end of string
+			queryName = readNameLength ==0 ? "" : new String(data, FIXED_LENGTH, readNameLength -1, IOUtil.UTF_8);
+		}
+		return queryName;
+	}
+
+	@Override
+	public String getReferenceName() {
+		return refId <0 ? null : refNames[refId];
+	}
+
+	@Override
+	public String getNextName() {
+		return nextRefId <0 ? null : refNames[nextRefId];
+	}
+
+	@Override
+	public SamRecordFlags getFlags() {
+		return SamRecordFlags.valueOf(flags);
+	}
+	/**
+	 * Get the 1-based start position.
+	 */
+	@Override
+	public int getStartPosition() {
+		//NOTE bam is 0-based while
+		//SAM is 1-based
+		return startPosition +1;
+	}
+
+	@Override
+	public int getNextOffset() {
+		return nextPosition +1;
+	}
+
+	@Override
+	public byte getMappingQuality() {
+		return mappingQuality;
+	}
+
+	@Override
+	public Cigar getCigar() {
+		if(cigar ==null && numCigarOps >0){
+			try {
+				cigar = BamFileParser.parseCigar(streamFrom(getCigarOffset()), numCigarOps);
+			} catch (IOException e) {
+				throw new UncheckedIOException("error decoding cigar", e);
+			}
+		}
+		return cigar;
+	}
+
+	@Override
+	public NucleotideSequence getSequence() {
+		if(sequence ==null && seqLength >0){
+			try {
+				sequence = SamUtil.readBamEncodedSequence(streamFrom(getSequenceOffset()), seqLength);
+			} catch (IOException e) {
+				throw new UncheckedIOException("error decoding sequence", e);
+			}
+		}
+		return sequence;
+	}
+
+	@Override
+	public QualitySequence getQualities() {
+		if(!qualitiesDecoded && seqLength >0){
+			try {
+				qualities = BamFileParser.readQualities(streamFrom(getQualityOffset()), seqLength);
+			} catch (IOException e) {
+				throw new UncheckedIOException("error decoding qualities", e);
+			}
+			qualitiesDecoded = true;
+		}
+		return qualities;
+	}
+
+	@Override
+	public int getObservedTemplateLength() {
+		return observedTemplateLength;
+	}
+	
+	private Map<SamAttributeKey, SamAttribute> getAttributeMap(){
+		if(attributes ==null){
+			Map<SamAttributeKey, SamAttribute> map = new LinkedHashMap<>();
+			int offset = getAttributeOffset();
+			if(offset < length){
+				OpenAwareInputStream in = new OpenAwareInputStream(streamFrom(offset));
+				try{
+					while(in.isOpen()){
+						SamAttribute attribute = BamFileParser.parseAttribute(in);
+						try {
+							validator.validate(header, this, attribute);
+						} catch (InvalidAttributeException e) {
+							throw new IOException("invalid attribute " + attribute, e);
+						}
+						map.put(attribute.getKey(), attribute);
+					}
+				}catch(IOException e){
+					throw new UncheckedIOException("error decoding attributes", e);
+				}
+			}
+			attributes = Collections.unmodifiableMap(map);
+		}
+		return attributes;
+	}
+
+	@Override
+	public Collection<SamAttribute> getAttributes() {
+		return getAttributeMap().values();
+	}
+	
+	@Override
+	public boolean hasAttribute(SamAttributeKey key) {
+		if(key==null){
+			throw new NullPointerException("key can not be null");
+		}
+		return getAttributeMap().containsKey(key);
+	}
+
+	@Override
+	public SamAttribute getAttribute(SamAttributeKey key) {
+		Objects.requireNonNull(key);
+		return getAttributeMap().get(key);
+	}
+
+	@Override
+	public boolean hasAttribute(ReservedSamAttributeKeys key) {
+		if(key==null){
+			throw new NullPointerException("key can not be null");
+		}
+		return hasAttribute(key.getKey());
+	}
+
+	@Override
+	public SamAttribute getAttribute(ReservedSamAttributeKeys key) {
+		Objects.requireNonNull(key);
+		return getAttribute(key.getKey());
+	}
+
+	@Override
+	public boolean mapped() {
+		return !hasFlag(SamRecordFlag.READ_UNMAPPED);
+	}
+
+	@Override
+	public Direction getDirection() {
+		return hasFlag(SamRecordFlag.REVERSE_COMPLEMENTED) ? Direction.REVERSE : Direction.FORWARD;
+	}
+	/**
+	 * Get the alignment {@link Range} that his record
+	 * mapped to along the reference.  The number of reference bases
+	 * is computed directly from the encoded cigar operations
+	 * without decoding the {@link Cigar}.
+	 * 
+	 * @return a {@link Range} for this record's alignment,
+	 * or {@code null} if this record didn't map.
+	 */
+	@Override
+	public Range getAlignmentRange() {
+		if(!mapped()){
+			return null;
+		}
+		int cigarOffset = getCigarOffset();
+		int referenceLength =0;
+		for(int i=0; i< numCigarOps; i++){
+			int bits = getInt(cigarOffset + 4*i);
+			//BAM op codes are MIDNSHP=X
+			//only M, D, N, = and X consume the reference
+			switch(bits & 0xF){
+				case 0:
+				case 2:
+				case 3:
+				case 7:
+				case 8:
+					referenceLength += bits>>>4;
+					break;
+				default:
+					break;
+			}
+		}
+		return new Range.Builder(referenceLength)
+						.shift(getStartPosition() -1)
+						.build();
+	}
+	/**
+	 * Fully decode this record using the same code
+	 * an eager parser would use.
+	 * 
+	 * @return a new {@link SamRecord} that is not lazy.
+	 */
+	SamRecord decodeFully(){
+		try {
+			return BamFileParser.parseSamRecord(new ByteArrayInputStream(data, 0, length), length, refNames, header, validator);
+		} catch (IOException e) {
+			throw new UncheckedIOException("error decoding bam record", e);
+		}
+	}
+	
+	@Override
+	public int hashCode() {
+		return decodeFully().hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if(!(obj instanceof SamRecord)){
+			return false;
+		}
+		return decodeFully().equals(obj);
+	}
+	
+	@Override
+	public String toString() {
+		return decodeFully().toString();
+	}
+}
@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.core.io.RandomAccessFileInputStream;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
+/**
+ * {@code ParallelBgzfInputStream} is a {@link BgzfInputStream}
+ * that reads ahead several BGZF blocks at a time and inflates
+ * them concurrently on a pool of worker threads.
+ * The compressed blocks are read from the file by the thread
+ * calling the read methods (which is cheap compared to inflating)
+ * and the inflated blocks are handed back in file order
+ * so to the caller this stream looks exactly like
+ * a serial {@link BgzfInputStream} including
+ * the values returned by {@link #getCurrentVirutalFileOffset()}.
+ * <p>
+ * NOT THREAD SAFE
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class ParallelBgzfInputStream extends BgzfInputStream{
+	/**
+	 * Each BGZF block header is 
+	 * ID1 ID2 CM FLG MTIME(4) XFL OS XLEN(2).
+	 */
+	private static final int GZIP_HEADER_LENGTH = 12;
+	/**
+	 * CRC32 and ISIZE.
+	 */
+	private static final int GZIP_FOOTER_LENGTH = 8;
+	
+	private static final int FHCRC      = 2; 
+    private static final int FEXTRA     = 4; 
+    private static final int FNAME      = 8; 
+    private static final int FCOMMENT   = 16; 
+	/**
+	 * Max size of an uncompressed block
+	 * is 2^16 bytes.
+	 */
+	private static final int MAX_UNCOMPRESSED_BLOCK_SIZE = 1<<16;
+	/**
+	 * Largest uncompressed offset that can be 
+	 * encoded in a {@link VirtualFileOffset}.
+	 */
+	private static final int MAX_ENCODABLE_UNCOMPRESSED_OFFSET = 0xFFFF;
+	/**
+	 * Number of blocks to read ahead per worker thread
+	 * so the workers always have something to do
+	 * while the consumer is busy with the current block.
+	 */
+	private static final int BLOCKS_PER_THREAD = 2;
+	
+	private final ExecutorService executor;
+	private final int maxBlocksInFlight;
+	
+	private final Deque<Future<InflatedBlock>> blocksInFlight;
+	
+	private final Queue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+	private final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
+	
+	private final byte[] headerBuffer = new byte[GZIP_HEADER_LENGTH];
+	
+	private long nextCompressedBlockOffset;
+	private boolean allBlocksRead=false;
+	
+	private InflatedBlock currentBlock;
+	private int currentBlockPosition;
+	
+	private boolean endOfFile = false;
+	private volatile boolean closed = false;
+	
+	static ParallelBgzfInputStream create(File bamFile, VirtualFileOffset vfs, int numberOfThreads) throws IOException{
+		long compressedBamBlockOffset = vfs.getCompressedBamBlockOffset();
+		InputStream in;
+    	if(compressedBamBlockOffset>0){
+    		in = new BufferedInputStream(new RandomAccessFileInputStream(bamFile, compressedBamBlockOffset), MAX_UNCOMPRESSED_BLOCK_SIZE);
+    	}else{
+    		in = new BufferedInputStream(new FileInputStream(bamFile), MAX_UNCOMPRESSED_BLOCK_SIZE);
+    	}
+    	ParallelBgzfInputStream bgzfStream = new ParallelBgzfInputStream(in, compressedBamBlockOffset, numberOfThreads);
+    	
+    	IOUtil.blockingSkip(bgzfStream, vfs.getUncompressedOffset());
+    	return bgzfStream;
+	}
+	
+	private ParallelBgzfInputStream(InputStream in, long startingCompressedOffset, int numberOfThreads) throws IOException {
+		//we don't use the parent's inflater or buffer
+		//so make the buffer as small as possible
+		super(in, 1, false);
+		this.nextCompressedBlockOffset = startingCompressedOffset;
+		this.maxBlocksInFlight = numberOfThreads * BLOCKS_PER_THREAD;
+		this.blocksInFlight = new ArrayDeque<>(maxBlocksInFlight);
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory("jillion-bgzf-inflater"));
+	}
+
+	@Override
+	public int read() throws IOException {
+		assertNotClosed();
+		if(!ensureCurrentBlockHasData()){
+			return -1;
+		}
+		return currentBlock.data[currentBlockPosition++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buf, int off, int len) throws IOException {
+		assertNotClosed();
+		if(off < 0 || len < 0 || len > buf.length - off){
+			throw new IndexOutOfBoundsException();
+		}
+		if(endOfFile){
+			return -1;
+		}
+		if(len ==0){
+			return 0;
+		}
+		if(!ensureCurrentBlockHasData()){
+			return -1;
+		}
+		int bytesToCopy = Math.min(len, currentBlock.length - currentBlockPosition);
+		System.arraycopy(currentBlock.data, currentBlockPosition, buf, off, bytesToCopy);
+		currentBlockPosition +=bytesToCopy;
+		return bytesToCopy;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		assertNotClosed();
+		long leftToSkip = n;
+		while(leftToSkip >0 && ensureCurrentBlockHasData()){
+			int skipped = (int) Math.min(leftToSkip, currentBlock.length - currentBlockPosition);
+			currentBlockPosition +=skipped;
+			leftToSkip -=skipped;
+		}
+		return n - leftToSkip;
+	}
+
+	@Override
+	public int available() throws IOException {
+		assertNotClosed();
+		if(endOfFile || currentBlock ==null){
+			return 0;
+		}
+		return currentBlock.length - currentBlockPosition;
+	}
+
+	@Override
+	public boolean hasMoreData() {
+		return !endOfFile;
+	}
+
+	@Override
+	VirtualFileOffset getCurrentVirutalFileOffset() {
+		if(currentBlock ==null || (endOfFile && allBlocksRead)){
+			//either we haven't started reading yet
+			//or we have read everything
+			return VirtualFileOffset.create(nextCompressedBlockOffset, 0);
+		}
+		if(currentBlockPosition > MAX_ENCODABLE_UNCOMPRESSED_OFFSET){
+			//same as parent class, this would overflow
+			//so return the beginning of the next block
+			return VirtualFileOffset.create(currentBlock.compressedOffset + currentBlock.compressedLength, 0);
+		}
+		return VirtualFileOffset.create(currentBlock.compressedOffset, currentBlockPosition);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed){
+			return;
+		}
+		closed = true;
+		endOfFile = true;
+		for(Future<InflatedBlock> future : blocksInFlight){
+			future.cancel(true);
+		}
+		blocksInFlight.clear();
+		executor.shutdownNow();
+		
+		Inflater inflater;
+		while((inflater = inflaterPool.poll()) !=null){
+			inflater.end();
+		}
+		bufferPool.clear();
+		currentBlock = null;
+		//parent closes the wrapped stream
+		//and our unused inflater
+		super.close();
+	}
+	
+	private void assertNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException("BAM file is closed");
+        }
+    }
+	/**
+	 * Make sure the current block has unread data
+	 * advancing to the next non-empty block if needed.
+	 * @return {@code true} if there is data left
+	 * to read in the current block; {@code false}
+	 * if we have reached the end of the file.
+	 * @throws IOException if there is a problem reading or
+	 * inflating the next block.
+	 */
+	private boolean ensureCurrentBlockHasData() throws IOException{
+		if(endOfFile){
+			return false;
+		}
+		while(currentBlock ==null || currentBlockPosition >= currentBlock.length){
+			if(!advanceToNextBlock()){
+				endOfFile = true;
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean advanceToNextBlock() throws IOException{
+		fillBlocksInFlight();
+		Future<InflatedBlock> future = blocksInFlight.poll();
+		if(future ==null){
+			return false;
+		}
+		InflatedBlock nextBlock;
+		try {
+			nextBlock = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for BGZF block to inflate");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			throw new IOException("error inflating BGZF block", cause);
+		}
+		if(currentBlock !=null){
+			bufferPool.offer(currentBlock.data);
+		}
+		currentBlock = nextBlock;
+		currentBlockPosition = 0;
+		//submit more work now that
+		//we have freed up a spot
+		fillBlocksInFlight();
+		return true;
+	}
+	
+	private void fillBlocksInFlight() throws IOException{
+		while(!allBlocksRead && blocksInFlight.size() < maxBlocksInFlight){
+			byte[] compressedBlock = readNextCompressedBlock();
+			if(compressedBlock ==null){
+				allBlocksRead = true;
+			}else{
+				long offset = nextCompressedBlockOffset;
+				nextCompressedBlockOffset += compressedBlock.length;
+				blocksInFlight.add(executor.submit(() -> inflate(offset, compressedBlock)));
+			}
+		}
+	}
+	/**
+	 * Read the next entire BGZF block (header, compressed data and footer)
+	 * from the wrapped stream.
+	 * @return the bytes of the block or {@code null} if there are no more blocks.
+	 * @throws IOException if there is a problem reading the block
+	 * or the block is not a valid BGZF block.
+	 */
+	private byte[] readNextCompressedBlock() throws IOException{
+		int firstByte = in.read();
+		if(firstByte ==-1){
+			return null;
+		}
+		headerBuffer[0] = (byte) firstByte;
+		IOUtil.blockingRead(in, headerBuffer, 1, GZIP_HEADER_LENGTH -1);
+		
+		if((headerBuffer[0] & 0xFF) != 0x1F || (headerBuffer[1] & 0xFF) != 0x8B){
+			throw new ZipException("Not in GZIP format");
+		}
+		if(headerBuffer[2] != 8){
+			throw new ZipException("Unsupported compression method");
+		}
+		if((headerBuffer[3] & FEXTRA) != FEXTRA){
+			throw new IOException("invalid BGZF file, F.EXTRA not set");
+		}
+		int extraLength = getUnsignedShort(headerBuffer, 10);
+		byte[] extraFields = new byte[extraLength];
+		IOUtil.blockingRead(in, extraFields);
+		
+		int blockSize = parseBlockSize(extraFields);
+		int bytesLeftInBlock = blockSize - GZIP_HEADER_LENGTH - extraLength;
+		if(bytesLeftInBlock < GZIP_FOOTER_LENGTH){
+			throw new IOException("invalid BGZF file, block size too small : " + blockSize);
+		}
+		byte[] block = new byte[blockSize];
+		System.arraycopy(headerBuffer, 0, block, 0, GZIP_HEADER_LENGTH);
+		System.arraycopy(extraFields, 0, block, GZIP_HEADER_LENGTH, extraLength);
+		IOUtil.blockingRead(in, block, GZIP_HEADER_LENGTH + extraLength, bytesLeftInBlock);
+		return block;
+	}
+	
+	private static int parseBlockSize(byte[] extraFields) throws IOException{
+		//the BGZF spec says there may be other extra subfields
+		//so look for the one with the BGZF id.
+		int i=0;
+		while(i + 4 <= extraFields.length){
+			int subfieldLength = getUnsignedShort(extraFields, i+2);
+			if(extraFields[i] == 'B' && extraFields[i+1] == 'C'){
+				if(subfieldLength !=2){
+					throw new IOException("invalid BGZF file, F.EXTRA payload length not 2");
+				}
+				return getUnsignedShort(extraFields, i+4) +1;
+			}
+			i += 4 + subfieldLength;
+		}
+		throw new IOException("invalid BGZF file, F.EXTRA Subfield IDs are wrong");
+	}
+	
+	private static int getUnsignedShort(byte[] array, int offset){
+		return (array[offset] & 0xFF) | ((array[offset+1] & 0xFF) <<8);
+	}
+	
+	private static long getUnsignedInt(byte[] array, int offset){
+		return getUnsignedShort(array, offset) | ((long)getUnsignedShort(array, offset+2) <<16);
+	}
+	/**
+	 * Inflate the given BGZF block; this method is run by the worker threads.
+	 * @param compressedOffset the offset into the file of this block.
+	 * @param block the entire BGZF block.
+	 * @return a new {@link InflatedBlock}.
+	 * @throws IOException if the block is corrupt.
+	 */
+	private InflatedBlock inflate(long compressedOffset, byte[] block) throws IOException{
+		int flags = block[3];
+		int extraLength = getUnsignedShort(block, 10);
+		int dataStart = GZIP_HEADER_LENGTH + extraLength;
+		//these optional fields should never be set
+		//in BGZF files but the spec doesn't forbid them
+		if((flags & FNAME) == FNAME){
+			while(block[dataStart++] !=0){
+				//skip file name
+			}
+		}
+		if((flags & FCOMMENT) == FCOMMENT){
+			while(block[dataStart++] !=0){
+				//skip comment
+			}
+		}
+		if((flags & FHCRC) == FHCRC){
+			dataStart+=2;
+		}
+		int footerStart = block.length - GZIP_FOOTER_LENGTH;
+		long expectedCrc = getUnsignedInt(block, footerStart);
+		long expectedUncompressedLength = getUnsignedInt(block, footerStart +4);
+		
+		if(expectedUncompressedLength > MAX_UNCOMPRESSED_BLOCK_SIZE){
+			throw new ZipException("invalid ISIZE " + expectedUncompressedLength);
+		}
+		int uncompressedLength = (int) expectedUncompressedLength;
+		byte[] data = borrowBuffer();
+		
+		Inflater inflater = borrowInflater();
+		try{
+			inflater.setInput(block, dataStart, footerStart - dataStart);
+			int bytesInflated=0;
+			while(bytesInflated < uncompressedLength){
+				int n = inflater.inflate(data, bytesInflated, uncompressedLength - bytesInflated);
+				if(n==0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				bytesInflated+=n;
+			}
+			if(bytesInflated != uncompressedLength){
+				throw new ZipException("invalid ISIZE");
+			}
+		} catch (DataFormatException e) {
+			String s = e.getMessage();
+            throw new IOException(s == null ? "Invalid ZLIB data format" : s, e);
+		}finally{
+			returnInflater(inflater);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, uncompressedLength);
+		if(crc.getValue() != expectedCrc){
+			throw new ZipException("invalid CRC: expected " + expectedCrc + " actual " + crc.getValue());
+		}
+		return new InflatedBlock(compressedOffset, block.length, data, uncompressedLength);
+	}
+	
+	private byte[] borrowBuffer(){
+		byte[] buffer = bufferPool.poll();
+		if(buffer ==null){
+			return new byte[MAX_UNCOMPRESSED_BLOCK_SIZE];
+		}
+		return buffer;
+	}
+	
+	private Inflater borrowInflater(){
+		Inflater inflater = inflaterPool.poll();
+		if(inflater ==null){
+			return new Inflater(true);
+		}
+		return inflater;
+	}
+	
+	private void returnInflater(Inflater inflater){
+		if(closed){
+			inflater.end();
+			return;
+		}
+		inflater.reset();
+		inflaterPool.offer(inflater);
+		//double check in case we were closed
+		//while we were putting it back
+		if(closed && inflaterPool.remove(inflater)){
+			inflater.end();
+		}
+	}
+	/**
+	 * A single BGZF block that has been inflated
+	 * along with its location in the compressed file.
+	 */
+	private static final class InflatedBlock{
+		private final long compressedOffset;
+		private final int compressedLength;
+		private final byte[] data;
+		private final int length;
+		
+		InflatedBlock(long compressedOffset, int compressedLength, byte[] data, int length) {
+			this.compressedOffset = compressedOffset;
+			this.compressedLength = compressedLength;
+			this.data = data;
+			this.length = length;
+		}
+	}
+}
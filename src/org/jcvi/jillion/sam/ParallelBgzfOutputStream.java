@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
+import org.jcvi.jillion.internal.sam.IndexerCallback;
+/**
+ * {@code ParallelBgzfOutputStream} is an {@link OutputStream}
+ * that writes the same BGZF encoded data as {@link BgzfOutputStream}
+ * but compresses each block on a pool of worker threads.
+ * Compressed blocks are still written out in the order
+ * the data was given to this stream, so the output is byte for byte
+ * identical to what {@link BgzfOutputStream} would write.
+ * <p>
+ * Since the compressed size of a block isn't known
+ * until that block has been compressed, any {@link IndexerCallback}
+ * is called later, once all the blocks the write touched have been
+ * written out and the {@link VirtualFileOffset}s are known.  The callbacks
+ * are always called in write order on the thread
+ * writing to this stream.
+ * </p>
+ * <p>
+ * NOT THREAD SAFE
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class ParallelBgzfOutputStream extends OutputStream{
+	/**
+	 * Number of blocks to allow to be compressed at the same time
+	 * per worker thread so the workers always have something to do.
+	 */
+	private static final int BLOCKS_PER_THREAD = 2;
+	
+	private final OutputStream out;
+	private final IndexerCallback callback;
+	
+	private final ExecutorService executor;
+	private final int maxBlocksInFlight;
+	private final Deque<Future<byte[]>> blocksInFlight;
+	
+	private final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
+	
+	private byte[] uncompressedBuffer = new byte[BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE];
+	private int currentUsedBufferLength=0;
+	/**
+	 * Number of blocks handed off to be compressed so far.
+	 * This is also the block number of the block currently being filled.
+	 */
+	private long blocksSubmitted=0;
+	/**
+	 * Number of blocks written out to the wrapped
+	 * OutputStream so far.
+	 */
+	private long blocksWritten=0;
+	
+	private long compressedBytesWrittenSoFar=0;
+	/**
+	 * Callbacks waiting for the blocks they reference to be written.
+	 */
+	private final Deque<PendingCallback> pendingCallbacks = new ArrayDeque<>();
+	/**
+	 * Compressed start offsets of blocks already written
+	 * that still might be referenced by pending callbacks.
+	 */
+	private final Map<Long, Long> writtenBlockStartOffsets = new HashMap<>();
+	private long oldestTrackedBlock = 0;
+	
+	private final byte[] singleByteArray = new byte[1];
+	
+	private boolean closed = false;
+	/**
+	 * Create a new {@link ParallelBgzfOutputStream}
+	 * that will write BGZF encoded data to the given
+	 * file.
+	 * @param outputBam the {@link File} to write to;
+	 * can not be null.  If the file, or any parent directories
+	 * do not exist, then they will be created.
+	 * @param callback the {@link IndexerCallback} to call back to
+	 * on during when writing to this stream;
+	 * if {@code null} then no callbacks will be called.
+	 * @param numberOfThreads the number of threads to use to compress the blocks;
+	 * must be &ge; 1.
+	 * 
+	 * @throws NullPointerException if outputBam is null.
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 * @throws IOException if there is a problem creating the output file.
+	 */
+	ParallelBgzfOutputStream(File outputBam, IndexerCallback callback, int numberOfThreads) throws IOException{
+		if(outputBam ==null){
+			throw new NullPointerException("output can not be null");
+		}
+		if(numberOfThreads <1){
+			throw new IllegalArgumentException("number of threads must be >= 1");
+		}
+		IOUtil.mkdirs(outputBam.getParentFile());
+		this.out = new BufferedOutputStream(new FileOutputStream(outputBam), BgzfOutputStream.MAX_COMPRESSED_BLOCK_SIZE);
+		this.callback = callback;
+		this.maxBlocksInFlight = numberOfThreads * BLOCKS_PER_THREAD;
+		this.blocksInFlight = new ArrayDeque<>(maxBlocksInFlight);
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory("jillion-bgzf-deflater"));
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		singleByteArray[0] = (byte)b;
+		handleWrite(singleByteArray, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		handleWrite(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		handleWrite(b, off, len);
+	}
+	
+	private void handleWrite(byte[] b, int off, int bytesToWriteLength) throws IOException{
+		if(closed){
+			throw new IOException("stream is closed");
+		}
+		if(bytesToWriteLength <0){
+			//follow OutputStream spec and throw Exception
+			throw new IndexOutOfBoundsException("length can not be negative : "+ bytesToWriteLength);
+		}
+		if(callback ==null){
+			handleWriteBody(b, off, bytesToWriteLength);
+			return;
+		}
+		long startBlock = blocksSubmitted;
+		int startOffset = currentUsedBufferLength;
+		
+		handleWriteBody(b, off, bytesToWriteLength);
+		
+		pendingCallbacks.add(new PendingCallback(startBlock, startOffset, 
+								blocksSubmitted, currentUsedBufferLength, 
+								callback.captureCurrentState()));
+		callPendingCallbacks();
+	}
+	
+	private void handleWriteBody(byte[] b, int off, int bytesToWriteLength) throws IOException{
+		int currentOffset = off;
+		int bytesLeftToWrite = bytesToWriteLength;
+		while(bytesLeftToWrite > 0){
+			int bytesFreeInBuffer = BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE - currentUsedBufferLength;
+			int bytesToWriteIntoCurrentBuffer = Math.min(bytesLeftToWrite,bytesFreeInBuffer);
+			
+			System.arraycopy(b, currentOffset, uncompressedBuffer, currentUsedBufferLength, bytesToWriteIntoCurrentBuffer);
+			
+			currentUsedBufferLength += bytesToWriteIntoCurrentBuffer;
+			currentOffset += bytesToWriteIntoCurrentBuffer;
+			bytesLeftToWrite -= bytesToWriteIntoCurrentBuffer;
+			
+			if(currentUsedBufferLength == BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE){
+				submitCurrentBlock();
+			}
+		}
+	}
+	/**
+	 * Hand off the current buffer to be compressed
+	 * by a worker thread and start filling a new buffer.
+	 * If there are already too many blocks being compressed,
+	 * then this will block until the oldest one finishes
+	 * and is written out.
+	 * @throws IOException if there is a problem writing out previously compressed blocks.
+	 */
+	private void submitCurrentBlock() throws IOException{
+		if(currentUsedBufferLength ==0){
+			return;
+		}
+		writeFinishedBlocks(maxBlocksInFlight -1);
+		
+		byte[] buffer = uncompressedBuffer;
+		int length = currentUsedBufferLength;
+		blocksInFlight.add(executor.submit(()->{
+			try{
+				return BgzfOutputStream.createBgzfBlock(buffer, length, 
+						new byte[BgzfOutputStream.MAX_COMPRESSED_BLOCK_SIZE], new CRC32());
+			}finally{
+				bufferPool.offer(buffer);
+			}
+		}));
+		blocksSubmitted++;
+		
+		byte[] nextBuffer = bufferPool.poll();
+		uncompressedBuffer = nextBuffer ==null ? new byte[BgzfOutputStream.MAX_UNCOMPRESSED_BLOCK_SIZE] : nextBuffer;
+		currentUsedBufferLength=0;
+	}
+	/**
+	 * Write out compressed blocks in order until 
+	 * there are at most the given number of blocks still being compressed.
+	 * Any blocks that have already finished compressing are also written.
+	 * @param maxBlocksLeft the maximum number of blocks that can still be compressing
+	 * when this method returns.
+	 * @throws IOException if there is a problem compressing or writing the blocks.
+	 */
+	private void writeFinishedBlocks(int maxBlocksLeft) throws IOException{
+		while(!blocksInFlight.isEmpty() && 
+				(blocksInFlight.size() > maxBlocksLeft || blocksInFlight.peek().isDone())){
+			byte[] block = getCompressedBlock(blocksInFlight.poll());
+			if(callback !=null){
+				writtenBlockStartOffsets.put(blocksWritten, compressedBytesWrittenSoFar);
+			}
+			out.write(block);
+			compressedBytesWrittenSoFar += block.length;
+			blocksWritten++;
+		}
+		callPendingCallbacks();
+	}
+	
+	private byte[] getCompressedBlock(Future<byte[]> future) throws IOException{
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for BGZF block to compress");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException) cause;
+			}
+			throw new IOException("error compressing BGZF block", cause);
+		}
+	}
+	/**
+	 * Call any pending callbacks whose blocks
+	 * have all been written out.
+	 */
+	private void callPendingCallbacks(){
+		if(callback ==null){
+			return;
+		}
+		while(!pendingCallbacks.isEmpty() && pendingCallbacks.peek().endBlock <= blocksWritten){
+			PendingCallback pending = pendingCallbacks.poll();
+			pending.callback.encodedIndex(
+					VirtualFileOffset.create(getStartOffsetOf(pending.startBlock), pending.startOffset), 
+					VirtualFileOffset.create(getStartOffsetOf(pending.endBlock), pending.endOffset));
+		}
+		//stop tracking blocks no one can refer to anymore
+		long oldestNeededBlock = pendingCallbacks.isEmpty() ? blocksWritten : pendingCallbacks.peek().startBlock;
+		while(oldestTrackedBlock < oldestNeededBlock){
+			writtenBlockStartOffsets.remove(oldestTrackedBlock++);
+		}
+	}
+	
+	private long getStartOffsetOf(long block){
+		if(block == blocksWritten){
+			return compressedBytesWrittenSoFar;
+		}
+		return writtenBlockStartOffsets.get(block);
+	}
+	
+	/**
+	 * Get the {@link VirtualFileOffset} of the data
+	 * written so far.  Unlike {@link BgzfOutputStream#getVirtualFileOffset()},
+	 * this method has to wait for all the data
+	 * to be compressed and written so it should be avoided.
+	 * 
+	 * @return a new {@link VirtualFileOffset}; will never be null.
+	 * 
+	 * @throws IOException if there is a problem compressing or writing the blocks.
+	 */
+	public VirtualFileOffset getVirtualFileOffset() throws IOException{
+		writeFinishedBlocks(0);
+		return VirtualFileOffset.create(compressedBytesWrittenSoFar, currentUsedBufferLength);
+	}
+	/**
+	 * Compress and write out all the data
+	 * written so far to the wrapped outputStream.
+	 * <strong>This method should not be called directly</strong>
+	 * since it will end the current BGZF block early.
+	 */
+	@Override
+	public void flush() throws IOException {
+		submitCurrentBlock();
+		writeFinishedBlocks(0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed){
+			return;
+		}
+		try{
+			flush();
+			out.write(BgzfOutputStream.EOF_MARKER);
+		}finally{
+			closed = true;
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+	/**
+	 * Struct to hold a callback and the locations
+	 * of the write the callback refers to as block numbers
+	 * and offsets into the uncompressed blocks.
+	 */
+	private static final class PendingCallback{
+		private final long startBlock, endBlock;
+		private final int startOffset, endOffset;
+		private final IndexerCallback callback;
+		
+		PendingCallback(long startBlock, int startOffset, long endBlock, int endOffset, IndexerCallback callback) {
+			this.startBlock = startBlock;
+			this.startOffset = startOffset;
+			this.endBlock = endBlock;
+			this.endOffset = endOffset;
+			this.callback = callback;
+		}
+	}
+}
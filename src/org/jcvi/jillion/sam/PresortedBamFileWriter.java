@@ -73,13 +73,44 @@ class PresortedBamFileWriter implements SamWriter{
     public PresortedBamFileWriter(SamHeader header, File outputFile,
             BamIndexer optionalIndexer, SamAttributeValidator attributeValidator, boolean includeIndexMetaData)
             throws IOException {
+    	this(header, outputFile, optionalIndexer, attributeValidator, includeIndexMetaData, 1);
+    }
+    /**
+     * Create a new PresortedBamFileWriter.
+     * 
+     * @param header the {@link SamHeader} to write; can not be null.
+     * @param outputFile the BAM file to write.
+     * @param optionalIndexer the {@link BamIndexer} to use to index the records
+     * as they are written; may be null if no index should be made.
+     * @param attributeValidator the {@link SamAttributeValidator} to use; can not be null.
+     * @param includeIndexMetaData should the index also include metadata.
+     * @param numberOfDeflaterThreads the number of threads to use to compress
+     * the BGZF blocks; must be &ge; 1.  If set to 1, then the blocks
+     * are compressed in the calling thread.
+     * 
+     * @throws IOException if there is a problem creating the output file.
+     * @throws IllegalArgumentException if numberOfDeflaterThreads &lt; 1.
+     * 
+     * @since 5.3
+     */
+    public PresortedBamFileWriter(SamHeader header, File outputFile,
+            BamIndexer optionalIndexer, SamAttributeValidator attributeValidator, boolean includeIndexMetaData,
+            int numberOfDeflaterThreads)
+            throws IOException {
+    	if(numberOfDeflaterThreads <1){
+    		throw new IllegalArgumentException("number of deflater threads must be >= 1");
+    	}
         this.header = header;
         this.bamFile = outputFile;
         this.attributeValidator = attributeValidator;
         this.optionalIndexer = optionalIndexer;
         this.includeIndexMetaData = includeIndexMetaData;
         
-        out = new BgzfOutputStream(bamFile, optionalIndexer);
+        if(numberOfDeflaterThreads ==1){
+        	out = new BgzfOutputStream(bamFile, optionalIndexer);
+        }else{
+        	out = new ParallelBgzfOutputStream(bamFile, optionalIndexer, numberOfDeflaterThreads);
+        }
         int i = 0;
         for (SamReferenceSequence refSeq : header.getReferenceSequences()) {
             refSeqIndexMap.put(refSeq.getName(), Integer.valueOf(i));
@@ -22,19 +22,18 @@ package org.jcvi.jillion.sam;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.jcvi.jillion.core.io.IOUtil;
-import org.jcvi.jillion.core.util.iter.IteratorUtil;
-import org.jcvi.jillion.core.util.iter.PeekableStreamingIterator;
-import org.jcvi.jillion.core.util.iter.StreamingIterator;
-import org.jcvi.jillion.internal.core.util.iter.AbstractBlockingStreamingIterator;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
 import org.jcvi.jillion.internal.sam.index.BamIndexer;
 import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
 import org.jcvi.jillion.sam.header.SamHeader;
@@ -47,19 +46,21 @@ import org.jcvi.jillion.sam.header.SamHeader;
  * sorted by the specified manner.
  * Subclasses handle the actual SAM/BAM encoding.
  * <p>
- * Algorithm: Keep an array of records in memory
- * (size of array specified by user).  When we
- * have filled the array, sort the in memory records
- * and write out a SAM/BAM file to a temp file and
- * clear the in memory array to make room for more
- * records.
+ * Algorithm: Keep an array of records in memory.
+ * When we
+ * have filled the array, hand it off to a background thread
+ * to sort and write out to a temp {@link SamRecordSpillFile}
+ * while we keep filling another array with more records.
+ * The max number of records to keep in memory is split
+ * among all the arrays so only that many records are ever 
+ * referenced at the same time.
  * When {@link SamWriter#close()} is called,
  * write the combined sorted
  * records to the specified output file.
  * Since 
  * we know each temp file and the in memory array are 
- * each sorted, we can use a merge sort like algorithm
- * to combine the records into one giant sorted list. 
+ * each sorted, we can use a heap to
+ * merge the records into one giant sorted list. 
  * </p>
  * @author dkatzel
  *
@@ -73,14 +74,30 @@ class ReSortSamFileWriter implements SamWriter {
 	
 	private SamRecord[] inMemoryArray;
 	private int currentInMemSize;
-	private final int maxRecordsToKeepInMemory;
-	private final List<File> tempFiles = new ArrayList<File>();
+	private final int maxRecordsPerRun;
 	private final SamAttributeValidator attributeValidator;
 	
 	private final Encoding encoding;
 	private final BamIndexer indexer;
 	private final boolean includeIndexMetaData;
+	private final int numberOfDeflaterThreads;
 	
+	private final boolean compressTempFiles;
+	private final SamRecordSpillFile.Encoder spillEncoder;
+	private final ExecutorService sortExecutor;
+	/**
+	 * Spilled runs in the order they were created.
+	 * Only modified while holding the lock on this list.
+	 */
+	private final List<SamRecordSpillFile> spillFiles = new ArrayList<SamRecordSpillFile>();
+	/**
+	 * Guarded by this; arrays that are free to fill
+	 * and the number of arrays we are allowed to create.
+	 */
+	private final Deque<SamRecord[]> freeArrays = new ArrayDeque<>();
+	private int arraysLeftToCreate;
+	private int numberOfPendingRuns;
+	private IOException spillError;
 	
 	/**
 	 * 
@@ -97,26 +114,41 @@ class ReSortSamFileWriter implements SamWriter {
 	 * @param encodingToUse The {@link Encoding} to use to write the output file; can not be null.
 	 * @param indexer the {@link BamIndexer} to use to index the files
 	 * @param includeIndexMetaData  should the index also include metadata.
+	 * @param numberOfDeflaterThreads the number of threads to use to compress
+	 * BAM encoded output; must be &ge; 1.
+	 * @param numberOfSortThreads the number of background threads to use to sort
+	 * and write temp files; must be &ge; 1.
+	 * @param compressTempFiles should the temp files be compressed.
 	 * 
 	 * @throws NullPointerException if any of the parameters that can't be null are null.
-	 * @throws IllegalArgumentException if maxRecordsToKeepInMemory is negative.
+	 * @throws IllegalArgumentException if maxRecordsToKeepInMemory is negative
+	 * or if numberOfDeflaterThreads or numberOfSortThreads &lt; 1.
 	 * 
 	 * @throws IOException if there is a problem creating the output file or creating a temp directory under tmpDirRoot.
 	 */
 	ReSortSamFileWriter(File outputFile, File tmpDirRoot, SamHeader header, 
 	        int maxRecordsToKeepInMemory, SamAttributeValidator attributeValidator,
-	        Encoding encodingToUse, BamIndexer indexer, boolean includeIndexMetaData) throws IOException {
+	        Encoding encodingToUse, BamIndexer indexer, boolean includeIndexMetaData, int numberOfDeflaterThreads,
+	        int numberOfSortThreads, boolean compressTempFiles) throws IOException {
 		
 		if(maxRecordsToKeepInMemory <0){
 			throw new IllegalArgumentException("max records to keep in memory must be >=1");
 		}
+		if(numberOfDeflaterThreads <1){
+			throw new IllegalArgumentException("number of deflater threads must be >=1");
+		}
+		if(numberOfSortThreads <1){
+			throw new IllegalArgumentException("number of sort threads must be >=1");
+		}
 		if(attributeValidator ==null){
 			throw new NullPointerException("attribute valiator can not be null");
 		}
 		if(encodingToUse ==null){
 			throw new NullPointerException("Encoding can not be null");
 		}
-		this.maxRecordsToKeepInMemory = maxRecordsToKeepInMemory;
+		//1 array being filled while the others are sorted in the background
+		int numberOfArrays = numberOfSortThreads +1;
+		this.maxRecordsPerRun = Math.max(1, maxRecordsToKeepInMemory / numberOfArrays);
 		
 		this.header = header;
 		recordComparator = createRecordComparatorFor(header);
@@ -126,7 +158,8 @@ class ReSortSamFileWriter implements SamWriter {
 		
 		IOUtil.mkdirs(outputFile.getParentFile());
 		tmpDir = IOUtil.createTempDir("jillion", "samWriterTmp", tmpDirRoot);		
-        inMemoryArray = new SamRecord[maxRecordsToKeepInMemory];
+        inMemoryArray = new SamRecord[maxRecordsPerRun];
+        arraysLeftToCreate = numberOfArrays -1;
         currentInMemSize=0;
         this.outputFile = outputFile;
         this.attributeValidator = attributeValidator;
@@ -134,6 +167,10 @@ class ReSortSamFileWriter implements SamWriter {
         this.indexer = indexer;
         
         this.includeIndexMetaData = includeIndexMetaData;
+        this.numberOfDeflaterThreads = numberOfDeflaterThreads;
+        this.compressTempFiles = compressTempFiles;
+        this.spillEncoder = new SamRecordSpillFile.Encoder(header);
+        this.sortExecutor = Executors.newFixedThreadPool(numberOfSortThreads, new DaemonThreadFactory("jillion-sam-sort"));
 	}
 
 
@@ -161,31 +198,85 @@ class ReSortSamFileWriter implements SamWriter {
 	}
 
 	/**
-	 * Write all the records currently in memory
-	 * to a temp file encoded using the given encoding
-	 * @throws IOException
+	 * Hand off all the records currently in memory
+	 * to a background thread to sort and write to a temp file
+	 * and get another array to fill.
+	 * @throws IOException if a previous temp file could not be written.
 	 */
 	private void persistInMemoryCacheIfNeeded() throws IOException {
-		if(currentInMemSize == maxRecordsToKeepInMemory){
-			
-			sortInMemoryRecords();
-			
-			File tempFile= File.createTempFile(outputFile.getName(), encoding.getSuffix(), tmpDir);
-			tempFiles.add(tempFile);
-			//never pass indexer to temp files
-			//only use in final if at all.
-			SamWriter writer = encoding.createPreSortedNoValidationOutputWriter(tempFile, header,null, false);
+		if(currentInMemSize < maxRecordsPerRun){
+			return;
+		}
+		final SamRecord[] fullArray = inMemoryArray;
+		final int length = currentInMemSize;
+		final File tempFile= File.createTempFile(outputFile.getName(), ".spill", tmpDir);
+		final int runIndex;
+		synchronized(this){
+			checkForSpillError();
+			runIndex = spillFiles.size();
+			//reserve our spot so runs stay in insertion order
+			spillFiles.add(null);
+			numberOfPendingRuns++;
+		}
+		sortExecutor.execute(()->{
+			SamRecordSpillFile spillFile=null;
+			IOException error=null;
 			try{
-				for(int i=0; i<currentInMemSize; i++){
-					writer.writeRecord(inMemoryArray[i]);
-				}
+				sortRecords(fullArray, length, false);
+				spillFile = SamRecordSpillFile.write(tempFile, spillEncoder, fullArray, length, compressTempFiles);
+			}catch(IOException e){
+				error = e;
+			}catch(RuntimeException e){
+				error = new IOException("error sorting records", e);
 			}finally{
-				IOUtil.closeAndIgnoreErrors(writer);
-				clearInMemoryArray();
+				//clear references to free up GC
+				Arrays.fill(fullArray, 0, length, null);
+				synchronized(ReSortSamFileWriter.this){
+					spillFiles.set(runIndex, spillFile);
+					if(error !=null && spillError ==null){
+						spillError = error;
+					}
+					freeArrays.push(fullArray);
+					numberOfPendingRuns--;
+					ReSortSamFileWriter.this.notifyAll();
+				}
 			}
-			
+		});
+		inMemoryArray = nextFreeArray();
+		currentInMemSize=0;
+	}
+	
+	private synchronized SamRecord[] nextFreeArray() throws IOException{
+		if(freeArrays.isEmpty() && arraysLeftToCreate >0){
+			arraysLeftToCreate--;
+			return new SamRecord[maxRecordsPerRun];
+		}
+		try{
+			while(freeArrays.isEmpty()){
+				wait();
+			}
+		}catch(InterruptedException e){
+			throw new IOException("interrupted waiting for records to be sorted", e);
+		}
+		checkForSpillError();
+		return freeArrays.pop();
+	}
+	
+	private synchronized void waitForPendingRuns() throws IOException{
+		try{
+			while(numberOfPendingRuns >0){
+				wait();
+			}
+		}catch(InterruptedException e){
+			throw new IOException("interrupted waiting for records to be sorted", e);
+		}
+		checkForSpillError();
+	}
+	
+	private void checkForSpillError() throws IOException{
+		if(spillError !=null){
+			throw new IOException("error writing sorted temp file", spillError);
 		}
-		
 	}
 
 
@@ -196,13 +287,14 @@ class ReSortSamFileWriter implements SamWriter {
 	}
 
 
-	private void sortInMemoryRecords() {
-		//sort records while they are still in memory
-		//our comparators in SortOrder
-		//handle nulls and sort them last
-		//so we don't have to worry about those
-		//throwing NPE.
-		Arrays.sort(inMemoryArray, recordComparator);
+	private void sortRecords(SamRecord[] records, int length, boolean inParallel) {
+		//both sorts are stable so records that compare equal
+		//stay in the order they were written
+		if(inParallel){
+			Arrays.parallelSort(records, 0, length, recordComparator);
+		}else{
+			Arrays.sort(records, 0, length, recordComparator);
+		}
 	}
 
 
@@ -210,235 +302,151 @@ class ReSortSamFileWriter implements SamWriter {
 	
 	@Override
 	public void close() throws IOException {
-		List<PeekableStreamingIterator<SamRecord>> iterators =new ArrayList<PeekableStreamingIterator<SamRecord>>(1 + tempFiles.size());
+		List<SamRecordSpillFile.Reader> readers = new ArrayList<>();
 		SamWriter writer =null;
 		try{
-			sortInMemoryRecords();
-
-			iterators.add(IteratorUtil.createPeekableStreamingIterator(new InMemoryStreamingIterator(currentInMemSize)));
-			
-			for(File tempFile : tempFiles){
-				iterators.add(IteratorUtil.createPeekableStreamingIterator(new StreamingSamRecordIterator(tempFile, encoding)));
-			}
+			waitForPendingRuns();
+			sortExecutor.shutdown();
+			//use all the cores to sort the last run
+			//since nothing else is running.
+			sortRecords(inMemoryArray, currentInMemSize, true);
 			
-			Iterator<SamRecord> sortedIterator = new MergedSortedRecordIterator(iterators, recordComparator);
-			writer = encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer, includeIndexMetaData);
-			while(sortedIterator.hasNext()){
-				writer.writeRecord(sortedIterator.next());
+			writer = encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer, includeIndexMetaData, numberOfDeflaterThreads);
+			if(spillFiles.isEmpty()){
+				//everything fit in memory
+				for(int i=0; i< currentInMemSize; i++){
+					writer.writeRecord(inMemoryArray[i]);
+				}
+			}else{
+				//runs are added in the order they were written
+				//so ties are broken by run index to keep the sort stable
+				for(SamRecordSpillFile spillFile : spillFiles){
+					readers.add(spillFile.open(spillEncoder));
+				}
+				HeapMerger merger = new HeapMerger(readers, inMemoryArray, currentInMemSize, recordComparator);
+				SamRecord next;
+				while((next = merger.next()) !=null){
+					writer.writeRecord(next);
+				}
 			}
 		}finally{
-			for(StreamingIterator<?> iter : iterators){
-				IOUtil.closeAndIgnoreErrors(iter);
+			for(SamRecordSpillFile.Reader reader : readers){
+				IOUtil.closeAndIgnoreErrors(reader);
 			}
 			IOUtil.closeAndIgnoreErrors(writer);
+			sortExecutor.shutdownNow();
+			try {
+				//make sure background threads aren't still writing
+				//before we delete the temp dir
+				sortExecutor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 			clearInMemoryArray();
+			freeArrays.clear();
 			//delete temp dir
 			IOUtil.recursiveDelete(tmpDir);
 		}
 		
 	}
 
-
-	
-
-	
-
-	private final class InMemoryStreamingIterator implements StreamingIterator<SamRecord>{
-
-		private final int length;
-		private int counter=0;
-		
-		InMemoryStreamingIterator(int numOfInMemoryRecords){
-			this.length = numOfInMemoryRecords;
-		}
-		
-		@Override
-		public boolean hasNext() {
-			return counter<length;
-		}
-
-		@Override
-		public void close() {
-			//no-op
-			
-		}
-
-		@Override
-		public SamRecord next() {
-			if(!hasNext()){
-				throw new NoSuchElementException();
-			}
-			return inMemoryArray[counter++];
-		}
-
-		@Override
-		public void remove() {
-			throw new UnsupportedOperationException();
-			
-		}
-		
-	}
 	/**
-	 * Combine a list of pre-sorted Iterators into a single sorted iterator.
-	 * Each call to {@link #next()} will peek at the next elements in the wrapped
-	 * iterators and return the value that has the lowest sort value as determined
-	 * by the comparator (and advance that iterator).
+	 * K-way merge of the sorted spill files
+	 * and the final sorted in memory run using a binary min-heap
+	 * of the current record of each run so each record
+	 * only takes O(log k) comparisons.
 	 * @author dkatzel
 	 *
 	 */
-	public static class MergedSortedRecordIterator implements Iterator<SamRecord> {
-			private final List<PeekableStreamingIterator<SamRecord>> iterators;
-			
-			private SamRecord next;
-			private final SortedSamRecordElementComparator comparator;
-			private final List<SortedSamRecordElement> elementList;
-			
-			
-			public MergedSortedRecordIterator(List<PeekableStreamingIterator<SamRecord>> iterators, Comparator<SamRecord> comparator) {
-				this.iterators = iterators;
-				this.comparator = new SortedSamRecordElementComparator(comparator);
-				elementList = new ArrayList<SortedSamRecordElement>(iterators.size());
-				
-				next= getNext();
-			}
-			
-			private SamRecord getNext(){
-				elementList.clear();
-				for(PeekableStreamingIterator<SamRecord> iter : iterators){
-					if(iter.hasNext()){
-						//we peek instead of next()
-						//incase we don't pick this record yet
-						elementList.add(new SortedSamRecordElement(iter.peek(), iter));
-					}
-				}
-				if(elementList.isEmpty()){
-					return null;
+	private static final class HeapMerger{
+		private final List<SamRecordSpillFile.Reader> readers;
+		private final SamRecord[] inMemoryRecords;
+		private final int inMemoryLength;
+		private int inMemoryOffset;
+		
+		private final Comparator<SamRecord> comparator;
+		/**
+		 * Current record of each run, the in memory 
+		 * run is the last index.
+		 */
+		private final SamRecord[] heads;
+		/**
+		 * Heap of run indexes ordered by their head records.
+		 */
+		private final int[] heap;
+		private int heapSize;
+		
+		HeapMerger(List<SamRecordSpillFile.Reader> readers, SamRecord[] inMemoryRecords, int inMemoryLength, Comparator<SamRecord> comparator) throws IOException{
+			this.readers = readers;
+			this.inMemoryRecords = inMemoryRecords;
+			this.inMemoryLength = inMemoryLength;
+			this.comparator = comparator;
+			int numberOfRuns = readers.size() +1;
+			heads = new SamRecord[numberOfRuns];
+			heap = new int[numberOfRuns];
+			for(int i=0; i< numberOfRuns; i++){
+				SamRecord head = readNext(i);
+				if(head !=null){
+					heads[i] = head;
+					heap[heapSize++] = i;
 				}
-				Collections.sort(elementList, comparator);
-				SortedSamRecordElement element= elementList.get(0);
-				//advance iterator
-				element.source.next();
-				return element.record;
 			}
-
-			@Override
-			public boolean hasNext() {
-				return next!=null;
+			for(int i= heapSize/2 -1; i>=0; i--){
+				siftDown(i);
 			}
-			
-			
-			@Override
-			public SamRecord next() {
-				//don't need to check has next
-				//since we can make sure we don't call it incorrectly
-				SamRecord ret= next;
-				next = getNext();
-				return ret;
+		}
+		
+		private SamRecord readNext(int run) throws IOException{
+			if(run < readers.size()){
+				return readers.get(run).next();
 			}
-			
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();				
+			if(inMemoryOffset < inMemoryLength){
+				return inMemoryRecords[inMemoryOffset++];
 			}
-
-	}
-	/**
-	 * Struct that has a {@link SamRecord} and which
-	 * iterator that record belong to so we can advance
-	 * the iterator if selected.
-	 * @author dkatzel
-	 *
-	 */
-	private static class SortedSamRecordElement{
-		SamRecord record;
-		Iterator<SamRecord> source;
-		
-		public SortedSamRecordElement(SamRecord record,
-				Iterator<SamRecord> source) {
-			this.record = record;
-			this.source = source;
+			return null;
 		}
-
-		@Override
-		public String toString() {
-			return "SortedSamRecordElement [record=" + record + ", source="
-					+ source + "]";
+		/**
+		 * Get the next record in sorted order.
+		 * @return the next record or {@code null} if all the runs are finished.
+		 * @throws IOException if there is a problem reading a spill file.
+		 */
+		SamRecord next() throws IOException{
+			if(heapSize ==0){
+				return null;
+			}
+			int run = heap[0];
+			SamRecord next = heads[run];
+			SamRecord replacement = readNext(run);
+			heads[run] = replacement;
+			if(replacement ==null){
+				heap[0] = heap[--heapSize];
+			}
+			siftDown(0);
+			return next;
 		}
 		
-	}
-	
-	private static class SortedSamRecordElementComparator implements Comparator<SortedSamRecordElement>{
-		private final Comparator<SamRecord> comparator;
-		
-
-		public SortedSamRecordElementComparator(Comparator<SamRecord> comparator) {
-			this.comparator = comparator;
-		}
-
-
-		@Override
-		public int compare(SortedSamRecordElement o1, SortedSamRecordElement o2) {
-			return comparator.compare(o1.record, o2.record);
+		private boolean less(int runA, int runB){
+			int cmp = comparator.compare(heads[runA], heads[runB]);
+			return cmp < 0 || (cmp ==0 && runA < runB);
 		}
 		
-	}
-	/**
-	 * Iterates over a sam (or bam) encoded file as a {@link StreamingIterator}.
-	 * @author dkatzel
-	 *
-	 */
-	private static class StreamingSamRecordIterator extends AbstractBlockingStreamingIterator<SamRecord>{
-
-		private final File samFile;
-		private final Encoding encoding;
-		
-		public StreamingSamRecordIterator(File samFile, Encoding encoding) {
-			this.samFile = samFile;
-			this.encoding = encoding;
-			this.start();
-		}
-
-
-		@Override
-		protected void backgroundThreadRunMethod() throws RuntimeException {
-			try {
-				encoding.createNewNoValidationSamParser(samFile).parse(new SamVisitor() {
-					
-					
-					@Override
-					public void visitRecord(SamVisitorCallback callback, SamRecord record,
-							VirtualFileOffset start, VirtualFileOffset end) {
-						StreamingSamRecordIterator.this.blockingPut(record);
-						
-					}
-					
-					
-					@Override
-					public void visitHeader(SamVisitorCallback callback, SamHeader header) {
-						//no-op
-						
-					}
-					
-					@Override
-					public void visitEnd() {
-						//no-op
-						
-					}
-					@Override
-					public void halted() {
-						
-					}
-
-
-
-					
-				});
-			} catch (IOException e) {
-				throw new RuntimeException("error parsing temp sam file " + samFile.getAbsolutePath(), e);
+		private void siftDown(int index){
+			int i = index;
+			int run = heap[i];
+			int half = heapSize >>>1;
+			while(i < half){
+				int child = 2*i +1;
+				int right = child +1;
+				if(right < heapSize && less(heap[right], heap[child])){
+					child = right;
+				}
+				if(!less(heap[child], run)){
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
 			}
-			
+			heap[i] = run;
 		}
-		
 	}
-
 }
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.internal.core.io.SidecarHashIndex;
+/**
+ * {@code ReadNameIndex} is an on-disk index
+ * of a BAM file that maps each
+ * {@link SamRecord#getQueryName()} to the {@link VirtualFileOffset}s
+ * of the records with that name, so records can be looked up
+ * by name without scanning the whole BAM file.
+ * <p>
+ * The index is written as a {@link SidecarHashIndex} file next to the BAM file
+ * whose values are the encoded {@link VirtualFileOffset}s of each record.
+ * Looking up a name only needs to read the name's bucket
+ * so each lookup is a constant amount of work no matter how big the BAM is.
+ * Since different names can hash to the same value, callers 
+ * must check the query name of each record returned.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class ReadNameIndex implements Closeable{
+	/**
+	 * Default file extension of read name index files.
+	 */
+	public static final String FILE_EXTENSION = ".rni";
+	
+	private static final byte[] MAGIC_NUMBER = new byte[]{'R','N','I',2};
+	
+	private final SidecarHashIndex index;
+	
+	private ReadNameIndex(SidecarHashIndex index){
+		this.index = index;
+	}
+	/**
+	 * Get the default read name index file for the given 
+	 * BAM file which is in the same directory
+	 * named {@code bamFile.getName() + ".rni"}.
+	 * 
+	 * @param bamFile the BAM file; can not be null.
+	 * 
+	 * @return a new File; will never be null.
+	 */
+	public static File getDefaultIndexFileFor(File bamFile){
+		return new File(bamFile.getParentFile(), bamFile.getName() + FILE_EXTENSION);
+	}
+	/**
+	 * Open the given read name index file if it exists
+	 * and was made from the current version of the BAM file,
+	 * otherwise, parse the BAM file and write a new index first.
+	 * 
+	 * @param parser the {@link BamFileParser} to use to parse the BAM file
+	 * if the index needs to be (re)built; can not be null.
+	 * @param indexFile the read name index file to use; can not be null.
+	 * 
+	 * @return a new ReadNameIndex; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading or writing the index
+	 * or parsing the BAM file.
+	 */
+	public static ReadNameIndex createOrOpen(BamFileParser parser, File indexFile) throws IOException{
+		if(!isUpToDate(parser.bamFile, indexFile)){
+			write(parser, indexFile);
+		}
+		return new ReadNameIndex(SidecarHashIndex.open(indexFile, MAGIC_NUMBER));
+	}
+	/**
+	 * Is the given index file valid for the current version of the 
+	 * given BAM file.
+	 * 
+	 * @param bamFile the BAM file.
+	 * @param indexFile the read name index file.
+	 * 
+	 * @return {@code true} if the index exists and the BAM file has not changed 
+	 * since it was indexed; {@code false} otherwise.
+	 * 
+	 * @throws IOException if there is a problem reading the index file.
+	 */
+	public static boolean isUpToDate(File bamFile, File indexFile) throws IOException{
+		return SidecarHashIndex.isUpToDate(bamFile, indexFile, MAGIC_NUMBER);
+	}
+	/**
+	 * Parse the entire BAM file once and write out
+	 * a new read name index file.
+	 * 
+	 * @param parser the {@link BamFileParser} to use; can not be null.
+	 * @param indexFile the output file to write; will be replaced
+	 * if it already exists.
+	 * 
+	 * @throws IOException if there is a problem parsing the BAM or writing the index.
+	 */
+	public static void write(BamFileParser parser, File indexFile) throws IOException{
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(parser.bamFile, indexFile, MAGIC_NUMBER)){
+			try{
+				parser.parse(new AbstractSamVisitor() {
+		
+					@Override
+					public void visitRecord(SamVisitorCallback callback, SamRecord record,
+							VirtualFileOffset start, VirtualFileOffset end) {
+						try {
+							writer.add(record.getQueryName(), start.getEncodedValue());
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+					
+				});
+			}catch(UncheckedIOException e){
+				throw e.getCause();
+			}
+			writer.commit(0);
+		}
+	}
+	/**
+	 * Get the total number of records indexed.
+	 * @return the number of records; will always be &ge; 0.
+	 */
+	public long getNumberOfRecords(){
+		return index.getNumberOfEntries();
+	}
+	/**
+	 * Get the {@link VirtualFileOffset}s of all the records 
+	 * that might have the given query name in file order.  Since different names can
+	 * have the same hash value, some of these offsets might be of records
+	 * with different names.
+	 * 
+	 * @param queryName the name to look for; can not be null.
+	 * 
+	 * @return a List of {@link VirtualFileOffset}s; will never be null
+	 * but may be empty if there are no records with that name.
+	 */
+	public List<VirtualFileOffset> getCandidateOffsetsFor(String queryName){
+		long[] encodedOffsets = index.getCandidateValuesFor(queryName);
+		List<VirtualFileOffset> offsets = new ArrayList<>(encodedOffsets.length);
+		for(long encodedOffset : encodedOffsets){
+			offsets.add(new VirtualFileOffset(encodedOffset));
+		}
+		return offsets;
+	}
+
+	@Override
+	public void close() {
+		index.close();
+	}
+}
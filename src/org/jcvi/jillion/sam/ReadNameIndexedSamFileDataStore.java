@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.io.IOUtil;
+
+/**
+ * {@link SamFileDataStore} of a BAM file that uses
+ * a {@link ReadNameIndex} to seek directly to the records
+ * with a given query name instead of parsing the whole file.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+class ReadNameIndexedSamFileDataStore extends DefaultSamFileDataStore{
+
+	private final BamFileParser bamParser;
+	private final ReadNameIndex readNameIndex;
+	private final boolean hasFilter;
+	
+	ReadNameIndexedSamFileDataStore(BamFileParser parser, Predicate<SamRecord> filter, ReadNameIndex readNameIndex) {
+		super(parser, filter);
+		this.bamParser = parser;
+		this.readNameIndex = readNameIndex;
+		this.hasFilter = filter !=null;
+	}
+	
+	@Override
+	public long getNumberOfRecords() throws DataStoreException {
+		if(hasFilter){
+			return super.getNumberOfRecords();
+		}
+		if(isClosed()){
+			throw new DataStoreException("closed");
+		}
+		//index has an entry for every record
+		return readNameIndex.getNumberOfRecords();
+	}
+
+	@Override
+	protected SamRecord getRecord(String id) throws IOException {
+		for(VirtualFileOffset offset : readNameIndex.getCandidateOffsetsFor(id)){
+			SamRecord record = bamParser.parseRecordAt(offset);
+			//different names can have the same hash
+			if(id.equals(record.getQueryName())){
+				return record;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	protected List<SamRecord> getAllRecord(String id) throws IOException {
+		List<VirtualFileOffset> offsets = readNameIndex.getCandidateOffsetsFor(id);
+		List<SamRecord> ret = new ArrayList<SamRecord>(offsets.size());
+		for(VirtualFileOffset offset : offsets){
+			SamRecord record = bamParser.parseRecordAt(offset);
+			if(id.equals(record.getQueryName())){
+				ret.add(record);
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		IOUtil.closeAndIgnoreErrors(readNameIndex);
+	}
+	
+}
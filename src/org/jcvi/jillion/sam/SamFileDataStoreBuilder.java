@@ -44,6 +44,9 @@ public final class SamFileDataStoreBuilder {
     private SamAttributeValidator validator = ReservedAttributeValidator.INSTANCE;
     
     private Predicate<SamRecord> filter;
+    
+    private boolean useReadNameIndex = false;
+    private File readNameIndexFile;
     /**
      * Create a new Builder instance that will parse the given
      * sam or bam encoded file.  
@@ -123,6 +126,58 @@ public final class SamFileDataStoreBuilder {
         return this;
     }
     
+    /**
+     * Should the datastore use a read name index
+     * to look up records by query name ({@code false} by default).
+     * Without a read name index, {@link SamFileDataStore#get(String)}
+     * and {@link SamFileDataStore#getAllRecordsFor(String)} have to parse
+     * the entire file for every call.  A read name index maps
+     * each query name to the locations of its records so lookups only
+     * have to seek to those records.
+     * <p>
+     * The index is stored as a sidecar file in the same directory as the BAM file named
+     * {@code bamFile.getName() + ".rni"} unless a different path is set using 
+     * {@link #readNameIndexFile(File)}.  If the index file doesn't exist or the BAM file
+     * has changed since the index was made, then the BAM file will be parsed once 
+     * and a new index file will be written when {@link #build()} is called.
+     * </p>
+     * Read name indexes are only supported for BAM files; this
+     * option is ignored for SAM files.
+     * 
+     * @param useReadNameIndex {@code true} if the read name index should be used;
+     * {@code false} otherwise.
+     * 
+     * @return this.
+     * 
+     * @see #readNameIndexFile(File)
+     * @since 5.3
+     */
+    public SamFileDataStoreBuilder useReadNameIndex(boolean useReadNameIndex){
+        this.useReadNameIndex = useReadNameIndex;
+        return this;
+    }
+    /**
+     * Use a read name index stored at the given non-standard path.
+     * This also turns on using a read name index as if
+     * {@code useReadNameIndex(true)} was called.
+     * 
+     * @param readNameIndexFile the read name index file to use; can not be null.
+     * If the file doesn't exist or is out of date, it will be (re)written.
+     * 
+     * @return this.
+     * 
+     * @throws NullPointerException if readNameIndexFile is null.
+     * 
+     * @see #useReadNameIndex(boolean)
+     * @since 5.3
+     */
+    public SamFileDataStoreBuilder readNameIndexFile(File readNameIndexFile){
+        Objects.requireNonNull(readNameIndexFile);
+        this.readNameIndexFile = readNameIndexFile;
+        this.useReadNameIndex = true;
+        return this;
+    }
+    
     /**
      * Create a new {@link SamFileDataStore} using the configuration
      * provided so far.
@@ -139,6 +194,11 @@ public final class SamFileDataStoreBuilder {
         }else{
             parser = SamParserFactory.createUsingIndex(samFile, baiFile, validator);
         }
+        if(useReadNameIndex && parser instanceof BamFileParser){
+            File indexFile = readNameIndexFile ==null ? ReadNameIndex.getDefaultIndexFileFor(samFile) : readNameIndexFile;
+            BamFileParser bamParser = (BamFileParser) parser;
+            return new ReadNameIndexedSamFileDataStore(bamParser, filter, ReadNameIndex.createOrOpen(bamParser, indexFile));
+        }
         SamHeader header = parser.getHeader();
         if(SortOrder.QUERY_NAME.equals(header.getSortOrder())){
             return new QuerySortedSamFileDataStore(parser, filter);
@@ -26,37 +26,20 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.io.FileUtil;
 import org.jcvi.jillion.core.io.IOUtil;
-import org.jcvi.jillion.core.qual.QualitySequence;
-import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
-import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
 import org.jcvi.jillion.internal.core.io.TextLineParser;
 import org.jcvi.jillion.internal.sam.SamUtil;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback;
 import org.jcvi.jillion.sam.SamVisitor.SamVisitorCallback.SamVisitorMemento;
-import org.jcvi.jillion.sam.attribute.InvalidAttributeException;
 import org.jcvi.jillion.sam.attribute.ReservedAttributeValidator;
-import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
-import org.jcvi.jillion.sam.attribute.SamAttribute;
-import org.jcvi.jillion.sam.attribute.SamAttributeKey;
-import org.jcvi.jillion.sam.attribute.SamAttributeKeyFactory;
-import org.jcvi.jillion.sam.attribute.SamAttributeType;
 import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
-import org.jcvi.jillion.sam.cigar.Cigar;
 import org.jcvi.jillion.sam.header.SamHeader;
-import org.jcvi.jillion.trace.fastq.FastqQualityCodec;
 
 final class SamFileParser extends AbstractSamFileParser{
 	
-	private static final Pattern SPLIT_LINE_PATTERN = Pattern.compile("\t");
-	
-	private static final Pattern TYPED_TAG_VALUE_PATTERN = Pattern.compile("([A-Za-z][A-Za-z0-9]):(([AifZHB]):)?(.+)");
-	
 	@FunctionalInterface
 	private static interface CallbackSupplier{
 	    SamVisitorCallback create(AtomicBoolean keepParsing, long currentOffset);
@@ -142,14 +125,14 @@ final class SamFileParser extends AbstractSamFileParser{
 			SamCallback callback = new SamCallback(keepParsing, parser.getPosition());
 			SamHeader header = parseHeader(parser).build();
 			visitor.visitHeader(callback, header);
+			SamRecordLineParser recordParser = new SamRecordLineParser(header, validator);
 			while(keepParsing.get() && parser.hasNextLine()){
 				callback = new SamCallback(keepParsing, parser.getPosition());
-				String line = parser.nextLine().trim();
-				if(line.isEmpty()){
+				SamRecord record = recordParser.parse(parser.nextLine());
+				if(record ==null){
 					//skip blanks?
 					continue;
-				}			
-				SamRecord record = parseRecord(header, line);
+				}
 				
 				visitor.visitRecord(callback, record, null, null);
 				
@@ -194,14 +177,14 @@ final class SamFileParser extends AbstractSamFileParser{
 			SamVisitorCallback callback = callbackSupplier.create(keepParsing, parser.getPosition());
 			SamHeader header = parseHeader(parser).build();
 			visitor.visitHeader(callback, header);
+			SamRecordLineParser recordParser = new SamRecordLineParser(header, validator);
 			while(keepParsing.get() && parser.hasNextLine()){
 				callback = callbackSupplier.create(keepParsing, parser.getPosition());
-				String line = parser.nextLine().trim();
-				if(line.isEmpty()){
+				SamRecord record = recordParser.parse(parser.nextLine());
+				if(record ==null){
 					//skip blanks?
 					continue;
-				}			
-				SamRecord record = parseRecord(header, line);
+				}
 				if(filter.test(record)){
 					visitor.visitRecord(callback, record, null, null);
 				}
@@ -218,79 +201,6 @@ final class SamFileParser extends AbstractSamFileParser{
 	
 	
 	
-	private SamRecord parseRecord(SamHeader header, String line) throws IOException{
-		String[] fields = SPLIT_LINE_PATTERN.split(line);
-		if(fields.length <11){
-			//not a sam line?
-			throw new IOException("invalid sam record line : " + line);
-		}
-		SamRecordBuilder builder = new SamRecordBuilder(header, validator);
-		
-		builder.setQueryName(fields[0]);
-		builder.setFlags(Integer.parseInt(fields[1]));
-		builder.setReferenceName(fields[2]);
-		builder.setStartPosition(Integer.parseInt(fields[3]));
-		builder.setMappingQuality(Byte.parseByte(fields[4]));
-		builder.setCigar(Cigar.parse(fields[5]));
-		builder.setNextReferenceName(fields[6]);
-		builder.setNextPosition(Integer.parseInt(fields[7]));
-		builder.setObservedTemplateLength(Integer.parseInt(fields[8]));
-		builder.setSequence(parseSequence(fields[9]));
-		builder.setQualities(parseQualities(fields[10]));
-		
-		//anything else is an optional field
-		for(int i=11; i<fields.length; i++){
-			Matcher matcher = TYPED_TAG_VALUE_PATTERN.matcher(fields[i]);
-			if(matcher.matches()){
-				String key = matcher.group(1);
-				String optionalType = matcher.group(3);
-				String value = matcher.group(4);
-				if(optionalType == null){
-					//type not specified, check is reserved?
-					ReservedSamAttributeKeys reserved =ReservedSamAttributeKeys.parseKey(key);
-					if(reserved ==null){
-						//not reserved...
-						throw new IOException("unknown optional attribute without type information (not reserved) : "  + fields[i]);
-					}
-					try {
-						builder.addAttribute(new SamAttribute(reserved, value));
-					} catch (InvalidAttributeException e) {
-						throw new IOException("invalid attribute value for " + fields[i], e);
-					}
-				}else{
-					SamAttributeKey customKey = SamAttributeKeyFactory.getKey(key);
-					SamAttributeType type = SamAttributeType.parseType(optionalType.charAt(0), value);
-					try {
-						builder.addAttribute(new SamAttribute(customKey, type, value));
-					} catch (InvalidAttributeException e) {
-						throw new IOException("invalid attribute value for " + fields[i], e);
-					}
-				}
-			}else{
-				throw new IOException("invalid attribute format " + fields[i]);
-			}
-		}
-		return builder.build();
-	}
-
-	private static NucleotideSequence parseSequence(String s){
-		if(SamRecord.UNAVAILABLE.equals(s)){
-			return null;
-		}
-		return new NucleotideSequenceBuilder(s)
-						.turnOffDataCompression(true)
-						.build();
-	}
-	private static QualitySequence parseQualities(String s){
-		if(SamRecord.UNAVAILABLE.equals(s)){
-			return null;
-		}
-		//always encoded in sanger format
-		return FastqQualityCodec.SANGER.decode(s, true);
-
-	}
-
-	
 	private final class MementoLessSamCallback extends AbstractCallback{
 
             public MementoLessSamCallback(AtomicBoolean keepParsing) {
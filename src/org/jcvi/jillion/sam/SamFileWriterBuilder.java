@@ -62,6 +62,12 @@ public final class SamFileWriterBuilder {
 	
 	private boolean includeIndexMetadata=false;
 	
+	private int numberOfDeflaterThreads=1;
+	
+	private int numberOfSortThreads=1;
+	
+	private boolean compressTempFiles=false;
+	
 	/**
 	 * Get the max number of {@link SamRecord}s
 	 * to keep in memory at any one time if
@@ -203,6 +209,77 @@ public final class SamFileWriterBuilder {
 		this.includeIndexMetadata = includeMetadata;
 		return this;
 	}
+	/**
+	 * Set the number of threads to use to compress
+	 * the blocks of a BAM file.  BAM files are made up
+	 * of many independently compressed blocks
+	 * so compressing the blocks in parallel on multi-core
+	 * machines can greatly speed up writing.
+	 * The written file is identical no matter how many threads are used.
+	 * If this method is not called, then by default, only 1 thread is used
+	 * and all compression is done in the thread that writes the records.
+	 * This value is ignored when writing SAM files.
+	 * 
+	 * @param numberOfThreads the number of threads to use; must be &ge; 1.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 */
+	public SamFileWriterBuilder setNumberOfDeflaterThreads(int numberOfThreads){
+		if(numberOfThreads < 1){
+			throw new IllegalArgumentException("number of threads must be >= 1");
+		}
+		this.numberOfDeflaterThreads = numberOfThreads;
+		return this;
+	}
+	/**
+	 * Set the number of background threads to use to sort
+	 * and write out temp files when re-sorting records
+	 * that don't all fit in memory.  Records keep being
+	 * written to the next in memory batch while the previous batches
+	 * are sorted in the background.  The max number of records to keep
+	 * in memory is split across all the batches so the memory usage
+	 * does not change with the number of threads.
+	 * If this method is not called, then by default, only 1 background thread is used.
+	 * This value is ignored if not re-sorting.
+	 * 
+	 * @param numberOfThreads the number of threads to use; must be &ge; 1.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 */
+	public SamFileWriterBuilder setNumberOfSortThreads(int numberOfThreads){
+		if(numberOfThreads < 1){
+			throw new IllegalArgumentException("number of threads must be >= 1");
+		}
+		this.numberOfSortThreads = numberOfThreads;
+		return this;
+	}
+	/**
+	 * Should the temp files written when re-sorting
+	 * records that don't all fit in memory be compressed.
+	 * Compressing the temp files uses a lot less disk space
+	 * but takes more CPU time.
+	 * If this method is not called, then by default, temp files are not compressed.
+	 * This value is ignored if not re-sorting.
+	 * 
+	 * @param compressTempFiles {@code true} to BGZF compress the temp files;
+	 * {@code false} otherwise.
+	 * 
+	 * @return this.
+	 * 
+	 * @since 5.3
+	 */
+	public SamFileWriterBuilder compressTempFiles(boolean compressTempFiles){
+		this.compressTempFiles = compressTempFiles;
+		return this;
+	}
 	/**
 	 * Convenience method to resort 
 	 * using the default number of records to get in memory
@@ -293,9 +370,10 @@ public final class SamFileWriterBuilder {
 			indexer =null;
 		}
 		if(writeUnSortedRecords()){
-			return encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer,includeIndexMetadata);
+			return encoding.createPreSortedNoValidationOutputWriter(outputFile, header, indexer,includeIndexMetadata, numberOfDeflaterThreads);
 		}
-		return encoding.createReSortedOutputWriter(outputFile, tmpDirRoot, header, maxRecordsToKeepInMemory, attributeValidator, indexer, includeIndexMetadata);
+		return encoding.createReSortedOutputWriter(outputFile, tmpDirRoot, header, maxRecordsToKeepInMemory, attributeValidator, indexer, includeIndexMetadata, numberOfDeflaterThreads,
+				numberOfSortThreads, compressTempFiles);
 		
 	}
 
@@ -159,24 +159,84 @@ public interface SamParser {
             private final boolean createMementos;
             private final String referenceName;
             private final Range referenceRange;
+            private final boolean lazyRecords;
+            private final boolean reuseRecords;
             
             public SamParserOptions(){
-                this(false, null, null);
+                this(false, null, null, false, false);
             }
             
-            private SamParserOptions(boolean createMementos, String referenceName, Range range){
+            private SamParserOptions(boolean createMementos, String referenceName, Range range,
+                    boolean lazyRecords, boolean reuseRecords){
                 this.createMementos = createMementos;
                 this.referenceName = referenceName;
                 this.referenceRange = range;
+                this.lazyRecords = lazyRecords;
+                this.reuseRecords = reuseRecords;
             }
             public SamParserOptions reference(String referenceName){
-                return new SamParserOptions(createMementos, referenceName,null);
+                return new SamParserOptions(createMementos, referenceName,null, lazyRecords, reuseRecords);
              }
             public SamParserOptions reference(String referenceName, Range referenceRange){
-                return new SamParserOptions(createMementos, referenceName,referenceRange);
+                return new SamParserOptions(createMementos, referenceName,referenceRange, lazyRecords, reuseRecords);
              }
             public SamParserOptions createMementos(boolean createMementos){
-               return new SamParserOptions(createMementos, referenceName, referenceRange);
+               return new SamParserOptions(createMementos, referenceName, referenceRange, lazyRecords, reuseRecords);
+            }
+            /**
+             * Should the {@link SamRecord}s only decode their fields
+             * when they are requested.  For BAM files, this keeps
+             * the raw bytes of each record and only decodes
+             * the cigar, sequence, qualities and attributes 
+             * if they are used, which greatly speeds up parsing when
+             * only the flags or positions are needed.
+             * SAM files ignore this option.
+             * 
+             * @param lazyRecords {@code true} to lazily decode records;
+             * {@code false} to decode everything while parsing (the default).
+             * @return a new {@link SamParserOptions} with the updated option.
+             * 
+             * @since 5.3
+             */
+            public SamParserOptions lazyRecords(boolean lazyRecords){
+                return new SamParserOptions(createMementos, referenceName, referenceRange, lazyRecords, reuseRecords);
+            }
+            /**
+             * Should the same lazily decoded {@link SamRecord} instance 
+             * be reused for every record visited (flyweight).
+             * This avoids creating any objects per record that aren't requested
+             * but the record given to {@link SamVisitor#visitRecord(SamVisitor.SamVisitorCallback, SamRecord, VirtualFileOffset, VirtualFileOffset) visitRecord()} 
+             * is only valid until that method returns; use {@link SamRecord#asImmutable()}
+             * to keep a record.  Setting this to {@code true} implies {@link #lazyRecords(boolean) lazyRecords(true)}.
+             * SAM files ignore this option.
+             * 
+             * @param reuseRecords {@code true} to reuse the same record instance;
+             * {@code false} otherwise (the default).
+             * @return a new {@link SamParserOptions} with the updated option.
+             * 
+             * @since 5.3
+             */
+            public SamParserOptions reuseRecords(boolean reuseRecords){
+                return new SamParserOptions(createMementos, referenceName, referenceRange, lazyRecords, reuseRecords);
+            }
+            /**
+             * Should records be lazily decoded.
+             * @return {@code true} if either {@link #lazyRecords(boolean)}
+             * or {@link #reuseRecords(boolean)} was set to {@code true}.
+             * 
+             * @since 5.3
+             */
+            public boolean shouldDecodeLazily() {
+                return lazyRecords || reuseRecords;
+            }
+            /**
+             * Should the same record instance be reused.
+             * @return {@code true} if {@link #reuseRecords(boolean)} was set to {@code true}.
+             * 
+             * @since 5.3
+             */
+            public boolean shouldReuseRecords() {
+                return reuseRecords;
             }
 
             public boolean shouldCreateMementos() {
@@ -92,10 +92,56 @@ public final class SamParserFactory {
 	 * @see #createUsingIndex(File, File, SamAttributeValidator)
 	 */
 	public static SamParser create(File f, SamAttributeValidator validator) throws IOException{
+		return create(f, validator, 1);
+	}
+	/**
+	 * Create a new {@link SamParser}
+	 * instance for the given SAM or BAM file
+	 * that will use multiple threads to decompress BAM files.
+	 * BAM files are made up of many independently compressed
+	 * BGZF blocks; if more than one thread is requested,
+	 * then upcoming blocks are read ahead and decompressed
+	 * concurrently on a pool of background threads
+	 * and then handed back to the parser in order.
+	 * The {@link VirtualFileOffset}s passed to the {@link SamVisitor}
+	 * and any mementos created are the same
+	 * no matter how many threads are used.
+	 * <p>
+	 * Like {@link #create(File, SamAttributeValidator)}, if the given file is a coordinate sorted BAM file
+	 * and there is an accompanying BAI file in the same directory named <code>f.getName() + ".bai"</code>,
+	 * then a specialized {@link SamParser}
+	 * that uses the index will be returned.
+	 * </p>
+	 * @param f the SAM or BAM file to be parsed;
+	 * can not be null, must exist and 
+	 * the file must end in either ".sam"
+	 * or ".bam" (ignoring case).
+	 * @param validator the {@link SamAttributeValidator}
+	 * to use to validate the {@link SamRecord}s being parsed;
+	 * can not be null.
+	 * @param numberOfInflaterThreads the number of threads to use
+	 * to decompress BAM files; must be &ge; 1. If set to 1,
+	 * then no background threads are used. This value is ignored
+	 * for SAM files.
+	 * @return a new {@link SamParser} instance
+	 * will never be null.
+	 * @throws IOException if the file does not exist.
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalArgumentException if the file's extension
+	 * is not either ".sam" or ".bam" (ignoring case) or if numberOfInflaterThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 * 
+	 * @see #create(File, SamAttributeValidator)
+	 */
+	public static SamParser create(File f, SamAttributeValidator validator, int numberOfInflaterThreads) throws IOException{
 		
 		if(validator == null){
 			throw new NullPointerException("validator can not be null");
 		}
+		if(numberOfInflaterThreads <1){
+			throw new IllegalArgumentException("number of inflater threads must be >= 1");
+		}
 		IOUtil.verifyIsReadable(f);
 		
 		String extension = FileUtil.getExtension(f);
@@ -103,19 +149,19 @@ public final class SamParserFactory {
 			return new SamFileParser(f,validator);
 		}
 		if("bam".equalsIgnoreCase(extension)){
-			return createFromBamFile(f, validator);			
+			return createFromBamFile(f, validator, numberOfInflaterThreads);			
 		}
 		throw new IllegalArgumentException("unknown file format " + f.getName());
 	}
 	
 	
-	private static SamParser createFromBamFile(File f, SamAttributeValidator validator) throws IOException {
-		SamParser unsortedBamParser= new BamFileParser(f, validator);
+	private static SamParser createFromBamFile(File f, SamAttributeValidator validator, int numberOfInflaterThreads) throws IOException {
+		SamParser unsortedBamParser= new BamFileParser(f, validator, numberOfInflaterThreads);
 		if(unsortedBamParser.getHeader().getSortOrder() == SortOrder.COORDINATE){
 			//is there an indexed bam file that goes with it?
 			File bai = new File(f.getParentFile(), f.getName() +".bai");
 			if(bai.exists()){
-				return createUsingIndex(f, bai, validator);
+				return createUsingIndex(f, bai, validator, numberOfInflaterThreads);
 			}
 		
 		}
@@ -180,11 +226,50 @@ public final class SamParserFactory {
 	 * @since 5.0
 	 */
 	public static SamParser createUsingIndex(File bam, File bamIndex, SamAttributeValidator validator) throws IOException{
+		return createUsingIndex(bam, bamIndex, validator, 1);
+	}
+	
+	/**
+	 * Create a new {@link SamParser}
+	 * instance for the Coordinate sorted BAM file
+	 * with accompanying BAI encoded file and
+	 * using the given {@link SamAttributeValidator}
+	 * to validate the {@link SamRecord}s to be parsed
+	 * that will use the given number of threads
+	 * to decompress the BAM file.
+	 *
+	 * @param bam the Coordinate sorted BAM file to be parsed;
+	 * can not be null, must exist.
+	 * 
+	 * @param bamIndex the corresponding BAI encoded file to be parsed;
+	 * can not be null, must exist.
+	 * 
+	 *  @param validator the {@link SamAttributeValidator}
+	 * to use to validate the {@link SamRecord}s being parsed;
+	 * can not be null.
+	 * 
+	 * @param numberOfInflaterThreads the number of threads to use
+	 * to decompress the BAM file; must be &ge; 1. If set to 1,
+	 * then no background threads are used.
+	 * 
+	 * @return a new {@link SamParser} instance
+	 * will never be null.
+	 * 
+	 * @throws IOException if the file does not exist.
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalArgumentException if the file's extension
+	 * is not either ".sam" or ".bam" (ignoring case) or if numberOfInflaterThreads &lt; 1.
+	 * 
+	 * @since 5.3
+	 * 
+	 * @see #create(File, SamAttributeValidator, int)
+	 */
+	public static SamParser createUsingIndex(File bam, File bamIndex, SamAttributeValidator validator, int numberOfInflaterThreads) throws IOException{
 		IOUtil.verifyIsReadable(bam);
 		IOUtil.verifyIsReadable(bamIndex);
 		if(validator == null){
 			throw new NullPointerException("validator can not be null");
 		}
-		return new IndexedBamFileParser(bam, bamIndex, validator);
+		return new IndexedBamFileParser(bam, bamIndex, validator, numberOfInflaterThreads);
 	}
 }
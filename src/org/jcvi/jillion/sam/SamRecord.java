@@ -148,5 +148,23 @@ public interface SamRecord extends SamAttributed {
 	 * or {@code null} if this record didn't map.
 	 */
 	Range getAlignmentRange();
+	/**
+	 * Get a version of this record that is safe to keep
+	 * after the {@link SamVisitor} method it was given to returns.
+	 * Some parser options reuse the same {@link SamRecord} instance
+	 * for every record visited to avoid object creation,
+	 * such records must be converted with this method
+	 * if they need to be kept.
+	 * 
+	 * @implNote the default implementation returns {@code this}
+	 * since most implementations are already immutable.
+	 * 
+	 * @return a {@link SamRecord} that will not be modified; will never be null.
+	 * 
+	 * @since 5.3
+	 */
+	default SamRecord asImmutable(){
+		return this;
+	}
 
 }
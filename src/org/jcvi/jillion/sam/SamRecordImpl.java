@@ -210,7 +210,8 @@ class SamRecordImpl implements SamRecord {
 				+ ((qualities == null) ? 0 : qualities.hashCode());
 		result = prime * result
 				+ ((queryName == null) ? 0 : queryName.hashCode());
-		result = prime * result	+ referenceName.hashCode();
+		result = prime * result
+				+ ((referenceName == null) ? 0 : referenceName.hashCode());
 		result = prime * result
 				+ ((sequence == null) ? 0 : sequence.hashCode());
 		result = prime * result + startPosition;
@@ -225,6 +226,9 @@ class SamRecordImpl implements SamRecord {
 		if (obj == null) {
 			return false;
 		}
+		if(obj instanceof LazyBamSamRecord){
+			return equals(((LazyBamSamRecord)obj).decodeFully());
+		}
 		if (!(obj instanceof SamRecordImpl)) {
 			return false;
 		}
@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.IOException;
+
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.sam.attribute.InvalidAttributeException;
+import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
+import org.jcvi.jillion.sam.attribute.SamAttribute;
+import org.jcvi.jillion.sam.attribute.SamAttributeKey;
+import org.jcvi.jillion.sam.attribute.SamAttributeKeyFactory;
+import org.jcvi.jillion.sam.attribute.SamAttributeType;
+import org.jcvi.jillion.sam.attribute.SamAttributeValidator;
+import org.jcvi.jillion.sam.cigar.Cigar;
+import org.jcvi.jillion.sam.cigar.CigarOperation;
+import org.jcvi.jillion.sam.header.SamHeader;
+import org.jcvi.jillion.sam.header.SamReferenceSequence;
+/**
+ * {@code SamRecordLineParser} parses a single
+ * SAM encoded alignment line into a {@link SamRecord}
+ * without using regular expressions or splitting the line
+ * into substrings.  The tab delimited field boundaries are found in a single pass
+ * and then each field is decoded directly from the line:
+ * numeric fields and the cigar are parsed in place,
+ * reference names are looked up in a dictionary built from the 
+ * {@link SamHeader} so the header's String instances are reused
+ * and optional field types are dispatched by switching on the type character.
+ * <p>
+ * This class is not thread safe; each parse
+ * should use its own instance.
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class SamRecordLineParser {
+	/**
+	 * The number of mandatory fields in a SAM record line.
+	 */
+	private static final int NUMBER_OF_MANDATORY_FIELDS = 11;
+	/**
+	 * Sanger encoded qualities offset.
+	 */
+	private static final int QUALITY_OFFSET = 33;
+	
+	private final SamHeader header;
+	private final SamAttributeValidator validator;
+	
+	private final String[] referenceNameTable;
+	private final int referenceNameMask;
+	
+	private int[] fieldStarts = new int[20];
+	private int[] fieldEnds = new int[20];
+	private int numberOfFields;
+	
+	private String line;
+	
+	SamRecordLineParser(SamHeader header, SamAttributeValidator validator) {
+		this.header = header;
+		this.validator = validator;
+		
+		int numberOfRefs = header.getReferenceSequences().size();
+		//power of 2 at least twice as large as the number of refs
+		//to keep the open addressing probes short
+		int tableSize = Integer.highestOneBit(Math.max(2, numberOfRefs) *2) *2;
+		referenceNameTable = new String[tableSize];
+		referenceNameMask = tableSize -1;
+		for(SamReferenceSequence ref : header.getReferenceSequences()){
+			String name = ref.getName();
+			int i = name.hashCode() & referenceNameMask;
+			while(referenceNameTable[i] !=null){
+				i = (i+1) & referenceNameMask;
+			}
+			referenceNameTable[i] = name;
+		}
+	}
+	/**
+	 * Parse the given line into a {@link SamRecord}.
+	 * Leading and trailing whitespace (including the end of line characters) are ignored.
+	 * 
+	 * @param line the line to parse; can not be null.
+	 * 
+	 * @return a new {@link SamRecord}, or {@code null}
+	 * if the line is blank.
+	 * 
+	 * @throws IOException if the line is not a valid SAM record.
+	 */
+	SamRecord parse(String line) throws IOException{
+		this.line = line;
+		int start =0;
+		int end = line.length();
+		while(start < end && line.charAt(start) <= ' '){
+			start++;
+		}
+		while(end > start && line.charAt(end-1) <= ' '){
+			end--;
+		}
+		if(start == end){
+			return null;
+		}
+		findFields(start, end);
+		if(numberOfFields < NUMBER_OF_MANDATORY_FIELDS){
+			//not a sam line?
+			throw new IOException("invalid sam record line : " + line.substring(start, end));
+		}
+		SamRecordBuilder builder = new SamRecordBuilder(header, validator);
+		
+		builder.setQueryName(substring(0));
+		builder.setFlags(parseInt(1));
+		builder.setReferenceName(referenceName(2));
+		builder.setStartPosition(parseInt(3));
+		builder.setMappingQuality(parseByte(4));
+		builder.setCigar(parseCigar(5));
+		builder.setNextReferenceName(referenceName(6));
+		builder.setNextPosition(parseInt(7));
+		builder.setObservedTemplateLength(parseInt(8));
+		builder.setSequence(parseSequence(9));
+		builder.setQualities(parseQualities(10));
+		
+		//anything else is an optional field
+		for(int i=NUMBER_OF_MANDATORY_FIELDS; i<numberOfFields; i++){
+			try {
+				builder.addAttribute(parseAttribute(i));
+			} catch (InvalidAttributeException e) {
+				throw new IOException("invalid attribute value for " + substring(i), e);
+			}
+		}
+		return builder.build();
+	}
+	/**
+	 * Find the start and end offsets of each tab delimited field.
+	 * Like {@link String#split(String)}, trailing empty fields are dropped.
+	 */
+	private void findFields(int start, int end){
+		numberOfFields=0;
+		int fieldStart = start;
+		for(int i=start; i< end; i++){
+			if(line.charAt(i) == '\t'){
+				addField(fieldStart, i);
+				fieldStart = i+1;
+			}
+		}
+		addField(fieldStart, end);
+		while(numberOfFields >0 && fieldStarts[numberOfFields-1] == fieldEnds[numberOfFields-1]){
+			numberOfFields--;
+		}
+	}
+	
+	private void addField(int start, int end){
+		if(numberOfFields == fieldStarts.length){
+			int newLength = numberOfFields *2;
+			int[] newStarts = new int[newLength];
+			int[] newEnds = new int[newLength];
+			System.arraycopy(fieldStarts, 0, newStarts, 0, numberOfFields);
+			System.arraycopy(fieldEnds, 0, newEnds, 0, numberOfFields);
+			fieldStarts = newStarts;
+			fieldEnds = newEnds;
+		}
+		fieldStarts[numberOfFields] = start;
+		fieldEnds[numberOfFields] = end;
+		numberOfFields++;
+	}
+	
+	private String substring(int field){
+		return line.substring(fieldStarts[field], fieldEnds[field]);
+	}
+	
+	private int fieldLength(int field){
+		return fieldEnds[field] - fieldStarts[field];
+	}
+	
+	private boolean isUnavailable(int field){
+		return fieldLength(field) ==1 && line.charAt(fieldStarts[field]) == '*';
+	}
+	/**
+	 * Get the reference name for the given field
+	 * using the same String instance as the header if possible.
+	 */
+	private String referenceName(int field){
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		int length = end - start;
+		if(length ==1){
+			char c = line.charAt(start);
+			if(c == '*'){
+				return SamRecord.UNAVAILABLE;
+			}
+			if(c == '='){
+				return SamRecord.IDENTICAL;
+			}
+		}
+		//same hash algorithm as String#hashCode()
+		int hash =0;
+		for(int i=start; i< end; i++){
+			hash = 31*hash + line.charAt(i);
+		}
+		int i = hash & referenceNameMask;
+		String name;
+		while((name = referenceNameTable[i]) !=null){
+			if(name.length() == length && line.regionMatches(start, name, 0, length)){
+				return name;
+			}
+			i = (i+1) & referenceNameMask;
+		}
+		//not in header, let the builder complain
+		return substring(field);
+	}
+	
+	private int parseInt(int field){
+		return parseInt(fieldStarts[field], fieldEnds[field]);
+	}
+	/**
+	 * Parse a base 10 int from the given region of the line
+	 * with the same rules as {@link Integer#parseInt(String)}
+	 * but without creating a substring.
+	 */
+	private int parseInt(int start, int end){
+		if(start >= end){
+			throw new NumberFormatException("For input string: \"\"");
+		}
+		int i = start;
+		boolean negative = false;
+		char first = line.charAt(i);
+		if(first == '-' || first == '+'){
+			negative = first == '-';
+			i++;
+			if(i == end){
+				throw new NumberFormatException("For input string: \"" + line.substring(start, end) + "\"");
+			}
+		}
+		//accumulate negatively to handle Integer.MIN_VALUE
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int multiplicationLimit = limit /10;
+		int result =0;
+		for(; i< end; i++){
+			int digit = line.charAt(i) - '0';
+			if(digit <0 || digit > 9 || result < multiplicationLimit){
+				throw new NumberFormatException("For input string: \"" + line.substring(start, end) + "\"");
+			}
+			result *=10;
+			if(result < limit + digit){
+				throw new NumberFormatException("For input string: \"" + line.substring(start, end) + "\"");
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+	
+	private byte parseByte(int field){
+		int value = parseInt(field);
+		if(value < Byte.MIN_VALUE || value > Byte.MAX_VALUE){
+			throw new NumberFormatException("Value out of range. Value:\"" + substring(field) + "\" Radix:10");
+		}
+		return (byte) value;
+	}
+	/**
+	 * Parse the cigar in place; this follows
+	 * the same rules as {@link Cigar#parse(String)}
+	 * including ignoring any whitespace.
+	 */
+	private Cigar parseCigar(int field){
+		if(isUnavailable(field)){
+			return null;
+		}
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		Cigar.Builder builder = new Cigar.Builder();
+		int length =0;
+		boolean empty = true;
+		for(int i=start; i<end; i++){
+			char c = line.charAt(i);
+			if(Character.isWhitespace(c)){
+				continue;
+			}
+			empty = false;
+			if(c >= '0' && c <= '9'){
+				length = length*10 + (c - '0');
+			}else{
+				if(length ==0){
+					throw new IllegalArgumentException("invalid cigar string " + substring(field));
+				}
+				builder.addElement(CigarOperation.parseOp(c), length);
+				length=0;
+			}
+		}
+		if(empty){
+			throw new IllegalArgumentException("cigar string can not be null");
+		}
+		if(length !=0){
+			//trailing number without an op
+			throw new IllegalArgumentException("invalid cigar string " + substring(field));
+		}
+		return builder.build();
+	}
+	
+	private NucleotideSequence parseSequence(int field){
+		if(isUnavailable(field)){
+			return null;
+		}
+		char[] chars = new char[fieldLength(field)];
+		line.getChars(fieldStarts[field], fieldEnds[field], chars, 0);
+		return new NucleotideSequenceBuilder(chars)
+						.turnOffDataCompression(true)
+						.build();
+	}
+	
+	private QualitySequence parseQualities(int field){
+		if(isUnavailable(field)){
+			return null;
+		}
+		int start = fieldStarts[field];
+		//always encoded in sanger format
+		byte[] quals = new byte[fieldLength(field)];
+		for(int i=0; i< quals.length; i++){
+			quals[i] = (byte)(line.charAt(start +i) - QUALITY_OFFSET);
+		}
+		return new QualitySequenceBuilder(quals)
+						.turnOffDataCompression(true)
+						.build();
+	}
+	
+	private static boolean isLetter(char c){
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+	
+	private static boolean isLetterOrDigit(char c){
+		return isLetter(c) || (c >= '0' && c <= '9');
+	}
+	/**
+	 * Parse an optional field of the form {@code TAG:TYPE:VALUE}
+	 * or {@code TAG:VALUE} for reserved tags.
+	 */
+	private SamAttribute parseAttribute(int field) throws IOException{
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		int length = end - start;
+		
+		if(length < 4 || !isLetter(line.charAt(start)) || !isLetterOrDigit(line.charAt(start+1)) 
+				|| line.charAt(start+2) != ':'){
+			throw new IOException("invalid attribute format " + substring(field));
+		}
+		char c1 = line.charAt(start);
+		char c2 = line.charAt(start+1);
+		
+		//typed values need at least 1 character after the TAG:TYPE:
+		if(length > 5 && line.charAt(start+4) ==':'){
+			char typeCode = line.charAt(start+3);
+			int valueStart = start+5;
+			switch(typeCode){
+				case 'i' :
+					return parseIntAttribute(SamAttributeKeyFactory.getKey(c1, c2), valueStart, end);
+				case 'A' :
+					if(end - valueStart ==1){
+						return new SamAttribute(SamAttributeKeyFactory.getKey(c1, c2), SamAttributeType.PRINTABLE_CHARACTER, 
+								Character.valueOf(line.charAt(valueStart)));
+					}
+					//let the attribute type complain
+					return parseTypedAttribute(c1, c2, typeCode, valueStart, end);
+				case 'f' :
+					return parseFloatAttribute(SamAttributeKeyFactory.getKey(c1, c2), valueStart, end);
+				case 'Z' :
+				case 'H' :
+				case 'B' :
+					return parseTypedAttribute(c1, c2, typeCode, valueStart, end);
+				default:
+					//not a type, treat as an untyped value
+					break;
+			}
+		}
+		ReservedSamAttributeKeys reserved =ReservedSamAttributeKeys.parseKey(c1, c2);
+		if(reserved ==null){
+			//not reserved...
+			throw new IOException("unknown optional attribute without type information (not reserved) : "  + substring(field));
+		}
+		return new SamAttribute(reserved, line.substring(start+3, end));
+	}
+	
+	private SamAttribute parseIntAttribute(SamAttributeKey key, int valueStart, int end){
+		int value;
+		try{
+			value = parseInt(valueStart, end);
+		}catch(NumberFormatException e){
+			//let the attribute type handle (and complain about) it
+			return new SamAttribute(key, SamAttributeType.SIGNED_INT, line.substring(valueStart, end));
+		}
+		return new SamAttribute(key, SamAttributeType.SIGNED_INT, Integer.valueOf(value));
+	}
+	
+	private SamAttribute parseFloatAttribute(SamAttributeKey key, int valueStart, int end){
+		String value = line.substring(valueStart, end);
+		try{
+			return new SamAttribute(key, SamAttributeType.FLOAT, Float.valueOf(value));
+		}catch(NumberFormatException e){
+			//let the attribute type handle (and complain about) it
+			return new SamAttribute(key, SamAttributeType.FLOAT, value);
+		}
+	}
+	
+	private SamAttribute parseTypedAttribute(char c1, char c2, char typeCode, int valueStart, int end){
+		String value = line.substring(valueStart, end);
+		SamAttributeType type = SamAttributeType.parseType(typeCode, value);
+		return new SamAttribute(SamAttributeKeyFactory.getKey(c1, c2), type, value);
+	}
+}
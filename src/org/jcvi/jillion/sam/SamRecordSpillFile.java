@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.util.MapUtil;
+import org.jcvi.jillion.internal.sam.SamUtil;
+import org.jcvi.jillion.sam.header.SamHeader;
+import org.jcvi.jillion.sam.header.SamReferenceSequence;
+/**
+ * {@code SamRecordSpillFile} is a temp file
+ * of a sorted run of {@link SamRecord}s used by {@link ReSortSamFileWriter}.
+ * The records are written as back to back BAM alignment records
+ * without any header
+ * so they are much faster to write and re-parse than
+ * a full SAM or BAM file.  The records can optionally be
+ * BGZF compressed to save disk space at the cost of extra CPU.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class SamRecordSpillFile {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final File file;
+	private final int numberOfRecords;
+	private final boolean compressed;
+	
+	private SamRecordSpillFile(File file, int numberOfRecords, boolean compressed) {
+		this.file = file;
+		this.numberOfRecords = numberOfRecords;
+		this.compressed = compressed;
+	}
+	
+	/**
+	 * Write the given records in order to a new spill file.
+	 * 
+	 * @param file the file to write to.
+	 * @param encoder the {@link Encoder} for this header.
+	 * @param records the array of records to write.
+	 * @param length the number of records in the array to write.
+	 * @param compress should the file be BGZF compressed.
+	 * 
+	 * @return a new {@link SamRecordSpillFile} that can be used to read the records back.
+	 * 
+	 * @throws IOException if there is a problem writing the file.
+	 */
+	static SamRecordSpillFile write(File file, Encoder encoder, SamRecord[] records, int length, boolean compress) throws IOException{
+		try(OutputStream out = compress ? new BgzfOutputStream(file, null) 
+										: new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)){
+			for(int i=0; i< length; i++){
+				encoder.write(out, records[i]);
+			}
+		}
+		return new SamRecordSpillFile(file, length, compress);
+	}
+	
+	/**
+	 * Open a new {@link Reader} to read the records 
+	 * back in the order they were written.
+	 * @param encoder the {@link Encoder} used to write the file.
+	 * @return a new {@link Reader}; will never be null.
+	 * @throws IOException if there is a problem opening the file.
+	 */
+	Reader open(Encoder encoder) throws IOException{
+		InputStream in = compressed ? new BgzfInputStream(file) 
+									: new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		return new Reader(in, encoder, numberOfRecords);
+	}
+	
+	int getNumberOfRecords() {
+		return numberOfRecords;
+	}
+	
+	/**
+	 * Maps reference names to and from the indexes
+	 * used in the BAM encoding.  Instances are immutable
+	 * and can be shared by threads.
+	 */
+	static final class Encoder{
+		private final SamHeader header;
+		private final String[] refNames;
+		private final Map<String, Integer> refIndexes;
+		
+		Encoder(SamHeader header){
+			this.header = header;
+			refNames = new String[header.getReferenceSequences().size()];
+			refIndexes = new HashMap<>(MapUtil.computeMinHashMapSizeWithoutRehashing(refNames.length));
+			int i=0;
+			for(SamReferenceSequence ref : header.getReferenceSequences()){
+				refNames[i] = ref.getName();
+				refIndexes.put(ref.getName(), i);
+				i++;
+			}
+		}
+		
+		private int getRefIndexFor(String refName){
+		    Integer refIndex = refIndexes.get(refName);
+		    if(refIndex ==null){
+		        return -1;
+		    }
+		    return refIndex;
+		}
+		
+		void write(OutputStream out, SamRecord record) throws IOException{
+			SamUtil.writeAsBamRecord(out, header, record, 
+			        getRefIndexFor(record.getReferenceName()),
+			        getRefIndexFor(record.getNextName())
+			        );
+		}
+		
+		SamRecord read(InputStream in) throws IOException{
+			//records were already validated before they were spilled
+			return BamFileParser.parseNextSamRecord(in, refNames, header, NullSamAttributeValidator.INSTANCE);
+		}
+	}
+	/**
+	 * Reads the records of a spill file back in order.
+	 */
+	static final class Reader implements Closeable{
+		private final InputStream in;
+		private final Encoder encoder;
+		private int remaining;
+		
+		private Reader(InputStream in, Encoder encoder, int numberOfRecords) {
+			this.in = in;
+			this.encoder = encoder;
+			this.remaining = numberOfRecords;
+		}
+		/**
+		 * Read the next record.
+		 * @return the next record or {@code null} if there are no more records.
+		 * @throws IOException if there is a problem parsing the file.
+		 */
+		SamRecord next() throws IOException{
+			if(remaining ==0){
+				return null;
+			}
+			remaining--;
+			return encoder.read(in);
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOUtil.closeAndIgnoreErrors(in);
+		}
+	}
+}
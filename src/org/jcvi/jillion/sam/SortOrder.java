@@ -21,14 +21,13 @@
 package org.jcvi.jillion.sam;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.jcvi.jillion.core.util.MapUtil;
 import org.jcvi.jillion.sam.header.SamHeader;
 import org.jcvi.jillion.sam.header.SamReferenceSequence;
 
@@ -181,15 +180,22 @@ public enum SortOrder{
 
 		private static final long serialVersionUID = -4315866144598924346L;
 		
-		private final List<String> referenceNames;
+		private final Map<String, Integer> referenceIndexes;
 		
 		public CoordinateComparator(SamHeader header){
 			Collection<SamReferenceSequence> refs = header.getReferenceSequences();
-			referenceNames = new ArrayList<String>(refs.size());
+			referenceIndexes = new HashMap<String, Integer>(MapUtil.computeMinHashMapSizeWithoutRehashing(refs.size()));
+			int i=0;
 			for(SamReferenceSequence ref : refs){
-				referenceNames.add(ref.getName());
+				//keep first index like List.indexOf() would
+				referenceIndexes.putIfAbsent(ref.getName(), i++);
 			}
 		}
+		
+		private int getReferenceIndex(String refName){
+			Integer index = referenceIndexes.get(refName);
+			return index ==null ? -1 : index.intValue();
+		}
 		@Override
 		public int compare(SamRecord o1, SamRecord o2) {
 			//nulls always go last
@@ -235,8 +241,8 @@ public enum SortOrder{
 			String ref2 =o2.getReferenceName();
 			
 			if(!ref1.equals(ref2)){
-				int index1 =referenceNames.indexOf(ref1);
-				int index2 =referenceNames.indexOf(ref2);
+				int index1 =getReferenceIndex(ref1);
+				int index2 =getReferenceIndex(ref2);
 				if(index1 < index2){
 					return -1;
 				}
@@ -20,6 +20,9 @@
  ******************************************************************************/
 package org.jcvi.jillion.trace.fastq;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import org.jcvi.jillion.core.qual.QualitySequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
 import org.jcvi.jillion.internal.trace.fastq.CommentedParsedFastqRecord;
@@ -31,9 +34,9 @@ public abstract class AbstractFastqRecordVisitor implements FastqRecordVisitor{
 	private final String optionalComment;
 	private final FastqQualityCodec qualityCodec;
 	
-	private String currentBasecalls;
+	private byte[] currentBasecalls;
 	private QualitySequence currentQualities;
-	private String encodedQualities;
+	private byte[] encodedQualities;
 	private boolean turnOffCompression;
 	
 	public AbstractFastqRecordVisitor(String id, String optionalComment,
@@ -50,13 +53,27 @@ public abstract class AbstractFastqRecordVisitor implements FastqRecordVisitor{
 
 	@Override
 	public final void visitNucleotides(String nucleotides) {
-		currentBasecalls = nucleotides;
+		currentBasecalls = nucleotides.getBytes(StandardCharsets.ISO_8859_1);
+		
+	}
+	
+	@Override
+	public final void visitNucleotides(byte[] asciiNucleotides, int offset, int length) {
+		//keep the ASCII bytes which take half the memory
+		//of a String and are only decoded if the sequence is requested
+		currentBasecalls = Arrays.copyOfRange(asciiNucleotides, offset, offset + length);
 		
 	}
 
 	@Override
 	public final void visitEncodedQualities(String encodedQualities) {
-		this.encodedQualities = encodedQualities;
+		this.encodedQualities = encodedQualities.getBytes(StandardCharsets.ISO_8859_1);
+		
+	}
+	
+	@Override
+	public final void visitEncodedQualities(byte[] encodedQualities, int offset, int length) {
+		this.encodedQualities = Arrays.copyOfRange(encodedQualities, offset, offset + length);
 		
 	}
 	
@@ -78,7 +95,8 @@ public abstract class AbstractFastqRecordVisitor implements FastqRecordVisitor{
 	            fastqRecord = new CommentedParsedFastqRecord(id, currentBasecalls , encodedQualities, qualityCodec, turnOffCompression, optionalComment);
 	        }       	
 	    }else{
-	    	 fastqRecord = FastqRecordBuilder.create(id, new NucleotideSequenceBuilder(currentBasecalls)
+	    	 fastqRecord = FastqRecordBuilder.create(id, new NucleotideSequenceBuilder()
+	    			 										.append(currentBasecalls, 0, currentBasecalls.length)
 															.turnOffDataCompression(turnOffCompression)
 															.build(), 
 													currentQualities)
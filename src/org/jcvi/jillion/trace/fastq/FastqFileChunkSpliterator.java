@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.jcvi.jillion.internal.core.io.ByteLineReader;
+import org.jcvi.jillion.internal.core.io.MagicNumberInputStream;
+import org.jcvi.jillion.internal.core.io.RandomAccessFileInputStream;
+import org.jcvi.jillion.internal.trace.fastq.ParsedFastqRecord;
+/**
+ * A {@link Spliterator} of {@link FastqRecord}s
+ * that splits an uncompressed fastq file into byte ranges
+ * that can each be parsed independently by different threads.
+ * Split points are resynchronized to the start of the next
+ * record by looking for a line that starts with '@'
+ * whose 3rd line starts with '+' and whose 2nd and 4th lines 
+ * are the same length.  Quality lines may start with '@'
+ * but the line 2 lines later is always a sequence line which 
+ * will never start with '+'.
+ * <p>
+ * This assumes each section of each fastq record
+ * is one line each.  Compressed files can not be split
+ * so they are parsed sequentially as a single range.
+ * </p>
+ * <p>
+ * The ranges are split off from the front so this spliterator
+ * is {@link Spliterator#ORDERED} and {@code forEachOrdered()} will
+ * still visit records in file order.
+ * </p>
+ * @author dkatzel
+ * 
+ * @since 5.3
+ */
+final class FastqFileChunkSpliterator implements Spliterator<FastqRecord>, Closeable{
+	/**
+	 * Default minimum number of bytes in a range before
+	 * we stop splitting.
+	 */
+	static final long DEFAULT_MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+	
+	private final File fastqFile;
+	private final FastqQualityCodec codec;
+	private final long minChunkSize;
+	/**
+	 * Only non-null if the file is compressed and can't be split.
+	 */
+	private final InputStreamSupplier compressedSupplier;
+	/**
+	 * All the readers opened by this spliterator or any
+	 * of its splits that haven't finished yet, shared
+	 * so closing the stream closes anything left open
+	 * by short-circuiting operations.
+	 */
+	private final Set<ByteLineReader> openReaders;
+	
+	private long start;
+	private final long end;
+	
+	private ByteLineReader reader;
+	private boolean finished;
+	
+	/**
+	 * Create a new FastqFileChunkSpliterator for the entire given file.
+	 * @param fastqFile the fastq file to parse; can not be null.
+	 * @param codec the {@link FastqQualityCodec} used to encode the qualities; can not be null.
+	 * @param minChunkSize the minimum number of bytes in a range to parse on its own; must be &gt; 0.
+	 * 
+	 * @throws IOException if there is a problem reading the file.
+	 * @throws NullPointerException if any parameter is null.
+	 * @throws IllegalArgumentException if minChunkSize &lt; 1.
+	 */
+	FastqFileChunkSpliterator(File fastqFile, FastqQualityCodec codec, long minChunkSize) throws IOException{
+		IOUtil.verifyIsReadable(fastqFile);
+		Objects.requireNonNull(codec);
+		if(minChunkSize <1){
+			throw new IllegalArgumentException("min chunk size must be >= 1");
+		}
+		this.fastqFile = fastqFile;
+		this.codec = codec;
+		this.minChunkSize = minChunkSize;
+		this.start =0;
+		this.end = fastqFile.length();
+		this.openReaders = ConcurrentHashMap.newKeySet();
+		this.compressedSupplier = isCompressed(fastqFile)? InputStreamSupplier.forFile(fastqFile) : null;
+	}
+	
+	private FastqFileChunkSpliterator(FastqFileChunkSpliterator parent, long start, long end){
+		this.fastqFile = parent.fastqFile;
+		this.codec = parent.codec;
+		this.minChunkSize = parent.minChunkSize;
+		this.openReaders = parent.openReaders;
+		this.compressedSupplier = null;
+		this.start = start;
+		this.end = end;
+	}
+	
+	private static boolean isCompressed(File f) throws IOException{
+		if(f.length() < 4){
+			return false;
+		}
+		byte[] magicNumber;
+		try(MagicNumberInputStream in = new MagicNumberInputStream(f)){
+			magicNumber = in.peekMagicNumber();
+		}
+		boolean gzip = magicNumber[0] == (byte) 0x1F && magicNumber[1] == (byte)0x8B;
+		boolean zip = magicNumber[0] == (byte)0x50 && magicNumber[1] == (byte)0x4B && magicNumber[2] == (byte)0x03 && magicNumber[3]== (byte) 0x04;
+		return gzip || zip;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super FastqRecord> action) {
+		FastqRecord next = readNextRecord();
+		if(next ==null){
+			return false;
+		}
+		action.accept(next);
+		return true;
+	}
+	
+	@Override
+	public void forEachRemaining(Consumer<? super FastqRecord> action) {
+		FastqRecord next;
+		while((next = readNextRecord()) !=null){
+			action.accept(next);
+		}
+	}
+
+	@Override
+	public Spliterator<FastqRecord> trySplit() {
+		if(reader !=null || compressedSupplier !=null || end - start < 2 * minChunkSize){
+			return null;
+		}
+		long mid = start + (end - start)/2;
+		long boundary;
+		try{
+			boundary = findNextRecordStart(mid);
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		if(boundary <= start || boundary >= end){
+			return null;
+		}
+		FastqFileChunkSpliterator prefix = new FastqFileChunkSpliterator(this, start, boundary);
+		this.start = boundary;
+		return prefix;
+	}
+	/**
+	 * Find the offset of the first record that starts
+	 * at or after the given offset in this range.
+	 * @param offset the offset to start looking from.
+	 * @return the start offset of the next record 
+	 * or -1 if no record could be found before the end of this range.
+	 * @throws IOException if there is a problem reading the file.
+	 */
+	private long findNextRecordStart(long offset) throws IOException{
+		//start one byte before so we skip the rest of the
+		//current line unless offset is the beginning of a line.
+		long scanStart = offset -1;
+		try(ByteLineReader lineReader = new ByteLineReader(
+						new RandomAccessFileInputStream(fastqFile, scanStart, end - scanStart), scanStart)){
+			if(!lineReader.nextLine()){
+				return -1;
+			}
+			//sliding window of the last 4 lines
+			byte[] firstBytes = new byte[4];
+			int[] lengths = new int[4];
+			long[] lineStarts = new long[4];
+			int linesRead=0;
+			
+			while(lineReader.nextLine()){
+				int i = linesRead %4;
+				byte[] buf = lineReader.getBuffer();
+				int lineStart = FastqFileParser.trimStart(buf, lineReader.getLineStart(), lineReader.getLineEnd());
+				int lineEnd = FastqFileParser.trimEnd(buf, lineStart, lineReader.getLineEnd());
+				
+				firstBytes[i] = lineReader.getLineLength() ==0 ? 0 : buf[lineReader.getLineStart()];
+				lengths[i] = lineEnd - lineStart;
+				lineStarts[i] = lineReader.getLineStartPosition();
+				linesRead++;
+				
+				if(linesRead >=4){
+					int defline = linesRead %4;
+					if(firstBytes[defline] == '@' 
+							&& firstBytes[(defline +2) %4] == '+'
+							&& lengths[(defline +1) %4] == lengths[(defline +3) %4]){
+						return lineStarts[defline];
+					}
+				}
+			}
+		}
+		return -1;
+	}
+	
+	private FastqRecord readNextRecord(){
+		if(finished){
+			return null;
+		}
+		try{
+			if(reader ==null){
+				InputStream in = compressedSupplier ==null ? 
+						new RandomAccessFileInputStream(fastqFile, start, end - start)
+						: compressedSupplier.get();
+				reader = new ByteLineReader(in, start);
+				openReaders.add(reader);
+			}
+			FastqRecord next = parseNextRecord();
+			if(next ==null){
+				finished = true;
+				closeReader();
+			}
+			return next;
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private FastqRecord parseNextRecord() throws IOException{
+		//skip blank lines between records
+		do{
+			if(!reader.nextLine()){
+				return null;
+			}
+		}while(reader.getLineLength() ==0);
+		
+		if(reader.getBuffer()[reader.getLineStart()] != '@'){
+			throw new IOException(String.format("invalid fastq file, could not parse seq id from '%s'",reader.getLineAsString()));
+		}
+		String id = sliceAsString(1).trim();
+		
+		if(!reader.nextLine()){
+			throw new IOException(
+					String.format("unexpected end of file. no sequence for current record '%s'",id));
+		}
+		String bases = sliceAsString(0);
+		
+		if(!reader.nextLine() || reader.getLineLength() ==0 || reader.getBuffer()[reader.getLineStart()] != '+'){
+			throw new IOException(String.format("invalid quality defline for current record '%s'. should start with '+'", id));
+		}
+		String qualities = reader.nextLine()? sliceAsString(0) : "";
+		if(qualities.length() != bases.length()){
+			throw new IOException(
+    				String.format("incorrect number of quality values for current record '%s' : expected %d "
+    						+ "but was %d", id, bases.length(), qualities.length()));
+		}
+		return new ParsedFastqRecord(id, bases, qualities, codec, false);
+	}
+	/**
+	 * Create a String of the current line (trimmed of whitespace)
+	 * after skipping the given number of bytes.
+	 */
+	private String sliceAsString(int skip){
+		byte[] buf = reader.getBuffer();
+		int lineStart = FastqFileParser.trimStart(buf, reader.getLineStart() + skip, reader.getLineEnd());
+		int lineEnd = FastqFileParser.trimEnd(buf, lineStart, reader.getLineEnd());
+		return new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1);
+	}
+	
+	private void closeReader() throws IOException{
+		openReaders.remove(reader);
+		reader.close();
+	}
+
+	@Override
+	public long estimateSize() {
+		//we don't know how many records there are
+		//but the number of bytes is proportional 
+		return end - start;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+	/**
+	 * Close any readers opened by this spliterator 
+	 * or any of its splits that have not finished parsing.
+	 */
+	@Override
+	public void close() throws IOException {
+		for(ByteLineReader r : openReaders){
+			IOUtil.closeAndIgnoreErrors(r);
+		}
+		openReaders.clear();
+	}
+
+}
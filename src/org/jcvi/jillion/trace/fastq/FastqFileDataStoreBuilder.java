@@ -41,7 +41,9 @@ public final class FastqFileDataStoreBuilder{
 	private FastqParser parser;
 	private InputStreamSupplier inputStreamSupplier;
 	
-	private Predicate<String> idFilter = (id)-> true;
+	private static final Predicate<String> ACCEPT_ALL_IDS = (id)-> true;
+	
+	private Predicate<String> idFilter = ACCEPT_ALL_IDS;
 	//default to null which we can use
 	//in the datastore implementations as a short circuit
 	//to skip building records if we don't need to 
@@ -56,6 +58,9 @@ public final class FastqFileDataStoreBuilder{
 	private boolean hasComments;
 	private boolean isMultiLine;
 	
+	private boolean useIndexFile = false;
+	private File indexFile;
+	
 	/**
 	 * Create a new instance of {@code FastqFileDataStoreBuilder}
 	 * which will build a {@link FastqDataStore} for the given
@@ -308,6 +313,63 @@ public final class FastqFileDataStoreBuilder{
 	}
 	
 	
+	/**
+	 * Use an on-disk index file of the fastq records
+	 * to look up records by id instead of keeping anything in memory.
+	 * The index is a compact binary file that is memory mapped
+	 * when the datastore is built so after the index is written once
+	 * the datastore can be reopened almost instantly without
+	 * re-parsing the fastq file.
+	 * <p>
+	 * The index is stored as a sidecar file in the same directory as the fastq file named
+	 * {@code fastqFile.getName() + ".fqi"} unless a different path is set using 
+	 * {@link #indexFile(File)}.  If the index file doesn't exist or the fastq file
+	 * has changed since the index was made, then the fastq file will be parsed once 
+	 * and a new index file will be written when {@link #build()} is called.
+	 * The index also stores the {@link FastqQualityCodec} of the file so reopening
+	 * an index without setting {@link #qualityCodec(FastqQualityCodec)} does not 
+	 * have to parse the file to guess the codec.
+	 * </p>
+	 * <p>
+	 * Index files are only supported when reading from a {@link File};
+	 * this option is ignored for InputStreams or if 
+	 * the {@link DataStoreProviderHint} is {@link DataStoreProviderHint#ITERATION_ONLY}.
+	 * If used, then this option takes precedence over the other random access hints.
+	 * </p>
+	 * @param useIndexFile {@code true} if the index file should be used;
+	 * {@code false} otherwise.
+	 * 
+	 * @return this.
+	 * 
+	 * @see #indexFile(File)
+	 * @since 5.3
+	 */
+	public FastqFileDataStoreBuilder useIndexFile(boolean useIndexFile){
+		this.useIndexFile = useIndexFile;
+		return this;
+	}
+	/**
+	 * Use an index file stored at the given non-standard path.
+	 * This also turns on using an index file as if
+	 * {@code useIndexFile(true)} was called.
+	 * 
+	 * @param indexFile the index file to use; can not be null.
+	 * If the file doesn't exist or is out of date, it will be (re)written.
+	 * 
+	 * @return this.
+	 * 
+	 * @throws NullPointerException if indexFile is null.
+	 * 
+	 * @see #useIndexFile(boolean)
+	 * @since 5.3
+	 */
+	public FastqFileDataStoreBuilder indexFile(File indexFile){
+		Objects.requireNonNull(indexFile);
+		this.indexFile = indexFile;
+		this.useIndexFile = true;
+		return this;
+	}
+	
 	/**
 	 * Parse the given fastq file and return
 	 * a new instance of a {@link FastqDataStore}
@@ -355,13 +417,23 @@ public final class FastqFileDataStoreBuilder{
 	    
 	    
 	        if(parser ==null){
-	        	parser = new FastqFileParserBuilder(inputStreamSupplier,hint ==DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+	        	parser = new FastqFileParserBuilder(inputStreamSupplier,hint ==DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY || useIndexFile)
 	        	
                         .hasComments(hasComments)
                         .hasMultilineSequences(isMultiLine)
                         .build();
 	                                                    
 	        }
+		if(useIndexFile && hint != DataStoreProviderHint.ITERATION_ONLY
+				&& parser.canCreateMemento() && parser.getFile().isPresent()){
+			File fastqFile = parser.getFile().get();
+			File fqi = indexFile ==null ? FastqFileIndex.getDefaultIndexFileFor(fastqFile) : indexFile;
+			FastqFileIndex index = FastqFileIndex.createOrOpen(parser, fastqFile, codec, fqi);
+			
+			return new FqiFastqFileDataStore(parser, codec ==null ? index.getQualityCodec() : codec, 
+					idFilter == ACCEPT_ALL_IDS ? null : idFilter, 
+					recordFilter, index);
+		}
 		if(codec ==null){
 			if(parser.isReadOnceOnly()){
 				//can't parse this twice
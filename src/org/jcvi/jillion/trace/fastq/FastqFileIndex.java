@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.jcvi.jillion.internal.core.io.SidecarHashIndex;
+import org.jcvi.jillion.trace.fastq.FastqFileParser.OffsetMemento;
+import org.jcvi.jillion.trace.fastq.FastqVisitor.FastqVisitorCallback.FastqVisitorMemento;
+/**
+ * {@code FastqFileIndex} is an on-disk index
+ * of a fastq file that maps each record id to the file offset
+ * of the start of that record so records can be looked up
+ * without keeping an id map in memory or re-parsing the
+ * fastq file each time it is opened.
+ * <p>
+ * The index is written as a memory mapped {@link SidecarHashIndex} file next to the fastq file
+ * whose values are the file offset of each record and whose metadata
+ * is the ordinal of the {@link FastqQualityCodec} of the fastq file.
+ * Since different ids can hash to the same value, callers 
+ * must check the id of each record returned.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+final class FastqFileIndex implements Closeable{
+	/**
+	 * Default file extension of fastq index files.
+	 */
+	public static final String FILE_EXTENSION = ".fqi";
+	
+	private static final byte[] MAGIC_NUMBER = new byte[]{'F','Q','I',2};
+	
+	private final SidecarHashIndex index;
+	private final FastqQualityCodec codec;
+	
+	private FastqFileIndex(SidecarHashIndex index){
+		this.index = index;
+		this.codec = FastqQualityCodec.values()[(int) index.getMetadata()];
+	}
+	/**
+	 * Get the default index file for the given 
+	 * fastq file which is in the same directory
+	 * named {@code fastqFile.getName() + ".fqi"}.
+	 * 
+	 * @param fastqFile the fastq file; can not be null.
+	 * 
+	 * @return a new File; will never be null.
+	 */
+	public static File getDefaultIndexFileFor(File fastqFile){
+		return new File(fastqFile.getParentFile(), fastqFile.getName() + FILE_EXTENSION);
+	}
+	/**
+	 * Open the given index file if it exists
+	 * and was made from the current version of the fastq file,
+	 * otherwise, parse the fastq file and write a new index first.
+	 * 
+	 * @param parser the {@link FastqParser} to use to parse the fastq file
+	 * if the index needs to be (re)built; can not be null and must be able to 
+	 * create {@link FastqVisitorMemento}s.
+	 * @param fastqFile the fastq file being indexed; can not be null.
+	 * @param codec the {@link FastqQualityCodec} of the fastq file; if null
+	 * and the index needs to be (re)built, then the codec will be guessed.
+	 * @param indexFile the index file to use; can not be null.
+	 * 
+	 * @return a new FastqFileIndex; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading or writing the index
+	 * or parsing the fastq file.
+	 */
+	public static FastqFileIndex createOrOpen(FastqParser parser, File fastqFile, FastqQualityCodec codec, File indexFile) throws IOException{
+		if(!isUpToDate(fastqFile, indexFile)){
+			write(parser, fastqFile, codec ==null ? FastqUtil.guessQualityCodecUsed(parser) : codec, indexFile);
+		}
+		return new FastqFileIndex(SidecarHashIndex.open(indexFile, MAGIC_NUMBER));
+	}
+	/**
+	 * Is the given index file valid for the current version of the 
+	 * given fastq file.
+	 * 
+	 * @param fastqFile the fastq file.
+	 * @param indexFile the index file.
+	 * 
+	 * @return {@code true} if the index exists and the fastq file has not changed 
+	 * since it was indexed; {@code false} otherwise.
+	 * 
+	 * @throws IOException if there is a problem reading the index file.
+	 */
+	public static boolean isUpToDate(File fastqFile, File indexFile) throws IOException{
+		return SidecarHashIndex.isUpToDate(fastqFile, indexFile, MAGIC_NUMBER);
+	}
+	/**
+	 * Parse the entire fastq file once and write out
+	 * a new index file.
+	 * 
+	 * @param parser the {@link FastqParser} to use; can not be null 
+	 * and must be able to create {@link FastqVisitorMemento}s.
+	 * @param fastqFile the fastq file being indexed; can not be null.
+	 * @param codec the {@link FastqQualityCodec} of the fastq file; can not be null.
+	 * @param indexFile the output file to write; will be replaced
+	 * if it already exists.
+	 * 
+	 * @throws IOException if there is a problem parsing the fastq file or writing the index.
+	 */
+	public static void write(FastqParser parser, File fastqFile, FastqQualityCodec codec, File indexFile) throws IOException{
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(fastqFile, indexFile, MAGIC_NUMBER)){
+			try{
+				parser.parse(new AbstractFastqVisitor() {
+		
+					@Override
+					public FastqRecordVisitor visitDefline(FastqVisitorCallback callback,
+							String id, String optionalComment) {
+						FastqVisitorMemento memento = callback.canCreateMemento()? callback.createMemento() : null;
+						if(!(memento instanceof OffsetMemento)){
+							throw new IllegalStateException("can not create file offset for " + id);
+						}
+						try {
+							writer.add(id, ((OffsetMemento) memento).getValue());
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						//always skip record bodies
+						return null;
+					}
+					
+				});
+			}catch(UncheckedIOException e){
+				throw e.getCause();
+			}
+			writer.commit(codec.ordinal());
+		}
+	}
+	/**
+	 * Get the total number of records indexed.
+	 * @return the number of records; will always be &ge; 0.
+	 */
+	public long getNumberOfRecords(){
+		return index.getNumberOfEntries();
+	}
+	/**
+	 * Get the {@link FastqQualityCodec} of the fastq file
+	 * when it was indexed.
+	 * @return the {@link FastqQualityCodec}; will never be null.
+	 */
+	public FastqQualityCodec getQualityCodec(){
+		return codec;
+	}
+	/**
+	 * Get the file offsets of all the records 
+	 * that might have the given id in file order.  Since different ids can
+	 * have the same hash value, some of these offsets might be of records
+	 * with different ids.
+	 * 
+	 * @param id the id to look for; can not be null.
+	 * 
+	 * @return an array of offsets; will never be null
+	 * but may be empty if there are no records with that id.
+	 */
+	public long[] getCandidateOffsetsFor(String id){
+		return index.getCandidateValuesFor(id);
+	}
+
+	@Override
+	public void close() {
+		index.close();
+	}
+}
@@ -23,6 +23,8 @@ package org.jcvi.jillion.trace.fastq;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -31,6 +33,7 @@ import java.util.regex.Pattern;
 
 import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.io.InputStreamSupplier;
+import org.jcvi.jillion.internal.core.io.ByteLineReader;
 import org.jcvi.jillion.internal.core.io.LineParser;
 import org.jcvi.jillion.internal.core.io.OpenAwareInputStream;
 import org.jcvi.jillion.internal.core.io.PositionlessLineParser;
@@ -162,6 +165,172 @@ public abstract class FastqFileParser implements FastqParser{
 		this.multiLine = multiLine;
 	}
 	
+	/**
+	 * Parse the fastq data in the given {@link InputStream}
+	 * using the fastest parsing strategy that supports this parser's options.
+	 * 
+	 * @param visitor the visitor to call.
+	 * @param in the InputStream to parse; will be closed by this method.
+	 * @param startOffset the offset of the first byte of the stream in the file.
+	 * @param trackPosition if the line based parser is used, should it track positions.
+	 * 
+	 * @throws IOException if there is a problem parsing the data.
+	 */
+	void parseFastqFile(FastqVisitor visitor, InputStream in, long startOffset, boolean trackPosition) throws IOException{
+		if(multiLine){
+			LineParser parser = trackPosition || startOffset >0 ? new TextLineParser(in, startOffset) :new PositionlessLineParser(in);
+			parseFastqFile(visitor, parser);
+		}else{
+			//4 line records can be scanned directly as bytes
+			//which is much faster and tracks positions for free
+			parseFastqFile(visitor, new ByteLineReader(in, startOffset));
+		}
+	}
+	
+	void parseFastqFile(FastqVisitor visitor, ByteLineReader reader) throws IOException{
+		ParserState parserState = new ParserState(reader.getPosition());
+		while(parserState.keepParsing() && reader.nextLine()){
+			if(reader.getLineLength() ==0){
+				//skip blank lines between records
+				continue;
+			}
+			parserState=parseNextRecord(visitor, reader, parserState.setOffset(reader.getLineStartPosition()));
+		}
+		if(parserState.keepParsing()){
+			visitor.visitEnd();
+		}else{
+			visitor.halted();
+		}
+	}
+	
+	private ParserState parseNextRecord(FastqVisitor visitor, ByteLineReader reader, ParserState parserState) throws IOException{
+		byte[] buffer = reader.getBuffer();
+		int lineStart = reader.getLineStart();
+		AbstractFastqVisitorCallback callback = createCallback(parserState);
+		FastqRecordVisitor recordVisitor;
+		String id;
+		if(hasComments){
+			Defline defline = Defline.parse(reader.getLineAsString());
+			id = defline.getId();
+			recordVisitor= visitor.visitDefline(callback, id, defline.getComment());
+		}else{
+			if(buffer[lineStart] != '@'){
+				throw new IllegalStateException(String.format("invalid fastq file, could not parse seq id from '%s'",reader.getLineAsString()));
+			}
+			id = new String(buffer, lineStart+1, reader.getLineLength() -1, StandardCharsets.ISO_8859_1).trim();
+			recordVisitor= visitor.visitDefline(callback, id, null);
+		}
+		if(!parserState.keepParsing()){
+			return parserState;
+		}
+		return parseRecordBody(reader, recordVisitor, parserState, id);
+	}
+	
+	private ParserState parseRecordBody(ByteLineReader reader,
+			FastqRecordVisitor recordVisitor, ParserState parserState, String currentId) throws IOException {
+		if(!reader.nextLine()){
+			//end of file before we got enough sequence
+			throw new IOException(
+					String.format("unexpected end of file. no sequence for current record '%s'",currentId));
+		}
+		//if we aren't visiting this read
+		//we shouldn't spend any time parsing the
+		//bases or qualities	
+		if(recordVisitor ==null){
+			reader.nextLine(); //qual defline
+			reader.nextLine(); // qualities
+			return parserState;
+		}
+		int basesStart = trimStart(reader.getBuffer(), reader.getLineStart(), reader.getLineEnd());
+		int expectedQualities = trimEnd(reader.getBuffer(), basesStart, reader.getLineEnd()) - basesStart;
+		
+		recordVisitor.visitNucleotides(reader.getBuffer(), basesStart, expectedQualities);
+		
+		if(!parserState.keepParsing()){
+			recordVisitor.halted();
+			return parserState;
+		}
+		//read qual defline which should start with +
+		if(!reader.nextLine()){
+			throw new IOException("invalid quality defline. should start with '+' but was null");
+		}
+		if(reader.getLineLength() ==0 || reader.getBuffer()[reader.getLineStart()] != '+'){
+			throw new IOException("invalid quality defline. should start with '+' but was " + reader.getLineAsString());
+		}
+		if(!reader.nextLine()){
+			throw new IOException(
+    				String.format("too few quality values for current record '%s' : "
+    						+ "expected %d but was %d", currentId, expectedQualities, 0));
+		}
+		byte[] qualities = reader.getBuffer();
+		int qualitiesStart = trimStart(qualities, reader.getLineStart(), reader.getLineEnd());
+		int qualitiesLength = trimEnd(qualities, qualitiesStart, reader.getLineEnd()) - qualitiesStart;
+		
+		if(qualitiesLength < expectedQualities){
+			//qualities were wrapped onto multiple lines
+			//have to copy them to a new array since the lines
+			//are only valid until the next line is read
+			qualities = Arrays.copyOfRange(qualities, qualitiesStart, qualitiesStart + expectedQualities);
+			qualitiesStart=0;
+			while(qualitiesLength < expectedQualities){
+				if(!reader.nextLine()){
+					//end of file before we got enough qualities
+					throw new IOException(
+							String.format("too few quality values for current record '%s' : "
+									+ "expected %d but was %d", currentId, expectedQualities, qualitiesLength));
+				}
+				int start = trimStart(reader.getBuffer(), reader.getLineStart(), reader.getLineEnd());
+				int length = trimEnd(reader.getBuffer(), start, reader.getLineEnd()) - start;
+				if(qualitiesLength + length > expectedQualities){
+					qualitiesLength += length;
+					break;
+				}
+				System.arraycopy(reader.getBuffer(), start, qualities, qualitiesLength, length);
+				qualitiesLength += length;
+			}
+		}
+		if(qualitiesLength> expectedQualities){
+			//we actually might have read too much and are somewhere inside the next 
+			//record 
+			//(reading the defline and possibly even the bases line of the next record)
+			
+			throw new IOException(
+    				String.format("incorrect number of quality values for current record: expected %d "
+    						+ "but was %d if there are too few qualities the parser may have "
+    						+ "read into the next record", expectedQualities, qualitiesLength));
+		}
+		recordVisitor.visitEncodedQualities(qualities, qualitiesStart, qualitiesLength);
+		
+		if (parserState.keepParsing()){
+			recordVisitor.visitEnd();
+		}else{
+			recordVisitor.halted();
+		}
+		return parserState;
+	}
+	/**
+	 * Get the offset of the first non-whitespace byte
+	 * same as {@link String#trim()}.
+	 */
+	static int trimStart(byte[] buffer, int start, int end){
+		int i = start;
+		while(i < end && (buffer[i] & 0xFF) <= ' '){
+			i++;
+		}
+		return i;
+	}
+	/**
+	 * Get the offset one past the last non-whitespace byte
+	 * same as {@link String#trim()}.
+	 */
+	static int trimEnd(byte[] buffer, int start, int end){
+		int i = end;
+		while(i > start && (buffer[i-1] & 0xFF) <= ' '){
+			i--;
+		}
+		return i;
+	}
+	
 	void parseFastqFile(FastqVisitor visitor, LineParser parser) throws IOException{
 		ParserState parserState = parser.tracksPosition() ? new ParserState(parser.getPosition()) : new ParserState(0);
 		while(parserState.keepParsing() && parser.hasNextLine()){
@@ -518,8 +687,7 @@ public abstract class FastqFileParser implements FastqParser{
 			}
 			
 			try(InputStream in = supplier.get()){
-				LineParser parser = trackPosition? new TextLineParser(in) :new PositionlessLineParser(in);
-				parseFastqFile(visitor, parser);			
+				parseFastqFile(visitor, in, 0L, trackPosition);			
 			}
 		}
 
@@ -536,9 +704,7 @@ public abstract class FastqFileParser implements FastqParser{
 			long startOffset = ((OffsetMemento)memento).getValue();
 			
                         try (InputStream in = supplier.get(startOffset)) {
-                           
-                            TextLineParser parser = new TextLineParser(in, startOffset);
-                            parseFastqFile(visitor, parser);
+                            parseFastqFile(visitor, in, startOffset, true);
                         }
 			
 		}		
@@ -579,8 +745,7 @@ public abstract class FastqFileParser implements FastqParser{
 				throw new NullPointerException("visitor can not be null");
 			}
 			try{
-				LineParser parser = new PositionlessLineParser(in);
-				parseFastqFile(visitor, parser);
+				parseFastqFile(visitor, in, 0L, false);
 			}finally{
 				IOUtil.closeAndIgnoreErrors(in);
 			}
@@ -23,12 +23,16 @@ package org.jcvi.jillion.trace.fastq;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Objects;
 import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
 
 import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.core.io.IOUtil;
 import org.jcvi.jillion.core.util.ThrowingStream;
 import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
+import org.jcvi.jillion.internal.core.util.Sneak;
 /**
  * Helper class to simplify the process of reading Fastq encoded files
  * to just get the Stream of {@link FastqRecord} objects.
@@ -448,6 +452,123 @@ public final class FastqFileReader {
         return new Results(datastore);
     }
     
+    /**
+     * Iterate through all the records in the given fastq file in parallel using
+     * multiple threads and call the given consumer on each one.
+     * The {@link FastqQualityCodec} that is used to encode this file
+     * will be automatically detected for a performance penalty 
+     * (the beginning of the file will have to be read twice) for 
+     * better performance please use {@link #parallelForEach(File, FastqQualityCodec, ThrowingBiConsumer)} if the codec is already known.
+     * 
+     * @param fastqFile the fastq file to read; can not be null.
+     * 
+     * @param consumer a BiConsumer that takes the id of the record as the first parameter and the record as the second parameter.
+     * This consumer will be called by multiple threads at the same time and in no particular order
+     * so it must be thread-safe.
+     * 
+     * @throws IOException if there is a problem reading the fastq file.
+     * @throws NullPointerException if any parameter is null.
+     * 
+     * @see #parallelRecords(File, FastqQualityCodec)
+     * 
+     * @since 5.3
+     */
+    public static <E extends Throwable> void parallelForEach(File fastqFile, ThrowingBiConsumer<String, FastqRecord, E> consumer) throws IOException, E{
+        parallelForEach(fastqFile, FastqUtil.guessQualityCodecUsed(fastqFile), consumer);
+    }
+    /**
+     * Iterate through all the records in the given fastq file in parallel using
+     * multiple threads and call the given consumer on each one.
+     * The file is split into byte ranges that start on record boundaries
+     * and each range is parsed by a different thread of the {@link java.util.concurrent.ForkJoinPool}
+     * used by parallel streams.
+     * This assumes each section of each fastq record
+     * is one line each and does not have comments.  Compressed files
+     * can not be split and will be parsed by only a single thread.
+     * 
+     * @param fastqFile the fastq file to read; can not be null.
+     * 
+     * @param codec the {@link FastqQualityCodec} known to encode this file; can not be null.
+     * 
+     * @param consumer a BiConsumer that takes the id of the record as the first parameter and the record as the second parameter.
+     * This consumer will be called by multiple threads at the same time and in no particular order
+     * so it must be thread-safe.
+     * 
+     * @throws IOException if there is a problem reading the fastq file.
+     * @throws NullPointerException if any parameter is null.
+     * 
+     * @see #parallelRecords(File, FastqQualityCodec)
+     * 
+     * @since 5.3
+     */
+    public static <E extends Throwable> void parallelForEach(File fastqFile, FastqQualityCodec codec, ThrowingBiConsumer<String, FastqRecord, E> consumer) throws IOException, E{
+        Objects.requireNonNull(consumer, "consumer can not be null");
+        try(ThrowingStream<FastqRecord> stream = parallelRecords(fastqFile, codec)){
+            stream.unordered().forEach(record ->{
+                try {
+                    consumer.accept(record.getId(), record);
+                } catch (Throwable ex) {
+                    throw Sneak.sneakyThrow(ex);
+                }
+            });
+        }catch(UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+    /**
+     * Get a parallel {@link ThrowingStream} of all the fastq records in the given fastq file.
+     * The {@link FastqQualityCodec} that is used to encode this file
+     * will be automatically detected for a performance penalty 
+     * (the beginning of the file will have to be read twice) for 
+     * better performance please use {@link #parallelRecords(File, FastqQualityCodec)} if the codec is already known.
+     * 
+     * @param fastqFile the fastq file to read; can not be null.
+     * 
+     * @return a new parallel {@link ThrowingStream}; will never be null.
+     * 
+     * @throws IOException if there is a problem reading the fastq file.
+     * @throws NullPointerException if fastqFile is null.
+     * 
+     * @see #parallelRecords(File, FastqQualityCodec)
+     * 
+     * @since 5.3
+     */
+    public static ThrowingStream<FastqRecord> parallelRecords(File fastqFile) throws IOException{
+        return parallelRecords(fastqFile, FastqUtil.guessQualityCodecUsed(fastqFile));
+    }
+    /**
+     * Get a parallel {@link ThrowingStream} of all the fastq records in the given fastq file.
+     * The file is split into byte ranges that start on record boundaries
+     * and each range is parsed independently by the threads of the {@link java.util.concurrent.ForkJoinPool}
+     * that runs the stream.  The stream is still ordered so {@code forEachOrdered()}
+     * will see the records in file order, call {@link ThrowingStream#unordered()} if 
+     * order doesn't matter.
+     * This assumes each section of each fastq record
+     * is one line each and does not have comments.  Compressed files
+     * can not be split and will be parsed by only a single thread.
+     * <p>
+     * Problems parsing the file will be thrown as {@link UncheckedIOException}s
+     * by the terminal operation of the stream.  The returned stream should be closed
+     * to release any file handles left open by short-circuiting operations.
+     * </p>
+     * 
+     * @param fastqFile the fastq file to read; can not be null.
+     * 
+     * @param codec the {@link FastqQualityCodec} known to encode this file; can not be null.
+     * 
+     * @return a new parallel {@link ThrowingStream}; will never be null.
+     * 
+     * @throws IOException if there is a problem reading the fastq file.
+     * @throws NullPointerException if either parameter is null.
+     * 
+     * @since 5.3
+     */
+    public static ThrowingStream<FastqRecord> parallelRecords(File fastqFile, FastqQualityCodec codec) throws IOException{
+        FastqFileChunkSpliterator spliterator = new FastqFileChunkSpliterator(fastqFile, codec, FastqFileChunkSpliterator.DEFAULT_MIN_CHUNK_SIZE);
+        return ThrowingStream.asThrowingStream(StreamSupport.stream(spliterator, true)
+                                .onClose(()-> IOUtil.closeAndIgnoreErrors(spliterator)));
+    }
+    
     /**
      * Results of a fastq file read operation, accessor methods can be used
      * to get a Stream of the {@link FastqRecord}s contained in the file.
@@ -20,6 +20,8 @@
  ******************************************************************************/
 package org.jcvi.jillion.trace.fastq;
 
+import java.nio.charset.StandardCharsets;
+
 import org.jcvi.jillion.core.qual.QualitySequence;
 /**
  * {@code FastqRecordVisitor} is a visitor
@@ -37,6 +39,29 @@ public interface FastqRecordVisitor {
      * will never be null.
      */
     void visitNucleotides(String nucleotides);
+    /**
+     * Visit the nucleotide sequence of the current 
+     * fastq record as a slice of ASCII bytes.
+     * Parsers that read the fastq file as bytes
+     * call this method instead of {@link #visitNucleotides(String)}
+     * so implementations that don't need a String
+     * can avoid creating one.  The given array is only valid
+     * for the duration of this call and may be reused by the parser
+     * afterwards so implementations must copy any bytes they wish to keep.
+     * 
+     * @implSpec the default implementation converts
+     * the slice into a String and calls {@link #visitNucleotides(String)}.
+     * 
+     * @param asciiNucleotides the array containing the bases;
+     * will never be null.
+     * @param offset the offset into the array of the first base.
+     * @param length the number of bases.
+     * 
+     * @since 5.3
+     */
+    default void visitNucleotides(byte[] asciiNucleotides, int offset, int length){
+    	visitNucleotides(new String(asciiNucleotides, offset, length, StandardCharsets.ISO_8859_1));
+    }
     /**
      * Visit the encoded quality values for the current
      * fastq record.  If the fastq file breaks the quality values
@@ -51,6 +76,33 @@ public interface FastqRecordVisitor {
      * @see FastqQualityCodec
      */
     void visitEncodedQualities(String encodedQualities);
+    /**
+     * Visit the encoded quality values for the current
+     * fastq record as a slice of ASCII bytes.
+     * Parsers that read the fastq file as bytes
+     * call this method instead of {@link #visitEncodedQualities(String)}.
+     * If the fastq file breaks the quality values
+     * across multiple lines, then the slice
+     * will be the concatenation of all of those lines with all
+     * whitespace removed.  The given array is only valid
+     * for the duration of this call and may be reused by the parser
+     * afterwards so implementations must copy any bytes they wish to keep.
+     * 
+     * @implSpec the default implementation converts
+     * the slice into a String and calls {@link #visitEncodedQualities(String)}.
+     * 
+     * @param encodedQualities the array containing the encoded quality values;
+     * will never be null.
+     * @param offset the offset into the array of the first quality value.
+     * @param length the number of quality values.
+     * 
+     * @see FastqQualityCodec
+     * 
+     * @since 5.3
+     */
+    default void visitEncodedQualities(byte[] encodedQualities, int offset, int length){
+    	visitEncodedQualities(new String(encodedQualities, offset, length, StandardCharsets.ISO_8859_1));
+    }
     /**
      * Visit the the actual quality values
      * (not encodedc) for the current
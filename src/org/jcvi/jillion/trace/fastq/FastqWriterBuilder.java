@@ -358,6 +358,7 @@ public final class FastqWriterBuilder implements Builder<FastqWriter>{
 		private final int numberOfBasesPerLine;
 		
 		private final StringBuilder tempBuilder = new StringBuilder(2000);
+		private char[] writeBuffer = new char[2000];
 		
 		private FastqRecordWriterImpl(OutputStream out, Charset charset,
 				FastqQualityCodec codec, boolean writeIdOnQualityLine,
@@ -397,7 +398,7 @@ public final class FastqWriterBuilder implements Builder<FastqWriter>{
 		    //performance improvement:
 		    //ParsedFastqRecord is a special implementation of FastqRecord
 		    //that delays converting the encoded sequence and qualities
-		    //from Strings into Jillion Sequence objects.
+		    //from the ASCII bytes of the file into Jillion Sequence objects.
 		    //
 		    //This is actually the implementation returned by FastqParser
 		    //visit methods since Jillion 5.0.
@@ -414,24 +415,9 @@ public final class FastqWriterBuilder implements Builder<FastqWriter>{
 		    //
 		    //This code is much uglier, but improves performance by 25%
 		    if(record instanceof ParsedFastqRecord){
-		        ParsedFastqRecord parsedRecord = (ParsedFastqRecord) record;
-		        FastqQualityCodec recordCodec = parsedRecord.getQualityCodec();
-		        String formattedString;
-		        if(codec == recordCodec){
-		            //same quality encoding can use encoded qualities as is
-		            formattedString=  toFormattedString(parsedRecord.getId(),
-		                    encodeNucleotides(parsedRecord.getNucleotideString(), trimRange),
-		                    formatEncodedQualities(parsedRecord.getEncodedQualities(), trimRange), parsedRecord.getComment());
-		        }else{
-		            //not same quality encoding		            
-		            String reEncodedQualities = reEncodeTrimmedQualities(parsedRecord, recordCodec, trimRange);
-		            
-		            formattedString = toFormattedString(parsedRecord.getId(), encodeNucleotides(parsedRecord.getNucleotideString(), trimRange),
-		                    //trimRange is null here because we already trimmed it during reencoding.
-		                    formatEncodedQualities(reEncodedQualities, null), parsedRecord.getComment());
-		        }
-		        
-		        writer.write(formattedString);
+		        //the bases and encoded qualities are copied straight
+		        //from the record's ASCII bytes without making any Strings
+		        writeParsedRecord((ParsedFastqRecord) record, trimRange);
 		    }else{
 		        if(trimRange ==null){
 		            write(record.getId(), record.getNucleotideSequence(), record.getQualitySequence(), record.getComment());
@@ -454,15 +440,50 @@ public final class FastqWriterBuilder implements Builder<FastqWriter>{
 		}
 
 
-        private String reEncodeTrimmedQualities(ParsedFastqRecord parsedRecord,
-                FastqQualityCodec recordCodec, Range trimRange) {
-            int offsetCorrection = codec.getOffset() - recordCodec.getOffset();
-            char[] chars = trimRange ==null?  parsedRecord.getEncodedQualities().toCharArray()
-                                : parsedRecord.getEncodedQualities().substring((int)trimRange.getBegin(), (int) trimRange.getEnd()+1).toCharArray();
-            for(int i=0; i< chars.length; i++){
-                chars[i] = (char)(chars[i] + offsetCorrection);
+        private synchronized void writeParsedRecord(ParsedFastqRecord parsedRecord, Range trimRange) throws IOException{
+            //if the record uses a different quality encoding
+            //we only have to shift each encoded quality by the difference in offsets
+            int qualityOffsetCorrection = codec.getOffset() - parsedRecord.getQualityCodec().getOffset();
+            String id = parsedRecord.getId();
+            String optionalComment = parsedRecord.getComment();
+            
+            tempBuilder.setLength(0);
+            tempBuilder.append("@").append(id);
+            if (optionalComment != null) {
+                tempBuilder.append(' ').append(optionalComment);
+            }
+            tempBuilder.append(CR);
+            appendAscii(parsedRecord.getAsciiBases(), trimRange, 0);
+            tempBuilder.append(CR).append('+');
+            if (writeIdOnQualityLine) {
+                tempBuilder.append(id);
+            }
+            tempBuilder.append(CR);
+            appendAscii(parsedRecord.getEncodedQualityBytes(), trimRange, qualityOffsetCorrection);
+            tempBuilder.append(CR);
+            
+            int length = tempBuilder.length();
+            if(writeBuffer.length < length){
+                writeBuffer = new char[Math.max(length, writeBuffer.length *2)];
+            }
+            tempBuilder.getChars(0, length, writeBuffer, 0);
+            writer.write(writeBuffer, 0, length);
+        }
+        /**
+         * Append the given ASCII bytes (possibly trimmed) to the tempBuilder
+         * adding each to the given offset and breaking lines
+         * every numberOfBasesPerLine characters.
+         */
+        private void appendAscii(byte[] ascii, Range trimRange, int offset){
+            int start = trimRange ==null ? 0 : (int) trimRange.getBegin();
+            int end = trimRange ==null ? ascii.length : (int) trimRange.getEnd() +1;
+            boolean breakLines = numberOfBasesPerLine != ALL_ON_ONE_LINE;
+            for(int i=start; i< end; i++){
+                if(breakLines && i > start && (i - start) % numberOfBasesPerLine ==0){
+                    tempBuilder.append(CR);
+                }
+                tempBuilder.append((char) ((ascii[i] & 0xFF) + offset));
             }
-            return new String(chars);
         }
 	
 		@Override
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import org.jcvi.jillion.core.datastore.DataStoreClosedException;
+import org.jcvi.jillion.core.datastore.DataStoreEntry;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.core.util.streams.ThrowingBiConsumer;
+import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
+import org.jcvi.jillion.trace.fastq.FastqFileParser.OffsetMemento;
+/**
+ * {@link FastqFileDataStore} implementation that uses
+ * a {@link FastqFileIndex} sidecar file to quickly seek to the 
+ * appropriate part in the fastq file to get a record
+ * so almost nothing is kept in memory and the fastq file
+ * does not have to be re-parsed each time it is opened.
+ * Iterating over the records still streams through the fastq file.
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class FqiFastqFileDataStore implements FastqFileDataStore{
+
+	private final FastqParser parser;
+	private final FastqQualityCodec qualityCodec;
+	private final FastqFileIndex index;
+	/**
+	 * Null if there isn't an id filter.
+	 */
+	private final Predicate<String> idFilter;
+	/**
+	 * Null if there isn't a record filter.
+	 */
+	private final Predicate<FastqRecord> recordFilter;
+	
+	private volatile boolean closed;
+	
+	/**
+	 * Create a new FqiFastqFileDataStore.
+	 * 
+	 * @param parser the {@link FastqParser} of the indexed fastq file; can not be null.
+	 * @param qualityCodec the {@link FastqQualityCodec} to use to decode the qualities; can not be null.
+	 * @param idFilter the id filter to use; may be null if all ids are accepted.
+	 * @param recordFilter the record filter to use; may be null if all records are accepted.
+	 * @param index the {@link FastqFileIndex} of the fastq file; can not be null.
+	 */
+	FqiFastqFileDataStore(FastqParser parser, FastqQualityCodec qualityCodec,
+			Predicate<String> idFilter, Predicate<FastqRecord> recordFilter, FastqFileIndex index) {
+		this.parser = Objects.requireNonNull(parser);
+		this.qualityCodec = Objects.requireNonNull(qualityCodec);
+		this.index = Objects.requireNonNull(index);
+		this.idFilter = idFilter;
+		this.recordFilter = recordFilter;
+	}
+
+	private void throwExceptionIfClosed(){
+		if(closed){
+			throw new DataStoreClosedException("datastore is closed");
+		}
+	}
+	
+	private boolean isFiltered(){
+		return idFilter !=null || recordFilter !=null;
+	}
+	
+	private FastqFileDataStore createStreamingDataStore() throws IOException{
+		return LargeFastqFileDataStore.create(parser, qualityCodec, 
+				idFilter ==null ? id -> true : idFilter, 
+				recordFilter);
+	}
+	
+	private FastqFileDataStore createStreamingDataStoreOrThrow() throws DataStoreException{
+		try {
+			return createStreamingDataStore();
+		} catch (IOException e) {
+			throw new DataStoreException("error reading fastq file", e);
+		}
+	}
+	
+	@Override
+	public FastqRecord get(String id) throws DataStoreException {
+		throwExceptionIfClosed();
+		if(idFilter !=null && !idFilter.test(id)){
+			return null;
+		}
+		for(long offset : index.getCandidateOffsetsFor(id)){
+			FastqRecord record = parseRecordAt(offset);
+			if(record !=null && id.equals(record.getId())){
+				if(recordFilter ==null || recordFilter.test(record)){
+					return record;
+				}
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	private FastqRecord parseRecordAt(long offset) throws DataStoreException{
+		FastqRecord[] result = new FastqRecord[1];
+		try {
+			parser.parse(new AbstractFastqVisitor() {
+				
+				@Override
+				public FastqRecordVisitor visitDefline(FastqVisitorCallback callback,
+						String id, String optionalComment) {
+					//the first record is the one we want
+					return new AbstractFastqRecordVisitor(id, optionalComment, qualityCodec) {
+						
+						@Override
+						protected void visitRecord(FastqRecord record) {
+							result[0] = record;
+							callback.haltParsing();
+						}
+					};
+				}
+			}, OffsetMemento.valueOf(offset));
+		} catch (IOException e) {
+			throw new DataStoreException("error reading fastq file", e);
+		}
+		return result[0];
+	}
+
+	@Override
+	public boolean contains(String id) throws DataStoreException {
+		return get(id) !=null;
+	}
+
+	@Override
+	public long getNumberOfRecords() throws DataStoreException {
+		throwExceptionIfClosed();
+		if(!isFiltered()){
+			return index.getNumberOfRecords();
+		}
+		return createStreamingDataStoreOrThrow().getNumberOfRecords();
+	}
+
+	@Override
+	public StreamingIterator<String> idIterator() throws DataStoreException {
+		throwExceptionIfClosed();
+		//iter has a different lifecycle than this datastore
+		//so wrap it
+		return DataStoreStreamingIterator.create(this, createStreamingDataStoreOrThrow().idIterator());
+	}
+
+	@Override
+	public StreamingIterator<FastqRecord> iterator() throws DataStoreException {
+		throwExceptionIfClosed();
+		return DataStoreStreamingIterator.create(this, createStreamingDataStoreOrThrow().iterator());
+	}
+
+	@Override
+	public StreamingIterator<DataStoreEntry<FastqRecord>> entryIterator() throws DataStoreException {
+		throwExceptionIfClosed();
+		return DataStoreStreamingIterator.create(this, createStreamingDataStoreOrThrow().entryIterator());
+	}
+	
+	@Override
+	public <E extends Throwable> void forEach(ThrowingBiConsumer<String, FastqRecord, E> consumer) throws IOException, E {
+		throwExceptionIfClosed();
+		createStreamingDataStore().forEach(consumer);
+	}
+
+	@Override
+	public FastqQualityCodec getQualityCodec() {
+		return qualityCodec;
+	}
+
+	@Override
+	public Optional<File> getFile() {
+		return parser.getFile();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		index.close();
+	}
+
+}
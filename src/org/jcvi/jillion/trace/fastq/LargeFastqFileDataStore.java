@@ -297,7 +297,9 @@ final class LargeFastqFileDataStore implements FastqFileDataStore {
     }
 	private final class NoLambdaFastqIdIterator extends AbstractBlockingStreamingIterator<String> implements StreamingIterator<String>{
 
-    	
+		NoLambdaFastqIdIterator(){
+			super(DEFAULT_RECORD_BATCH_SIZE);
+		}
 
 
 		@Override
@@ -354,7 +356,9 @@ final class LargeFastqFileDataStore implements FastqFileDataStore {
      */
     private final class LargeFastqFileIterator extends AbstractBlockingStreamingIterator<FastqRecord> implements StreamingIterator<FastqRecord>{
 
-    	
+		LargeFastqFileIterator(){
+			super(DEFAULT_RECORD_BATCH_SIZE);
+		}
 
 
 		@Override
@@ -41,6 +41,7 @@ import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.util.iter.StreamingIterator;
 import org.jcvi.jillion.internal.core.datastore.AbstractDataStore;
 import org.jcvi.jillion.internal.core.datastore.DataStoreStreamingIterator;
+import org.jcvi.jillion.internal.core.io.RandomAccessFileInputStream;
 import org.jcvi.jillion.internal.core.util.iter.AbstractBlockingStreamingIterator;
 /**
  * {@code LargeSffFileDataStore} is a {@link SffFileDataStore}
@@ -48,7 +49,9 @@ import org.jcvi.jillion.internal.core.util.iter.AbstractBlockingStreamingIterato
  *  No data contained in this
  * sff file is stored in memory except it's size (which is lazy loaded).
  * This means that each get() or contain() requires re-parsing the sff file
- * which can take some time.  It is recommended that instances are wrapped
+ * which can take some time unless an {@link SffOffsetIndex} is used
+ * in which case each get() seeks directly to the read.
+ * It is recommended that instances are wrapped
  * in  a cached datastore using
  * {@link DataStoreUtil#createNewCachedDataStore(Class, org.jcvi.jillion.core.datastore.DataStore, int)}.
  * @author dkatzel
@@ -60,6 +63,12 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
     private Long size=null;
     private final DataStoreFilter filter;
     private final NucleotideSequence keySequence,flowSequence;
+    private final int numberOfFlowsPerRead;
+    /**
+     * Offset index to seek to reads;
+     * may be null if we must scan the file.
+     */
+    private final SffOffsetIndex offsetIndex;
     /**
      * Create a new instance of {@link LargeSffFileDataStore}.
      * @param sffFile the sff file to parse.
@@ -82,7 +91,31 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
     	verifyFileExists(sffFile);
     	verifyIsValidSff(sffFile);
     	
-    	return new LargeSffFileDataStore(sffFile,filter);
+    	return new LargeSffFileDataStore(sffFile,filter, null);
+    }
+    /**
+     * Create a new instance of {@link LargeSffFileDataStore}
+     * that uses a sidecar {@link SffOffsetIndex} to seek directly to
+     * each read in calls to get() and contains().
+     * If the index file does not exist or is out of date,
+     * then a new index is built and written to the index file.
+     * @param sffFile the sff file to parse.
+     * @param filter the {@link DataStoreFilter} to use; can not be null.
+     * @param indexFile the sidecar index file to use; can not be null.
+     * @return a new SffDataStore; never null.
+     * @throws NullPointerException if any parameter is null.
+     * @throws IOException if sffFile does not exist or is not a valid sff file
+     * or if there is a problem reading or writing the index file.
+     * 
+     * @since 5.3
+     */
+    public static SffFileDataStore create(File sffFile, DataStoreFilter filter, File indexFile) throws IOException{
+    	verifyFileExists(sffFile);
+    	verifyIsValidSff(sffFile);
+    	if(indexFile ==null){
+    		throw new NullPointerException("index file can not be null");
+    	}
+    	return new LargeSffFileDataStore(sffFile,filter, SffOffsetIndex.createOrLoad(sffFile, indexFile));
     }
 	private static void verifyFileExists(File sffFile)
 			throws FileNotFoundException {
@@ -110,10 +143,11 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
 	 * @throws IOException 
 	 * @throws FileNotFoundException 
      */
-    private LargeSffFileDataStore(File sffFile, DataStoreFilter filter) throws FileNotFoundException, IOException {
+    private LargeSffFileDataStore(File sffFile, DataStoreFilter filter, SffOffsetIndex offsetIndex) throws FileNotFoundException, IOException {
     	SffParser parser = SffFileParser.create(sffFile);
     	this.sffFile = sffFile;
         this.filter = filter;
+        this.offsetIndex = offsetIndex;
         
         
         HeaderVisitor visitor = new HeaderVisitor();
@@ -124,7 +158,7 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
         }
         this.keySequence = header.getKeySequence();
         this.flowSequence = header.getFlowSequence();
-        
+        this.numberOfFlowsPerRead = header.getNumberOfFlowsPerRead();
     }
 
     @Override
@@ -139,6 +173,13 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
 
 	@Override
 	protected boolean containsImpl(String id) throws DataStoreException {
+		if(offsetIndex !=null){
+			try {
+				return filter.accept(id) && offsetIndex.getOffsetFor(id) >=0;
+			} catch (IOException e) {
+				throw new DataStoreException("error looking up flowgram "+ id, e);
+			}
+		}
 		return get(id)!=null;
 	}
 	@Override
@@ -146,6 +187,9 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
 		if(!filter.accept(id)){
 			return null;
 		}
+		if(offsetIndex !=null){
+			return getFromOffset(id);
+		}
 		try{
         	SingleFlowgramVisitor singleVisitor = new SingleFlowgramVisitor(id);
         	SffFileParser.create(sffFile).parse(singleVisitor);
@@ -154,8 +198,34 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
             throw new DataStoreException("could not read sffFile ",e);
         }
 	}
+	
+	private SffFlowgram getFromOffset(String id) throws DataStoreException {
+		try{
+			for(long offset : offsetIndex.getCandidateOffsetsFor(id)){
+				//each get opens its own stream so concurrent
+				//gets don't have to share a file pointer
+				try(DataInputStream in = new DataInputStream(new BufferedInputStream(new RandomAccessFileInputStream(sffFile, offset)))){
+					SffReadHeader readHeader = DefaultSffReadHeaderDecoder.INSTANCE.decodeReadHeader(in);
+					//different ids can have the same hash
+					if(!id.equals(readHeader.getId())){
+						continue;
+					}
+					SffReadData readData = DefaultSffReadDataDecoder.INSTANCE.decode(in,
+							numberOfFlowsPerRead,
+							readHeader.getNumberOfBases());
+					return SffFlowgramImpl.create(readHeader, readData);
+				}
+			}
+			return null;
+		} catch (IOException e) {
+			throw new DataStoreException("error trying to get flowgram "+ id,e);
+		}
+	}
 	@Override
 	protected synchronized long getNumberOfRecordsImpl() throws DataStoreException {
+		if(this.size ==null && offsetIndex !=null && filter == DataStoreFilters.alwaysAccept()){
+			size = offsetIndex.getNumberOfRecords();
+		}
 		if(this.size ==null){
 			//since filter could mean we won't
 			//accept everything we can't just
@@ -249,6 +319,7 @@ final class LargeSffFileDataStore extends AbstractDataStore<SffFlowgram> impleme
         }
     	
     	private SffFileIdIterator(File sffFile, DataStoreFilter filter){
+    		super(DEFAULT_RECORD_BATCH_SIZE);
     		this.sffFile = sffFile;
     		 this.filter =filter;
     	}
@@ -41,6 +41,10 @@ public class SffFileDataStoreBuilder {
 	private DataStoreFilter filter = DataStoreFilters.alwaysAccept();
 	//by default store everything in memory
 	private DataStoreProviderHint hint = DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_SPEED;
+	/**
+	 * Sidecar offset index file; null if not used.
+	 */
+	private File offsetIndexFile = null;
 	
 	/**
 	 * Create a new instance of {@code SffFileDataStoreBuilder}
@@ -103,6 +107,45 @@ public class SffFileDataStoreBuilder {
 		this.hint = hint;
 		return this;
 	}
+	/**
+	 * Use a persisted offset index file next to the sff file
+	 * (the sff file path + {@literal ".idx"}) so that 
+	 * DataStores that don't keep the flowgrams in memory can seek directly to each read
+	 * instead of re-parsing the file.  This works for any sff file, 
+	 * including Ion Torrent files that do not include a 454 manifest.
+	 * If the index file does not exist or is out of date, then it will be built
+	 * by parsing the sff file once and written out when {@link #build()} is called.
+	 * This is the same as {@code useOffsetIndex(new File(sffFile.getPath() + ".idx"))}.
+	 * The index is only used if the hint is {@link DataStoreProviderHint#RANDOM_ACCESS_OPTIMIZE_MEMORY}
+	 * or {@link DataStoreProviderHint#ITERATION_ONLY}.
+	 * @return this.
+	 * @since 5.3
+	 * @see #useOffsetIndex(File)
+	 */
+	public SffFileDataStoreBuilder useOffsetIndex(){
+		return useOffsetIndex(SffOffsetIndex.getDefaultIndexFileFor(sffFile));
+	}
+	/**
+	 * Use the given persisted offset index file so that 
+	 * DataStores that don't keep the flowgrams in memory can seek directly to each read
+	 * instead of re-parsing the file.  This works for any sff file, 
+	 * including Ion Torrent files that do not include a 454 manifest.
+	 * If the index file does not exist or is out of date, then it will be built
+	 * by parsing the sff file once and written out when {@link #build()} is called.
+	 * The index is only used if the hint is {@link DataStoreProviderHint#RANDOM_ACCESS_OPTIMIZE_MEMORY}
+	 * or {@link DataStoreProviderHint#ITERATION_ONLY}.
+	 * @param indexFile the index file to read or create; can not be null.
+	 * @return this.
+	 * @throws NullPointerException if indexFile is null.
+	 * @since 5.3
+	 */
+	public SffFileDataStoreBuilder useOffsetIndex(File indexFile){
+		if(indexFile==null){
+			throw new NullPointerException("index file can not be null");
+		}
+		this.offsetIndexFile = indexFile;
+		return this;
+	}
 	
 	
 	/**
@@ -139,6 +182,9 @@ public class SffFileDataStoreBuilder {
 			case RANDOM_ACCESS_OPTIMIZE_MEMORY:
 				return handleIndexedSffFileDataStore();
 			case ITERATION_ONLY:
+				if(offsetIndexFile !=null){
+					return LargeSffFileDataStore.create(sffFile, filter, offsetIndexFile);
+				}
 				return LargeSffFileDataStore.create(sffFile, filter);
 			default:
 				//can not happen
@@ -147,6 +193,9 @@ public class SffFileDataStoreBuilder {
 	}
 	
 	private SffFileDataStore handleIndexedSffFileDataStore() throws IOException{
+		if(offsetIndexFile !=null){
+			return LargeSffFileDataStore.create(sffFile, filter, offsetIndexFile);
+		}
 		SffFileDataStore manifestDataStore = ManifestIndexed454SffFileDataStore.create(sffFile, filter);
 		if(manifestDataStore!=null){
 			return manifestDataStore;
@@ -51,6 +51,7 @@ final class SffFileIterator extends AbstractBlockingStreamingIterator<SffFlowgra
     }
 	
 	private SffFileIterator(File sffFile, DataStoreFilter filter){
+		super(DEFAULT_RECORD_BATCH_SIZE);
 		this.sffFile = sffFile;
 		 this.filter =filter;
 	}
@@ -158,6 +158,22 @@ public abstract class SffFileParser implements SffParser{
 	
 	
 	
+	/**
+	 * Get the file offset of the start of the record
+	 * that the given memento refers to.
+	 * @param memento a memento created by a file based
+	 * SffFileParser's callback.
+	 * @return the offset into the sff file.
+	 * @throws IllegalArgumentException if the memento was not created
+	 * by a file based parser.
+	 */
+	static long getFileOffsetFor(SffVisitorMemento memento){
+		if(!(memento instanceof AbstractSffFileMemento)){
+			throw new IllegalArgumentException("don't know how to handle this memento");
+		}
+		return ((AbstractSffFileMemento)memento).getPosition();
+	}
+	
 	private abstract static class AbstractSffFileMemento implements SffVisitorMemento{
 		private final long position;
 
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.sff;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.jcvi.jillion.internal.core.io.RandomAccessFileInputStream;
+import org.jcvi.jillion.internal.core.io.SidecarHashIndex;
+import org.jcvi.jillion.trace.sff.SffVisitorCallback.SffVisitorMemento;
+/**
+ * {@code SffOffsetIndex} is a persisted index
+ * of the file offset of every read in an sff file
+ * which works on any flavor of sff file (454 or Ion Torrent)
+ * whether or not the file contains a 454 manifest.
+ * The index is built once by parsing the entire sff file,
+ * written out to a {@link SidecarHashIndex} file whose values
+ * are the offsets of each read header
+ * and then memory mapped so lookups don't need to keep
+ * all the read ids in the heap.
+ * <p>
+ * Since different ids can hash to the same value,
+ * the read header at each candidate offset is read
+ * to check the id.  The sff file length and
+ * last modified time are used to detect stale indexes
+ * which are then rebuilt.
+ * </p>
+ * 
+ * @author dkatzel
+ *
+ * @since 5.3
+ */
+final class SffOffsetIndex {
+	/**
+	 * Default suffix appended to the sff file path
+	 * to make the sidecar index file path.
+	 */
+	static final String DEFAULT_INDEX_SUFFIX = ".idx";
+	
+	private static final byte[] MAGIC_NUMBER = new byte[]{'S','F','I',2};
+	/**
+	 * Read headers are small so don't buffer
+	 * much more than one.
+	 */
+	private static final int READ_HEADER_BUFFER_SIZE = 512;
+	
+	private final File sffFile;
+	private final SidecarHashIndex index;
+	
+	private SffOffsetIndex(File sffFile, SidecarHashIndex index){
+		this.sffFile = sffFile;
+		this.index = index;
+	}
+	/**
+	 * Get the default sidecar index file for the given sff file.
+	 * @param sffFile the sff file; can not be null.
+	 * @return a new File; never null.
+	 */
+	static File getDefaultIndexFileFor(File sffFile){
+		return new File(sffFile.getPath() + DEFAULT_INDEX_SUFFIX);
+	}
+	/**
+	 * Load the index from the given sidecar file
+	 * if it is a valid index for the sff file,
+	 * otherwise build a new index and write it to the sidecar file.
+	 * @param sffFile the sff file to index; can not be null.
+	 * @param indexFile the sidecar index file; can not be null.
+	 * @return a new SffOffsetIndex; never null.
+	 * @throws IOException if there is a problem parsing the sff file
+	 * or reading or writing the index file.
+	 */
+	static SffOffsetIndex createOrLoad(File sffFile, File indexFile) throws IOException{
+		if(!SidecarHashIndex.isUpToDate(sffFile, indexFile, MAGIC_NUMBER)){
+			write(sffFile, indexFile);
+		}
+		return new SffOffsetIndex(sffFile, SidecarHashIndex.open(indexFile, MAGIC_NUMBER));
+	}
+	
+	private static void write(File sffFile, File indexFile) throws IOException{
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(sffFile, indexFile, MAGIC_NUMBER)){
+			try{
+				SffFileParser.create(sffFile).parse(new OffsetCollector(writer));
+			}catch(UncheckedIOException e){
+				throw e.getCause();
+			}
+			writer.commit(0);
+		}
+	}
+	/**
+	 * Get the number of reads in the index.
+	 * @return the number of reads; always &ge; 0.
+	 */
+	long getNumberOfRecords(){
+		return index.getNumberOfEntries();
+	}
+	/**
+	 * Get the offsets into the sff file of the
+	 * start of the read headers that might have the given read id in file order.
+	 * Since different ids can have the same hash value, some of these offsets
+	 * might be of reads with different ids.
+	 * @param id the read id to look for; can not be null.
+	 * @return an array of offsets; will never be null
+	 * but may be empty if there are no reads with that id.
+	 */
+	long[] getCandidateOffsetsFor(String id){
+		return index.getCandidateValuesFor(id);
+	}
+	/**
+	 * Get the offset into the sff file of the
+	 * start of the read header for the given read id.
+	 * If there are multiple reads with the same id,
+	 * then the first one in the file is returned.
+	 * @param id the read id to look for; can not be null.
+	 * @return the offset in bytes, or {@code -1} if 
+	 * the id is not in the index.
+	 * @throws IOException if there is a problem reading
+	 * the read header from the sff file.
+	 */
+	long getOffsetFor(String id) throws IOException{
+		for(long offset : getCandidateOffsetsFor(id)){
+			//different ids can have the same hash
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new RandomAccessFileInputStream(sffFile, offset), READ_HEADER_BUFFER_SIZE))){
+				if(id.equals(DefaultSffReadHeaderDecoder.INSTANCE.decodeReadHeader(in).getId())){
+					return offset;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	private static final class OffsetCollector implements SffVisitor{
+		private final SidecarHashIndex.Writer writer;
+		
+		OffsetCollector(SidecarHashIndex.Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void visitHeader(SffVisitorCallback callback,
+				SffCommonHeader header) {
+			//no-op
+		}
+
+		@Override
+		public SffFileReadVisitor visitRead(SffVisitorCallback callback,
+				SffReadHeader readHeader) {
+			SffVisitorMemento memento = callback.createMemento();
+			try {
+				writer.add(readHeader.getId(), SffFileParser.getFileOffsetFor(memento));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			//always skip read data
+			return null;
+		}
+
+		@Override
+		public void end() {
+			//no-op
+		}
+	}
+}
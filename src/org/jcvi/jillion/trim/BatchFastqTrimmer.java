@@ -0,0 +1,602 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.util.ThrowingStream;
+import org.jcvi.jillion.internal.core.util.DaemonThreadFactory;
+import org.jcvi.jillion.trace.fastq.FastqFileReader;
+import org.jcvi.jillion.trace.fastq.FastqParser;
+import org.jcvi.jillion.trace.fastq.FastqRecord;
+import org.jcvi.jillion.trace.fastq.FastqWriter;
+/**
+ * {@code BatchFastqTrimmer} streams {@link FastqRecord}s
+ * through a {@link TrimmerPipeline} using a pool of worker threads
+ * and writes the trimmed records to a {@link FastqWriter}.
+ * <p>
+ * Records are read in batches by a reader thread,
+ * each batch is trimmed by a worker thread and the trimmed batches
+ * are written by the calling thread so neither the input nor the {@link FastqWriter}
+ * have to be thread safe.  The number of batches that have been read but not yet
+ * written is bounded so memory usage stays constant no matter how large the input is.
+ * Batches are written either in the same order as the input or,
+ * in unordered mode, as soon as they are trimmed.
+ * </p>
+ * <p>
+ * Records that are trimmed to an empty range are not written.
+ * Each call to one of the {@code trim()} methods returns a {@link Stats}
+ * object with the number of records and time spent in each stage.
+ * </p>
+ * 
+ * @author dkatzel
+ * 
+ * @since 5.3
+ *
+ */
+public final class BatchFastqTrimmer {
+
+	private final TrimmerPipeline pipeline;
+	private final int numberOfThreads;
+	private final int batchSize;
+	private final int maxBatchesInFlight;
+	private final boolean preserveOrder;
+	
+	private BatchFastqTrimmer(Builder builder){
+		this.pipeline = builder.pipeline;
+		this.numberOfThreads = builder.numberOfThreads;
+		this.batchSize = builder.batchSize;
+		this.maxBatchesInFlight = builder.maxBatchesInFlight ==null ? 2 * numberOfThreads : builder.maxBatchesInFlight;
+		this.preserveOrder = builder.preserveOrder;
+	}
+	/**
+	 * Trim all the records in the given fastq file and write the trimmed
+	 * records to the given writer.  The writer is not closed.
+	 * 
+	 * @param fastqFile the fastq file to trim; can not be null.
+	 * @param writer the {@link FastqWriter} to write the trimmed records to; can not be null.
+	 * 
+	 * @return the {@link Stats} of this trim run; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading or writing the records.
+	 * @throws NullPointerException if any parameter is null.
+	 * 
+	 * @see FastqFileReader#read(File)
+	 */
+	public Stats trim(File fastqFile, FastqWriter writer) throws IOException{
+		try(FastqFileReader.Results results = FastqFileReader.read(fastqFile)){
+			return trim(results, writer);
+		}
+	}
+	/**
+	 * Trim all the records parsed by the given {@link FastqParser} and write the trimmed
+	 * records to the given writer.  The writer is not closed.
+	 * 
+	 * @param parser the {@link FastqParser} of the records to trim; can not be null.
+	 * @param writer the {@link FastqWriter} to write the trimmed records to; can not be null.
+	 * 
+	 * @return the {@link Stats} of this trim run; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading or writing the records.
+	 * @throws NullPointerException if any parameter is null.
+	 * 
+	 * @see FastqFileReader#read(FastqParser)
+	 */
+	public Stats trim(FastqParser parser, FastqWriter writer) throws IOException{
+		try(FastqFileReader.Results results = FastqFileReader.read(parser)){
+			return trim(results, writer);
+		}
+	}
+	
+	private Stats trim(FastqFileReader.Results results, FastqWriter writer) throws IOException{
+		try(ThrowingStream<FastqRecord> stream = results.records()){
+			return trim(stream.iterator(), writer);
+		}
+	}
+	/**
+	 * Trim all the records from the given Iterator and write the trimmed
+	 * records to the given writer.  The writer is not closed.
+	 * 
+	 * @param records the records to trim; can not be null.  The iterator
+	 * is only accessed by a single reader thread.
+	 * @param writer the {@link FastqWriter} to write the trimmed records to; can not be null.
+	 * The writer is only called by the calling thread.
+	 * The reader and worker threads are stopped and waited on
+	 * before this method returns or throws.
+	 * 
+	 * @return the {@link Stats} of this trim run; will never be null.
+	 * 
+	 * @throws IOException if there is a problem reading or writing the records
+	 * or if the thread was interrupted while waiting.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public Stats trim(Iterator<? extends FastqRecord> records, FastqWriter writer) throws IOException{
+		if(records ==null){
+			throw new NullPointerException("records can not be null");
+		}
+		if(writer ==null){
+			throw new NullPointerException("writer can not be null");
+		}
+		long start = System.nanoTime();
+		Counters counters = new Counters();
+		//every batch holds a permit until it is written so the queue can never be full
+		Semaphore inFlight = new Semaphore(maxBatchesInFlight);
+		BlockingQueue<Future<TrimmedBatch>> queue = new ArrayBlockingQueue<>(maxBatchesInFlight +1);
+		
+		ExecutorService workers = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory("jillion-fastq-trimmer"));
+		ExecutorService reader = Executors.newSingleThreadExecutor(new DaemonThreadFactory("jillion-fastq-trimmer-reader"));
+		try{
+			reader.execute(()-> read(records, workers, inFlight, queue, counters));
+			write(writer, inFlight, queue, counters);
+		}finally{
+			reader.shutdownNow();
+			workers.shutdownNow();
+			//make sure the reader isn't still using the records
+			//and no workers are still trimming
+			//before the caller closes the input
+			awaitTermination(reader);
+			awaitTermination(workers);
+		}
+		return counters.toStats(System.nanoTime() - start);
+	}
+	
+	private static void awaitTermination(ExecutorService executor){
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void read(Iterator<? extends FastqRecord> records, ExecutorService workers,
+			Semaphore inFlight, BlockingQueue<Future<TrimmedBatch>> queue, Counters counters){
+		int numberOfBatches=0;
+		try{
+			while(true){
+				inFlight.acquire();
+				long start = System.nanoTime();
+				List<FastqRecord> batch = new ArrayList<>(batchSize);
+				long bases=0;
+				while(batch.size() < batchSize && records.hasNext()){
+					FastqRecord record = records.next();
+					bases += record.getLength();
+					batch.add(record);
+				}
+				counters.read(batch.size(), bases, System.nanoTime() - start);
+				if(batch.isEmpty()){
+					inFlight.release();
+					break;
+				}
+				numberOfBatches++;
+				CompletableFuture<TrimmedBatch> future = CompletableFuture.supplyAsync(()-> trim(batch, counters), workers);
+				if(preserveOrder){
+					queue.add(future);
+				}else{
+					future.whenComplete((trimmed, t)-> queue.add(future));
+				}
+			}
+			queue.add(CompletableFuture.completedFuture(new TrimmedBatch(numberOfBatches)));
+		}catch(Throwable t){
+			CompletableFuture<TrimmedBatch> failed = new CompletableFuture<>();
+			failed.completeExceptionally(t);
+			queue.add(failed);
+		}
+	}
+	
+	private TrimmedBatch trim(List<FastqRecord> batch, Counters counters){
+		long start = System.nanoTime();
+		List<FastqRecord> trimmed = new ArrayList<>(batch.size());
+		for(FastqRecord record : batch){
+			Range range = pipeline.trim(record);
+			if(range.isEmpty()){
+				continue;
+			}
+			if(range.getLength() == record.getLength()){
+				trimmed.add(record);
+			}else{
+				trimmed.add(record.toBuilder().trim(range).build());
+			}
+		}
+		counters.trim(batch.size(), batch.size() - trimmed.size(), System.nanoTime() - start);
+		return new TrimmedBatch(trimmed);
+	}
+	
+	private void write(FastqWriter writer, Semaphore inFlight, BlockingQueue<Future<TrimmedBatch>> queue, Counters counters) throws IOException{
+		int numberOfBatchesWritten=0;
+		//in unordered mode the end of input can be seen before the last batches are trimmed
+		int numberOfBatches=-1;
+		while(numberOfBatches <0 || numberOfBatchesWritten < numberOfBatches){
+			TrimmedBatch batch = take(queue);
+			if(batch.isEndOfInput()){
+				numberOfBatches = batch.numberOfBatches;
+				continue;
+			}
+			long start = System.nanoTime();
+			long bases=0;
+			for(FastqRecord record : batch.records){
+				writer.write(record);
+				bases += record.getLength();
+			}
+			counters.write(batch.records.size(), bases, System.nanoTime() - start);
+			numberOfBatchesWritten++;
+			inFlight.release();
+		}
+	}
+	
+	private static TrimmedBatch take(BlockingQueue<Future<TrimmedBatch>> queue) throws IOException{
+		try {
+			return queue.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for trimmed records");
+		} catch (ExecutionException e) {
+			Throwable t = e.getCause();
+			if(t instanceof IOException){
+				throw (IOException) t;
+			}
+			if(t instanceof UncheckedIOException){
+				throw ((UncheckedIOException) t).getCause();
+			}
+			if(t instanceof RuntimeException){
+				throw (RuntimeException) t;
+			}
+			if(t instanceof Error){
+				throw (Error) t;
+			}
+			throw new IOException("error trimming records", t);
+		}
+	}
+	
+	private static final class TrimmedBatch{
+		private final List<FastqRecord> records;
+		private final int numberOfBatches;
+		
+		TrimmedBatch(List<FastqRecord> records){
+			this.records = records;
+			this.numberOfBatches = -1;
+		}
+		/**
+		 * Marker for the end of the input.
+		 * @param numberOfBatches the total number of batches read.
+		 */
+		TrimmedBatch(int numberOfBatches){
+			this.records = null;
+			this.numberOfBatches = numberOfBatches;
+		}
+		
+		boolean isEndOfInput(){
+			return records ==null;
+		}
+	}
+	
+	private static final class Counters{
+		private final LongAdder recordsRead = new LongAdder();
+		private final LongAdder basesRead = new LongAdder();
+		private final LongAdder readNanos = new LongAdder();
+		
+		private final LongAdder recordsTrimmed = new LongAdder();
+		private final LongAdder recordsFiltered = new LongAdder();
+		private final LongAdder trimNanos = new LongAdder();
+		
+		private final LongAdder recordsWritten = new LongAdder();
+		private final LongAdder basesWritten = new LongAdder();
+		private final LongAdder writeNanos = new LongAdder();
+		
+		void read(int records, long bases, long nanos){
+			recordsRead.add(records);
+			basesRead.add(bases);
+			readNanos.add(nanos);
+		}
+		
+		void trim(int records, int filtered, long nanos){
+			recordsTrimmed.add(records);
+			recordsFiltered.add(filtered);
+			trimNanos.add(nanos);
+		}
+		
+		void write(int records, long bases, long nanos){
+			recordsWritten.add(records);
+			basesWritten.add(bases);
+			writeNanos.add(nanos);
+		}
+		
+		Stats toStats(long elapsedNanos){
+			return new Stats(recordsRead.sum(), basesRead.sum(), readNanos.sum(),
+					recordsTrimmed.sum(), recordsFiltered.sum(), trimNanos.sum(),
+					recordsWritten.sum(), basesWritten.sum(), writeNanos.sum(),
+					elapsedNanos);
+		}
+	}
+	/**
+	 * The number of records processed and the time
+	 * spent in each stage of a {@link BatchFastqTrimmer} run.
+	 * Stage times only include the time spent doing work in that stage,
+	 * not time spent waiting on the other stages.  The trim time is the sum
+	 * over all the worker threads.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class Stats{
+		private final long recordsRead, basesRead, readNanos;
+		private final long recordsTrimmed, recordsFiltered, trimNanos;
+		private final long recordsWritten, basesWritten, writeNanos;
+		private final long elapsedNanos;
+		
+		Stats(long recordsRead, long basesRead, long readNanos,
+				long recordsTrimmed, long recordsFiltered, long trimNanos,
+				long recordsWritten, long basesWritten, long writeNanos,
+				long elapsedNanos) {
+			this.recordsRead = recordsRead;
+			this.basesRead = basesRead;
+			this.readNanos = readNanos;
+			this.recordsTrimmed = recordsTrimmed;
+			this.recordsFiltered = recordsFiltered;
+			this.trimNanos = trimNanos;
+			this.recordsWritten = recordsWritten;
+			this.basesWritten = basesWritten;
+			this.writeNanos = writeNanos;
+			this.elapsedNanos = elapsedNanos;
+		}
+		/**
+		 * Get the number of records read from the input.
+		 * @return the number of records read.
+		 */
+		public long getNumberOfRecordsRead() {
+			return recordsRead;
+		}
+		/**
+		 * Get the number of bases in all the records read from the input.
+		 * @return the number of bases read.
+		 */
+		public long getNumberOfBasesRead() {
+			return basesRead;
+		}
+		/**
+		 * Get the number of nanoseconds spent reading records.
+		 * @return the read time in nanoseconds.
+		 */
+		public long getReadNanos() {
+			return readNanos;
+		}
+		/**
+		 * Get the number of records run through the {@link TrimmerPipeline}.
+		 * @return the number of records trimmed.
+		 */
+		public long getNumberOfRecordsTrimmed() {
+			return recordsTrimmed;
+		}
+		/**
+		 * Get the number of records that were trimmed to an empty range
+		 * and were therefore not written.
+		 * @return the number of records filtered out.
+		 */
+		public long getNumberOfRecordsFiltered() {
+			return recordsFiltered;
+		}
+		/**
+		 * Get the total number of nanoseconds all the worker threads spent trimming records.
+		 * @return the trim time in nanoseconds.
+		 */
+		public long getTrimNanos() {
+			return trimNanos;
+		}
+		/**
+		 * Get the number of trimmed records written.
+		 * @return the number of records written.
+		 */
+		public long getNumberOfRecordsWritten() {
+			return recordsWritten;
+		}
+		/**
+		 * Get the number of bases in all the trimmed records written.
+		 * @return the number of bases written.
+		 */
+		public long getNumberOfBasesWritten() {
+			return basesWritten;
+		}
+		/**
+		 * Get the number of nanoseconds spent writing records.
+		 * @return the write time in nanoseconds.
+		 */
+		public long getWriteNanos() {
+			return writeNanos;
+		}
+		/**
+		 * Get the wall clock time of the whole trim run.
+		 * @return the elapsed time in nanoseconds.
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+		/**
+		 * Get the number of records read per second spent reading.
+		 * @return the read throughput in records per second.
+		 */
+		public double getReadRecordsPerSecond(){
+			return perSecond(recordsRead, readNanos);
+		}
+		/**
+		 * Get the number of records trimmed per second of worker thread time.
+		 * @return the trim throughput of a single worker in records per second.
+		 */
+		public double getTrimRecordsPerSecond(){
+			return perSecond(recordsTrimmed, trimNanos);
+		}
+		/**
+		 * Get the number of records written per second spent writing.
+		 * @return the write throughput in records per second.
+		 */
+		public double getWriteRecordsPerSecond(){
+			return perSecond(recordsWritten, writeNanos);
+		}
+		/**
+		 * Get the number of input records processed per second of wall clock time.
+		 * @return the overall throughput in records per second.
+		 */
+		public double getRecordsPerSecond(){
+			return perSecond(recordsRead, elapsedNanos);
+		}
+		
+		private static double perSecond(long count, long nanos){
+			if(nanos ==0){
+				return 0;
+			}
+			return count * 1_000_000_000D / nanos;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("Stats [read=%d records (%.1f/s), trimmed=%d records (%.1f/s per thread), filtered=%d, written=%d records (%.1f/s), overall=%.1f records/s]",
+					recordsRead, getReadRecordsPerSecond(),
+					recordsTrimmed, getTrimRecordsPerSecond(),
+					recordsFiltered,
+					recordsWritten, getWriteRecordsPerSecond(),
+					getRecordsPerSecond());
+		}
+	}
+	/**
+	 * Builder class to configure and build a {@link BatchFastqTrimmer}.
+	 * 
+	 * @author dkatzel
+	 *
+	 * @since 5.3
+	 */
+	public static final class Builder{
+		private static final int DEFAULT_BATCH_SIZE = 1024;
+		
+		private final TrimmerPipeline pipeline;
+		private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		private int batchSize = DEFAULT_BATCH_SIZE;
+		private Integer maxBatchesInFlight;
+		private boolean preserveOrder = true;
+		/**
+		 * Create a new Builder that will trim records using the given pipeline.
+		 * 
+		 * @param pipeline the {@link TrimmerPipeline} to use; can not be null.
+		 * The pipeline will be used by multiple threads at the same time.
+		 * 
+		 * @throws NullPointerException if pipeline is null.
+		 */
+		public Builder(TrimmerPipeline pipeline){
+			if(pipeline ==null){
+				throw new NullPointerException("pipeline can not be null");
+			}
+			this.pipeline = pipeline;
+		}
+		/**
+		 * Set the number of worker threads that trim records.
+		 * If not set, defaults to the number of available processors.
+		 * 
+		 * @param numberOfThreads the number of threads; must be &ge; 1.
+		 * 
+		 * @return this
+		 * 
+		 * @throws IllegalArgumentException if numberOfThreads &lt; 1.
+		 */
+		public Builder numberOfThreads(int numberOfThreads){
+			if(numberOfThreads <1){
+				throw new IllegalArgumentException("number of threads must be >= 1");
+			}
+			this.numberOfThreads = numberOfThreads;
+			return this;
+		}
+		/**
+		 * Set the number of records in each batch.
+		 * If not set, defaults to 1024.
+		 * 
+		 * @param batchSize the number of records per batch; must be &ge; 1.
+		 * 
+		 * @return this
+		 * 
+		 * @throws IllegalArgumentException if batchSize &lt; 1.
+		 */
+		public Builder batchSize(int batchSize){
+			if(batchSize <1){
+				throw new IllegalArgumentException("batch size must be >= 1");
+			}
+			this.batchSize = batchSize;
+			return this;
+		}
+		/**
+		 * Set the maximum number of batches that can be read
+		 * but not yet written at any one time.  The reader blocks
+		 * until a batch is written once this many batches are in flight.
+		 * If not set, defaults to twice the number of threads.
+		 * 
+		 * @param maxBatchesInFlight the maximum number of batches in flight; must be &ge; 1.
+		 * 
+		 * @return this
+		 * 
+		 * @throws IllegalArgumentException if maxBatchesInFlight &lt; 1.
+		 */
+		public Builder maxBatchesInFlight(int maxBatchesInFlight){
+			if(maxBatchesInFlight <1){
+				throw new IllegalArgumentException("max batches in flight must be >= 1");
+			}
+			this.maxBatchesInFlight = maxBatchesInFlight;
+			return this;
+		}
+		/**
+		 * Should the trimmed records be written in the same order
+		 * as the input.  If set to {@code false}, then batches are
+		 * written as soon as they are trimmed which can be faster
+		 * if some batches take longer to trim than others.
+		 * Records within a batch are always kept in input order.
+		 * If not set, defaults to {@code true}.
+		 * 
+		 * @param preserveOrder {@code true} to write records in input order;
+		 * {@code false} otherwise.
+		 * 
+		 * @return this
+		 */
+		public Builder preserveOrder(boolean preserveOrder){
+			this.preserveOrder = preserveOrder;
+			return this;
+		}
+		/**
+		 * Create a new {@link BatchFastqTrimmer} using the current configuration.
+		 * 
+		 * @return a new {@link BatchFastqTrimmer}; will never be null.
+		 */
+		public BatchFastqTrimmer build(){
+			return new BatchFastqTrimmer(this);
+		}
+	}
+}
@@ -68,6 +68,10 @@ public class TrimmerPipeline {
            return trim(trace.getQualitySequence());
         }else{           
             range = nucTrim(trace.getNucleotideSequence());  
+            if(range == EMPTY_BUILDER){
+                //don't intersect the shared empty builder
+                return EMPTY;
+            }
         }
         
         if(!qualityTrimmers.isEmpty()){                     
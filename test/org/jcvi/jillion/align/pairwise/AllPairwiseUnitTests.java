@@ -35,7 +35,9 @@ import org.junit.runners.Suite.SuiteClasses;
     	TestNucleotideNeedlemanWunschAligner.class,
     	TestProteinNeedlemanWunschAligner.class,
     	
-    	TestMultipleLocalAlignment.class
+    	TestMultipleLocalAlignment.class,
+    	TestLinearMemoryPairwiseAligners.class,
+    	TestStripedSmithWatermanScorer.class
     }
     )
 public class AllPairwiseUnitTests {
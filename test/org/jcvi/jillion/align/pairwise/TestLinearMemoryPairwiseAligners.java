@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.jcvi.jillion.align.BlosumMatrices;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.aa.ProteinSequence;
+import org.jcvi.jillion.core.residue.aa.ProteinSequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Test;
+
+public class TestLinearMemoryPairwiseAligners extends AbstractTestNucleotideAligner{
+
+	private final Random random = new Random(12345);
+	
+	private NucleotideSequence randomSequence(int length){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append("ACGT".charAt(random.nextInt(4)));
+		}
+		return new NucleotideSequenceBuilder(builder.toString()).build();
+	}
+	/**
+	 * Make a copy of the given sequence with some
+	 * substitutions and small indels.
+	 */
+	private NucleotideSequence mutate(NucleotideSequence seq){
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder();
+		String bases = "ACGT";
+		for(Nucleotide n : seq){
+			int r = random.nextInt(100);
+			if(r < 3){
+				builder.append(Nucleotide.parse(bases.charAt(random.nextInt(4))));
+			}else if (r < 5){
+				//deletion
+				continue;
+			}else if( r < 7){
+				builder.append(n);
+				builder.append(bases.substring(0, 1+ random.nextInt(3)));
+			}else{
+				builder.append(n);
+			}
+		}
+		return builder.build();
+	}
+	
+	private float rescore(NucleotidePairwiseSequenceAlignment alignment, float open, float extend){
+		Iterator<Nucleotide> queryIter = alignment.getGappedQueryAlignment().iterator();
+		Iterator<Nucleotide> subjectIter = alignment.getGappedSubjectAlignment().iterator();
+		float score=0;
+		boolean inQueryGap=false, inSubjectGap=false;
+		while(queryIter.hasNext()){
+			Nucleotide q = queryIter.next();
+			Nucleotide s = subjectIter.next();
+			if(q.isGap()){
+				score += inQueryGap ? extend : open;
+				inQueryGap=true;
+				inSubjectGap=false;
+			}else if(s.isGap()){
+				score += inSubjectGap ? extend : open;
+				inSubjectGap=true;
+				inQueryGap=false;
+			}else{
+				score += matrix.getValue(q, s);
+				inQueryGap=false;
+				inSubjectGap=false;
+			}
+		}
+		assertFalse(subjectIter.hasNext());
+		return score;
+	}
+	
+	private void assertIsGlobal(NucleotideSequence query, NucleotideSequence subject, NucleotidePairwiseSequenceAlignment alignment){
+		assertEquals(query, alignment.getGappedQueryAlignment().toBuilder().ungap().build());
+		assertEquals(subject, alignment.getGappedSubjectAlignment().toBuilder().ungap().build());
+		assertEquals(Range.ofLength(query.getLength()), alignment.getQueryRange().asRange());
+		assertEquals(Range.ofLength(subject.getLength()), alignment.getSubjectRange().asRange());
+	}
+	
+	@Test
+	public void exactMatch(){
+		NucleotideSequence seq = new NucleotideSequenceBuilder("ACGTACGT").build();
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment("ACGTACGT", "ACGTACGT", 16);
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, seq, matrix)
+										.gapPenalty(-2, -1)
+										.useLinearSpaceAlignment()
+										.build());
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, seq, matrix)
+										.gapPenalty(-2, -1)
+										.useGlobalAlignment()
+										.useBandedAlignment(0)
+										.build());
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, seq, matrix)
+										.gapPenalty(-2, -1)
+										.useLocalAlignment()
+										.useBandedAlignment(0)
+										.build());
+	}
+	
+	@Test
+	public void shouldIgnoreInputGaps(){
+		NucleotideSequence seq = new NucleotideSequenceBuilder("ACGTACGT").build();
+		NucleotideSequence gappedseq = new NucleotideSequenceBuilder("AC-GTA-CGT").build();
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment("ACGTACGT", "ACGTACGT", 16);
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, gappedseq, matrix)
+										.useLinearSpaceAlignment()
+										.build());
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, gappedseq, matrix)
+										.useGlobalAlignment()
+										.useBandedAlignment(2)
+										.build());
+	}
+	
+	@Test
+	public void oneSequenceLongerThanOtherAddGapsToShorterSeq(){
+		NucleotideSequence seq1 = new NucleotideSequenceBuilder("ACGTACGT").build();
+		NucleotideSequence seq2 = new NucleotideSequenceBuilder("ACGTACGTNNNN").build();
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment("ACGTACGT----", "ACGTACGTNNNN",14);
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq1, seq2, matrix)
+										.gapPenalty(-2, 0)
+										.useLinearSpaceAlignment()
+										.build());
+		//band of 0 still includes the diagonal to the end of the longer sequence
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq1, seq2, matrix)
+										.gapPenalty(-2, 0)
+										.useGlobalAlignment()
+										.useBandedAlignment(0)
+										.build());
+	}
+	
+	@Test
+	public void affineGapInMiddle(){
+		NucleotideSequence seq1 = new NucleotideSequenceBuilder("ACGTACGTCCCCGGCCAAGG").build();
+		NucleotideSequence seq2 = new NucleotideSequenceBuilder("ACGTACGTGGCCAAGG").build();
+		NucleotidePairwiseSequenceAlignment expected = createExpectedAlignment("ACGTACGTCCCCGGCCAAGG", "ACGTACGT----GGCCAAGG",32 -5 -3);
+		
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq1, seq2, matrix)
+										.gapPenalty(-5, -1)
+										.useLinearSpaceAlignment()
+										.build());
+		assertEquals(expected, PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq1, seq2, matrix)
+										.gapPenalty(-5, -1)
+										.useGlobalAlignment()
+										.useBandedAlignment(1)
+										.build());
+	}
+	
+	@Test
+	public void localBandedFindsEmbeddedMatch(){
+		NucleotideSequence query = new NucleotideSequenceBuilder("TTTTACGTACGTGGCC").build();
+		NucleotideSequence subject = new NucleotideSequenceBuilder("GGGGACGTACGTGGCAAAAA").build();
+		
+		NucleotidePairwiseSequenceAlignment fullMatrix = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																.gapPenalty(-3, -3)
+																.build();
+		NucleotidePairwiseSequenceAlignment banded = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																.gapPenalty(-3, -3)
+																.useBandedAlignment(4)
+																.build();
+		assertEquals(fullMatrix, banded);
+		assertEquals(Range.of(4, 14), banded.getQueryRange().asRange());
+	}
+	
+	@Test
+	public void randomGlobalAlignmentsAgree(){
+		float open = -6, extend = -1;
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(200 + random.nextInt(200));
+			NucleotideSequence subject = mutate(query);
+			
+			NucleotidePairwiseSequenceAlignment linear = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(open, extend)
+																	.useLinearSpaceAlignment()
+																	.build();
+			NucleotidePairwiseSequenceAlignment unlimitedBand = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(open, extend)
+																	.useGlobalAlignment()
+																	.useBandedAlignment(Integer.MAX_VALUE)
+																	.build();
+			NucleotidePairwiseSequenceAlignment banded = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(open, extend)
+																	.useGlobalAlignment()
+																	.useBandedAlignment(30)
+																	.build();
+			assertIsGlobal(query, subject, linear);
+			assertIsGlobal(query, subject, unlimitedBand);
+			assertIsGlobal(query, subject, banded);
+			
+			assertEquals(unlimitedBand.getScore(), linear.getScore(), 0.001F);
+			assertEquals(unlimitedBand.getScore(), banded.getScore(), 0.001F);
+			
+			assertEquals(linear.getScore(), rescore(linear, open, extend), 0.001F);
+			assertEquals(banded.getScore(), rescore(banded, open, extend), 0.001F);
+		}
+	}
+	
+	@Test
+	public void randomLocalAlignmentsWithLinearGapsMatchFullMatrix(){
+		for(int i=0; i< 20; i++){
+			NucleotideSequence query = randomSequence(100 + random.nextInt(100));
+			NucleotideSequence subject = new NucleotideSequenceBuilder(randomSequence(20))
+												.append(mutate(query))
+												.append(randomSequence(20))
+												.build();
+			
+			NucleotidePairwiseSequenceAlignment fullMatrix = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(-2, -2)
+																	.build();
+			NucleotidePairwiseSequenceAlignment banded = PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+																	.gapPenalty(-2, -2)
+																	.useBandedAlignment(60)
+																	.build();
+			assertEquals(fullMatrix.getScore(), banded.getScore(), 0.001F);
+			assertEquals(banded.getScore(), rescore(banded, -2, -2), 0.001F);
+		}
+	}
+	
+	@Test
+	public void proteinLinearSpaceAlignment(){
+		ProteinSequence seq = new ProteinSequenceBuilder("MKTAYIAKQRQISFVKSHFSRQ").build();
+		ProteinPairwiseSequenceAlignment linear = PairwiseAlignmentBuilder.createProtienAlignmentBuilder(seq, seq, BlosumMatrices.blosum62())
+															.gapPenalty(-11, -1)
+															.useLinearSpaceAlignment()
+															.build();
+		ProteinPairwiseSequenceAlignment fullMatrix = PairwiseAlignmentBuilder.createProtienAlignmentBuilder(seq, seq, BlosumMatrices.blosum62())
+															.gapPenalty(-11, -1)
+															.useGlobalAlignment()
+															.build();
+		assertEquals(fullMatrix, linear);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeBandShouldThrowException(){
+		NucleotideSequence seq = new NucleotideSequenceBuilder("ACGT").build();
+		PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, seq, matrix)
+									.useBandedAlignment(-1);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void linearSpaceLocalAlignmentShouldThrowException(){
+		NucleotideSequence seq = new NucleotideSequenceBuilder("ACGT").build();
+		PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(seq, seq, matrix)
+									.useLinearSpaceAlignment()
+									.useLocalAlignment()
+									.build();
+	}
+}
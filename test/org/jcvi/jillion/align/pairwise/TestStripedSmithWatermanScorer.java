@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.align.pairwise;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.jcvi.jillion.align.BlosumMatrices;
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrices;
+import org.jcvi.jillion.align.NucleotideSubstitutionMatrix;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.aa.AminoAcid;
+import org.jcvi.jillion.core.residue.aa.ProteinSequence;
+import org.jcvi.jillion.core.residue.aa.ProteinSequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.junit.Test;
+
+public class TestStripedSmithWatermanScorer extends AbstractTestNucleotideAligner{
+
+	private final Random random = new Random(5678);
+	
+	private NucleotideSequence randomSequence(int length){
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder();
+		for(int i=0; i< length; i++){
+			builder.append(Nucleotide.parse("ACGT".charAt(random.nextInt(4))));
+		}
+		return builder.build();
+	}
+	
+	private NucleotideSequence mutate(NucleotideSequence seq){
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder();
+		for(Nucleotide n : seq){
+			int r = random.nextInt(100);
+			if(r < 5){
+				builder.append(Nucleotide.parse("ACGT".charAt(random.nextInt(4))));
+			}else if(r < 8){
+				continue;
+			}else if(r < 11){
+				builder.append(n);
+				builder.append("GAT".substring(0, 1 + random.nextInt(3)));
+			}else{
+				builder.append(n);
+			}
+		}
+		return builder.build();
+	}
+	
+	private float expectedScore(NucleotideSequence query, NucleotideSequence subject, NucleotideSubstitutionMatrix matrix, float open, float extend){
+		return PairwiseAlignmentBuilder.createNucleotideAlignmentBuilder(query, subject, matrix)
+								.gapPenalty(open, extend)
+								.useBandedAlignment(Integer.MAX_VALUE)
+								.build()
+								.getScore();
+	}
+	
+	@Test
+	public void exactMatchInsideSubject(){
+		NucleotideSequence primer = new NucleotideSequenceBuilder("ACGTTGCAAGGT").build();
+		NucleotideSequence subject = new NucleotideSequenceBuilder("TTTTTTTTTTACGTTGCAAGGTTTTTT").build();
+		
+		StripedSmithWatermanScorer<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = 
+				StripedSmithWatermanScorer.createNucleotideScorer(primer, matrix, -4, -1);
+		
+		StripedSmithWatermanScorer.ScoreResult result = sut.score(subject);
+		assertEquals(24, result.getScore());
+		assertEquals(11, result.getQueryEnd());
+		assertEquals(21, result.getSubjectEnd());
+		
+		NucleotidePairwiseSequenceAlignment alignment = sut.align(subject);
+		assertEquals(24F, alignment.getScore(), 0F);
+		assertEquals(Range.of(0, 11), alignment.getQueryRange().asRange());
+		assertEquals(Range.of(10, 21), alignment.getSubjectRange().asRange());
+		assertEquals(primer, alignment.getGappedSubjectAlignment());
+	}
+	
+	@Test
+	public void nothingAlignsShouldReturnZeroScore(){
+		NucleotideSequence query = new NucleotideSequenceBuilder("AAAA").build();
+		NucleotideSequence subject = new NucleotideSequenceBuilder("CCCCCCCC").build();
+		StripedSmithWatermanScorer.ScoreResult result = StripedSmithWatermanScorer.createNucleotideScorer(query, matrix, -4, -1)
+																		.score(subject);
+		assertEquals(0, result.getScore());
+		assertEquals(-1, result.getQueryEnd());
+		assertEquals(-1, result.getSubjectEnd());
+	}
+	
+	@Test
+	public void scoresMatchFullMatrix(){
+		NucleotideSubstitutionMatrix nuc44 = NucleotideSubstitutionMatrices.getNuc44();
+		float[][] gapPenalties = new float[][]{ {-10, -1}, {-3, -3}, {-5, 0}, {0,0}};
+		for(float[] gaps : gapPenalties){
+			for(int i=0; i< 10; i++){
+				//include lengths that are not multiples of the number of lanes
+				NucleotideSequence query = randomSequence(1 + random.nextInt(150));
+				NucleotideSequence subject = new NucleotideSequenceBuilder(randomSequence(random.nextInt(50)))
+													.append(mutate(query))
+													.append(randomSequence(random.nextInt(50)))
+													.build();
+				StripedSmithWatermanScorer<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = 
+						StripedSmithWatermanScorer.createNucleotideScorer(query, nuc44, gaps[0], gaps[1]);
+				float expected = expectedScore(query, subject, nuc44, gaps[0], gaps[1]);
+				assertEquals(expected, sut.score(subject).getScore(), 0F);
+				
+				NucleotidePairwiseSequenceAlignment alignment = sut.align(subject);
+				assertEquals(expected, alignment.getScore(), 0F);
+				//the alignment coordinates must point to the aligned residues
+				assertEquals(alignment.getGappedQueryAlignment().toBuilder().ungap().build(),
+						query.toBuilder().trim(alignment.getQueryRange().asRange()).build());
+				assertEquals(alignment.getGappedSubjectAlignment().toBuilder().ungap().build(),
+						subject.toBuilder().trim(alignment.getSubjectRange().asRange()).build());
+			}
+		}
+	}
+	
+	@Test
+	public void scorerCanBeReused(){
+		NucleotideSequence query = randomSequence(40);
+		StripedSmithWatermanScorer<Nucleotide, NucleotideSequence, NucleotidePairwiseSequenceAlignment> sut = 
+				StripedSmithWatermanScorer.createNucleotideScorer(query, matrix, -4, -1);
+		for(int i=0; i< 20; i++){
+			NucleotideSequence subject = randomSequence(10 + random.nextInt(100));
+			assertEquals(expectedScore(query, subject, matrix, -4, -1), sut.score(subject).getScore(), 0F);
+		}
+	}
+	
+	@Test
+	public void proteinScoresMatchFullMatrix(){
+		AminoAcid[] aminoAcids = AminoAcid.values();
+		for(int i=0; i< 10; i++){
+			ProteinSequenceBuilder queryBuilder = new ProteinSequenceBuilder();
+			for(int j=0; j< 20 + random.nextInt(50); j++){
+				//only use the 20 standard amino acids
+				queryBuilder.append(aminoAcids[random.nextInt(20)]);
+			}
+			ProteinSequence query = queryBuilder.build();
+			ProteinSequence subject = new ProteinSequenceBuilder(query)
+											.delete(Range.of(5,7))
+											.insert(12, "WWW")
+											.build();
+			
+			float expected = PairwiseAlignmentBuilder.createProtienAlignmentBuilder(query, subject, BlosumMatrices.blosum62())
+														.gapPenalty(-11, -1)
+														.useBandedAlignment(Integer.MAX_VALUE)
+														.build()
+														.getScore();
+			StripedSmithWatermanScorer<AminoAcid, ProteinSequence, ProteinPairwiseSequenceAlignment> sut = 
+					StripedSmithWatermanScorer.createProteinScorer(query, BlosumMatrices.blosum62(), -11, -1);
+			assertEquals(expected, sut.score(subject).getScore(), 0F);
+			assertEquals(expected, sut.align(subject).getScore(), 0F);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void fractionalGapPenaltyShouldThrowException(){
+		StripedSmithWatermanScorer.createNucleotideScorer(randomSequence(10), matrix, -2.5F, -1);
+	}
+}
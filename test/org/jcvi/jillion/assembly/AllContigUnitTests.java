@@ -33,6 +33,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses(
     { 
     TestDefaultPlacedRead.class,
+    TestContigReadsIntersecting.class,
    
     TestContigDataStoreTransformationService.class,
     
@@ -24,7 +24,14 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import org.jcvi.jillion.core.Direction;
 import org.jcvi.jillion.core.Range;
@@ -33,7 +40,12 @@ import org.jcvi.jillion.core.datastore.DataStoreUtil;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
 import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
 import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.jcvi.jillion.core.pos.PositionSequence;
+import org.jcvi.jillion.core.qual.QualitySequence;
 import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 public class TestContigDataStoreTransformationService {
 
 	 
@@ -75,10 +87,147 @@ public class TestContigDataStoreTransformationService {
 		
 	}
 	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException(){
+		new ContigDataStoreTransfomationService.Builder(toDataStore(createContigs(1, 1, new Random(1))))
+											.numberOfThreads(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void fewerContigsInFlightThanThreadsShouldThrowIllegalArgumentException(){
+		new ContigDataStoreTransfomationService.Builder(toDataStore(createContigs(1, 1, new Random(1))))
+											.numberOfThreads(4)
+											.maxContigsInFlight(2)
+											.build();
+	}
+	
+	@Test
+	public void parallelTransformationInOrderShouldMatchSerialTransformation(){
+		ContigDataStore<?,?> datastore = toDataStore(createContigs(200, 20, new Random(1234)));
+		
+		List<String> expected = transform(new ContigDataStoreTransfomationService.Builder(datastore));
+		List<String> actual = transform(new ContigDataStoreTransfomationService.Builder(datastore)
+																.numberOfThreads(4)
+																.maxContigsInFlight(5));
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void parallelTransformationOutOfOrderShouldKeepEachContigTogether(){
+		ContigDataStore<?,?> datastore = toDataStore(createContigs(200, 20, new Random(5678)));
+		
+		List<String> expected = transform(new ContigDataStoreTransfomationService.Builder(datastore));
+		List<String> actual = transform(new ContigDataStoreTransfomationService.Builder(datastore)
+																.numberOfThreads(4)
+																.preserveContigOrder(false));
+		//end assembly is always last
+		assertEquals("end", actual.get(actual.size()-1));
+		assertEquals(groupByContig(expected), groupByContig(actual));
+	}
+	
+	@Test
+	public void errorInWorkerShouldBePropagated(){
+		ContigDataStore<?,?> datastore = toDataStore(createContigs(50, 5, new Random(1)));
+		ContigDataStoreTransfomationService sut = new ContigDataStoreTransfomationService.Builder(datastore)
+																.numberOfThreads(4)
+																.build();
+		RuntimeException expected = new RuntimeException("expected");
+		try{
+			sut.transform(new AbstractAssemblyTransformer() {
+				@Override
+				public void referenceOrConsensus(String id, NucleotideSequence gappedReference) {
+					if("contig10".equals(id)){
+						throw expected;
+					}
+				}
+			});
+		}catch(RuntimeException e){
+			assertEquals(expected, e.getCause() ==null ? e : e.getCause());
+			return;
+		}
+		throw new AssertionError("should have thrown exception");
+	}
+	
+	private static List<String> transform(ContigDataStoreTransfomationService.Builder builder){
+		List<String> calls = new ArrayList<>();
+		builder.build().transform(new AbstractAssemblyTransformer() {
+
+			@Override
+			public void referenceOrConsensus(String id,
+					NucleotideSequence gappedReference) {
+				calls.add("ref " + id + " " + gappedReference);
+			}
+
+			@Override
+			public void aligned(String readId,
+					NucleotideSequence nucleotideSequence,
+					QualitySequence qualitySequence,
+					PositionSequence positions, URI sourceFileUri,
+					String referenceId, long gappedStartOffset,
+					Direction direction, NucleotideSequence gappedSequence,
+					ReadInfo readInfo) {
+				calls.add("read " + readId + " "+ referenceId + " " + gappedStartOffset 
+						+ " " + direction + " " + gappedSequence + " " + readInfo);
+			}
+
+			@Override
+			public void endAssembly() {
+				calls.add("end");
+			}
+			
+		});
+		return calls;
+	}
+	/**
+	 * Split the calls into a map of the calls for each contig
+	 * checking that each contig's calls are contiguous.
+	 */
+	private static Map<String, List<String>> groupByContig(List<String> calls){
+		Map<String, List<String>> map = new LinkedHashMap<>();
+		List<String> current = null;
+		for(String call : calls){
+			if(call.startsWith("ref ")){
+				String id = call.split(" ")[1];
+				current = new ArrayList<>();
+				assertNull(map.put(id, current));
+			}
+			if(current !=null && !"end".equals(call)){
+				current.add(call);
+			}
+		}
+		//sort so order of contigs doesn't matter
+		return new TreeMap<>(map);
+	}
+	
+	private static Map<String, Contig<?>> createContigs(int numberOfContigs, int readsPerContig, Random random){
+		Map<String, Contig<?>> map = new LinkedHashMap<>();
+		for(int i=0; i< numberOfContigs; i++){
+			StringBuilder consensus = new StringBuilder();
+			int length = 50 + random.nextInt(200);
+			for(int j=0; j< length; j++){
+				consensus.append("ACGT".charAt(random.nextInt(4)));
+			}
+			String contigId = "contig"+i;
+			DefaultContig.Builder builder = new DefaultContig.Builder(contigId, consensus.toString());
+			for(int j=0; j< readsPerContig; j++){
+				int start = random.nextInt(length-20);
+				int end = start + 10 + random.nextInt(Math.min(40, length - start -10));
+				builder.addRead(contigId+"_read"+j, start, consensus.substring(start, end));
+			}
+			map.put(contigId, builder.build());
+		}
+		return map;
+	}
+	
 	@SuppressWarnings("unchecked")
 	private ContigDataStore<?,?> toDataStore(Contig<?> contig){
 		return DataStore.of( Collections.singletonMap(contig.getId(), contig), ContigDataStore.class);
 	}
 	
+	@SuppressWarnings("unchecked")
+	private static ContigDataStore<?,?> toDataStore(Map<String, Contig<?>> contigs){
+		return DataStore.of(contigs, ContigDataStore.class);
+	}
+	
 	
 }
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestContigReadsIntersecting {
+
+	private static final int CONSENSUS_LENGTH = 2000;
+	
+	private Contig<AssembledRead> contig;
+	/**
+	 * Only implements the abstract methods
+	 * so the default linear scan implementations are used.
+	 */
+	private Contig<AssembledRead> unindexed;
+	
+	@Before
+	public void createContig(){
+		Random random = new Random(1234);
+		StringBuilder consensus = new StringBuilder(CONSENSUS_LENGTH);
+		for(int i=0; i< CONSENSUS_LENGTH; i++){
+			consensus.append("ACGT".charAt(random.nextInt(4)));
+		}
+		DefaultContig.Builder builder = new DefaultContig.Builder("contig", consensus.toString());
+		for(int i=0; i< 500; i++){
+			//mostly short reads with a few long ones
+			int length = random.nextInt(20) ==0 ? 1 + random.nextInt(800) : 1 + random.nextInt(100);
+			int start = random.nextInt(CONSENSUS_LENGTH - length +1);
+			builder.addRead("read"+i, start, consensus.substring(start, start+length));
+		}
+		contig = builder.build();
+		unindexed = new Contig<AssembledRead>() {
+
+			@Override
+			public String getId() {
+				return contig.getId();
+			}
+
+			@Override
+			public long getNumberOfReads() {
+				return contig.getNumberOfReads();
+			}
+
+			@Override
+			public StreamingIterator<AssembledRead> getReadIterator() {
+				return contig.getReadIterator();
+			}
+
+			@Override
+			public NucleotideSequence getConsensusSequence() {
+				return contig.getConsensusSequence();
+			}
+
+			@Override
+			public AssembledRead getRead(String id) {
+				return contig.getRead(id);
+			}
+
+			@Override
+			public boolean containsRead(String readId) {
+				return contig.containsRead(readId);
+			}
+		};
+	}
+	
+	private static List<AssembledRead> toList(StreamingIterator<AssembledRead> iter){
+		List<AssembledRead> list = new ArrayList<>();
+		try{
+			while(iter.hasNext()){
+				list.add(iter.next());
+			}
+		}finally{
+			iter.close();
+		}
+		return list;
+	}
+	
+	private Set<String> bruteForce(Range range){
+		Set<String> ids = new HashSet<>();
+		try(StreamingIterator<AssembledRead> iter = contig.getReadIterator()){
+			while(iter.hasNext()){
+				AssembledRead read = iter.next();
+				if(read.asRange().intersects(range)){
+					ids.add(read.getId());
+				}
+			}
+		}
+		return ids;
+	}
+	
+	private static Set<String> ids(List<AssembledRead> reads){
+		Set<String> ids = new HashSet<>();
+		for(AssembledRead read : reads){
+			ids.add(read.getId());
+		}
+		assertEquals("duplicate reads returned", reads.size(), ids.size());
+		return ids;
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullRangeShouldThrowNPE(){
+		contig.getReadsIntersecting(null);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullRangeShouldThrowNPEForDefaultImplementation(){
+		unindexed.getReadsIntersecting(null);
+	}
+	
+	@Test
+	public void emptyRangeIntersectsNothing(){
+		Range empty = new Range.Builder().shift(100).build();
+		assertTrue(toList(contig.getReadsIntersecting(empty)).isEmpty());
+		assertTrue(toList(unindexed.getReadsIntersecting(empty)).isEmpty());
+	}
+	
+	@Test
+	public void rangeOutsideOfContigIntersectsNothing(){
+		assertTrue(toList(contig.getReadsIntersecting(Range.of(CONSENSUS_LENGTH, CONSENSUS_LENGTH+100))).isEmpty());
+		assertTrue(toList(contig.getReadsIntersecting(Range.of(-100, -1))).isEmpty());
+	}
+	
+	@Test
+	public void entireContigReturnsAllReads(){
+		List<AssembledRead> reads = toList(contig.getReadsIntersecting(Range.ofLength(CONSENSUS_LENGTH)));
+		assertEquals(contig.getNumberOfReads(), reads.size());
+	}
+	
+	@Test
+	public void randomRangesMatchBruteForce(){
+		Random random = new Random(5678);
+		for(int i=0; i< 1000; i++){
+			int start = random.nextInt(CONSENSUS_LENGTH +50) - 25;
+			int length = 1 + random.nextInt(random.nextBoolean() ? 10 : 300);
+			Range range = Range.of(start, start + length -1);
+			
+			Set<String> expected = bruteForce(range);
+			assertEquals(range.toString(), expected, ids(toList(contig.getReadsIntersecting(range))));
+			assertEquals(range.toString(), expected, ids(toList(unindexed.getReadsIntersecting(range))));
+		}
+	}
+	
+	@Test
+	public void indexedReadsAreSortedByStartOffset(){
+		List<AssembledRead> reads = toList(contig.getReadsIntersecting(Range.of(500, 1500)));
+		assertFalse(reads.isEmpty());
+		for(int i=1; i< reads.size(); i++){
+			assertTrue(reads.get(i-1).getGappedStartOffset() <= reads.get(i).getGappedStartOffset());
+		}
+	}
+	
+	@Test
+	public void readsCoveringEveryOffsetMatchBruteForce(){
+		for(int i=0; i< CONSENSUS_LENGTH; i++){
+			Set<String> expected = bruteForce(Range.of(i));
+			assertEquals(Integer.toString(i), expected, ids(toList(contig.getReadsCovering(i))));
+		}
+	}
+	
+	@Test
+	public void readsCoveringMatchesDefaultImplementation(){
+		for(int i=0; i< CONSENSUS_LENGTH; i+=37){
+			assertEquals(Integer.toString(i), 
+					ids(toList(unindexed.getReadsCovering(i))), 
+					ids(toList(contig.getReadsCovering(i))));
+		}
+	}
+	
+	@Test
+	public void contigWithNoReads(){
+		Contig<AssembledRead> empty = new DefaultContig.Builder("empty", "ACGT").build();
+		assertTrue(toList(empty.getReadsIntersecting(Range.of(0,3))).isEmpty());
+		assertTrue(toList(empty.getReadsCovering(2)).isEmpty());
+	}
+	
+	@Test
+	public void contigWithOneRead(){
+		Contig<AssembledRead> single = new DefaultContig.Builder("single", "ACGTACGT")
+												.addRead("read", 2, "GTAC")
+												.build();
+		assertTrue(toList(single.getReadsCovering(1)).isEmpty());
+		assertEquals(1, toList(single.getReadsCovering(2)).size());
+		assertEquals(1, toList(single.getReadsCovering(5)).size());
+		assertTrue(toList(single.getReadsCovering(6)).isEmpty());
+	}
+}
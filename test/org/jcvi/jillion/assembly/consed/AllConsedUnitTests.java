@@ -23,6 +23,7 @@ package org.jcvi.jillion.assembly.consed;
 import org.jcvi.jillion.assembly.consed.ace.AllAceUnitTests;
 import org.jcvi.jillion.assembly.consed.nav.AllConsedNavigationUnitTests;
 import org.jcvi.jillion.assembly.consed.phd.AllPhdUnitTests;
+import org.jcvi.jillion.assembly.consed.transform.TestConsedTransformationService;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -50,7 +51,9 @@ import org.junit.runners.Suite.SuiteClasses;
         
         AllAceUnitTests.class,
         
-        AllConsedNavigationUnitTests.class
+        AllConsedNavigationUnitTests.class,
+        
+        TestConsedTransformationService.class
     }
     )
 public class AllConsedUnitTests {
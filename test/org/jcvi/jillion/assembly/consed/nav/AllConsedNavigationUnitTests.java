@@ -31,6 +31,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	        TestConsensusNavigationElement.class,
 	        TestConsensusNavigationElementFactoryMethod.class,
 	        TestReadNavigationElement.class,
+	        TestReadNavigationElementsForRegion.class,
 	       
 	        TestConsedNavigationWriter.class,
 	        TestConsedNavigationParser.class
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.consed.nav;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.Test;
+
+public class TestReadNavigationElementsForRegion {
+
+	private final Contig<AssembledRead> contig = new DefaultContig.Builder("contig", "ACGTACGTACGT")
+															.addRead("read1", 0, "ACGTAC")
+															.addRead("read2", 4, "ACGT")
+															.addRead("gapped", 3, "T-ACG")
+															.addRead("reverse", 8, "ACGT", Direction.REVERSE)
+															.build();
+	private final String comment = "a comment";
+	
+	@Test(expected = NullPointerException.class)
+	public void nullContigShouldThrowNPE(){
+		ReadNavigationElement.buildReadNavigationElements(null, Range.of(5,8), comment);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullRangeShouldThrowNPE(){
+		ReadNavigationElement.buildReadNavigationElements(contig, null, comment);
+	}
+	
+	@Test
+	public void onlyIntersectingPartOfEachReadIsNavigated(){
+		List<ReadNavigationElement> actual = ReadNavigationElement.buildReadNavigationElements(contig, Range.of(5,8), comment);
+		
+		assertEquals(new HashSet<>(Arrays.asList(
+							new ReadNavigationElement("read1", Range.of(5,5), comment),
+							new ReadNavigationElement("read2", Range.of(1,3), comment),
+							new ReadNavigationElement("gapped", Range.of(1,3), comment),
+							//reverse reads are navigated in uncomplemented coordinates
+							new ReadNavigationElement("reverse", Range.of(3,3), comment)
+							)),
+					new HashSet<>(actual));
+		assertEquals(4, actual.size());
+	}
+	
+	@Test
+	public void regionWithNoReads(){
+		assertTrue(ReadNavigationElement.buildReadNavigationElements(contig, Range.of(20,30), comment).isEmpty());
+	}
+}
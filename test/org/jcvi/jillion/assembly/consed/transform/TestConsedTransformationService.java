@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.consed.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jcvi.jillion.assembly.AbstractAssemblyTransformer;
+import org.jcvi.jillion.assembly.ReadInfo;
+import org.jcvi.jillion.assembly.consed.ConsedUtil;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.pos.PositionSequence;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+/**
+ * Runs an ace file through the serial
+ * and parallel modes of {@link ConsedTransformationService}.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestConsedTransformationService {
+
+	private static final String ACE_PREFIX = "fluSample";
+	//fluSample.ace has 8 contigs with 543 reads total
+	private static final int NUMBER_OF_CONTIGS = 8;
+	private static final int NUMBER_OF_READS = 543;
+	
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private File consedDir;
+	
+	@Before
+	public void setupConsedDir() throws IOException{
+		ResourceHelper resources = new ResourceHelper(TestConsedTransformationService.class);
+		File ace = resources.getFile("../ace/files/fluSample.ace");
+		
+		consedDir = tmpDir.newFolder("consed");
+		File editDir = ConsedUtil.getEditDirFor(consedDir);
+		editDir.mkdirs();
+		Files.copy(ace.toPath(), new File(editDir, ACE_PREFIX + ".ace.1").toPath());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void fewerContigsInFlightThanThreadsShouldThrowIllegalArgumentException() throws IOException{
+		new ConsedTransformationService.Builder(consedDir, ACE_PREFIX)
+											.numberOfThreads(4)
+											.maxContigsInFlight(2)
+											.build();
+	}
+	
+	@Test
+	public void serialTransformationSeesEveryContigAndRead() throws IOException{
+		List<String> calls = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX));
+		
+		assertCallCounts(calls);
+		assertEquals("end", calls.get(calls.size()-1));
+	}
+	
+	@Test
+	public void parallelTransformationInOrderShouldMatchSerialTransformation() throws IOException{
+		List<String> expected = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX));
+		List<String> actual = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX)
+																.numberOfThreads(4)
+																.maxContigsInFlight(5));
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void parallelTransformationOutOfOrderShouldKeepEachContigTogether() throws IOException{
+		List<String> expected = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX));
+		List<String> actual = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX)
+																.numberOfThreads(4)
+																.preserveContigOrder(false));
+		//end assembly is always last
+		assertEquals("end", actual.get(actual.size()-1));
+		assertEquals(groupByContig(expected), groupByContig(actual));
+	}
+	
+	@Test
+	public void parallelWorkersShouldHaltAfterTheirOwnContig() throws IOException{
+		//each worker starts parsing at its contig's memento;
+		//if it didn't halt at the end of that contig
+		//it would also transform every contig after it
+		//in the file so we would see duplicates.
+		List<String> calls = transform(new ConsedTransformationService.Builder(consedDir, ACE_PREFIX)
+																.numberOfThreads(NUMBER_OF_CONTIGS)
+																.preserveContigOrder(false));
+		assertCallCounts(calls);
+		//throws AssertionError if any contig is seen twice
+		groupByContig(calls);
+	}
+	
+	private static void assertCallCounts(List<String> calls){
+		int refs=0, reads=0, ends=0;
+		for(String call : calls){
+			if(call.startsWith("ref ")){
+				refs++;
+			}else if(call.startsWith("read ")){
+				reads++;
+			}else if("end".equals(call)){
+				ends++;
+			}
+		}
+		assertEquals(NUMBER_OF_CONTIGS, refs);
+		assertEquals(NUMBER_OF_READS, reads);
+		assertEquals(1, ends);
+	}
+	
+	private static List<String> transform(ConsedTransformationService.Builder builder) throws IOException{
+		List<String> calls = new ArrayList<>();
+		builder.build().transform(new AbstractAssemblyTransformer() {
+
+			@Override
+			public void referenceOrConsensus(String id,
+					NucleotideSequence gappedReference) {
+				calls.add("ref " + id + " " + gappedReference);
+			}
+
+			@Override
+			public void aligned(String readId,
+					NucleotideSequence nucleotideSequence,
+					QualitySequence qualitySequence,
+					PositionSequence positions, URI sourceFileUri,
+					String referenceId, long gappedStartOffset,
+					Direction direction, NucleotideSequence gappedSequence,
+					ReadInfo readInfo) {
+				calls.add("read " + readId + " "+ referenceId + " " + gappedStartOffset 
+						+ " " + direction + " " + gappedSequence + " " + readInfo);
+			}
+
+			@Override
+			public void endAssembly() {
+				calls.add("end");
+			}
+			
+		});
+		return calls;
+	}
+	/**
+	 * Split the calls into a map of the calls for each contig
+	 * checking that each contig's calls are contiguous
+	 * and that no contig is seen twice.
+	 */
+	private static Map<String, List<String>> groupByContig(List<String> calls){
+		Map<String, List<String>> map = new LinkedHashMap<>();
+		List<String> current = null;
+		for(String call : calls){
+			if(call.startsWith("ref ")){
+				String id = call.split(" ")[1];
+				current = new ArrayList<>();
+				assertNull(id + " seen twice", map.put(id, current));
+			}
+			if(current !=null && !"end".equals(call)){
+				current.add(call);
+			}
+		}
+		//sort so order of contigs doesn't matter
+		return new TreeMap<>(map);
+	}
+}
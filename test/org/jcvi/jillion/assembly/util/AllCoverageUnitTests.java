@@ -35,6 +35,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestDefaultCoverageRegion.class,
         TestDefaultCoverageMapBuilder.class,
         TestCoverageRestrictedMap.class,
+        TestCompactCoverageMap.class,
         
         TestCoverageMapBuilderUseUngappedCoords.class,
         
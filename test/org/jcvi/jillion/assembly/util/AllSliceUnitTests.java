@@ -45,6 +45,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestCompactedSliceMap.class,
         TestSliceMapBuilderUsingQualityDataStore.class,
         TestSliceMapBuilderUsingDefaultQualities.class,
+        TestStreamingSliceBuilder.class,
         
         TestParallelSliceCollector.class,
         TestSliceCollector.class,
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.Rangeable;
+import org.junit.Test;
+/**
+ * Compares compact coverage maps
+ * to the default CoverageMap implementation.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestCompactCoverageMap {
+
+	private static final class Element implements Rangeable{
+		private final Range range;
+		
+		Element(long begin, long end) {
+			this.range = Range.of(begin, end);
+		}
+
+		@Override
+		public Range asRange() {
+			return range;
+		}
+		@Override
+		public String toString() {
+			return range.toString();
+		}
+	}
+	
+	private static List<Element> randomElements(Random random, int size, int maxStart, int maxLength){
+		List<Element> list = new ArrayList<>(size);
+		for(int i=0; i< size; i++){
+			long begin = random.nextInt(maxStart);
+			list.add(new Element(begin, begin + random.nextInt(maxLength)));
+		}
+		return list;
+	}
+	
+	private static <T extends Rangeable> CoverageMap<T> defaultMap(List<T> elements, boolean includeOrigin){
+		return new CoverageMapBuilder<T>(elements).includeOrigin(includeOrigin).build();
+	}
+	private static <T extends Rangeable> CoverageMap<T> compactMap(List<T> elements, boolean includeOrigin){
+		return new CoverageMapBuilder<T>(elements).includeOrigin(includeOrigin).compactRegions(true).build();
+	}
+	
+	private static void assertMapsEqual(CoverageMap<?> expected, CoverageMap<?> actual){
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.getStats(), actual.getStats());
+		for(int i=0; i< expected.getNumberOfRegions(); i++){
+			assertEquals(expected.getRegion(i).getCoverageDepth(), actual.getRegion(i).getCoverageDepth());
+		}
+	}
+	
+	@Test
+	public void emptyMap(){
+		CoverageMap<Range> map = compactMap(Collections.<Range>emptyList(), false);
+		assertTrue(map.isEmpty());
+		assertEquals(0, map.getNumberOfRegions());
+		assertEquals(new CoverageMapStats(0, 0, 0), map.getStats());
+		assertNull(map.getRegionWhichCovers(0));
+		assertTrue(map.getRegionsWhichIntersect(Range.of(0, 10)).isEmpty());
+		assertMapsEqual(defaultMap(Collections.<Range>emptyList(), false), map);
+	}
+	
+	@Test
+	public void emptyRangesAreIgnored(){
+		List<Range> list = Arrays.asList(Range.of(0, 9), new Range.Builder(0).shift(5).build(), Range.of(5,14));
+		assertMapsEqual(defaultMap(list, false), compactMap(list, false));
+	}
+	
+	@Test
+	public void gapsHave0xRegions(){
+		List<Range> list = Arrays.asList(Range.of(0, 9), Range.of(20, 29), Range.of(25, 40));
+		CoverageMap<Range> map = compactMap(list, false);
+		assertEquals(5, map.getNumberOfRegions());
+		assertEquals(0, map.getRegion(1).getCoverageDepth());
+		assertEquals(Range.of(10, 19), map.getRegion(1).asRange());
+		assertMapsEqual(defaultMap(list, false), map);
+	}
+	
+	@Test
+	public void includeOriginWhenAllPositive(){
+		List<Range> list = Arrays.asList(Range.of(10, 19), Range.of(15, 29));
+		CoverageMap<Range> map = compactMap(list, true);
+		assertEquals(Range.of(0, 9), map.getRegion(0).asRange());
+		assertMapsEqual(defaultMap(list, true), map);
+	}
+	
+	@Test
+	public void includeOriginWhenAllNegative(){
+		List<Range> list = Arrays.asList(Range.of(-20, -10), Range.of(-15, -5));
+		CoverageMap<Range> map = compactMap(list, true);
+		assertEquals(Range.of(-4, 0), map.getRegion(map.getNumberOfRegions()-1).asRange());
+		assertMapsEqual(defaultMap(list, true), map);
+	}
+	
+	@Test
+	public void includeOriginWhenAlreadyCovered(){
+		List<Range> list = Arrays.asList(Range.of(-20, 10), Range.of(-15, -5));
+		assertMapsEqual(defaultMap(list, true), compactMap(list, true));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void combinedWithMaxCoverageShouldThrowException(){
+		new CoverageMapBuilder<Range>(Arrays.asList(Range.of(0, 9)))
+					.maxAllowedCoverage(5)
+					.compactRegions(true)
+					.build();
+	}
+	
+	@Test
+	public void randomMapsMatchDefaultImplementation(){
+		Random random = new Random(12345);
+		for(int size : new int[]{1,2,3,7,8,9,15,16,17,31,33,100, 257, 1000}){
+			for(int trial =0; trial< 5; trial++){
+				List<Element> elements = randomElements(random, size, 500, 80);
+				for(boolean includeOrigin : new boolean[]{true, false}){
+					assertMapsEqual(defaultMap(elements, includeOrigin), compactMap(elements, includeOrigin));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void regionElementsMatchBruteForce(){
+		Random random = new Random(6789);
+		for(int size : new int[]{1,5,16,17,64,65,300, 2000}){
+			List<Element> elements = randomElements(random, size, 1000, 200);
+			CoverageMap<Element> map = compactMap(elements, false);
+			for(CoverageRegion<Element> region : map){
+				long begin = region.asRange().getBegin();
+				List<Element> expected = elements.stream()
+														.filter(e-> e.asRange().intersects(Range.of(begin)))
+														.sorted((a,b)-> Long.compare(a.asRange().getBegin(), b.asRange().getBegin()))
+														.collect(Collectors.toList());
+				List<Element> actual = region.streamElements().collect(Collectors.toList());
+				//stable sort so same order as ties are by insertion order
+				assertEquals(expected, actual);
+				assertEquals(region.getCoverageDepth(), actual.size());
+			}
+		}
+	}
+	
+	@Test
+	public void regionLookups(){
+		Random random = new Random(1111);
+		List<Element> elements = randomElements(random, 200, 500, 50);
+		CoverageMap<Element> expected = defaultMap(elements, false);
+		CoverageMap<Element> actual = compactMap(elements, false);
+		for(long i=-10; i< 600; i++){
+			assertEquals(expected.getRegionWhichCovers(i), actual.getRegionWhichCovers(i));
+		}
+		for(long i=-10; i< 600; i+=7){
+			Range range = Range.of(i, i+ random.nextInt(40));
+			assertEquals(expected.getRegionsWhichIntersect(range), actual.getRegionsWhichIntersect(range));
+			assertEquals(expected.regions(range).collect(Collectors.toList()), 
+					actual.regions(range).collect(Collectors.toList()));
+		}
+		assertEquals(expected.regions().collect(Collectors.toList()), 
+				actual.regions().collect(Collectors.toList()));
+	}
+	
+	@Test
+	public void collectorMatchesDefaultImplementation(){
+		Random random = new Random(2222);
+		List<Element> elements = randomElements(random, 500, 1000, 80);
+		CoverageMap<Element> actual = elements.parallelStream()
+												.collect(CoverageMapCollectors.toCompactCoverageMap());
+		assertTrue(actual instanceof CompactCoverageMap);
+		assertMapsEqual(defaultMap(elements, false), actual);
+	}
+	
+	@Test
+	public void computeStatsOfCompactMapDoesNotLookAtElements(){
+		Random random = new Random(3333);
+		AtomicInteger elementLookups = new AtomicInteger();
+		List<Rangeable> elements = new ArrayList<>();
+		for(Element e : randomElements(random, 500, 1000, 80)){
+			elements.add(()->{
+				elementLookups.incrementAndGet();
+				return e.asRange();
+			});
+		}
+		CoverageMap<Rangeable> map = elements.stream()
+												.collect(CoverageMapCollectors.toCompactCoverageMap());
+		elementLookups.set(0);
+		
+		CoverageMapStats stats = map.regions()
+									.parallel()
+									.collect(CoverageMapCollectors.computeStats());
+		assertEquals(0, elementLookups.get());
+		assertEquals(defaultMap(elements, false).getStats(), stats);
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequenceDataStore;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.Test;
+
+public class TestStreamingSliceBuilder extends AbstractTestSliceMap{
+
+	private static final PhredQuality DEFAULT_QUALITY = PhredQuality.valueOf(20);
+	
+	@Override
+	protected SliceMap createSliceMapFor(Contig<AssembledRead> contig,
+			QualitySequenceDataStore qualityDatastore,
+			GapQualityValueStrategy qualityValueStrategy) {
+		List<Slice> slices = new ArrayList<>();
+		new SliceMapBuilder<AssembledRead>(contig, qualityDatastore)
+					.gapQualityValueStrategy(qualityValueStrategy)
+					.streamSlices((slice, offset) ->{
+						assertEquals(slices.size(), offset);
+						slices.add(slice);
+					});
+		return new DefaultSliceMap(slices);
+	}
+	
+	private static Contig<AssembledRead> createRandomContig(Random random, int consensusLength, int numberOfReads, int maxReadLength){
+		StringBuilder consensus = new StringBuilder(consensusLength);
+		String acgt = "ACGT";
+		for(int i=0; i< consensusLength; i++){
+			consensus.append(acgt.charAt(random.nextInt(4)));
+		}
+		String consensusString = consensus.toString();
+		DefaultContig.Builder builder = new DefaultContig.Builder("contig", consensusString);
+		for(int i=0; i< numberOfReads; i++){
+			int start = random.nextInt(consensusLength);
+			int end = Math.min(consensusLength, start + 1 + random.nextInt(maxReadLength));
+			builder.addRead("read"+i, start, consensusString.substring(start, end));
+		}
+		return builder.build();
+	}
+	
+	@Test
+	public void sameSlicesAsSliceMap(){
+		Random random = new Random(42);
+		for(int maxReadLength : new int[]{5, 100, 3000}){
+			Contig<AssembledRead> contig = createRandomContig(random, 5000, 400, maxReadLength);
+			SliceMap expected = new SliceMapBuilder<AssembledRead>(contig, DEFAULT_QUALITY).build();
+			
+			List<Slice> actual = new ArrayList<>();
+			new SliceMapBuilder<AssembledRead>(contig, DEFAULT_QUALITY)
+						.streamSlices((slice, offset) -> actual.add(slice));
+			
+			assertEquals(expected.getSize(), actual.size());
+			for(int i=0; i< actual.size(); i++){
+				assertEquals(expected.getSlice(i), actual.get(i));
+			}
+		}
+	}
+	
+	@Test
+	public void onlyActiveWindowIsKeptInMemory() throws DataStoreException{
+		Random random = new Random(1234);
+		Contig<AssembledRead> contig = createRandomContig(random, 20_000, 2000, 50);
+		List<AssembledRead> reads = new ArrayList<>();
+		contig.getReadIterator().forEachRemaining(reads::add);
+		reads.sort((a,b)-> Long.compare(a.getGappedStartOffset(), b.getGappedStartOffset()));
+		
+		long[] numberOfSlices = new long[1];
+		try(StreamingSliceBuilder<AssembledRead> builder = new StreamingSliceBuilder<>(contig.getConsensusSequence(), DEFAULT_QUALITY,
+				(slice, offset) -> numberOfSlices[0]++)){
+			for(AssembledRead read : reads){
+				builder.add(read);
+				assertTrue(builder.getCurrentWindowLength() <= 50);
+			}
+		}
+		assertEquals(20_000, numberOfSlices[0]);
+	}
+	
+	@Test
+	public void uncoveredOffsetsAreEmittedAsEmptySlices() throws DataStoreException{
+		Contig<AssembledRead> contig = new DefaultContig.Builder("contigId", "ACGTACGTAC")
+											.addRead("read1", 2, "GTA")
+											.build();
+		List<Slice> slices = new ArrayList<>();
+		StreamingSliceBuilder<AssembledRead> builder = new StreamingSliceBuilder<>(contig.getConsensusSequence(), DEFAULT_QUALITY,
+				(slice, offset) -> slices.add(slice));
+		builder.add(contig.getRead("read1"));
+		assertEquals(2, slices.size());
+		builder.close();
+		//closing again does nothing
+		builder.close();
+		assertEquals(10, slices.size());
+		for(int i=0; i< slices.size(); i++){
+			assertEquals(i>=2 && i<5 ? 1 : 0, slices.get(i).getCoverageDepth());
+			assertEquals(contig.getConsensusSequence().get(i), slices.get(i).getConsensusCall());
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void readsOutOfOrderShouldThrowException() throws DataStoreException{
+		Contig<AssembledRead> contig = new DefaultContig.Builder("contigId", "ACGTACGTAC")
+											.addRead("read1", 2, "GTA")
+											.addRead("read2", 0, "ACG")
+											.build();
+		StreamingSliceBuilder<AssembledRead> builder = new StreamingSliceBuilder<>(contig.getConsensusSequence(), DEFAULT_QUALITY,
+				(slice, offset) -> {});
+		builder.add(contig.getRead("read1"));
+		builder.add(contig.getRead("read2"));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void addAfterCloseShouldThrowException() throws DataStoreException{
+		Contig<AssembledRead> contig = new DefaultContig.Builder("contigId", "ACGTACGTAC")
+											.addRead("read1", 2, "GTA")
+											.build();
+		StreamingSliceBuilder<AssembledRead> builder = new StreamingSliceBuilder<>(contig.getConsensusSequence(), DEFAULT_QUALITY,
+				(slice, offset) -> {});
+		builder.close();
+		builder.add(contig.getRead("read1"));
+	}
+}
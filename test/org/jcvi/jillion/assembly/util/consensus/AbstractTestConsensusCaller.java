@@ -71,4 +71,17 @@ public abstract class AbstractTestConsensusCaller {
     public void assertConsensusIsCorrect(){
         assertEquals(expectedConsensus, computeConsensus(slices));
     }
+    
+    @Test
+    public void assertConsensusFromSliceCountsIsCorrect(){
+    	if(!(consensusCaller instanceof SliceCountsConsensusCaller)){
+    		return;
+    	}
+    	SliceCountsConsensusCaller countsCaller = (SliceCountsConsensusCaller) consensusCaller;
+    	List<ConsensusResult> consensus = new ArrayList<ConsensusResult>();
+        for(Slice slice : slices){
+            consensus.add(countsCaller.callConsensus(new SliceCounts(slice)));
+        }
+        assertEquals(expectedConsensus, consensus);
+    }
 }
@@ -38,7 +38,9 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNoAmbiguityConsensusCaller.class,
         TestMostFrequentBasecallConsensusCaller.class,
         TestNextGenReferenceConsensusRecaller.class,
-        TestMajorityConsensusN.class
+        TestMajorityConsensusN.class,
+        TestSliceCounts.class,
+        TestBatchConsensusCaller.class
     }
     )
 public class AllConsensusUnitTests {
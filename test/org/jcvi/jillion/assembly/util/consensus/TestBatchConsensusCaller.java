@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.jcvi.jillion.assembly.AssembledRead;
+import org.jcvi.jillion.assembly.Contig;
+import org.jcvi.jillion.assembly.util.SliceMap;
+import org.jcvi.jillion.assembly.util.SliceMapBuilder;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.internal.assembly.DefaultContig;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBatchConsensusCaller {
+
+	private static SliceMap sliceMap;
+	
+	@BeforeClass
+	public static void createSliceMap(){
+		Random random = new Random(13);
+		String acgt = "ACGT-";
+		int consensusLength = 3000;
+		StringBuilder consensus = new StringBuilder(consensusLength);
+		for(int i=0; i< consensusLength; i++){
+			consensus.append(acgt.charAt(random.nextInt(4)));
+		}
+		DefaultContig.Builder builder = new DefaultContig.Builder("contig", consensus.toString());
+		for(int i=0; i< 500; i++){
+			int start = random.nextInt(consensusLength -1);
+			int end = Math.min(consensusLength, start + 1 + random.nextInt(200));
+			StringBuilder read = new StringBuilder(consensus.substring(start, end));
+			//add some differences
+			for(int j=0; j< read.length(); j+=1+random.nextInt(10)){
+				read.setCharAt(j, acgt.charAt(random.nextInt(5)));
+			}
+			builder.addRead("read"+i, start, read.toString());
+		}
+		Contig<AssembledRead> contig = builder.build();
+		sliceMap = new SliceMapBuilder<AssembledRead>(contig, PhredQuality.valueOf(20)).build();
+	}
+	
+	private static void assertSameAsSerial(ConsensusCaller caller, int rangeLength){
+		NucleotideSequenceBuilder expected = new NucleotideSequenceBuilder((int) sliceMap.getSize());
+		int[] expectedQualities = new int[(int) sliceMap.getSize()];
+		for(int i=0; i< sliceMap.getSize(); i++){
+			ConsensusResult result = caller.callConsensus(sliceMap.getSlice(i));
+			expected.append(result.getConsensus());
+			expectedQualities[i] = result.getConsensusQuality();
+		}
+		int[] actualQualities = new int[(int) sliceMap.getSize()];
+		NucleotideSequence actual = BatchConsensusCaller.callConsensus(sliceMap, caller, actualQualities, rangeLength);
+		assertEquals(expected.build(), actual);
+		for(int i=0; i< actualQualities.length; i++){
+			assertEquals(expectedQualities[i], actualQualities[i]);
+		}
+	}
+	
+	@Test
+	public void churchillWaterman(){
+		assertSameAsSerial(new ChurchillWatermanConsensusCaller(PhredQuality.valueOf(30)), BatchConsensusCaller.DEFAULT_RANGE_LENGTH);
+	}
+	@Test
+	public void smallRanges(){
+		assertSameAsSerial(new ChurchillWatermanConsensusCaller(PhredQuality.valueOf(30)), 7);
+		assertSameAsSerial(new ConicConsensusCaller(PhredQuality.valueOf(30)), 1);
+	}
+	@Test
+	public void mostFrequentBasecall(){
+		assertSameAsSerial(MostFrequentBasecallConsensusCaller.INSTANCE, 100);
+	}
+	@Test
+	public void acgtn(){
+		assertSameAsSerial(new AcgtnConsensusCaller(PhredQuality.valueOf(30)), 100);
+	}
+	@Test
+	public void callerThatNeedsFullSlice(){
+		assertSameAsSerial(new NextGenReferenceConsensusRecaller(), 100);
+	}
+	@Test
+	public void withoutQualities(){
+		ConsensusCaller caller = new TigrAnnotationConsensusCaller(PhredQuality.valueOf(30));
+		int[] qualities = new int[(int) sliceMap.getSize()];
+		assertEquals(BatchConsensusCaller.callConsensus(sliceMap, caller, qualities), 
+				BatchConsensusCaller.callConsensus(sliceMap, caller));
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void qualityArrayTooSmallShouldThrowException(){
+		BatchConsensusCaller.callConsensus(sliceMap, MostFrequentBasecallConsensusCaller.INSTANCE, new int[10]);
+	}
+}
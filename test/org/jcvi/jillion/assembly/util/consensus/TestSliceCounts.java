@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.assembly.util.consensus;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jcvi.jillion.assembly.util.Slice;
+import org.jcvi.jillion.assembly.util.SliceBuilder;
+import org.jcvi.jillion.assembly.util.SliceElement;
+import org.jcvi.jillion.core.Direction;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.residue.nt.Nucleotide;
+import org.junit.Test;
+
+public class TestSliceCounts {
+
+	private final Slice slice = new SliceBuilder(Nucleotide.Adenine)
+										.add("read1", Nucleotide.Adenine, PhredQuality.valueOf(30), Direction.FORWARD)
+										.add("read2", Nucleotide.Adenine, PhredQuality.valueOf(20), Direction.REVERSE)
+										.add("read3", Nucleotide.Cytosine, PhredQuality.valueOf(15), Direction.FORWARD)
+										.add("read4", Nucleotide.Unknown, PhredQuality.valueOf(5), Direction.FORWARD)
+										.build();
+	
+	@Test
+	public void empty(){
+		SliceCounts sut = new SliceCounts();
+		assertEquals(0, sut.getCoverageDepth());
+		assertEquals(0, sut.getTotalQualitySum());
+		assertEquals(0, sut.getNumberOfDifferentBases());
+		for(Nucleotide n : Nucleotide.values()){
+			assertEquals(0, sut.getCount(n));
+			assertEquals(0, sut.getQualitySum(n));
+			assertEquals(0, sut.getMaxQuality(n));
+		}
+	}
+	
+	@Test
+	public void countsFromSlice(){
+		SliceCounts sut = new SliceCounts(slice);
+		assertEquals(4, sut.getCoverageDepth());
+		assertEquals(70, sut.getTotalQualitySum());
+		assertEquals(3, sut.getNumberOfDifferentBases());
+		
+		assertEquals(2, sut.getCount(Nucleotide.Adenine));
+		assertEquals(50, sut.getQualitySum(Nucleotide.Adenine));
+		assertEquals(30, sut.getMaxQuality(Nucleotide.Adenine));
+		
+		assertEquals(1, sut.getCount(Nucleotide.Cytosine));
+		assertEquals(15, sut.getQualitySum(Nucleotide.Cytosine));
+		
+		assertEquals(1, sut.getCount(Nucleotide.Unknown));
+		assertEquals(0, sut.getCount(Nucleotide.Gap));
+	}
+	
+	@Test
+	public void addingElementsOneAtATimeSameAsFromSlice(){
+		SliceCounts sut = new SliceCounts();
+		for(SliceElement e : slice){
+			sut.add(e.getBase(), e.getQuality());
+		}
+		assertEquals(new SliceCounts(slice).toString(), sut.toString());
+		assertEquals(slice.getNucleotideCounts().get(Nucleotide.Adenine).intValue(), sut.getCount(Nucleotide.Adenine));
+	}
+	
+	@Test
+	public void resetClearsEverything(){
+		SliceCounts sut = new SliceCounts(slice).reset();
+		assertEquals(0, sut.getCoverageDepth());
+		assertEquals(0, sut.getTotalQualitySum());
+		assertEquals(0, sut.getCount(Nucleotide.Adenine));
+		assertEquals(0, sut.getMaxQuality(Nucleotide.Adenine));
+		
+		sut.add(Nucleotide.Gap, 12);
+		assertEquals(1, sut.getCoverageDepth());
+		assertEquals(12, sut.getQualitySum(Nucleotide.Gap));
+	}
+}
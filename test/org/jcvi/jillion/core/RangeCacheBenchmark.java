@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Standalone throughput harness for the {@link Range} interning cache.
+ * This is not a unit test; it is run by hand to compare
+ * the {@value Range#CACHE_PROPERTY} implementations.
+ * <p>
+ * Each cache type is measured in its own JVM since the cache is chosen
+ * when {@link Range} is loaded.  Several threads repeatedly call
+ * {@link Range#of(long, long)} over a fixed set of distinct ranges
+ * so almost every call is a cache hit.
+ * <pre>
+ * java -cp target/classes:target/test-classes org.jcvi.jillion.core.RangeCacheBenchmark [threads] [distinctRanges] [seconds]
+ * </pre>
+ * Defaults are 4 threads, 100,000 distinct ranges and 5 seconds per cache type.
+ * 
+ * @author dkatzel
+ *
+ */
+public final class RangeCacheBenchmark {
+
+	private static final String[] CACHE_TYPES = {"synchronized", "soft", "weak", "none"};
+	
+	private RangeCacheBenchmark(){
+		//can not instantiate
+	}
+	
+	public static void main(String[] args) throws Exception{
+		int numberOfThreads = args.length >0 ? Integer.parseInt(args[0]) : 4;
+		int distinctRanges = args.length >1 ? Integer.parseInt(args[1]) : 100_000;
+		int seconds = args.length >2 ? Integer.parseInt(args[2]) : 5;
+		
+		if(args.length >3 && "measure".equals(args[3])){
+			measure(numberOfThreads, distinctRanges, seconds);
+			return;
+		}
+		String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+		for(String type : CACHE_TYPES){
+			Process process = new ProcessBuilder(java, 
+							"-D" + Range.CACHE_PROPERTY + "=" + type,
+							"-cp", System.getProperty("java.class.path"),
+							RangeCacheBenchmark.class.getName(),
+							Integer.toString(numberOfThreads), Integer.toString(distinctRanges), 
+							Integer.toString(seconds), "measure")
+						.inheritIO()
+						.start();
+			if(process.waitFor() !=0){
+				throw new IOException("benchmark of " + type + " cache failed");
+			}
+		}
+	}
+	
+	private static void measure(int numberOfThreads, int distinctRanges, int seconds) throws InterruptedException{
+		//warm up so the JIT has compiled the hot paths
+		//and the cache is populated before we start timing
+		runFor(numberOfThreads, distinctRanges, TimeUnit.SECONDS.toNanos(1));
+		
+		long calls = runFor(numberOfThreads, distinctRanges, TimeUnit.SECONDS.toNanos(seconds));
+		
+		System.out.printf("%-12s %d threads %,d ranges : %.1f Mops/s%n", 
+				System.getProperty(Range.CACHE_PROPERTY), numberOfThreads, distinctRanges,
+				calls / (seconds * 1_000_000D));
+	}
+	
+	private static long runFor(int numberOfThreads, int distinctRanges, long durationNanos) throws InterruptedException{
+		LongAdder calls = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>(numberOfThreads);
+		long[] sinks = new long[numberOfThreads];
+		for(int t=0; t< numberOfThreads; t++){
+			int threadIndex = t;
+			Thread thread = new Thread(()->{
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				long end = System.nanoTime() + durationNanos;
+				//each thread starts at a different offset
+				//so they don't all ask for the same range at once
+				int i = threadIndex * (distinctRanges / numberOfThreads);
+				long sink=0;
+				long count=0;
+				while(System.nanoTime() < end){
+					for(int j=0; j< 1000; j++){
+						i++;
+						if(i >= distinctRanges){
+							i=0;
+						}
+						sink += Range.of(i, i + 100).getLength();
+					}
+					count += 1000;
+				}
+				calls.add(count);
+				//keep the JIT from removing the loop
+				sinks[threadIndex] = sink;
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for(Thread thread : threads){
+			thread.join();
+		}
+		return calls.sum();
+	}
+}
@@ -30,13 +30,16 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 
 import org.jcvi.jillion.core.datastore.DataStore;
 import org.jcvi.jillion.core.datastore.DataStoreException;
 import org.jcvi.jillion.core.datastore.DataStoreUtil;
+import org.jcvi.jillion.core.datastore.DataStoreUtil.CacheableDataStore;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -113,8 +116,91 @@ public class TestCachedDataStore {
         verify(delegate);
     }
     
+    @Test
+    public void cacheStatsCountHitsAndMisses() throws DataStoreException{
+        expect(delegate.get(id_1)).andReturn(value1);
+        expect(delegate.get(id_2)).andReturn(value2);
+        expect(delegate.get(id_3)).andReturn(value3);
+        replay(delegate);
+        cache.get(id_1);
+        cache.get(id_1);
+        cache.get(id_2);
+        cache.get(id_3);
+        
+        DataStoreCacheStats stats = ((CacheableDataStore<?>)cache).getCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(4, stats.getRequestCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+        assertEquals(0.25D, stats.getHitRate(), 0.0001D);
+        verify(delegate);
+    }
+    
+    @Test
+    public void otherCoreMethodsAreDelegated() throws DataStoreException{
+        expect(delegate.contains(id_1)).andReturn(true);
+        expect(delegate.getNumberOfRecords()).andReturn(3L);
+        expect(delegate.isClosed()).andReturn(false);
+        replay(delegate);
+        assertTrue(cache.contains(id_1));
+        assertEquals(3L, cache.getNumberOfRecords());
+        assertFalse(cache.isClosed());
+        verify(delegate);
+    }
+    
+    @Test
+    public void extraSubInterfaceMethodsAreDelegated() throws DataStoreException{
+        DataStoreSubInterfaceWithExtraMethod extraDelegate = createMock(DataStoreSubInterfaceWithExtraMethod.class);
+        expect(extraDelegate.getExtra()).andReturn("extra");
+        expect(extraDelegate.get(id_1)).andReturn(value1);
+        replay(extraDelegate);
+        DataStoreSubInterfaceWithExtraMethod sut = DataStore.cache(DataStoreSubInterfaceWithExtraMethod.class, extraDelegate, 2);
+        assertEquals("extra", sut.getExtra());
+        assertEquals(value1,sut.get(id_1));
+        assertEquals(value1,sut.get(id_1));
+        verify(extraDelegate);
+    }
+    
+    @Test
+    public void cachingPlainDataStoreDoesNotNeedProxy() throws DataStoreException{
+        @SuppressWarnings("unchecked")
+        DataStore<Long> plainDelegate = createMock(DataStore.class);
+        expect(plainDelegate.get(id_1)).andReturn(value1);
+        replay(plainDelegate);
+        @SuppressWarnings("unchecked")
+        DataStore<Long> sut = DataStore.cache(DataStore.class, plainDelegate, 2);
+        assertFalse(Proxy.isProxyClass(sut.getClass()));
+        assertTrue(DataStoreUtil.isACachedDataStore(sut));
+        assertEquals(value1,sut.get(id_1));
+        assertEquals(value1,sut.get(id_1));
+        verify(plainDelegate);
+    }
+    
+    @Test
+    public void weightedCacheEvictsByTotalWeight() throws DataStoreException{
+        expect(delegate.get(id_1)).andReturn(value1).times(2);
+        expect(delegate.get(id_2)).andReturn(value2);
+        replay(delegate);
+        //each value weighs 6 so only 1 fits
+        DataStoreSubInterface sut = DataStore.cache(DataStoreSubInterface.class, delegate, 10L, v-> 6L);
+        assertEquals(value1,sut.get(id_1));
+        assertEquals(value1,sut.get(id_1));
+        assertEquals(value2,sut.get(id_2));
+        assertEquals(value1,sut.get(id_1));
+        
+        DataStoreCacheStats stats = ((CacheableDataStore<?>)sut).getCacheStats();
+        assertEquals(6L, stats.getWeightedSize());
+        assertEquals(1, stats.getSize());
+        verify(delegate);
+    }
+    
     interface DataStoreSubInterface extends DataStore<Long>{
         
     }
     
+    public interface DataStoreSubInterfaceWithExtraMethod extends DataStore<Long>{
+        String getExtra();
+    }
+    
 }
@@ -57,6 +57,8 @@ import org.junit.runners.Suite.SuiteClasses;
         TestSubLengthInputStream.class,
         
         TestTextLineParser.class,
+        TestByteLineReader.class,
+        TestSidecarHashIndex.class,
         TestBufferSize.class,
         
         TestPushBackBufferedReader.class
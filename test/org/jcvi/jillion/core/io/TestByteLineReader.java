@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.core.util.JoinedStringBuilder;
+import org.jcvi.jillion.internal.core.io.ByteLineReader;
+import org.junit.Test;
+public class TestByteLineReader {
+
+	@Test(expected = NullPointerException.class)
+	public void nullInputStreamShouldThrowNPE() throws IOException{
+		new ByteLineReader((InputStream)null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeOffsetShouldThrowIllegalArgumentException() throws IOException{
+		new ByteLineReader(toInputStream("line"), -1);
+	}
+	
+	@Test
+	public void emptyInputHasNoLines() throws IOException{
+		try(ByteLineReader sut = new ByteLineReader(toInputStream(""))){
+			assertFalse(sut.nextLine());
+			assertEquals(0, sut.getPosition());
+		}
+	}
+	
+	@Test
+	public void oneLineOnlyNoEOL() throws IOException{
+		testOneLineOnlyNoEOL(0);
+	}
+	@Test
+	public void oneLineOnlyNoEOLWithSetPosition() throws IOException{
+		testOneLineOnlyNoEOL(1000);
+	}
+	
+	private void testOneLineOnlyNoEOL(int position) throws IOException{
+		String expectedLine = "this is only 1 line";
+		try(ByteLineReader sut = new ByteLineReader(toInputStream(expectedLine),position)){
+			assertTrue(sut.nextLine());
+			assertEquals(expectedLine, sut.getLineAsString());
+			assertEquals(position, sut.getLineStartPosition());
+			assertFalse(sut.nextLine());
+			assertEquals(position +expectedLine.length(),sut.getPosition());
+		}
+	}
+	
+	@Test
+	public void multiLinesUnix() throws IOException{
+		testMultipleLines(0, "\n");
+	}
+	@Test
+	public void multiLinesSetPositionUnix() throws IOException{
+		testMultipleLines(1000, "\n");
+	}
+	
+	@Test
+	public void multiLinesWindows() throws IOException{
+		testMultipleLines(0, "\r\n");
+	}
+	@Test
+	public void multiLinesSetPositionWindows() throws IOException{
+		testMultipleLines(1000, "\r\n");
+	}
+	
+	@Test
+	public void multiLinesOS9() throws IOException{
+		testMultipleLines(0, "\r");
+	}
+	@Test
+	public void multiLinesSetPositionOS9() throws IOException{
+		testMultipleLines(1000, "\r");
+	}
+	
+	@Test
+	public void windowsEndOfLineSplitAcrossReads() throws IOException{
+		String eol = "\r\n";
+		String data = createMultiLineString(eol);
+		//only return 1 byte at a time so every
+		//\r\n gets split across buffer fills
+		InputStream in = new FilterInputStream(toInputStream(data)){
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(1, len));
+			}
+		};
+		assertLinesCorrect(new ByteLineReader(in, 0), 0, eol);
+	}
+	
+	@Test
+	public void linesLongerThanBufferGrowBuffer() throws IOException{
+		char[] longLine = new char[200_000];
+		Arrays.fill(longLine, 'A');
+		String expectedLine = new String(longLine);
+		String data = expectedLine + "\n" + expectedLine + "\nshort";
+		try(ByteLineReader sut = new ByteLineReader(toInputStream(data))){
+			assertTrue(sut.nextLine());
+			assertEquals(expectedLine, sut.getLineAsString());
+			assertTrue(sut.nextLine());
+			assertEquals(expectedLine, sut.getLineAsString());
+			assertEquals(expectedLine.length()+1, sut.getLineStartPosition());
+			assertTrue(sut.nextLine());
+			assertEquals("short", sut.getLineAsString());
+			assertFalse(sut.nextLine());
+			assertEquals(data.length(), sut.getPosition());
+		}
+	}
+	
+	@Test
+	public void readFromArraySlice() throws IOException{
+		byte[] data = "ignore\nfirst\r\nsecond\nignore".getBytes(IOUtil.UTF_8);
+		int offset = 7;
+		int length = "first\r\nsecond\n".length();
+		ByteLineReader sut = new ByteLineReader(data, offset, length, 500);
+		assertTrue(sut.nextLine());
+		assertEquals("first", sut.getLineAsString());
+		assertEquals(500, sut.getLineStartPosition());
+		assertTrue(sut.nextLine());
+		assertEquals("second", sut.getLineAsString());
+		assertEquals(507, sut.getLineStartPosition());
+		assertFalse(sut.nextLine());
+		assertEquals(500 + length, sut.getPosition());
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void arraySliceOutOfBoundsShouldThrowException(){
+		new ByteLineReader(new byte[10], 5, 6, 0);
+	}
+	
+	private void testMultipleLines(int position, String eol) throws IOException{
+		assertLinesCorrect(new ByteLineReader(toInputStream(createMultiLineString(eol)),position), position, eol);
+	}
+	
+	private static final List<String> LINES = Arrays.asList(
+			"this is first line",
+			"this is 2nd line",
+			"",
+			"4th after blank line");
+	
+	private String createMultiLineString(String eol){
+		return JoinedStringBuilder.create(LINES)
+						.glue(eol)
+						.includeEmptyStrings(true)
+						.build();
+	}
+	
+	private void assertLinesCorrect(ByteLineReader sut, long position, String eol) throws IOException{
+		try{
+			long currentPosition = position;
+			assertEquals(position, sut.getPosition());
+			for(int i=0; i< LINES.size(); i++){
+				String expectedLine = LINES.get(i);
+				assertTrue(sut.nextLine());
+				assertEquals(expectedLine, sut.getLineAsString());
+				assertEquals(expectedLine.length(), sut.getLineLength());
+				assertEquals(currentPosition, sut.getLineStartPosition());
+				
+				currentPosition+=expectedLine.length();
+				if(i < LINES.size() -1){
+					currentPosition += eol.length();
+				}
+				assertEquals(currentPosition,sut.getPosition());
+			}			
+			assertFalse(sut.nextLine());
+		}finally{
+			sut.close();
+		}
+	}
+
+	private InputStream toInputStream(String value){
+		return  new ByteArrayInputStream(value.getBytes(IOUtil.UTF_8));
+	}
+}
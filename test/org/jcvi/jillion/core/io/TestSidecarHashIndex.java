@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jcvi.jillion.internal.core.io.SidecarHashIndex;
+import org.jcvi.jillion.internal.core.util.GrowableLongArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSidecarHashIndex {
+
+	private static final byte[] MAGIC = new byte[]{'T','S','T',1};
+	
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private File indexedFile;
+	private File indexFile;
+	
+	@Before
+	public void setup() throws IOException{
+		indexedFile = tmpDir.newFile("data.txt");
+		Files.write(indexedFile.toPath(), "some data".getBytes(IOUtil.UTF_8));
+		indexFile = new File(tmpDir.getRoot(), "data.txt.idx");
+	}
+	
+	private void write(Map<String, GrowableLongArray> expected, List<String> keysInOrder, long metadata) throws IOException{
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(indexedFile, indexFile, MAGIC)){
+			long value=0;
+			for(String key : keysInOrder){
+				writer.add(key, value);
+				expected.computeIfAbsent(key, k-> new GrowableLongArray(2)).append(value);
+				value+=3;
+			}
+			writer.commit(metadata);
+		}
+	}
+	
+	@Test
+	public void valuesOfEachKeyAreInOrderAdded() throws IOException{
+		Random random = new Random(1234);
+		List<String> keys = new ArrayList<>();
+		for(int i=0; i< 10_000; i++){
+			//some keys are repeated
+			keys.add("read" + random.nextInt(8_000));
+		}
+		Map<String, GrowableLongArray> expected = new HashMap<>();
+		write(expected, keys, 42);
+		
+		assertTrue(SidecarHashIndex.isUpToDate(indexedFile, indexFile, MAGIC));
+		try(SidecarHashIndex sut = SidecarHashIndex.open(indexFile, MAGIC)){
+			assertEquals(keys.size(), sut.getNumberOfEntries());
+			assertEquals(42, sut.getMetadata());
+			//none of these keys have the same 64-bit hash
+			for(Map.Entry<String, GrowableLongArray> entry : expected.entrySet()){
+				assertArrayEquals(entry.getKey(), entry.getValue().toArray(), sut.getCandidateValuesFor(entry.getKey()));
+			}
+			assertEquals(0, sut.getCandidateValuesFor("notAKey").length);
+		}
+	}
+	
+	@Test
+	public void emptyIndex() throws IOException{
+		write(new HashMap<>(), new ArrayList<>(), 0);
+		assertTrue(SidecarHashIndex.isUpToDate(indexedFile, indexFile, MAGIC));
+		try(SidecarHashIndex sut = SidecarHashIndex.open(indexFile, MAGIC)){
+			assertEquals(0, sut.getNumberOfEntries());
+			assertEquals(0, sut.getCandidateValuesFor("anything").length);
+		}
+	}
+	
+	@Test
+	public void missingIndexIsNotUpToDate() throws IOException{
+		assertFalse(SidecarHashIndex.isUpToDate(indexedFile, indexFile, MAGIC));
+	}
+	
+	@Test
+	public void modifiedIndexedFileIsNotUpToDate() throws IOException{
+		write(new HashMap<>(), Arrays.asList("a", "b"), 0);
+		assertTrue(indexedFile.setLastModified(indexedFile.lastModified() - 10_000));
+		assertFalse(SidecarHashIndex.isUpToDate(indexedFile, indexFile, MAGIC));
+	}
+	
+	@Test
+	public void differentTypeOfIndexIsNotUpToDate() throws IOException{
+		write(new HashMap<>(), Arrays.asList("a", "b"), 0);
+		assertFalse(SidecarHashIndex.isUpToDate(indexedFile, indexFile, new byte[]{'T','S','T',2}));
+	}
+	
+	@Test(expected = IOException.class)
+	public void openingDifferentTypeOfIndexShouldThrowIOException() throws IOException{
+		write(new HashMap<>(), Arrays.asList("a", "b"), 0);
+		SidecarHashIndex.open(indexFile, new byte[]{'T','S','T',2});
+	}
+	
+	@Test
+	public void truncatedIndexIsNotUpToDate() throws IOException{
+		write(new HashMap<>(), Arrays.asList("a", "b"), 0);
+		try(RandomAccessFile file = new RandomAccessFile(indexFile, "rw")){
+			file.setLength(file.length() -8);
+		}
+		assertFalse(SidecarHashIndex.isUpToDate(indexedFile, indexFile, MAGIC));
+	}
+	
+	@Test
+	public void uncommittedWriterLeavesExistingIndexAndNoTempFiles() throws IOException{
+		Map<String, GrowableLongArray> expected = new HashMap<>();
+		write(expected, Arrays.asList("a", "b"), 0);
+		
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(indexedFile, indexFile, MAGIC)){
+			writer.add("c", 1);
+		}
+		assertEquals(2, tmpDir.getRoot().list().length);
+		try(SidecarHashIndex sut = SidecarHashIndex.open(indexFile, MAGIC)){
+			assertEquals(2, sut.getNumberOfEntries());
+			assertEquals(0, sut.getCandidateValuesFor("c").length);
+		}
+	}
+	
+	@Test
+	public void commitReplacesExistingIndex() throws IOException{
+		write(new HashMap<>(), Arrays.asList("a", "b"), 0);
+		Map<String, GrowableLongArray> expected = new HashMap<>();
+		write(expected, Arrays.asList("c", "d", "c"), 7);
+		
+		assertEquals(2, tmpDir.getRoot().list().length);
+		try(SidecarHashIndex sut = SidecarHashIndex.open(indexFile, MAGIC)){
+			assertEquals(3, sut.getNumberOfEntries());
+			assertEquals(7, sut.getMetadata());
+			assertEquals(0, sut.getCandidateValuesFor("a").length);
+			assertArrayEquals(new long[]{0, 6}, sut.getCandidateValuesFor("c"));
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void addAfterCommitShouldThrowIllegalStateException() throws IOException{
+		try(SidecarHashIndex.Writer writer = SidecarHashIndex.createWriter(indexedFile, indexFile, MAGIC)){
+			writer.commit(0);
+			writer.add("a", 1);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongLengthMagicNumberShouldThrowIllegalArgumentException() throws IOException{
+		SidecarHashIndex.isUpToDate(indexedFile, indexFile, new byte[]{'T','S'});
+	}
+}
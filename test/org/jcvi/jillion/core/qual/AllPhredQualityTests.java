@@ -35,6 +35,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestPhredQualityStaticMethods.class,
         TestPhredQuality.class,
         TestRunLengthEncodedGlyphCodec.class,
+        TestCheckpointedRunLengthEncodedQualityCodec.class,
         TestRunLengthEncodedQualitySequence.class,        
         TestDefaultQualitySequence.class,
         TestRunLengthEncodedQualitySequenceImpl.class,
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.qual;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.jcvi.jillion.core.Range;
+import org.junit.Test;
+
+public class TestCheckpointedRunLengthEncodedQualityCodec {
+
+	private static final byte GUARD = 70;
+	
+	private final RunLengthEncodedQualityCodec sut = new RunLengthEncodedQualityCodec(GUARD);
+	
+	private static byte[] createQualities(long seed, int length){
+		Random random = new Random(seed);
+		byte[] quals = new byte[length];
+		int i=0;
+		while(i < length){
+			//mix of singletons, long runs and guard values
+			byte value = random.nextInt(10)==0 ? GUARD : (byte) random.nextInt(60);
+			int runLength = random.nextInt(4)==0 ? 1 + random.nextInt(300) : 1;
+			for(int j=0; j< runLength && i < length; j++, i++){
+				quals[i] = value;
+			}
+		}
+		return quals;
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroRunsPerCheckpointShouldThrowIllegalArgumentException(){
+		sut.encodeWithCheckpoints(new byte[]{1,2,3}, 0);
+	}
+	
+	@Test
+	public void fewRunsShouldNotAddCheckpoints(){
+		byte[] quals = new byte[]{10,20,20,20,30};
+		assertArrayEquals(sut.encode(quals), sut.encodeWithCheckpoints(quals, 3));
+	}
+	
+	@Test
+	public void emptySequence(){
+		byte[] encoded = sut.encodeWithCheckpoints(new byte[0]);
+		assertEquals(0, sut.decodedLengthOf(encoded));
+		assertArrayEquals(new byte[0], sut.toQualityValueArray(encoded));
+	}
+	
+	@Test
+	public void checkpointsAddSmallOverhead(){
+		byte[] quals = createQualities(1, 10_000);
+		byte[] plain = sut.encode(quals);
+		byte[] checkpointed = sut.encodeWithCheckpoints(quals);
+		assertTrue(checkpointed.length > plain.length);
+		//4 bytes for count + 8 bytes every 32 runs
+		assertTrue(checkpointed.length - plain.length < plain.length /3);
+	}
+	
+	@Test
+	public void getEveryOffset(){
+		for(int runsPerCheckpoint : new int[]{1,2,3,32}){
+			byte[] quals = createQualities(runsPerCheckpoint, 5_000);
+			byte[] encoded = sut.encodeWithCheckpoints(quals, runsPerCheckpoint);
+			assertEquals(quals.length, sut.decodedLengthOf(encoded));
+			for(int i=0; i< quals.length; i++){
+				assertEquals("offset " + i, quals[i], sut.decode(encoded, i).getQualityScore());
+			}
+		}
+	}
+	
+	@Test
+	public void wholeSequenceMethodsMatchUncheckpointedEncoding(){
+		byte[] quals = createQualities(12345, 5_000);
+		byte[] plain = sut.encode(quals);
+		byte[] encoded = sut.encodeWithCheckpoints(quals, 4);
+		
+		assertArrayEquals(quals, sut.toQualityValueArray(encoded));
+		assertEquals(sut.getAvgQuality(plain), sut.getAvgQuality(encoded));
+		assertEquals(sut.getMinQuality(plain), sut.getMinQuality(encoded));
+		assertEquals(sut.getMaxQuality(plain), sut.getMaxQuality(encoded));
+		
+		Iterator<PhredQuality> iter = sut.iterator(encoded);
+		for(int i=0; i< quals.length; i++){
+			assertEquals(quals[i], iter.next().getQualityScore());
+		}
+		assertTrue(!iter.hasNext());
+	}
+	
+	@Test
+	public void rangeIterators(){
+		byte[] quals = createQualities(42, 3_000);
+		byte[] encoded = sut.encodeWithCheckpoints(quals, 5);
+		Random random = new Random(7);
+		for(int trial=0; trial< 200; trial++){
+			int begin = random.nextInt(quals.length);
+			int end = begin + random.nextInt(quals.length - begin);
+			Iterator<PhredQuality> iter = sut.iterator(encoded, Range.of(begin, end));
+			for(int i=begin; i<= end; i++){
+				assertEquals("offset " + i, quals[i], iter.next().getQualityScore());
+			}
+			assertTrue(!iter.hasNext());
+		}
+	}
+	
+	@Test
+	public void builderUsesCheckpointsForLongSequences(){
+		byte[] quals = createQualities(99, 20_000);
+		QualitySequence seq = new QualitySequenceBuilder(quals).build();
+		assertTrue(seq instanceof RunLengthEncodedQualitySequence);
+		for(int i=0; i< quals.length; i+=7){
+			assertEquals(quals[i], seq.get(i).getQualityScore());
+		}
+		assertArrayEquals(quals, seq.toArray());
+	}
+}
@@ -64,6 +64,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNucleotideSequencePermuter.class,
         
         TestNucleotideKmers.class,
+        TestPackedKmers.class,
         TestNucleotideRangesOfNs.class,
         TestNucleotideSequenceMatches.class,
         TestNucleotideForEach.class
@@ -26,6 +26,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+
 import org.jcvi.jillion.core.Range;
 import org.jcvi.jillion.core.testUtil.TestUtil;
 import org.junit.Test;
@@ -134,6 +136,27 @@ public class TestNucleotideSequenceBuilder {
         assertBuiltDnaSequenceEquals("ACGTGGTGCA",sut);
     } 
     @Test
+    public void appendAsciiByteSlice(){
+        NucleotideSequenceBuilder sut = new NucleotideSequenceBuilder("ACGT");
+        byte[] line = "@id\nGG-TG CA\n+".getBytes(StandardCharsets.US_ASCII);
+        sut.append(line, 4, 8);
+        assertBuiltDnaSequenceEquals("ACGTGG-TGCA",sut);
+    } 
+    @Test
+    public void appendEmptyAsciiByteSlice(){
+        NucleotideSequenceBuilder sut = new NucleotideSequenceBuilder("ACGT");
+        sut.append(new byte[]{'G'}, 1, 0);
+        assertBuiltDnaSequenceEquals("ACGT",sut);
+    } 
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void appendAsciiByteSliceBeyondArrayShouldThrowException(){
+        new NucleotideSequenceBuilder("ACGT").append(new byte[]{'G','C'}, 1, 2);
+    } 
+    @Test(expected = IllegalArgumentException.class)
+    public void appendAsciiByteSliceWithInvalidBaseShouldThrowException(){
+        new NucleotideSequenceBuilder("ACGT").append(new byte[]{'G','J'}, 0, 2);
+    } 
+    @Test
     public void appendNucleotide(){
         NucleotideSequenceBuilder sut = new NucleotideSequenceBuilder("ACGT");
         sut.append(Nucleotide.Guanine);
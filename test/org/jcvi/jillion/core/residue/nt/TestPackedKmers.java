@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.residue.nt;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.residue.Kmer;
+import org.junit.Test;
+public class TestPackedKmers {
+
+	private static NucleotideSequence compressed(String seq){
+		return new NucleotideSequenceBuilder(seq).build();
+	}
+	
+	private static NucleotideSequence uncompressed(String seq){
+		return new NucleotideSequenceBuilder(seq).turnOffDataCompression(true).build();
+	}
+	
+	private static List<NucleotideSequence> unpack(NucleotideSequence seq, int k){
+		return seq.packedKmers(k)
+					.mapToObj(kmer -> PackedKmers.unpack(kmer, k))
+					.collect(Collectors.toList());
+	}
+	
+	private static List<NucleotideSequence> expectedFromKmers(NucleotideSequence seq, int k){
+		return seq.kmers(k)
+					.map(Kmer::getValue)
+					.collect(Collectors.toList());
+	}
+	
+	@Test
+	public void packAndUnpack(){
+		NucleotideSequence seq = NucleotideSequence.of("ACGTTGCA");
+		long packed = PackedKmers.pack(seq);
+		assertEquals(0b00_01_10_11_11_10_01_00L, packed);
+		assertEquals(seq, PackedKmers.unpack(packed, 8));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void packWithNShouldThrowException(){
+		PackedKmers.pack(NucleotideSequence.of("ACNT"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void kTooBigShouldThrowException(){
+		NucleotideSequence.of("ACGT").packedKmers(33);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void kZeroShouldThrowException(){
+		NucleotideSequence.of("ACGT").packedKmers(0);
+	}
+	
+	@Test
+	public void emptySequenceShouldHaveNoKmers(){
+		assertEquals(0, compressed("").packedKmers(3).count());
+	}
+	
+	@Test
+	public void lessThanKShouldHaveNoKmers(){
+		assertEquals(0, compressed("AC").packedKmers(3).count());
+	}
+	
+	@Test
+	public void sameAsKmers(){
+		String seq = "AGATCGAGTGCCATTAGGACA";
+		for(int k=1; k<= seq.length(); k++){
+			assertEquals(expectedFromKmers(compressed(seq), k), unpack(compressed(seq), k));
+			assertEquals(expectedFromKmers(uncompressed(seq), k), unpack(uncompressed(seq), k));
+		}
+	}
+	
+	@Test
+	public void k32(){
+		Random rand = new Random(1234);
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i< 200; i++){
+			builder.append("ACGT".charAt(rand.nextInt(4)));
+		}
+		NucleotideSequence seq = compressed(builder.toString());
+		assertEquals(expectedFromKmers(seq, 32), unpack(seq, 32));
+		
+		NucleotideSequence allTs = compressed("TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTT");
+		assertArrayEquals(new long[]{-1L, -1L}, allTs.packedKmers(32).toArray());
+	}
+	
+	@Test
+	public void nonACGTBasesBreakKmers(){
+		assertArrayEquals(new long[]{
+				PackedKmers.pack(NucleotideSequence.of("ACG")),
+				PackedKmers.pack(NucleotideSequence.of("CGT")),
+				PackedKmers.pack(NucleotideSequence.of("GGA"))
+				}, 
+				compressed("ACGTNGGA-TTR").packedKmers(3).toArray());
+	}
+	
+	@Test
+	public void gappedSequence(){
+		NucleotideSequence seq = compressed("ACGT-ACGTA");
+		assertArrayEquals(new long[]{
+				PackedKmers.pack(NucleotideSequence.of("ACGT")),
+				PackedKmers.pack(NucleotideSequence.of("ACGT")),
+				PackedKmers.pack(NucleotideSequence.of("CGTA"))
+				}, 
+				seq.packedKmers(4).toArray());
+		assertArrayEquals(seq.packedKmers(4).toArray(), uncompressed("ACGT-ACGTA").packedKmers(4).toArray());
+	}
+	
+	@Test
+	public void subRange(){
+		String s = "AGATCGAGTGNCCATTAGGACA";
+		NucleotideSequence seq = compressed(s);
+		Range range = Range.of(3, 15);
+		List<NucleotideSequence> expected = expectedFromKmers(compressed(s.substring(3, 16)), 4)
+												.stream()
+												.filter(k-> k.toString().indexOf('N') <0)
+												.collect(Collectors.toList());
+		
+		assertEquals(expected, seq.packedKmers(4, range)
+									.mapToObj(k -> PackedKmers.unpack(k, 4))
+									.collect(Collectors.toList()));
+		assertArrayEquals(seq.packedKmers(4, range).toArray(), uncompressed(s).packedKmers(4, range).toArray());
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void subRangeOutOfBoundsShouldThrowException(){
+		compressed("ACGTACGT").packedKmers(3, Range.of(2, 10));
+	}
+	
+	@Test
+	public void reverseComplement(){
+		NucleotideSequence seq = NucleotideSequence.of("AACGTGG");
+		long expected = PackedKmers.pack(seq.toBuilder().reverseComplement().build());
+		assertEquals(expected, PackedKmers.reverseComplement(PackedKmers.pack(seq), 7));
+	}
+	
+	@Test
+	public void canonicalKmersSameOnBothStrands(){
+		String s = "AGATCGAGTGCCATTAGGACAT";
+		NucleotideSequence forward = compressed(s);
+		NucleotideSequence reverse = forward.toBuilder().reverseComplement().build();
+		
+		List<Long> forwardKmers = forward.canonicalPackedKmers(5).boxed().collect(Collectors.toList());
+		List<Long> reverseKmers = reverse.canonicalPackedKmers(5).boxed().collect(Collectors.toList());
+		java.util.Collections.reverse(reverseKmers);
+		assertEquals(forwardKmers, reverseKmers);
+		
+		long[] packed = forward.packedKmers(5).toArray();
+		long[] canonical = forward.canonicalPackedKmers(5).toArray();
+		for(int i=0; i< packed.length; i++){
+			assertEquals(PackedKmers.canonical(packed[i], 5), canonical[i]);
+		}
+	}
+}
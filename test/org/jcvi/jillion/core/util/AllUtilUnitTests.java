@@ -21,6 +21,7 @@
 package org.jcvi.jillion.core.util;
 
 import org.jcvi.jillion.core.util.iter.TestAbstractBlockingClosableIteratorExceptions;
+import org.jcvi.jillion.core.util.iter.TestBatchedBlockingStreamingIterator;
 import org.jcvi.jillion.core.util.iter.TestArrayIterator;
 import org.jcvi.jillion.core.util.iter.TestByteArrayIterator;
 import org.jcvi.jillion.core.util.iter.TestChainedIterator;
@@ -35,6 +36,8 @@ import org.jcvi.jillion.core.util.iter.TestShortArrayIterator;
 import org.jcvi.jillion.core.util.iter.TestSingleElementIterator;
 import org.jcvi.jillion.core.util.iter.TestStreamingIterator;
 import org.jcvi.jillion.internal.core.util.TestBoundedPriorityQueue;
+import org.jcvi.jillion.internal.core.util.TestConcurrentSegmentedLRUCache;
+import org.jcvi.jillion.internal.core.util.TestImplicitIntervalTree;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -50,6 +53,9 @@ import org.junit.runners.Suite.SuiteClasses;
         TestRunLength.class,
         TestLRUCache.class,
         TestWeakReferenceLRUCache.class,
+        TestConcurrentReferencedValueCache.class,
+        TestConcurrentSegmentedLRUCache.class,
+        TestImplicitIntervalTree.class,
         TestEmptyIterator.class,
         TestFileIterator.class,
         TestDepthFirstFileIterator.class,
@@ -65,6 +71,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestPeekableStreamingIterator.class,
         
         TestAbstractBlockingClosableIteratorExceptions.class,
+        TestBatchedBlockingStreamingIterator.class,
         TestDateUtilElapsedTime.class,
         TestGrowableByteArray.class,
         TestGrowableShortArray.class,
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jcvi.jillion.internal.core.util.Caches;
+import org.junit.Test;
+/**
+ * @author dkatzel
+ *
+ */
+public class TestConcurrentReferencedValueCache {
+
+	@Test
+	public void putAndGet(){
+		Map<String, Object> cache = Caches.createConcurrentSoftReferencedValueCache(16);
+		Object value = new Object();
+		assertNull(cache.put("test", value));
+		assertSame(value, cache.get("test"));
+		assertTrue(cache.containsKey("test"));
+		assertEquals(1, cache.size());
+		assertSame(value, cache.remove("test"));
+		assertNull(cache.get("test"));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void computeIfAbsentOnlyComputesMissingValues(){
+		Map<String, Object> cache = Caches.createConcurrentSoftReferencedValueCache(16);
+		Object value = new Object();
+		assertSame(value, cache.computeIfAbsent("test", k-> value));
+		assertSame(value, cache.computeIfAbsent("test", k-> new Object()));
+	}
+	
+	@Test
+	public void valueThatIsWeaklyReachableGetsRemoved() throws InterruptedException{
+		Map<String, Object> weakCache = Caches.createConcurrentWeakReferencedValueCache(16);
+		weakCache.put("test", new Object());
+		assertEquals(1, weakCache.size());
+		assertEquals(Collections.singleton("test"),weakCache.keySet());
+		System.gc();
+		//need to wait for gc to do stuff
+		Thread.sleep(500);
+		assertEquals(0,weakCache.size());
+		//collected entry is recomputed
+		Object value = new Object();
+		assertSame(value, weakCache.computeIfAbsent("test", k-> value));
+	}
+	
+	@Test
+	public void allThreadsGetSameInstance() throws Exception{
+		Map<Integer, Object> cache = Caches.createConcurrentSoftReferencedValueCache(16);
+		int numberOfThreads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try{
+			CountDownLatch startLatch = new CountDownLatch(1);
+			List<Future<List<Object>>> futures = new ArrayList<>();
+			for(int t=0; t< numberOfThreads; t++){
+				futures.add(executor.submit(new Callable<List<Object>>(){
+
+					@Override
+					public List<Object> call() throws Exception {
+						startLatch.await();
+						List<Object> list = new ArrayList<>();
+						for(int i=0; i< 1000; i++){
+							list.add(cache.computeIfAbsent(i, k-> new Object()));
+						}
+						return list;
+					}
+					
+				}));
+			}
+			startLatch.countDown();
+			List<Object> expected = futures.get(0).get();
+			for(Future<List<Object>> future : futures){
+				List<Object> actual = future.get();
+				for(int i=0; i< expected.size(); i++){
+					assertSame(expected.get(i), actual.get(i));
+				}
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.core.util.iter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jcvi.jillion.internal.core.util.iter.AbstractBlockingStreamingIterator;
+import org.junit.Test;
+/**
+ * Tests iterating when the background thread
+ * hands off records in batches.
+ * @author dkatzel
+ *
+ */
+public class TestBatchedBlockingStreamingIterator {
+
+	private static final class ExpectedException extends RuntimeException{
+
+		private static final long serialVersionUID = 1L;
+		
+	}
+	
+	private static final class CountingIterator extends AbstractBlockingStreamingIterator<Integer>{
+		private final int numberOfRecords;
+		private final int throwAfter;
+		private final CountDownLatch finished = new CountDownLatch(1);
+		
+		CountingIterator(int batchSize, int numberOfRecords){
+			this(batchSize, numberOfRecords, -1);
+		}
+		CountingIterator(int batchSize, int numberOfRecords, int throwAfter){
+			super(batchSize);
+			this.numberOfRecords = numberOfRecords;
+			this.throwAfter = throwAfter;
+		}
+		@Override
+		protected void backgroundThreadRunMethod() throws RuntimeException {
+			try{
+				for(int i=0; i< numberOfRecords; i++){
+					if(i == throwAfter){
+						throw new ExpectedException();
+					}
+					blockingPut(Integer.valueOf(i));
+				}
+			}finally{
+				finished.countDown();
+			}
+		}
+		
+	}
+	
+	private void assertIteratesAll(int batchSize, int numberOfRecords){
+		List<Integer> expected = new ArrayList<>(numberOfRecords);
+		for(int i=0; i< numberOfRecords; i++){
+			expected.add(i);
+		}
+		List<Integer> actual = new ArrayList<>(numberOfRecords);
+		try(CountingIterator iter = new CountingIterator(batchSize, numberOfRecords)){
+			iter.start();
+			while(iter.hasNext()){
+				actual.add(iter.next());
+			}
+		}
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void emptyIterator(){
+		assertIteratesAll(10, 0);
+	}
+	@Test
+	public void partialLastBatch(){
+		assertIteratesAll(10, 25);
+	}
+	@Test
+	public void exactMultipleOfBatchSize(){
+		assertIteratesAll(10, 40);
+	}
+	@Test
+	public void moreRecordsThanRingBuffer(){
+		assertIteratesAll(7, 10_000);
+	}
+	@Test
+	public void batchSizeOfOne(){
+		assertIteratesAll(1, 1_000);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroBatchSizeShouldThrowIAE(){
+		new CountingIterator(0, 10);
+	}
+	
+	@Test
+	public void closingEarlyLetsBackgroundThreadFinish() throws InterruptedException{
+		CountingIterator iter = new CountingIterator(10, 1_000_000);
+		iter.start();
+		assertEquals(Integer.valueOf(0), iter.next());
+		iter.close();
+		assertFalse(iter.hasNext());
+		assertTrue("background thread still blocked", iter.finished.await(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void exceptionAfterSomeBatchesIsThrownToIteratingThread(){
+		try(CountingIterator iter = new CountingIterator(10, 100, 55)){
+			iter.start();
+			int count=0;
+			try{
+				while(iter.hasNext()){
+					iter.next();
+					count++;
+				}
+				fail("should throw exception");
+			}catch(ExpectedException expected){
+				assertTrue(count <= 55);
+			}
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.experimental.primer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.jcvi.jillion.core.DirectedRange;
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.datastore.DataStore;
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequence;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceDataStore;
+import org.jcvi.jillion.fasta.nt.NucleotideFastaDataStore;
+import org.jcvi.jillion.fasta.nt.NucleotideFastaFileDataStore;
+import org.jcvi.jillion.fasta.nt.NucleotideFastaRecord;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPrimerScreener {
+
+	private static final ResourceHelper RESOURCES = new ResourceHelper(TestPrimerScreener.class);
+	
+	private Random random;
+	private NucleotideSequenceDataStore primers;
+	private List<NucleotideSequence> reads;
+	
+	@Before
+	public void setup(){
+		random = new Random(1234);
+		Map<String, NucleotideSequence> map = new LinkedHashMap<>();
+		for(int i=0; i< 20; i++){
+			map.put("primer"+i, randomSequence(18 + random.nextInt(8)));
+		}
+		//ambiguous primers are always aligned
+		map.put("ambiguous", new NucleotideSequenceBuilder("ACGTNACGTRACGTYACGTACG").build());
+		primers = DataStore.of(map, NucleotideSequenceDataStore.class);
+		
+		List<NucleotideSequence> primerList = new ArrayList<>(map.values());
+		reads = new ArrayList<>();
+		for(int i=0; i< 150; i++){
+			NucleotideSequenceBuilder read = new NucleotideSequenceBuilder(randomSequence(random.nextInt(60)));
+			if(random.nextInt(4) !=0){
+				NucleotideSequence primer = primerList.get(random.nextInt(primerList.size()));
+				NucleotideSequenceBuilder planted = mutate(primer);
+				if(random.nextBoolean()){
+					planted.reverseComplement();
+				}
+				read.append(planted);
+			}
+			read.append(randomSequence(random.nextInt(80)));
+			reads.add(read.build());
+		}
+		//include some empty and ambiguous reads
+		reads.add(new NucleotideSequenceBuilder().build());
+		reads.add(new NucleotideSequenceBuilder("NNNNNNNNNNNNNNNNNNNNNNNNN").build());
+	}
+	
+	private NucleotideSequence randomSequence(int length){
+		StringBuilder builder = new StringBuilder(length);
+		for(int i=0; i< length; i++){
+			builder.append("ACGT".charAt(random.nextInt(4)));
+		}
+		return new NucleotideSequenceBuilder(builder.toString()).build();
+	}
+	
+	private NucleotideSequenceBuilder mutate(NucleotideSequence primer){
+		NucleotideSequenceBuilder builder = new NucleotideSequenceBuilder(primer);
+		int numberOfMutations = random.nextInt(4);
+		for(int i=0; i< numberOfMutations; i++){
+			int offset = random.nextInt((int) builder.getLength());
+			switch(random.nextInt(3)){
+				case 0 : builder.replace(offset, randomSequence(1).get(0)); break;
+				case 1 : builder.insert(offset, randomSequence(1)); break;
+				default: builder.delete(Range.of(offset)); break;
+			}
+		}
+		return builder;
+	}
+	
+	private void assertSameHitsAsDetector(PrimerDetector detector) throws DataStoreException{
+		PrimerScreener sut = new PrimerScreener.Builder(detector, primers).build();
+		for(NucleotideSequence read : reads){
+			assertEquals(read.toString(), detector.detect(read, primers), sut.detect(read));
+		}
+	}
+	
+	@Test
+	public void sameHitsAsDetectorUsingPercentIdentity() throws DataStoreException{
+		assertSameHitsAsDetector(new PrimerDetector(13, .9D));
+	}
+	
+	@Test
+	public void sameHitsAsDetectorUsingLowerPercentIdentityForwardOnly() throws DataStoreException{
+		assertSameHitsAsDetector(new PrimerDetector(15, .8D, false));
+	}
+	
+	@Test
+	public void sameHitsAsDetectorUsingMaxMismatches() throws DataStoreException{
+		assertSameHitsAsDetector(PrimerDetector.create(16, 2));
+	}
+	
+	@Test
+	public void shortSeedLength() throws DataStoreException{
+		PrimerDetector detector = new PrimerDetector(13, .9D);
+		PrimerScreener sut = new PrimerScreener.Builder(detector, primers)
+										.seedLength(4)
+										.build();
+		for(NucleotideSequence read : reads){
+			assertEquals(read.toString(), detector.detect(read, primers), sut.detect(read));
+		}
+	}
+	
+	@Test
+	public void multiThreadedResultsInInputOrder() throws DataStoreException{
+		PrimerDetector detector = new PrimerDetector(13, .9D);
+		PrimerScreener sut = new PrimerScreener.Builder(detector, primers)
+										.numberOfThreads(4)
+										.build();
+		//make enough reads to have several batches
+		List<NucleotideSequence> manyReads = new ArrayList<>();
+		for(int i=0; i< 10; i++){
+			manyReads.addAll(reads);
+		}
+		List<NucleotideSequence> actualReads = new ArrayList<>();
+		List<List<DirectedRange>> actualHits = new ArrayList<>();
+		sut.detect(manyReads.iterator(), Function.identity(), (read, hits)->{
+			actualReads.add(read);
+			actualHits.add(hits);
+		});
+		assertEquals(manyReads, actualReads);
+		for(int i=0; i< manyReads.size(); i++){
+			assertEquals(detector.detect(manyReads.get(i), primers), actualHits.get(i));
+		}
+	}
+	
+	@Test
+	public void actualData() throws IOException, DataStoreException{
+		NucleotideSequenceDataStore actualPrimers = NucleotideFastaFileDataStore.fromFile(RESOURCES.getFile("files/primers.fasta")).asSequenceDataStore();
+		PrimerDetector detector = new PrimerDetector(13, .9D);
+		PrimerScreener sut = new PrimerScreener.Builder(detector, actualPrimers)
+												.numberOfThreads(2)
+												.build();
+		try(NucleotideFastaDataStore sequences = NucleotideFastaFileDataStore.fromFile(RESOURCES.getFile("files/fullLength.fasta"))){
+			List<NucleotideFastaRecord> records = new ArrayList<>();
+			sequences.records().forEach(records::add);
+			
+			int[] count = new int[1];
+			sut.detect(records.iterator(), NucleotideFastaRecord::getSequence, (record, hits)->{
+				assertEquals(record.getId(), detector.detect(record.getSequence(), actualPrimers), hits);
+				count[0]++;
+			});
+			assertEquals(records.size(), count[0]);
+		}
+	}
+	
+	@Test
+	public void hitsFarFromOtherSeedWindowsStillFound() throws DataStoreException{
+		PrimerDetector detector = new PrimerDetector(13, .9D);
+		PrimerScreener sut = new PrimerScreener.Builder(detector, primers).build();
+		NucleotideSequence primer = primers.get("primer3");
+		NucleotideSequence fragment = new NucleotideSequenceBuilder(primer, Range.of(0, 11)).build();
+		for(int i=0; i< 20; i++){
+			//a short exact fragment of the primer makes a seed window near the start
+			//but the best local hit is a full length copy with a substitution hundreds of bases away
+			NucleotideSequenceBuilder planted = new NucleotideSequenceBuilder(primer)
+														.replace(random.nextInt((int) primer.getLength()), randomSequence(1).get(0));
+			if(random.nextBoolean()){
+				planted.reverseComplement();
+			}
+			NucleotideSequence read = new NucleotideSequenceBuilder(randomSequence(20))
+											.append(fragment)
+											.append(randomSequence(200 + random.nextInt(300)))
+											.append(planted)
+											.append(randomSequence(random.nextInt(40)))
+											.build();
+			List<DirectedRange> expected = detector.detect(read, primers);
+			assertTrue(expected.stream().anyMatch(hit-> hit.asRange().getBegin() >= 220));
+			assertEquals(read.toString(), expected, sut.detect(read));
+		}
+	}
+	
+	@Test
+	public void alignWholeSequenceSameHitsAsDetector() throws DataStoreException{
+		PrimerDetector detector = new PrimerDetector(13, .9D);
+		PrimerScreener sut = new PrimerScreener.Builder(detector, primers)
+										.alignWholeSequence(true)
+										.build();
+		for(NucleotideSequence read : reads){
+			assertEquals(read.toString(), detector.detect(read, primers), sut.detect(read));
+		}
+	}
+	
+	@Test
+	public void maxGapColumns(){
+		//20 matches score 100 and every gap column costs at least the extension penalty of 5
+		assertEquals(19, new PrimerDetector(13, .9D).computeMaxGapColumns(20));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void seedLengthTooSmallShouldThrowIllegalArgumentException(){
+		new PrimerScreener.Builder(new PrimerDetector(13, .9D), primers).seedLength(3);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void seedLengthTooLargeShouldThrowIllegalArgumentException(){
+		new PrimerScreener.Builder(new PrimerDetector(13, .9D), primers).seedLength(32);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException(){
+		new PrimerScreener.Builder(new PrimerDetector(13, .9D), primers).numberOfThreads(0);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullDetectorShouldThrowNPE(){
+		new PrimerScreener.Builder(null, primers);
+	}
+	
+	@Test
+	public void guaranteedExactMatchLength(){
+		//13 long alignment at > 90% identity has at most 1 mismatch so a 6 base exact match
+		assertEquals(6, new PrimerDetector(13, .9D).computeGuaranteedExactMatchLength(20));
+		//no identity requirement means no guarantee
+		assertEquals(0, new PrimerDetector(13, 0D).computeGuaranteedExactMatchLength(20));
+		//gap penalty is too big for short primers to have gaps so 2 mismatches split 18 matches 3 ways
+		assertEquals(6, PrimerDetector.create(20, 2).computeGuaranteedExactMatchLength(25));
+	}
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestConcurrentSegmentedLRUCache {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroSizeShouldThrowIllegalArgumentException(){
+		new ConcurrentSegmentedLRUCache<String, String>(0);
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullWeigherShouldThrowNPE(){
+		new ConcurrentSegmentedLRUCache<String, String>(100L, null);
+	}
+	
+	@Test
+	public void emptyCache(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10);
+		assertEquals(0, sut.size());
+		assertNull(sut.get("missing"));
+		assertEquals(0, sut.getHitCount());
+		assertEquals(1, sut.getMissCount());
+	}
+	
+	@Test
+	public void putThenGet(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10);
+		sut.put("a", "A");
+		assertEquals("A", sut.get("a"));
+		assertEquals("A", sut.get("a"));
+		assertEquals(1, sut.size());
+		assertEquals(2, sut.getHitCount());
+		assertEquals(0, sut.getMissCount());
+	}
+	
+	@Test
+	public void putSameKeyReplacesValue(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10);
+		sut.put("a", "A");
+		sut.get("a");
+		sut.put("a", "B");
+		assertEquals("B", sut.get("a"));
+		assertEquals(1, sut.size());
+		assertEquals(1, sut.weightedSize());
+	}
+	
+	@Test
+	public void tooManyEntriesEvictsLeastRecentlyUsed(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(2);
+		sut.put("a", "A");
+		sut.put("b", "B");
+		sut.put("c", "C");
+		
+		assertEquals(2, sut.size());
+		assertEquals(1, sut.getEvictionCount());
+		assertNull(sut.get("a"));
+		assertEquals("B", sut.get("b"));
+		assertEquals("C", sut.get("c"));
+	}
+	
+	@Test
+	public void frequentlyUsedEntrySurvivesScanOfOneTimeEntries(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10);
+		sut.put("hot", "HOT");
+		//second access promotes to protected
+		assertEquals("HOT", sut.get("hot"));
+		
+		for(int i=0; i< 100; i++){
+			sut.put("cold"+i, "COLD"+i);
+		}
+		assertEquals(10, sut.size());
+		assertEquals("HOT", sut.get("hot"));
+		assertNull(sut.get("cold0"));
+		assertEquals("COLD99", sut.get("cold99"));
+	}
+	
+	@Test
+	public void clearRemovesEverythingButKeepsStats(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10);
+		sut.put("a", "A");
+		sut.get("a");
+		sut.clear();
+		
+		assertEquals(0, sut.size());
+		assertEquals(0, sut.weightedSize());
+		assertNull(sut.get("a"));
+		assertEquals(1, sut.getHitCount());
+		assertEquals(1, sut.getMissCount());
+		assertEquals(0, sut.getEvictionCount());
+	}
+	
+	@Test
+	public void weightedCacheEvictsByTotalWeight(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10L, String::length);
+		sut.put("a", "1234");
+		sut.put("b", "1234");
+		assertEquals(8, sut.weightedSize());
+		sut.put("c", "1234");
+		
+		assertEquals(8, sut.weightedSize());
+		assertEquals(2, sut.size());
+		assertNull(sut.get("a"));
+		assertEquals(1, sut.getEvictionCount());
+	}
+	
+	@Test
+	public void valueTooHeavyToFitIsNotCached(){
+		ConcurrentSegmentedLRUCache<String, String> sut = new ConcurrentSegmentedLRUCache<>(10L, String::length);
+		sut.put("a", "1234");
+		sut.put("big", "12345678901");
+		
+		assertNull(sut.get("big"));
+		assertEquals("1234", sut.get("a"));
+		assertEquals(4, sut.weightedSize());
+	}
+	
+	@Test
+	public void concurrentAccessStaysWithinBounds() throws Exception{
+		int maxSize = 200;
+		ConcurrentSegmentedLRUCache<Integer, String> sut = new ConcurrentSegmentedLRUCache<>(maxSize);
+		int numberOfThreads = 4;
+		int numberOfCalls = 20_000;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try{
+			List<Future<Void>> futures = new ArrayList<>();
+			for(int t=0; t< numberOfThreads; t++){
+				int offset = t;
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						for(int i=0; i< numberOfCalls; i++){
+							Integer key = (i*7 + offset) % 1000;
+							String value = sut.get(key);
+							if(value ==null){
+								sut.put(key, key.toString());
+							}else{
+								assertEquals(key.toString(), value);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> f : futures){
+				f.get();
+			}
+		}finally{
+			executor.shutdownNow();
+		}
+		assertTrue(sut.size() <= maxSize);
+		assertEquals(numberOfThreads * (long)numberOfCalls, sut.getHitCount() + sut.getMissCount());
+	}
+}
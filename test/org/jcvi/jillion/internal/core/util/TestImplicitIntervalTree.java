@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.internal.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestImplicitIntervalTree {
+
+	private static List<Integer> query(ImplicitIntervalTree sut, long begin, long exclusiveEnd){
+		List<Integer> actual = new ArrayList<>();
+		int count = sut.forEachOverlapping(begin, exclusiveEnd, actual::add);
+		assertEquals(actual.size(), count);
+		return actual;
+	}
+	
+	private static List<Integer> bruteForce(long[] begins, long[] ends, long begin, long exclusiveEnd){
+		List<Integer> expected = new ArrayList<>();
+		for(int i=0; i< begins.length; i++){
+			if(begins[i] < exclusiveEnd && begin < ends[i]){
+				expected.add(i);
+			}
+		}
+		return expected;
+	}
+	
+	@Test
+	public void emptyTree(){
+		ImplicitIntervalTree sut = new ImplicitIntervalTree(new long[0], new long[0]);
+		assertEquals(0, sut.size());
+		assertTrue(query(sut, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+	}
+	
+	@Test
+	public void singleInterval(){
+		ImplicitIntervalTree sut = new ImplicitIntervalTree(new long[]{10}, new long[]{20});
+		assertEquals(1, sut.size());
+		assertEquals(Arrays.asList(0), query(sut, 10, 11));
+		assertEquals(Arrays.asList(0), query(sut, 19, 20));
+		assertEquals(Arrays.asList(0), query(sut, 0, 100));
+		assertTrue(query(sut, 0, 10).isEmpty());
+		assertTrue(query(sut, 20, 30).isEmpty());
+	}
+	
+	@Test
+	public void emptyQueryOverlapsNothing(){
+		ImplicitIntervalTree sut = new ImplicitIntervalTree(new long[]{0, 5}, new long[]{10, 20});
+		assertTrue(query(sut, 7, 7).isEmpty());
+		assertTrue(query(sut, 7, 3).isEmpty());
+	}
+	
+	@Test
+	public void negativeCoordinates(){
+		ImplicitIntervalTree sut = new ImplicitIntervalTree(new long[]{-100, -50, 0}, new long[]{-40, 10, 1});
+		assertEquals(Arrays.asList(0, 1), query(sut, -45, -44));
+		assertEquals(Arrays.asList(1, 2), query(sut, 0, 1));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void differentLengthArraysShouldThrowIllegalArgumentException(){
+		new ImplicitIntervalTree(new long[2], new long[3]);
+	}
+	
+	/**
+	 * Different numbers of intervals make different shaped
+	 * (incomplete) trees so check lots of sizes.
+	 */
+	@Test
+	public void manySizesMatchBruteForce(){
+		Random random = new Random(42);
+		for(int n=1; n< 300; n++){
+			long[] begins = new long[n];
+			long[] ends = new long[n];
+			for(int i=0; i< n; i++){
+				begins[i] = random.nextInt(2000);
+			}
+			Arrays.sort(begins);
+			for(int i=0; i< n; i++){
+				int length = random.nextInt(10) ==0 ? 1 + random.nextInt(1500) : 1 + random.nextInt(50);
+				ends[i] = begins[i] + length;
+			}
+			ImplicitIntervalTree sut = new ImplicitIntervalTree(begins, ends);
+			for(int i=0; i< 100; i++){
+				long begin = random.nextInt(2100) - 50;
+				long end = begin + 1 + random.nextInt(100);
+				assertEquals(n + " [" + begin + ", " + end + ")", bruteForce(begins, ends, begin, end), query(sut, begin, end));
+			}
+		}
+	}
+}
@@ -23,9 +23,14 @@ package org.jcvi.jillion.sam;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
+import org.jcvi.jillion.sam.attribute.SamAttribute;
+import org.jcvi.jillion.sam.cigar.Cigar;
 import org.jcvi.jillion.sam.header.SamHeader;
 import org.junit.Rule;
 import org.junit.Test;
@@ -54,6 +59,60 @@ public abstract class AbstractTestResortedSamFileWriter extends AbstractTestSamW
 		
 	}
 
+	@Test
+	public void coordinateSortSpillsToTempFiles() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.COORDINATE, 4, 1, false);
+	}
+	@Test
+	public void queryNameSortSpillsToTempFiles() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.QUERY_NAME, 4, 1, false);
+	}
+	@Test
+	public void coordinateSortMultipleSortThreads() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.COORDINATE, 6, 3, false);
+	}
+	@Test
+	public void coordinateSortCompressedTempFiles() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.COORDINATE, 4, 2, true);
+	}
+	
+	@Test
+	public void onlyOneRecordInMemoryAtATime() throws IOException{
+		writeShuffledRecordsAndAssertWrittenInSortedOrder(SortOrder.QUERY_NAME, 1, 1, false);
+	}
+	
+	@Test
+	public void recordWithAttributesLargerThanDefaultBufferSpillsToTempFiles() throws IOException{
+		char[] comment = new char[100_000];
+		Arrays.fill(comment, 'x');
+		
+		List<SamRecord> unsortedRecords = getShuffledRecords();
+		unsortedRecords.add(new SamRecordBuilder(getHeader())
+										.setQueryName("r007")
+										.setReferenceName("ref")
+										.setFlags(0)
+										.setStartPosition(12)
+										.setMappingQuality(30)
+										.setCigar(Cigar.parse("5M"))
+										.setSequence(new NucleotideSequenceBuilder("ACGTA").build())
+										.addAttribute(new SamAttribute(ReservedSamAttributeKeys.COMMENTS, new String(comment)))
+										.build());
+		//put the big record first so it is spilled
+		//instead of being one of the records still in memory
+		Collections.swap(unsortedRecords, 0, unsortedRecords.size()-1);
+		
+		File f = createOutputSamOrBamFile();
+		SamWriter writer = new SamFileWriterBuilder(f, getHeader())
+									.setTempRootDir(tempDir.getRoot())
+									.reSortBy(SortOrder.COORDINATE, 2)
+									.build();
+		List<SamRecord> expectedRecords = createSortedList(unsortedRecords, SortOrder.COORDINATE, getHeader());
+		
+		writeAllRecords(writer, unsortedRecords);
+		writer.close();
+		orderOfRecordsMatchesExactly(f, expectedRecords, SortOrder.COORDINATE);
+	}
+	
 	private void writeShuffledRecordsAndAssertWrittenInSortedOrder(
 			SortOrder sortOrder) throws IOException {
 		File f = createOutputSamOrBamFile();
@@ -61,6 +120,23 @@ public abstract class AbstractTestResortedSamFileWriter extends AbstractTestSamW
 									.setTempRootDir(tempDir.getRoot())
 									.reSortBy(sortOrder)
 									.build();
+		assertWrittenInSortedOrder(sortOrder, f, writer);
+	}
+	
+	private void writeShuffledRecordsAndAssertWrittenInSortedOrder(
+			SortOrder sortOrder, int maxRecordsInMemory, int numberOfSortThreads, boolean compressTempFiles) throws IOException {
+		File f = createOutputSamOrBamFile();
+		SamWriter writer = new SamFileWriterBuilder(f, getHeader())
+									.setTempRootDir(tempDir.getRoot())
+									.reSortBy(sortOrder, maxRecordsInMemory)
+									.setNumberOfSortThreads(numberOfSortThreads)
+									.compressTempFiles(compressTempFiles)
+									.build();
+		assertWrittenInSortedOrder(sortOrder, f, writer);
+	}
+
+	private void assertWrittenInSortedOrder(SortOrder sortOrder, File f,
+			SamWriter writer) throws IOException {
 		List<SamRecord> unsortedRecords = getShuffledRecords();
 		
 		List<SamRecord> expectedRecords = createSortedList(unsortedRecords, sortOrder, getHeader());
@@ -37,6 +37,7 @@ import org.junit.runners.Suite.SuiteClasses;
     	AllAttributeTests.class,
     	
     	TestVirtualFileOffset.class,
+    	TestParallelBgzfInputStream.class,
     	TestSamRecordFlags.class,
     	TestBinComputation.class,
     	TestSortOrder.class,
@@ -54,8 +55,11 @@ import org.junit.runners.Suite.SuiteClasses;
     	AllSamTransformationServiceTests.class,
     	
     	TestBamParserImplementations.class,
+    	TestLazyBamSamRecord.class,
+    	TestSamRecordLineParser.class,
     	
     	TestBamDataStore.class,
+    	TestReadNameIndexedBamDataStore.class,
     	TestQuerySortedSamDataStore.class
     }
     )
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.SamParser.SamParserOptions;
+import org.jcvi.jillion.sam.header.SamReferenceSequence;
+import org.junit.Before;
+import org.junit.Test;
+/**
+ * Tests that lazily decoded and reused BAM records
+ * return the same values as eagerly decoded records.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestLazyBamSamRecord {
+
+	private final ResourceHelper resources = new ResourceHelper(TestLazyBamSamRecord.class);
+	
+	private File bamFile, baiFile;
+	private List<SamRecord> eagerRecords;
+	
+	@Before
+	public void setup() throws IOException{
+		bamFile = resources.getFile("index/index_test.bam");
+		baiFile = resources.getFile("index/index_test.bam.bai");
+		eagerRecords = parse(SamParserFactory.create(bamFile), new SamParserOptions());
+		assertTrue(eagerRecords.size() >0);
+	}
+	
+	private static List<SamRecord> parse(SamParser parser, SamParserOptions options) throws IOException{
+		List<SamRecord> list = new ArrayList<>();
+		parser.parse(options, new AbstractSamVisitor() {
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				list.add(record.asImmutable());
+			}
+		});
+		return list;
+	}
+	
+	private static void assertSameValues(SamRecord expected, SamRecord actual){
+		assertEquals(expected.getQueryName(), actual.getQueryName());
+		assertEquals(expected.getReferenceName(), actual.getReferenceName());
+		assertEquals(expected.getNextName(), actual.getNextName());
+		assertEquals(expected.getFlags(), actual.getFlags());
+		assertEquals(expected.getStartPosition(), actual.getStartPosition());
+		assertEquals(expected.getNextOffset(), actual.getNextOffset());
+		assertEquals(expected.getMappingQuality(), actual.getMappingQuality());
+		assertEquals(expected.getObservedTemplateLength(), actual.getObservedTemplateLength());
+		assertEquals(expected.mapped(), actual.mapped());
+		assertEquals(expected.isPrimary(), actual.isPrimary());
+		assertEquals(expected.getDirection(), actual.getDirection());
+		assertEquals(expected.getAlignmentRange(), actual.getAlignmentRange());
+		assertEquals(expected.getCigar(), actual.getCigar());
+		assertEquals(expected.getSequence(), actual.getSequence());
+		assertEquals(expected.getQualities(), actual.getQualities());
+		assertEquals(new ArrayList<>(expected.getAttributes()), new ArrayList<>(actual.getAttributes()));
+		
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+	}
+	
+	@Test
+	public void lazyRecordsHaveSameValuesAsEagerRecords() throws IOException{
+		List<SamRecord> lazyRecords = parse(SamParserFactory.create(bamFile), new SamParserOptions().lazyRecords(true));
+		
+		assertEquals(eagerRecords.size(), lazyRecords.size());
+		for(int i=0; i< lazyRecords.size(); i++){
+			assertTrue(lazyRecords.get(i) instanceof LazyBamSamRecord);
+			assertSameValues(eagerRecords.get(i), lazyRecords.get(i));
+		}
+	}
+	
+	@Test
+	public void reusedRecordShouldBeSameInstanceEachTime() throws IOException{
+		List<SamRecord> visited = new ArrayList<>();
+		List<SamRecord> copies = new ArrayList<>();
+		SamParserFactory.create(bamFile).parse(new SamParserOptions().reuseRecords(true), new AbstractSamVisitor() {
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				//values are only valid during the visit
+				assertSameValues(eagerRecords.get(visited.size()), record);
+				visited.add(record);
+				copies.add(record.asImmutable());
+			}
+		});
+		assertEquals(eagerRecords.size(), visited.size());
+		for(int i=1; i< visited.size(); i++){
+			assertSame(visited.get(0), visited.get(i));
+		}
+		for(int i=0; i< copies.size(); i++){
+			assertNotSame(visited.get(0), copies.get(i));
+			assertSameValues(eagerRecords.get(i), copies.get(i));
+		}
+	}
+	
+	@Test
+	public void onlyAccessingFlagsAndPositionsMatchesEager() throws IOException{
+		int[] count = new int[1];
+		SamParserFactory.create(bamFile).parse(new SamParserOptions().reuseRecords(true), new AbstractSamVisitor() {
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				SamRecord expected = eagerRecords.get(count[0]++);
+				assertEquals(expected.getFlags(), record.getFlags());
+				assertEquals(expected.getStartPosition(), record.getStartPosition());
+				assertEquals(expected.getAlignmentRange(), record.getAlignmentRange());
+			}
+		});
+		assertEquals(eagerRecords.size(), count[0]);
+	}
+	
+	@Test
+	public void indexedRegionQueryWithLazyRecordsMatchesEager() throws IOException{
+		SamParser indexedParser = SamParserFactory.createUsingIndex(bamFile, baiFile);
+		int recordsFound=0;
+		for(SamReferenceSequence ref : indexedParser.getHeader().getReferenceSequences()){
+			Range range = Range.of(0, ref.getLength()/2);
+			SamParserOptions options = new SamParserOptions().reference(ref.getName(), range);
+			List<SamRecord> expected = parse(indexedParser, options);
+			List<SamRecord> actual = parse(indexedParser, options.reuseRecords(true));
+			assertEquals(expected, actual);
+			recordsFound += actual.size();
+		}
+		assertTrue(recordsFound > 0);
+	}
+	
+	@Test
+	public void optionsReuseImpliesLazy(){
+		SamParserOptions options = new SamParserOptions().reuseRecords(true);
+		assertTrue(options.shouldDecodeLazily());
+		assertTrue(options.shouldReuseRecords());
+		
+		assertEquals(false, new SamParserOptions().shouldDecodeLazily());
+		assertEquals(true, new SamParserOptions().lazyRecords(true).shouldDecodeLazily());
+		assertEquals(false, new SamParserOptions().lazyRecords(true).shouldReuseRecords());
+	}
+}
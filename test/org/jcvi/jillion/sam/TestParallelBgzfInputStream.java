@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.sam.attribute.ReservedAttributeValidator;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelBgzfInputStream {
+
+	private File bamFile;
+	
+	@Before
+	public void setup() throws IOException{
+		ResourceHelper resources = new ResourceHelper(TestParallelBgzfInputStream.class);
+		bamFile = resources.getFile("index/index_test.bam");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException() throws IOException{
+		BgzfInputStream.create(bamFile, 0);
+	}
+	
+	@Test
+	public void oneThreadIsSerialStream() throws IOException{
+		try(BgzfInputStream in = BgzfInputStream.create(bamFile, 1)){
+			assertFalse(in instanceof ParallelBgzfInputStream);
+		}
+	}
+	
+	@Test
+	public void readsSameBytesAndOffsetsAsSerialStream() throws IOException{
+		try(BgzfInputStream expected = BgzfInputStream.create(bamFile);
+			BgzfInputStream actual = BgzfInputStream.create(bamFile, 4)){
+			assertTrue(actual instanceof ParallelBgzfInputStream);
+			assertStreamsMatch(expected, actual);
+		}
+	}
+	
+	@Test
+	public void seekingToOffsetsReadsSameBytesAndOffsetsAsSerialStream() throws IOException{
+		List<VirtualFileOffset> offsets = new ArrayList<>();
+		try(BgzfInputStream in = BgzfInputStream.create(bamFile)){
+			byte[] buf = new byte[5000];
+			while(in.read(buf) != -1){
+				offsets.add(in.getCurrentVirutalFileOffset());
+			}
+		}
+		//first offset in the middle of the first block
+		//the rest span several blocks
+		for(VirtualFileOffset vfs : Arrays.asList(offsets.get(0), offsets.get(offsets.size()/3), offsets.get(offsets.size()/2))){
+			try(BgzfInputStream expected = BgzfInputStream.create(bamFile, vfs);
+					BgzfInputStream actual = BgzfInputStream.create(bamFile, vfs, 3)){
+				
+				assertEquals(vfs, actual.getCurrentVirutalFileOffset());
+				assertStreamsMatch(expected, actual);
+			}
+		}
+	}
+	
+	private void assertStreamsMatch(BgzfInputStream expected, BgzfInputStream actual) throws IOException{
+		assertEquals(expected.getCurrentVirutalFileOffset(), actual.getCurrentVirutalFileOffset());
+		//use an odd buffer size so we span block boundaries
+		byte[] expectedBuf = new byte[317];
+		byte[] actualBuf = new byte[317];
+		int expectedLength;
+		do{
+			expectedLength = blockingRead(expected, expectedBuf);
+			int actualLength = blockingRead(actual, actualBuf);
+			assertEquals(expectedLength, actualLength);
+			assertArrayEquals(expectedBuf, actualBuf);
+			if(expectedLength == expectedBuf.length){
+				//offsets are only meaningful until we hit EOF
+				assertEquals(expected.getCurrentVirutalFileOffset(), actual.getCurrentVirutalFileOffset());
+			}
+		}while(expectedLength == expectedBuf.length);
+		
+		assertEquals(-1, actual.read());
+		assertFalse(actual.hasMoreData());
+	}
+	
+	private int blockingRead(BgzfInputStream in, byte[] buf) throws IOException{
+		int offset=0;
+		while(offset < buf.length){
+			int read = in.read(buf, offset, buf.length - offset);
+			if(read == -1){
+				break;
+			}
+			offset+=read;
+		}
+		return offset;
+	}
+	
+	@Test
+	public void multiThreadedParserVisitsSameRecordsAndOffsets() throws IOException{
+		SamParser serialParser = SamParserFactory.create(bamFile);
+		SamParser parallelParser = SamParserFactory.create(bamFile, ReservedAttributeValidator.INSTANCE, 4);
+		
+		assertEquals(visitAll(serialParser), visitAll(parallelParser));
+	}
+	
+	private List<String> visitAll(SamParser parser) throws IOException{
+		List<String> visited = new ArrayList<>();
+		parser.parse(new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback,
+					SamRecord record, VirtualFileOffset start,
+					VirtualFileOffset end) {
+				visited.add(record.getQueryName() + " " + start + " " + end);
+			}
+			
+		});
+		assertFalse(visited.isEmpty());
+		return visited;
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestReadNameIndexedBamDataStore {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private File bamFile;
+	
+	private final Map<String, List<SamRecord>> expectedRecordsByName = new LinkedHashMap<>();
+	private int numberOfRecords;
+	
+	@Before
+	public void setup() throws IOException{
+		ResourceHelper resources = new ResourceHelper(TestReadNameIndexedBamDataStore.class);
+		//copy to temp dir so the sidecar index is written there
+		bamFile = new File(tmpDir.getRoot(), "example.bam");
+		Files.copy(resources.getFile("example.bam").toPath(), bamFile.toPath());
+		
+		SamParserFactory.create(bamFile).parse(new AbstractSamVisitor() {
+
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				expectedRecordsByName.computeIfAbsent(record.getQueryName(), k-> new ArrayList<>())
+										.add(record);
+				numberOfRecords++;
+			}
+			
+		});
+	}
+	
+	@Test
+	public void indexFileWrittenNextToBam() throws IOException{
+		File expectedIndex = new File(tmpDir.getRoot(), "example.bam.rni");
+		assertFalse(expectedIndex.exists());
+		
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.useReadNameIndex(true)
+											.build()){
+			assertTrue(expectedIndex.exists());
+		}
+	}
+	
+	@Test
+	public void getAllRecordsForEveryName() throws IOException, DataStoreException{
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.useReadNameIndex(true)
+											.build()){
+			assertTrue(expectedRecordsByName.size() > 1);
+			for(Map.Entry<String, List<SamRecord>> entry : expectedRecordsByName.entrySet()){
+				assertEquals(entry.getValue(), sut.getAllRecordsFor(entry.getKey()));
+				assertEquals(entry.getValue().get(0), sut.get(entry.getKey()));
+				assertTrue(sut.contains(entry.getKey()));
+			}
+			assertEquals(numberOfRecords, sut.getNumberOfRecords());
+		}
+	}
+	
+	@Test
+	public void nameNotInFile() throws IOException, DataStoreException{
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.useReadNameIndex(true)
+											.build()){
+			assertNull(sut.get("fake"));
+			assertFalse(sut.contains("fake"));
+			assertTrue(sut.getAllRecordsFor("fake").isEmpty());
+		}
+	}
+	
+	@Test
+	public void filterStillApplied() throws IOException, DataStoreException{
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.useReadNameIndex(true)
+											.filter(record -> record.getQueryName().equals("r003"))
+											.build()){
+			assertNull(sut.get("r001"));
+			assertTrue(sut.getAllRecordsFor("r001").isEmpty());
+			assertEquals(expectedRecordsByName.get("r003"), sut.getAllRecordsFor("r003"));
+		}
+	}
+	
+	@Test
+	public void nonStandardIndexPath() throws IOException, DataStoreException{
+		File indexFile = new File(tmpDir.newFolder("indexes"), "names.rni");
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.readNameIndexFile(indexFile)
+											.build()){
+			assertTrue(indexFile.exists());
+			assertEquals(expectedRecordsByName.get("r001"), sut.getAllRecordsFor("r001"));
+		}
+		assertFalse(new File(tmpDir.getRoot(), "example.bam.rni").exists());
+	}
+	
+	@Test
+	public void existingIndexIsReused() throws IOException{
+		File indexFile = ReadNameIndex.getDefaultIndexFileFor(bamFile);
+		new SamFileDataStoreBuilder(bamFile).useReadNameIndex(true).build().close();
+		
+		assertTrue(ReadNameIndex.isUpToDate(bamFile, indexFile));
+		
+		//set to an old time so we can tell if it gets rewritten
+		long lastModified = 1_000_000L;
+		assertTrue(indexFile.setLastModified(lastModified));
+		
+		new SamFileDataStoreBuilder(bamFile).useReadNameIndex(true).build().close();
+		assertEquals(lastModified, indexFile.lastModified());
+	}
+	
+	@Test
+	public void staleIndexIsRebuilt() throws IOException, DataStoreException{
+		File indexFile = ReadNameIndex.getDefaultIndexFileFor(bamFile);
+		new SamFileDataStoreBuilder(bamFile).useReadNameIndex(true).build().close();
+		
+		assertTrue(bamFile.setLastModified(bamFile.lastModified() - 10_000));
+		assertFalse(ReadNameIndex.isUpToDate(bamFile, indexFile));
+		
+		try(SamFileDataStore sut = new SamFileDataStoreBuilder(bamFile)
+											.useReadNameIndex(true)
+											.build()){
+			assertTrue(ReadNameIndex.isUpToDate(bamFile, indexFile));
+			assertEquals(expectedRecordsByName.get("r001"), sut.getAllRecordsFor("r001"));
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.sam.attribute.ReservedAttributeValidator;
+import org.jcvi.jillion.sam.attribute.ReservedSamAttributeKeys;
+import org.jcvi.jillion.sam.attribute.SamAttribute;
+import org.jcvi.jillion.sam.attribute.SamAttributeKeyFactory;
+import org.jcvi.jillion.sam.cigar.Cigar;
+import org.jcvi.jillion.sam.cigar.CigarOperation;
+import org.jcvi.jillion.sam.header.SamHeader;
+import org.jcvi.jillion.sam.header.SamHeaderBuilder;
+import org.jcvi.jillion.sam.header.SamReferenceSequenceBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSamRecordLineParser {
+
+	private SamHeader header;
+	private SamRecordLineParser sut;
+	
+	@Before
+	public void setup(){
+		header = new SamHeaderBuilder()
+						.addReferenceSequence(new SamReferenceSequenceBuilder("chr1", 1000).build())
+						.addReferenceSequence(new SamReferenceSequenceBuilder("chr2", 1000).build())
+						.build();
+		sut = new SamRecordLineParser(header, ReservedAttributeValidator.INSTANCE);
+	}
+	
+	@Test
+	public void blankLineReturnsNull() throws IOException{
+		assertNull(sut.parse(""));
+		assertNull(sut.parse(" \t\r\n"));
+	}
+	
+	@Test
+	public void mandatoryFields() throws IOException{
+		SamRecord record = sut.parse("read1\t99\tchr1\t7\t30\t3S5M1D2M\t=\t37\t-39\tTTAGATAAAG\t!!+,-./0:;\n");
+		
+		assertEquals("read1", record.getQueryName());
+		assertEquals(99, record.getFlags().asInt());
+		assertEquals("chr1", record.getReferenceName());
+		assertEquals(7, record.getStartPosition());
+		assertEquals(30, record.getMappingQuality());
+		assertEquals(new Cigar.Builder(3)
+								.addElement(CigarOperation.SOFT_CLIP, 3)
+								.addElement(CigarOperation.ALIGNMENT_MATCH, 5)
+								.addElement(CigarOperation.DELETION, 1)
+								.addElement(CigarOperation.ALIGNMENT_MATCH, 2)
+								.build(),
+				record.getCigar());
+		assertEquals("chr1", record.getNextName());
+		assertEquals(37, record.getNextOffset());
+		assertEquals(-39, record.getObservedTemplateLength());
+		assertEquals(new NucleotideSequenceBuilder("TTAGATAAAG").build(), record.getSequence());
+		assertEquals(new QualitySequenceBuilder(new byte[]{0,0,10,11,12,13,14,15,25,26}).build(), record.getQualities());
+		assertEquals(0, record.getAttributes().size());
+	}
+	
+	@Test
+	public void referenceNamesShareHeaderInstances() throws IOException{
+		String line = new StringBuilder("read1\t99\t").append("chr2")
+											.append("\t7\t30\t4M\t").append("chr1")
+											.append("\t37\t39\tACGT\t*")
+											.toString();
+		SamRecord record = sut.parse(line);
+		
+		assertSame(header.getReferenceSequence("chr2").getName(), record.getReferenceName());
+		assertSame(header.getReferenceSequence("chr1").getName(), record.getNextName());
+	}
+	
+	@Test
+	public void unavailableFields() throws IOException{
+		SamRecord record = sut.parse("read1\t4\t*\t0\t0\t*\t*\t0\t0\t*\t*");
+		
+		assertNull(record.getReferenceName());
+		assertNull(record.getNextName());
+		assertNull(record.getCigar());
+		assertNull(record.getSequence());
+		assertNull(record.getQualities());
+	}
+	
+	@Test
+	public void typedAttributes() throws IOException{
+		SamRecord record = sut.parse("read1\t0\tchr1\t1\t30\t4M\t*\t0\t0\tACGT\t*\tNM:i:-2\tXA:A:q\tXZ:Z:some text\tXF:f:1.5");
+		
+		assertEquals(Integer.valueOf(-2), record.getAttribute(ReservedSamAttributeKeys.EDIT_DISTANCE).getValue());
+		
+		SamAttribute xa = record.getAttribute(SamAttributeKeyFactory.getKey("XA"));
+		assertEquals(Character.valueOf('q'), xa.getValue());
+		assertEquals('q', xa.getPrintableCharacter());
+		
+		assertEquals("some text", record.getAttribute(SamAttributeKeyFactory.getKey("XZ")).getValue());
+		assertEquals(1.5F, record.getAttribute(SamAttributeKeyFactory.getKey("XF")).getFloat(), 0.0001F);
+	}
+	
+	@Test
+	public void untypedReservedAttribute() throws IOException{
+		SamRecord record = sut.parse("read1\t0\tchr1\t1\t30\t4M\t*\t0\t0\tACGT\t*\tMD:10A5");
+		
+		assertEquals("10A5", record.getAttribute(ReservedSamAttributeKeys.MISMATCHING_POSITIONS).getValue());
+	}
+	
+	@Test(expected = IOException.class)
+	public void untypedNonReservedAttributeShouldThrowIOException() throws IOException{
+		sut.parse("read1\t0\tchr1\t1\t30\t4M\t*\t0\t0\tACGT\t*\tXY:something");
+	}
+	
+	@Test(expected = IOException.class)
+	public void tooFewFieldsShouldThrowIOException() throws IOException{
+		sut.parse("read1\t0\tchr1\t1\t30\t4M\t*\t0\t0\tACGT");
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void invalidPositionShouldThrowNumberFormatException() throws IOException{
+		sut.parse("read1\t0\tchr1\t1x\t30\t4M\t*\t0\t0\tACGT\t*");
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void mappingQualityOutOfByteRangeShouldThrowNumberFormatException() throws IOException{
+		sut.parse("read1\t0\tchr1\t1\t300\t4M\t*\t0\t0\tACGT\t*");
+	}
+	
+	@Test
+	public void parserCanBeReusedForManyLines() throws IOException{
+		SamRecord first = sut.parse("read1\t0\tchr1\t1\t30\t4M\t*\t0\t0\tACGT\t*\tNM:i:1");
+		SamRecord second = sut.parse("read2\t16\tchr2\t5\t20\t2M\t*\t0\t0\tGG\t*");
+		
+		assertEquals("read1", first.getQueryName());
+		assertEquals("chr1", first.getReferenceName());
+		assertEquals(1, first.getAttributes().size());
+		
+		assertEquals("read2", second.getQueryName());
+		assertEquals("chr2", second.getReferenceName());
+		assertEquals(0, second.getAttributes().size());
+	}
+}
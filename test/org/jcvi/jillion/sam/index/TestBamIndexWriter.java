@@ -163,6 +163,38 @@ public class TestBamIndexWriter {
 
 	}
 
+
+	@Test
+	public void multiThreadedCompressionShouldWriteSameBamAndIndexAsSingleThreaded() throws IOException{
+		SamHeader originalHeader = parseSamHeaderFrom(bamFile);
+		
+		File singleThreadedFile = tmpDir.newFile("singleThreaded.bam");
+		File multiThreadedFile = tmpDir.newFile("multiThreaded.bam");
+		
+		try(SamWriter writer = new SamFileWriterBuilder(singleThreadedFile, originalHeader)
+				.createBamIndex(true, true)
+				.build();
+				){
+			writeAllRecords(bamFile, writer);
+		}
+		try(SamWriter writer = new SamFileWriterBuilder(multiThreadedFile, originalHeader)
+				.createBamIndex(true, true)
+				.setNumberOfDeflaterThreads(4)
+				.build();
+				){
+			writeAllRecords(bamFile, writer);
+		}
+		
+		TestUtil.assertContentsAreEqual(singleThreadedFile, multiThreadedFile);
+		TestUtil.assertContentsAreEqual(new File(tmpDir.getRoot(),"singleThreaded.bam.bai"), 
+										new File(tmpDir.getRoot(),"multiThreaded.bam.bai"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroDeflaterThreadsShouldThrowIllegalArgumentException() throws IOException{
+		new SamFileWriterBuilder(tmpDir.newFile("out.bam"), parseSamHeaderFrom(bamFile))
+				.setNumberOfDeflaterThreads(0);
+	}
 	
 	private void assertSamFilesMatch(File expected, File actual) throws IOException{
 		assertSamFilesMatch(true,  expected, actual);
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.sam.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.internal.sam.index.IndexUtil;
+import org.jcvi.jillion.sam.AbstractSamVisitor;
+import org.jcvi.jillion.sam.SamParser;
+import org.jcvi.jillion.sam.SamParserFactory;
+import org.jcvi.jillion.sam.SamRecord;
+import org.jcvi.jillion.sam.VirtualFileOffset;
+import org.jcvi.jillion.sam.header.SamHeader;
+import org.jcvi.jillion.sam.header.SamReferenceSequence;
+import org.junit.Before;
+import org.junit.Test;
+/**
+ * Tests that region queries using the BAM index
+ * only looking at the chunks of the overlapping bins
+ * return the same records as scanning the whole file.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestIndexedBamRegionQueries {
+
+	private final ResourceHelper resources = new ResourceHelper(TestIndexedBamRegionQueries.class);
+	
+	private File bamFile, baiFile;
+	private SamParser indexedParser;
+	private SamHeader header;
+	private BamIndex index;
+	
+	private final List<SamRecord> allRecords = new ArrayList<>();
+	private final List<VirtualFileOffset> allStartOffsets = new ArrayList<>();
+	
+	@Before
+	public void setup() throws IOException{
+		bamFile = resources.getFile("index_test.bam");
+		baiFile = resources.getFile("index_test.bam.bai");
+		SamParser fullParser = SamParserFactory.create(bamFile);
+		indexedParser = SamParserFactory.createUsingIndex(bamFile, baiFile);
+		header = fullParser.getHeader();
+		try(InputStream in = new FileInputStream(baiFile)){
+			index = IndexUtil.parseIndex(in, header);
+		}
+		fullParser.parse(new AbstractSamVisitor() {
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				allRecords.add(record);
+				allStartOffsets.add(start);
+			}
+		});
+	}
+	
+	@Test
+	public void smallRegionsMatchFullScan() throws IOException{
+		int recordsFound=0;
+		for(SamReferenceSequence ref : header.getReferenceSequences()){
+			int length = ref.getLength();
+			for(int start = 0; start < length; start += length/7 +1){
+				recordsFound += assertRegionMatchesFullScan(ref.getName(), Range.of(start, Math.min(length -1, start + 999)));
+			}
+		}
+		assertTrue(recordsFound > 0);
+	}
+	
+	@Test
+	public void largeRegionsMatchFullScan() throws IOException{
+		for(SamReferenceSequence ref : header.getReferenceSequences()){
+			int length = ref.getLength();
+			assertRegionMatchesFullScan(ref.getName(), Range.of(0, length -1));
+			assertRegionMatchesFullScan(ref.getName(), Range.of(length/3, (2*length)/3));
+		}
+	}
+	
+	@Test
+	public void chunksAreSortedAndDoNotOverlap(){
+		for(SamReferenceSequence ref : header.getReferenceSequences()){
+			ReferenceIndex refIndex = index.getReferenceIndex(ref.getName());
+			if(refIndex ==null){
+				continue;
+			}
+			List<Chunk> chunks = IndexUtil.getChunksOverlapping(refIndex, Range.of(0, ref.getLength() -1));
+			VirtualFileOffset previousEnd = null;
+			for(Chunk chunk : chunks){
+				assertTrue(chunk.getBegin().compareTo(chunk.getEnd()) < 0);
+				if(previousEnd !=null){
+					assertTrue(previousEnd.compareTo(chunk.getBegin()) < 0);
+					assertFalse(previousEnd.getCompressedBamBlockOffset() == chunk.getBegin().getCompressedBamBlockOffset());
+				}
+				previousEnd = chunk.getEnd();
+			}
+		}
+	}
+	
+	private int assertRegionMatchesFullScan(String refName, Range region) throws IOException{
+		List<String> expected = new ArrayList<>();
+		for(int i=0; i< allRecords.size(); i++){
+			SamRecord record = allRecords.get(i);
+			if(refName.equals(record.getReferenceName()) && record.mapped() 
+					&& record.getAlignmentRange().isSubRangeOf(region)){
+				expected.add(asString(record, allStartOffsets.get(i)));
+			}
+		}
+		
+		List<String> actual = new ArrayList<>();
+		boolean[] visitedEnd = new boolean[1];
+		indexedParser.parse(refName, region, new AbstractSamVisitor() {
+			@Override
+			public void visitRecord(SamVisitorCallback callback, SamRecord record,
+					VirtualFileOffset start, VirtualFileOffset end) {
+				actual.add(asString(record, start));
+			}
+
+			@Override
+			public void visitEnd() {
+				visitedEnd[0] = true;
+			}
+		});
+		assertEquals(refName + " " + region, expected, actual);
+		assertTrue(visitedEnd[0]);
+		return actual.size();
+	}
+	
+	private static String asString(SamRecord record, VirtualFileOffset start){
+		return record.getQueryName() + " " + record.getStartPosition() + " " + start;
+	}
+}
@@ -48,6 +48,8 @@ import org.junit.runners.Suite.SuiteClasses;
         TestFastqParser.class,
         TestFastqParserWithFunctionLambda.class,
         TestInvalidFastq.class,
+        TestFastqParserLineEndings.class,
+        TestFastqRecordVisitorByteSlices.class,
         
         TestDefaultFastQFileDataStore.class,
         TestDefaultMultiLineFastqRecordsInDataStore.class,
@@ -56,6 +58,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestFastqFileWithEmptyRead.class,
         
         TestIndexedFastQFileDataStore.class,
+        TestFqiFastqFileDataStore.class,
         TestDefaultFastqFileDataStoreMultilineGuessCodec.class,
         TestIndexedFastqFileDataStoreGuessCodec.class,
         TestIndexedMultilineFastqDataStore.class,
@@ -83,6 +86,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestAvgQualityFastqRecord.class,
         
         TestFastqReader.class,
+        TestParallelFastqFileReader.class,
         TestFastqWriterMethods.class
     }
     )
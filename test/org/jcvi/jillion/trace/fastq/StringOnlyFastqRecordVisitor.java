@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import org.jcvi.jillion.core.qual.QualitySequence;
+/**
+ * Wraps a (usually mock) {@link FastqRecordVisitor}
+ * so only the String callbacks are passed along.
+ * The byte slice callbacks use the interface's default
+ * implementations which convert the slices into Strings.
+ * 
+ * @author dkatzel
+ *
+ */
+final class StringOnlyFastqRecordVisitor implements FastqRecordVisitor{
+
+	private final FastqRecordVisitor delegate;
+	
+	static FastqRecordVisitor wrap(FastqRecordVisitor delegate){
+		return new StringOnlyFastqRecordVisitor(delegate);
+	}
+	
+	private StringOnlyFastqRecordVisitor(FastqRecordVisitor delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void visitNucleotides(String nucleotides) {
+		delegate.visitNucleotides(nucleotides);
+	}
+
+	@Override
+	public void visitEncodedQualities(String encodedQualities) {
+		delegate.visitEncodedQualities(encodedQualities);
+	}
+
+	@Override
+	public void visitQualities(QualitySequence qualities) {
+		delegate.visitQualities(qualities);
+	}
+
+	@Override
+	public void visitEnd() {
+		delegate.visitEnd();
+	}
+
+	@Override
+	public void halted() {
+		delegate.halted();
+	}
+
+}
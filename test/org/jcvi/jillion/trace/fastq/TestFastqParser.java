@@ -83,7 +83,7 @@ public class TestFastqParser extends EasyMockSupport{
 		FastqRecordVisitor secondRecordVisitor = createSecondRecordVisitor();
 		
 		expect(visitor.visitDefline(isA(FastqVisitorCallback.class), eq("SOLEXA1_0007:2:13:163:254#GATCAG/2"), isNull()))
-		.andReturn(secondRecordVisitor);
+		.andReturn(StringOnlyFastqRecordVisitor.wrap(secondRecordVisitor));
 		
 		visitor.visitEnd();
 		
@@ -105,7 +105,7 @@ public class TestFastqParser extends EasyMockSupport{
 						.andAnswer(() ->{
 							FastqVisitorCallback callback = (FastqVisitorCallback)getCurrentArguments()[0];
 							mementos.add(callback.createMemento());
-							return firstRecordVisitor;
+							return StringOnlyFastqRecordVisitor.wrap(firstRecordVisitor);
 						});
 		
 		
@@ -115,7 +115,7 @@ public class TestFastqParser extends EasyMockSupport{
 								.andAnswer(() ->{
 									FastqVisitorCallback callback = (FastqVisitorCallback)getCurrentArguments()[0];
 									mementos.add(callback.createMemento());
-									return secondRecordVisitor;
+									return StringOnlyFastqRecordVisitor.wrap(secondRecordVisitor);
 								});
 		
 		visitor.visitEnd();
@@ -129,13 +129,13 @@ public class TestFastqParser extends EasyMockSupport{
 		FastqRecordVisitor firstRecordVisitor = firstRecordVisitor();
 		
 		expect(visitor.visitDefline(isA(FastqVisitorCallback.class), eq("SOLEXA1_0007:1:13:1658:1080#GGCTAC/2"), isNull()))
-						.andReturn(firstRecordVisitor);
+						.andReturn(StringOnlyFastqRecordVisitor.wrap(firstRecordVisitor));
 		
 		
 		FastqRecordVisitor secondRecordVisitor = createSecondRecordVisitor();
 		
 		expect(visitor.visitDefline(isA(FastqVisitorCallback.class), eq("SOLEXA1_0007:2:13:163:254#GATCAG/2"), isNull()))
-		.andReturn(secondRecordVisitor);
+		.andReturn(StringOnlyFastqRecordVisitor.wrap(secondRecordVisitor));
 		
 		visitor.visitEnd();
 		
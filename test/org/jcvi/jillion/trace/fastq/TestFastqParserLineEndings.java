@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+/**
+ * Tests that the byte scanning fastq parser
+ * handles different end of line characters,
+ * blank lines between records and qualities that
+ * are wrapped onto multiple lines the same way
+ * as a "normal" fastq file.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestFastqParserLineEndings {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private final ResourceHelper helper = new ResourceHelper(TestFastqParserLineEndings.class);
+	
+	@Test
+	public void windowsLineEndingsShouldParseSameAsUnix() throws Exception{
+		File unixFile = helper.getFile("files/sanger.fastq");
+		String contents = new String(Files.readAllBytes(unixFile.toPath()), IOUtil.UTF_8);
+		
+		File windowsFile = tmp.newFile("windows.fastq");
+		Files.write(windowsFile.toPath(), contents.replaceAll("\n", "\r\n").getBytes(IOUtil.UTF_8));
+		
+		for(DataStoreProviderHint hint : DataStoreProviderHint.values()){
+			assertSameRecords(unixFile, windowsFile, hint);
+		}
+	}
+	
+	@Test
+	public void blankLinesBetweenRecordsShouldBeSkipped() throws Exception{
+		File unixFile = helper.getFile("files/sanger.fastq");
+		String contents = new String(Files.readAllBytes(unixFile.toPath()), IOUtil.UTF_8);
+		
+		File blankLinesFile = tmp.newFile("blankLines.fastq");
+		Files.write(blankLinesFile.toPath(), ("\n" +contents.replaceAll("\n@SOLEXA", "\n\n@SOLEXA") + "\n\n").getBytes(IOUtil.UTF_8));
+		
+		for(DataStoreProviderHint hint : DataStoreProviderHint.values()){
+			assertSameRecords(unixFile, blankLinesFile, hint);
+		}
+	}
+	
+	@Test
+	public void qualitiesWrappedOntoMultipleLines() throws IOException{
+		String fastq = "@read1\n"
+					+ "ACGTACGT\n"
+					+ "+\n"
+					+ "IIII\n"
+					+ "HHHH\n"
+					+ "@read2\r\n"
+					+ "TTTT\r\n"
+					+ "+read2\r\n"
+					+ "9999\r\n";
+		List<FastqRecord> actual = parse(fastq);
+		
+		assertEquals(Arrays.asList(
+				createRecord("read1", "ACGTACGT", "IIIIHHHH"),
+				createRecord("read2", "TTTT", "9999")
+				), actual);
+	}
+	
+	@Test
+	public void lastRecordWithoutEndOfLine() throws IOException{
+		List<FastqRecord> actual = parse("@read1\nACGT\n+\nIIII");
+		
+		assertEquals(Arrays.asList(
+				createRecord("read1", "ACGT", "IIII")
+				), actual);
+	}
+	
+	private static FastqRecord createRecord(String id, String bases, String encodedQualities){
+		return FastqRecordBuilder.create(id, 
+								new NucleotideSequenceBuilder(bases).build(), 
+								FastqQualityCodec.SANGER.decode(encodedQualities))
+						.build();
+	}
+	
+	private List<FastqRecord> parse(String fastq) throws IOException{
+		List<FastqRecord> records = new ArrayList<>();
+		FastqFileParser.create(new ByteArrayInputStream(fastq.getBytes(IOUtil.UTF_8)))
+						.parse(new FastqVisitor(){
+
+							@Override
+							public FastqRecordVisitor visitDefline(FastqVisitorCallback callback,
+									String id, String optionalComment) {
+								return new AbstractFastqRecordVisitor(id, optionalComment, FastqQualityCodec.SANGER) {
+									
+									@Override
+									protected void visitRecord(FastqRecord record) {
+										records.add(record);
+									}
+								};
+							}
+
+							@Override
+							public void visitEnd() {
+								//no-op							
+							}
+
+							@Override
+							public void halted() {
+								//no-op							
+							}
+			
+		});
+		return records;
+	}
+	
+	private void assertSameRecords(File expectedFile, File actualFile, DataStoreProviderHint hint) throws Exception{
+		try(FastqFileDataStore expected = new FastqFileDataStoreBuilder(expectedFile)
+												.qualityCodec(FastqQualityCodec.SANGER)
+												.hint(hint)
+												.build();
+			FastqFileDataStore actual = new FastqFileDataStoreBuilder(actualFile)
+												.qualityCodec(FastqQualityCodec.SANGER)
+												.hint(hint)
+												.build();
+				
+			StreamingIterator<FastqRecord> iter = expected.iterator();
+				){
+			assertEquals(expected.getNumberOfRecords(), actual.getNumberOfRecords());
+			while(iter.hasNext()){
+				FastqRecord expectedRecord = iter.next();
+				assertEquals(hint.toString(), expectedRecord, actual.get(expectedRecord.getId()));
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+/**
+ * Tests for the byte slice callbacks of {@link FastqRecordVisitor}.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestFastqRecordVisitorByteSlices {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	private static final String FASTQ = "@read1\n"
+										+ "ACGTACGT\n"
+										+ "+\n"
+										+ "IIII9999\n"
+										+ "@read2\n"
+										+ "GGGCCCAAAT\n"
+										+ "+read2\n"
+										+ "#####\n"
+										+ "IIIII\n";
+	
+	@Test
+	public void defaultByteSliceCallbacksDelegateToStringCallbacks(){
+		List<String> calls = new ArrayList<>();
+		FastqRecordVisitor sut = new RecordingVisitor(calls);
+		byte[] buffer = "xxACGTyyII99".getBytes(StandardCharsets.US_ASCII);
+		
+		sut.visitNucleotides(buffer, 2, 4);
+		sut.visitEncodedQualities(buffer, 8, 4);
+		
+		assertEquals(2, calls.size());
+		assertEquals("bases ACGT", calls.get(0));
+		assertEquals("quals II99", calls.get(1));
+	}
+	
+	@Test
+	public void fileParserPassesByteSlices() throws IOException{
+		File fastq = tmpDir.newFile("test.fastq");
+		Files.write(fastq.toPath(), FASTQ.getBytes(StandardCharsets.US_ASCII));
+		
+		List<String> calls = new ArrayList<>();
+		FastqFileParser.create(fastq).parse(new FastqVisitor() {
+			
+			@Override
+			public FastqRecordVisitor visitDefline(FastqVisitorCallback callback,
+					String id, String optionalComment) {
+				return new RecordingVisitor(calls){
+
+					@Override
+					public void visitNucleotides(String nucleotides) {
+						throw new AssertionError("should use byte slice");
+					}
+
+					@Override
+					public void visitEncodedQualities(String encodedQualities) {
+						throw new AssertionError("should use byte slice");
+					}
+
+					@Override
+					public void visitNucleotides(byte[] asciiNucleotides,
+							int offset, int length) {
+						calls.add("bases " + new String(asciiNucleotides, offset, length, StandardCharsets.US_ASCII));
+					}
+
+					@Override
+					public void visitEncodedQualities(byte[] encodedQualities,
+							int offset, int length) {
+						calls.add("quals " + new String(encodedQualities, offset, length, StandardCharsets.US_ASCII));
+					}
+				};
+			}
+			
+			@Override
+			public void visitEnd() {
+				calls.add("end");
+			}
+			
+			@Override
+			public void halted() {
+				//no-op
+			}
+		});
+		
+		List<String> expected = new ArrayList<>();
+		expected.add("bases ACGTACGT");
+		expected.add("quals IIII9999");
+		expected.add("end record");
+		expected.add("bases GGGCCCAAAT");
+		//qualities broken over multiple lines are concatenated
+		expected.add("quals #####IIIII");
+		expected.add("end record");
+		expected.add("end");
+		assertEquals(expected, calls);
+	}
+	
+	@Test
+	public void recordsBuiltFromByteSlicesMatchRecordsBuiltFromStrings() throws IOException{
+		File fastq = tmpDir.newFile("test.fastq");
+		Files.write(fastq.toPath(), FASTQ.getBytes(StandardCharsets.US_ASCII));
+		
+		try(FastqFileDataStore fromBytes = new FastqFileDataStoreBuilder(fastq)
+													.qualityCodec(FastqQualityCodec.SANGER)
+													.build();
+			//the multiline parser only uses the String callbacks
+			FastqFileDataStore fromStrings = new FastqFileDataStoreBuilder(
+															IOUtil.toInputStream(FASTQ))
+													.qualityCodec(FastqQualityCodec.SANGER)
+													.hasMultilineSequences(true)
+													.build();
+				){
+			assertEquals(2, fromBytes.getNumberOfRecords());
+			for(String id : new String[]{"read1", "read2"}){
+				FastqRecord expected = fromStrings.get(id);
+				FastqRecord actual = fromBytes.get(id);
+				assertEquals(expected, actual);
+				assertEquals(expected.getNucleotideSequence().toString(), actual.getNucleotideSequence().toString());
+				assertEquals(expected.getQualitySequence(), actual.getQualitySequence());
+				assertEquals(expected.getLength(), actual.getLength());
+			}
+		}
+	}
+	
+	private static class RecordingVisitor implements FastqRecordVisitor{
+		private final List<String> calls;
+		
+		RecordingVisitor(List<String> calls) {
+			this.calls = calls;
+		}
+
+		@Override
+		public void visitNucleotides(String nucleotides) {
+			calls.add("bases " + nucleotides);
+		}
+
+		@Override
+		public void visitEncodedQualities(String encodedQualities) {
+			calls.add("quals " + encodedQualities);
+		}
+
+		@Override
+		public void visitQualities(QualitySequence qualities) {
+			calls.add("qualities " + qualities);
+		}
+
+		@Override
+		public void visitEnd() {
+			calls.add("end record");
+		}
+
+		@Override
+		public void halted() {
+			calls.add("halted");
+		}
+	}
+}
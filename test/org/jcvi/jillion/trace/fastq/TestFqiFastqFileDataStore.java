@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+/**
+ * Tests {@link FqiFastqFileDataStore} built
+ * using {@link FastqFileDataStoreBuilder#indexFile(File)}.
+ * 
+ * @author dkatzel
+ *
+ */
+public class TestFqiFastqFileDataStore extends AbstractTestFastQFileDataStore{
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@Override
+	protected FastqDataStore createFastQFileDataStore(File file,
+			FastqQualityCodec qualityCodec) throws IOException {
+		return new FastqFileDataStoreBuilder(file)
+						.qualityCodec(qualityCodec)
+						.hasComments(true)
+						.indexFile(new File(tmp.getRoot(), "example.fqi"))
+						.build();
+	}
+	
+	@Test
+	public void builderShouldUseIndex() throws IOException{
+		assertTrue(sut instanceof FqiFastqFileDataStore);
+	}
+	
+	@Test
+	public void reopenUsesExistingIndexWithoutReparsing() throws Exception{
+		File fastq = tmp.newFile("copy.fastq");
+		Files.copy(resources.getFile(file).toPath(), fastq.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		File fqi = FastqFileIndex.getDefaultIndexFileFor(fastq);
+		
+		try(FastqFileDataStore first = new FastqFileDataStoreBuilder(fastq)
+												.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+												.useIndexFile(true)
+												.build()){
+			assertTrue(fqi.exists());
+			assertEquals(QUALITY_CODEC, first.getQualityCodec());
+		}
+		assertTrue(FastqFileIndex.isUpToDate(fastq, fqi));
+		byte[] indexBytes = Files.readAllBytes(fqi.toPath());
+		//make the index look old; 
+		//if it was rewritten the timestamp would change
+		assertTrue(fqi.setLastModified(1_000_000L));
+		
+		//no codec set, should get it from the index
+		try(FastqFileDataStore second = new FastqFileDataStoreBuilder(fastq)
+												.useIndexFile(true)
+												.build()){
+			assertEquals(1_000_000L, fqi.lastModified());
+			assertEquals(QUALITY_CODEC, second.getQualityCodec());
+			assertEquals(solexa_1489, second.get(solexa_1489.getId()));
+			assertEquals(2, second.getNumberOfRecords());
+		}
+		assertEquals(indexBytes.length, Files.readAllBytes(fqi.toPath()).length);
+	}
+	
+	@Test
+	public void changedFastqFileShouldRebuildIndex() throws Exception{
+		File fastq = tmp.newFile("copy.fastq");
+		Files.copy(resources.getFile(file).toPath(), fastq.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		File fqi = FastqFileIndex.getDefaultIndexFileFor(fastq);
+		
+		new FastqFileDataStoreBuilder(fastq).useIndexFile(true).build().close();
+		
+		//remove the last record
+		String contents = new String(Files.readAllBytes(fastq.toPath()), "UTF-8");
+		int secondRecord = contents.indexOf("\n@", 1) +1;
+		Files.write(fastq.toPath(), contents.substring(0, secondRecord).getBytes("UTF-8"));
+		assertFalse(FastqFileIndex.isUpToDate(fastq, fqi));
+		
+		try(FastqFileDataStore datastore = new FastqFileDataStoreBuilder(fastq)
+												.qualityCodec(QUALITY_CODEC)
+												.useIndexFile(true)
+												.build()){
+			assertTrue(FastqFileIndex.isUpToDate(fastq, fqi));
+			assertEquals(1, datastore.getNumberOfRecords());
+			assertEquals(solexa_1489, datastore.get(solexa_1489.getId()));
+			assertNull(datastore.get(solexa_1692.getId()));
+		}
+	}
+	
+	@Test
+	public void filtersAreAppliedToIndexedRecords() throws Exception{
+		try(FastqFileDataStore datastore = new FastqFileDataStoreBuilder(resources.getFile(file))
+												.qualityCodec(QUALITY_CODEC)
+												.filter(id -> id.equals(solexa_1692.getId()))
+												.indexFile(new File(tmp.getRoot(), "filtered.fqi"))
+												.build();
+			StreamingIterator<String> ids = datastore.idIterator();
+				){
+			assertEquals(1, datastore.getNumberOfRecords());
+			assertFalse(datastore.contains(solexa_1489.getId()));
+			assertEquals(solexa_1692, datastore.get(solexa_1692.getId()));
+			assertEquals(solexa_1692.getId(), ids.next());
+			assertFalse(ids.hasNext());
+		}
+	}
+	
+	@Test
+	public void iterationOnlyHintIgnoresIndex() throws Exception{
+		File fqi = new File(tmp.getRoot(), "ignored.fqi");
+		try(FastqFileDataStore datastore = new FastqFileDataStoreBuilder(resources.getFile(file))
+												.qualityCodec(QUALITY_CODEC)
+												.hint(DataStoreProviderHint.ITERATION_ONLY)
+												.indexFile(fqi)
+												.build()){
+			assertFalse(datastore instanceof FqiFastqFileDataStore);
+			assertFalse(fqi.exists());
+		}
+	}
+}
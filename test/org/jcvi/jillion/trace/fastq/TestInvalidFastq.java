@@ -50,7 +50,7 @@ public class TestInvalidFastq {
 		FastqRecordVisitor recordVisitor = createMock(FastqRecordVisitor.class);
 		
 		expect(visitor.visitDefline(anyObject(), eq("SRR001666.1"), eq("071112_SLXA-EAS1_s_7:5:1:817:345 length=36"))
-				).andReturn(recordVisitor);
+				).andReturn(StringOnlyFastqRecordVisitor.wrap(recordVisitor));
 		
 		recordVisitor.visitNucleotides("GGGTGATGGCCGCTGCCGATGGCGTCAAATCCCACC");
 		recordVisitor.visitEncodedQualities("IIIIIIIIIIIIIIIIIIIIIIIIIIIIII9IG9IC");
@@ -83,7 +83,7 @@ public class TestInvalidFastq {
 		FastqRecordVisitor recordVisitor = createMock(FastqRecordVisitor.class);
 		
 		expect(visitor.visitDefline(anyObject(), eq("SRR001666.1"), eq("071112_SLXA-EAS1_s_7:5:1:817:345 length=36"))
-				).andReturn(recordVisitor);
+				).andReturn(StringOnlyFastqRecordVisitor.wrap(recordVisitor));
 		
 		recordVisitor.visitNucleotides("GGGTGATGGCCGCTGCCGATGGCGTCAAATCCCACC");
 		
@@ -117,7 +117,7 @@ public class TestInvalidFastq {
 		FastqRecordVisitor recordVisitor = createMock(FastqRecordVisitor.class);
 		
 		expect(visitor.visitDefline(anyObject(), eq("SRR001666.1"), eq("071112_SLXA-EAS1_s_7:5:1:817:345 length=36"))
-				).andReturn(recordVisitor);
+				).andReturn(StringOnlyFastqRecordVisitor.wrap(recordVisitor));
 		
 		recordVisitor.visitNucleotides("GGGTGATGGCCGCTGCCGATGGCGTCAAATCCCACC");
 		
@@ -156,7 +156,7 @@ public class TestInvalidFastq {
 		FastqRecordVisitor recordVisitor = createMock(FastqRecordVisitor.class);
 		
 		expect(visitor.visitDefline(anyObject(), eq("SRR001666.1"), eq("071112_SLXA-EAS1_s_7:5:1:817:345 length=36"))
-				).andReturn(recordVisitor);
+				).andReturn(StringOnlyFastqRecordVisitor.wrap(recordVisitor));
 		
 		recordVisitor.visitNucleotides("GGGTGATGGCCGCTGCCGATGGCGTCAAATCCCACC");
 		
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.fastq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
+
+import org.jcvi.jillion.core.io.IOUtil;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.core.util.ThrowingStream;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestParallelFastqFileReader {
+
+	@ClassRule
+	public static TemporaryFolder tmp = new TemporaryFolder();
+	
+	private static File fastqFile;
+	private static List<FastqRecord> expected;
+	
+	@BeforeClass
+	public static void createFastqFile() throws IOException{
+		fastqFile = tmp.newFile("random.fastq");
+		Random random = new Random(1234);
+		char[] bases = "ACGTN".toCharArray();
+		//include '@' and '+' as the first quality to make sure
+		//resyncing doesn't get confused by quality lines
+		char[] quals = "@+I#5?".toCharArray();
+		
+		expected = new ArrayList<>();
+		try(PrintWriter writer = new PrintWriter(fastqFile)){
+			for(int i=0; i< 5_000; i++){
+				int length = random.nextInt(150);
+				StringBuilder seq = new StringBuilder(length);
+				StringBuilder qual = new StringBuilder(length);
+				for(int j=0; j< length; j++){
+					seq.append(bases[random.nextInt(bases.length)]);
+					qual.append(quals[random.nextInt(quals.length)]);
+				}
+				String id = "read"+i;
+				writer.printf("@%s%n%s%n+%s%n%s%n", id, seq, i%2==0? "" : id, qual);
+				
+				expected.add(FastqRecordBuilder.create(id, 
+										new NucleotideSequenceBuilder(seq.toString()).build(),
+										FastqQualityCodec.SANGER.decode(qual.toString()))
+									.build());
+			}
+		}
+	}
+	
+	@Test
+	public void smallChunksShouldSplitOnRecordBoundaries() throws IOException{
+		FastqFileChunkSpliterator sut = new FastqFileChunkSpliterator(fastqFile, FastqQualityCodec.SANGER, 1024);
+		
+		List<FastqRecord> actual = StreamSupport.stream(sut, true)
+												.collect(Collectors.toList());
+		
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void eachSplitParsesOnlyWholeRecords() throws IOException{
+		FastqFileChunkSpliterator sut = new FastqFileChunkSpliterator(fastqFile, FastqQualityCodec.SANGER, 1024);
+		FastqFileChunkSpliterator prefix = (FastqFileChunkSpliterator) sut.trySplit();
+		
+		List<FastqRecord> actual = new ArrayList<>();
+		prefix.forEachRemaining(actual::add);
+		int numberInPrefix = actual.size();
+		assertTrue(numberInPrefix > 0);
+		while(sut.tryAdvance(actual::add)){
+			//keep going
+		}
+		assertTrue(actual.size() > numberInPrefix);
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void parallelForEach() throws IOException{
+		Map<String, FastqRecord> actual = new ConcurrentHashMap<>();
+		FastqFileReader.parallelForEach(fastqFile, FastqQualityCodec.SANGER, (id, record)-> actual.put(id, record));
+		
+		assertEquals(expected.size(), actual.size());
+		for(FastqRecord record : expected){
+			assertEquals(record, actual.get(record.getId()));
+		}
+	}
+	
+	@Test
+	public void parallelRecordsGuessCodec() throws IOException{
+		try(ThrowingStream<FastqRecord> stream = FastqFileReader.parallelRecords(fastqFile)){
+			assertEquals(expected.size(), stream.count());
+		}
+	}
+	
+	@Test
+	public void compressedFilesAreParsedAsOneChunk() throws IOException{
+		File gzipped = tmp.newFile("random.fastq.gz");
+		try(OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(gzipped)))){
+			Files.copy(fastqFile.toPath(), out);
+		}
+		try(ThrowingStream<FastqRecord> stream = FastqFileReader.parallelRecords(gzipped, FastqQualityCodec.SANGER)){
+			assertEquals(expected, stream.collect(Collectors.toList()));
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void invalidRecordShouldThrowIOException() throws IOException{
+		File invalid = tmp.newFile("invalid.fastq");
+		Files.write(invalid.toPath(), "@read1\nACGT\n+\nIII\n".getBytes(IOUtil.UTF_8));
+		FastqFileReader.parallelForEach(invalid, FastqQualityCodec.SANGER, (id, record)->{});
+	}
+	
+	@Test(expected = UncheckedIOException.class)
+	public void invalidRecordInStreamShouldThrowUncheckedIOException() throws IOException{
+		File invalid = tmp.newFile("invalid2.fastq");
+		Files.write(invalid.toPath(), "read1\nACGT\n+\nIIII\n".getBytes(IOUtil.UTF_8));
+		try(ThrowingStream<FastqRecord> stream = FastqFileReader.parallelRecords(invalid, FastqQualityCodec.SANGER)){
+			stream.count();
+		}
+	}
+}
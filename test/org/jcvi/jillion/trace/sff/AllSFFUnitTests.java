@@ -50,6 +50,7 @@ import org.junit.runners.Suite.SuiteClasses;
         TestNoXMLManifestIndexedSffFileDataStore.class,
         TestIndexedSffFileDataStore.class,
         TestNoManifestIndexedSffFileDataStore.class,
+        TestOffsetIndexedSffFileDataStore.class,
         
         TestSffWriterNoManifest.class,
         TestSffWriterWithIndex.class,
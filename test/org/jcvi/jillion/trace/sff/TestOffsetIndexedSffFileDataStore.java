@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trace.sff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import org.jcvi.jillion.core.datastore.DataStoreException;
+import org.jcvi.jillion.core.datastore.DataStoreFilters;
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestOffsetIndexedSffFileDataStore extends AbstractTestSffFileDataStore{
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	@Override
+	protected File sffFileToUse() {
+		//no manifest so only the offset index can seek
+		return SFF_FILE_NO_INDEX;
+	}
+	
+	@Override
+	protected SffFileDataStore parseDataStore(File f) throws Exception {
+		return new SffFileDataStoreBuilder(f)
+						.hint(DataStoreProviderHint.RANDOM_ACCESS_OPTIMIZE_MEMORY)
+						.useOffsetIndex(new File(tmpDir.getRoot(), "sff.idx"))
+						.build();
+	}
+	
+	@Test
+	public void indexFileIsWritten(){
+		File indexFile = new File(tmpDir.getRoot(), "sff.idx");
+		assertTrue(indexFile.exists());
+		assertTrue(indexFile.length() > 0);
+	}
+	
+	@Test
+	public void existingIndexIsReused() throws IOException, DataStoreException{
+		File indexFile = new File(tmpDir.getRoot(), "sff.idx");
+		long lastModified = indexFile.lastModified();
+		
+		try(SffFileDataStore datastore = LargeSffFileDataStore.create(SFF_FILE_NO_INDEX, DataStoreFilters.alwaysAccept(), indexFile)){
+			assertEquals(FF585OX02HCMO2, datastore.get("FF585OX02HCMO2"));
+		}
+		assertEquals(lastModified, indexFile.lastModified());
+	}
+	
+	@Test
+	public void staleIndexIsRebuilt() throws IOException, DataStoreException{
+		File sffCopy = tmpDir.newFile("copy.sff");
+		Files.copy(SFF_FILE.toPath(), sffCopy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		//index built from a different file
+		File indexFile = new File(tmpDir.getRoot(), "sff.idx");
+		
+		try(SffFileDataStore datastore = LargeSffFileDataStore.create(sffCopy, DataStoreFilters.alwaysAccept(), indexFile)){
+			assertEquals(5, datastore.getNumberOfRecords());
+			assertEquals(FF585OX02FHO5X, datastore.get("FF585OX02FHO5X"));
+		}
+		assertEquals("copy.sff.idx", SffOffsetIndex.getDefaultIndexFileFor(sffCopy).getName());
+	}
+	
+	@Test
+	public void filteredIdsAreNotFound() throws IOException, DataStoreException{
+		File indexFile = new File(tmpDir.getRoot(), "sff.idx");
+		try(SffFileDataStore datastore = LargeSffFileDataStore.create(SFF_FILE_NO_INDEX, 
+				DataStoreFilters.newExcludeFilter(Collections.singleton("FF585OX02HCMO2")), indexFile)){
+			assertNull(datastore.get("FF585OX02HCMO2"));
+			assertFalse(datastore.contains("FF585OX02HCMO2"));
+			assertTrue(datastore.contains("FF585OX02FHO5X"));
+			assertEquals(4, datastore.getNumberOfRecords());
+		}
+	}
+	
+	@Test
+	public void missingIdReturnsNull() throws DataStoreException, IOException{
+		File indexFile = new File(tmpDir.getRoot(), "sff.idx");
+		try(SffFileDataStore datastore = LargeSffFileDataStore.create(SFF_FILE_NO_INDEX, DataStoreFilters.alwaysAccept(), indexFile)){
+			assertNull(datastore.get("notInFile"));
+			assertFalse(datastore.contains("notInFile"));
+			assertNull(datastore.get("A"));
+			assertNull(datastore.get("ZZZZZZZZZZZZZZZZZZZZZZZ"));
+		}
+	}
+}
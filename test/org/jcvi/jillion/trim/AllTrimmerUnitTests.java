@@ -35,7 +35,8 @@ import org.junit.runners.Suite.SuiteClasses;
 	
 	AllLucyUnitTests.class,
 	
-	TestTrimmerPipeline.class
+	TestTrimmerPipeline.class,
+	TestBatchFastqTrimmer.class
 })
 public class AllTrimmerUnitTests {
 
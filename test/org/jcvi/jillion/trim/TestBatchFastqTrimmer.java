@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Jillion development code
+ * 
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public License.  This should
+ * be distributed with the code.  If you do not have a copy,
+ *  see:
+ * 
+ *          http://www.gnu.org/copyleft/lesser.html
+ * 
+ * 
+ * Copyright for this code is held jointly by the individual authors.  These should be listed in the @author doc comments.
+ * 
+ * Information about Jillion can be found on its homepage
+ * 
+ *         http://jillion.sourceforge.net
+ * 
+ * Contributors:
+ *     Danny Katzel - initial API and implementation
+ ******************************************************************************/
+package org.jcvi.jillion.trim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jcvi.jillion.core.Range;
+import org.jcvi.jillion.core.datastore.DataStoreProviderHint;
+import org.jcvi.jillion.core.qual.PhredQuality;
+import org.jcvi.jillion.core.qual.QualitySequence;
+import org.jcvi.jillion.core.qual.QualitySequenceBuilder;
+import org.jcvi.jillion.core.residue.nt.NucleotideSequenceBuilder;
+import org.jcvi.jillion.core.util.iter.StreamingIterator;
+import org.jcvi.jillion.internal.ResourceHelper;
+import org.jcvi.jillion.trace.fastq.FastqDataStore;
+import org.jcvi.jillion.trace.fastq.FastqFileDataStoreBuilder;
+import org.jcvi.jillion.trace.fastq.FastqQualityCodec;
+import org.jcvi.jillion.trace.fastq.FastqRecord;
+import org.jcvi.jillion.trace.fastq.FastqRecordBuilder;
+import org.jcvi.jillion.trace.fastq.FastqWriter;
+import org.jcvi.jillion.trace.fastq.FastqWriterBuilder;
+import org.jcvi.jillion.trim.trimmomatic.SlidingWindowQualityTrimmer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBatchFastqTrimmer {
+
+	private final TrimmerPipeline pipeline = new TrimmerPipelineBuilder()
+													.add(new SlidingWindowQualityTrimmer(4, PhredQuality.valueOf(20)))
+													.minLength(30)
+													.build();
+	private List<FastqRecord> records;
+	
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+	
+	@Before
+	public void createRecords(){
+		Random random = new Random(1234);
+		records = new ArrayList<>();
+		for(int i=0; i< 5_000; i++){
+			int length = 20 + random.nextInt(130);
+			StringBuilder bases = new StringBuilder(length);
+			byte[] quals = new byte[length];
+			for(int j=0; j< length; j++){
+				bases.append("ACGT".charAt(random.nextInt(4)));
+				//qualities get worse towards the end of the read
+				quals[j] = (byte) Math.max(2, 40 - random.nextInt(1 + j/3));
+			}
+			records.add(FastqRecordBuilder.create("read"+i, 
+					new NucleotideSequenceBuilder(bases.toString()).build(),
+					new QualitySequenceBuilder(quals).build())
+					.build());
+		}
+	}
+	
+	private List<FastqRecord> expectedTrimmedRecords(TrimmerPipeline pipeline, Iterator<FastqRecord> iter){
+		List<FastqRecord> expected = new ArrayList<>();
+		while(iter.hasNext()){
+			FastqRecord record = iter.next();
+			Range range = pipeline.trim(record);
+			if(!range.isEmpty()){
+				expected.add(record.toBuilder().trim(range).build());
+			}
+		}
+		return expected;
+	}
+	
+	@Test
+	public void preserveOrderWritesSameRecordsInSameOrderAsSerialTrimming() throws IOException{
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline)
+											.numberOfThreads(4)
+											.batchSize(100)
+											.maxBatchesInFlight(5)
+											.build();
+		List<FastqRecord> actual = new ArrayList<>();
+		BatchFastqTrimmer.Stats stats = sut.trim(records.iterator(), new ListFastqWriter(actual));
+		
+		List<FastqRecord> expected = expectedTrimmedRecords(pipeline, records.iterator());
+		assertEquals(expected, actual);
+		
+		assertEquals(records.size(), stats.getNumberOfRecordsRead());
+		assertEquals(records.size(), stats.getNumberOfRecordsTrimmed());
+		assertEquals(expected.size(), stats.getNumberOfRecordsWritten());
+		assertEquals(records.size() - expected.size(), stats.getNumberOfRecordsFiltered());
+		assertEquals(records.stream().mapToLong(FastqRecord::getLength).sum(), stats.getNumberOfBasesRead());
+		assertEquals(expected.stream().mapToLong(FastqRecord::getLength).sum(), stats.getNumberOfBasesWritten());
+		assertTrue(stats.getElapsedNanos() > 0);
+		assertTrue(stats.getTrimRecordsPerSecond() > 0);
+	}
+	
+	@Test
+	public void unorderedWritesSameRecords() throws IOException{
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline)
+											.numberOfThreads(4)
+											.batchSize(37)
+											.preserveOrder(false)
+											.build();
+		List<FastqRecord> actual = new ArrayList<>();
+		BatchFastqTrimmer.Stats stats = sut.trim(records.iterator(), new ListFastqWriter(actual));
+		
+		List<FastqRecord> expected = expectedTrimmedRecords(pipeline, records.iterator());
+		assertEquals(expected.size(), stats.getNumberOfRecordsWritten());
+		
+		Comparator<FastqRecord> byId = Comparator.comparing(FastqRecord::getId);
+		expected.sort(byId);
+		actual.sort(byId);
+		assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void singleThreadSingleBatchInFlight() throws IOException{
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline)
+											.numberOfThreads(1)
+											.batchSize(1)
+											.maxBatchesInFlight(1)
+											.build();
+		List<FastqRecord> actual = new ArrayList<>();
+		sut.trim(records.subList(0, 500).iterator(), new ListFastqWriter(actual));
+		
+		assertEquals(expectedTrimmedRecords(pipeline, records.subList(0, 500).iterator()), actual);
+	}
+	
+	@Test
+	public void noRecords() throws IOException{
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline).build();
+		List<FastqRecord> actual = new ArrayList<>();
+		BatchFastqTrimmer.Stats stats = sut.trim(new ArrayList<FastqRecord>().iterator(), new ListFastqWriter(actual));
+		
+		assertTrue(actual.isEmpty());
+		assertEquals(0, stats.getNumberOfRecordsRead());
+		assertEquals(0, stats.getNumberOfRecordsWritten());
+	}
+	
+	@Test
+	public void untrimmedRecordsAreWrittenAsIs() throws IOException{
+		TrimmerPipeline noOp = new TrimmerPipelineBuilder().build();
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(noOp)
+										.numberOfThreads(2)
+										.build();
+		List<FastqRecord> actual = new ArrayList<>();
+		sut.trim(records.iterator(), new ListFastqWriter(actual));
+		
+		assertEquals(records.size(), actual.size());
+		for(int i=0; i< records.size(); i++){
+			assertSame(records.get(i), actual.get(i));
+		}
+	}
+	
+	@Test
+	public void bwaTrimFile() throws IOException{
+		ResourceHelper resources = new ResourceHelper(TestBatchFastqTrimmer.class);
+		TrimmerPipeline bwaPipeline = new TrimmerPipelineBuilder()
+											.add(new BwaQualityTrimmer(PhredQuality.valueOf(20)))
+											.minLength(64)
+											.build();
+		
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(bwaPipeline)
+											.numberOfThreads(3)
+											.batchSize(2)
+											.build();
+		List<FastqRecord> actual = new ArrayList<>();
+		sut.trim(resources.getFile("files/bwa_input.fastq"), new ListFastqWriter(actual));
+		
+		try(FastqDataStore expected = new FastqFileDataStoreBuilder(resources.getFile("files/bwa_output.fastq"))
+									.hint(DataStoreProviderHint.ITERATION_ONLY)
+									.qualityCodec(FastqQualityCodec.SANGER)
+									.build();
+			StreamingIterator<FastqRecord> iter = expected.iterator();
+				){
+			
+			List<FastqRecord> expectedList = new ArrayList<>();
+			iter.forEachRemaining(expectedList::add);
+			assertEquals(expectedList, actual);
+		}
+	}
+	
+	@Test
+	public void writerErrorIsThrown() throws IOException{
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline)
+										.numberOfThreads(2)
+										.batchSize(10)
+										.build();
+		IOException expected = new IOException("expected");
+		try{
+			sut.trim(records.iterator(), new ListFastqWriter(new ArrayList<>()){
+				@Override
+				public void write(FastqRecord record) throws IOException {
+					throw expected;
+				}
+			});
+			fail("should throw IOException");
+		}catch(IOException e){
+			assertSame(expected, e);
+		}
+	}
+	
+	@Test
+	public void writerErrorOnFileInputWaitsForThreadsBeforeThrowing() throws IOException{
+		File fastqFile = tmpDir.newFile("input.fastq");
+		try(FastqWriter writer = new FastqWriterBuilder(fastqFile).build()){
+			for(FastqRecord record : records){
+				writer.write(record);
+			}
+		}
+		AtomicInteger activeTrims = new AtomicInteger();
+		TrimmerPipeline slowPipeline = new TrimmerPipelineBuilder()
+												.add(new QualityTrimmer(){
+													@Override
+													public Range trim(QualitySequence qualities) {
+														activeTrims.incrementAndGet();
+														try{
+															Thread.sleep(1);
+														}catch(InterruptedException e){
+															Thread.currentThread().interrupt();
+														}finally{
+															activeTrims.decrementAndGet();
+														}
+														return Range.ofLength(qualities.getLength());
+													}
+												})
+												.build();
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(slowPipeline)
+										.numberOfThreads(4)
+										.batchSize(10)
+										.build();
+		IOException expected = new IOException("expected");
+		try{
+			sut.trim(fastqFile, new ListFastqWriter(new ArrayList<>()){
+				int count=0;
+				@Override
+				public void write(FastqRecord record) throws IOException {
+					if(++count > 100){
+						throw expected;
+					}
+				}
+			});
+			fail("should throw IOException");
+		}catch(IOException e){
+			assertSame(expected, e);
+		}
+		//all the workers should have finished before the exception was thrown
+		assertEquals(0, activeTrims.get());
+	}
+	
+	@Test
+	public void trimmerErrorIsThrown() throws IOException{
+		IllegalStateException expected = new IllegalStateException("expected");
+		TrimmerPipeline badPipeline = new TrimmerPipelineBuilder()
+												.add(new QualityTrimmer(){
+													@Override
+													public Range trim(QualitySequence qualities) {
+														throw expected;
+													}
+												})
+												.build();
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(badPipeline)
+										.numberOfThreads(2)
+										.build();
+		try{
+			sut.trim(records.iterator(), new ListFastqWriter(new ArrayList<>()));
+			fail("should throw exception");
+		}catch(IllegalStateException e){
+			assertSame(expected, e);
+		}
+	}
+	
+	@Test
+	public void readerErrorIsThrown() throws IOException{
+		Iterator<FastqRecord> iter = records.iterator();
+		IllegalStateException expected = new IllegalStateException("expected");
+		BatchFastqTrimmer sut = new BatchFastqTrimmer.Builder(pipeline)
+										.numberOfThreads(2)
+										.build();
+		try{
+			sut.trim(new Iterator<FastqRecord>(){
+				int count=0;
+				@Override
+				public boolean hasNext() {
+					return iter.hasNext();
+				}
+
+				@Override
+				public FastqRecord next() {
+					if(++count > 3_000){
+						throw expected;
+					}
+					return iter.next();
+				}
+				
+			}, new ListFastqWriter(new ArrayList<>()));
+			fail("should throw exception");
+		}catch(IllegalStateException e){
+			assertSame(expected, e);
+		}
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void nullPipelineShouldThrowNPE(){
+		new BatchFastqTrimmer.Builder(null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsShouldThrowIllegalArgumentException(){
+		new BatchFastqTrimmer.Builder(pipeline).numberOfThreads(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroBatchSizeShouldThrowIllegalArgumentException(){
+		new BatchFastqTrimmer.Builder(pipeline).batchSize(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroBatchesInFlightShouldThrowIllegalArgumentException(){
+		new BatchFastqTrimmer.Builder(pipeline).maxBatchesInFlight(0);
+	}
+	
+	private static class ListFastqWriter implements FastqWriter{
+		private final List<FastqRecord> list;
+		
+		ListFastqWriter(List<FastqRecord> list) {
+			this.list = list;
+		}
+
+		@Override
+		public void close() throws IOException {
+			//no-op
+		}
+
+		@Override
+		public void write(FastqRecord record) throws IOException {
+			list.add(record);
+		}
+	}
+}